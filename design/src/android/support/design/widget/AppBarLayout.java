@@ -118,6 +118,34 @@ public class AppBarLayout extends LinearLayout {
         void onOffsetChanged(AppBarLayout appBarLayout, int verticalOffset);
     }
 
+    /**
+     * An added {@link OnOffsetChangedListener} with its offset range and recorded timing.
+     */
+    private static final class OffsetListenerRecord {
+        final OnOffsetChangedListener listener;
+        final int minOffset;
+        final int maxOffset;
+        boolean dispatched;
+        int lastOffset;
+        long totalTimeNanos;
+
+        OffsetListenerRecord(OnOffsetChangedListener listener, int minOffset, int maxOffset) {
+            this.listener = listener;
+            this.minOffset = minOffset;
+            this.maxOffset = maxOffset;
+        }
+
+        boolean shouldDispatch(int offset) {
+            if (!dispatched) {
+                dispatched = true;
+                return true;
+            }
+            // Skip changes which stay entirely on one side of the range
+            return !(lastOffset < minOffset && offset < minOffset)
+                    && !(lastOffset > maxOffset && offset > maxOffset);
+        }
+    }
+
     private static final int INVALID_SCROLL_RANGE = -1;
 
     private int mTotalScrollRange = INVALID_SCROLL_RANGE;
@@ -132,7 +160,22 @@ public class AppBarLayout extends LinearLayout {
 
     private WindowInsetsCompat mLastInsets;
 
-    private final List<OnOffsetChangedListener> mListeners;
+    private final List<OffsetListenerRecord> mListeners;
+
+    private boolean mCoalesceOffsetUpdates;
+    private boolean mOffsetUpdatePending;
+    private int mPendingOffset;
+    private boolean mListenerTimingEnabled;
+
+    private final Runnable mDispatchPendingOffsetRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mOffsetUpdatePending) {
+                mOffsetUpdatePending = false;
+                dispatchOffsetUpdatesNow(mPendingOffset);
+            }
+        }
+    };
 
     public AppBarLayout(Context context) {
         this(context, null);
@@ -179,8 +222,27 @@ public class AppBarLayout extends LinearLayout {
      * @see #removeOnOffsetChangedListener(OnOffsetChangedListener)
      */
     public void addOnOffsetChangedListener(OnOffsetChangedListener listener) {
-        if (listener != null && !mListeners.contains(listener)) {
-            mListeners.add(listener);
+        addOnOffsetChangedListener(listener, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Add a listener that will only be called when the offset of this {@link AppBarLayout}
+     * changes within, or moves into or out of, the given range of offsets. Changes which stay
+     * entirely above or below the range are skipped.
+     *
+     * @param listener The listener that will be called when the offset changes.
+     * @param minOffset The smallest vertical offset of the range, in px.
+     * @param maxOffset The largest vertical offset of the range, in px.
+     *
+     * @see #removeOnOffsetChangedListener(OnOffsetChangedListener)
+     */
+    public void addOnOffsetChangedListener(OnOffsetChangedListener listener, int minOffset,
+            int maxOffset) {
+        if (minOffset > maxOffset) {
+            throw new IllegalArgumentException("minOffset must not be larger than maxOffset");
+        }
+        if (listener != null && indexOfListener(listener) < 0) {
+            mListeners.add(new OffsetListenerRecord(listener, minOffset, maxOffset));
         }
     }
 
@@ -191,7 +253,116 @@ public class AppBarLayout extends LinearLayout {
      */
     public void removeOnOffsetChangedListener(OnOffsetChangedListener listener) {
         if (listener != null) {
-            mListeners.remove(listener);
+            final int index = indexOfListener(listener);
+            if (index >= 0) {
+                mListeners.remove(index);
+            }
+        }
+    }
+
+    private int indexOfListener(OnOffsetChangedListener listener) {
+        for (int i = 0, z = mListeners.size(); i < z; i++) {
+            if (mListeners.get(i).listener == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Set whether offset changes should be coalesced so that listeners are called at most
+     * once per animation frame, with the latest offset. By default listeners are called
+     * for every offset change.
+     *
+     * @param coalesce true to dispatch offset changes at most once per frame
+     */
+    public void setCoalesceOffsetUpdates(boolean coalesce) {
+        if (mCoalesceOffsetUpdates != coalesce) {
+            mCoalesceOffsetUpdates = coalesce;
+            if (!coalesce && mOffsetUpdatePending) {
+                // Flush the pending update so that listeners don't miss the latest offset
+                removeCallbacks(mDispatchPendingOffsetRunnable);
+                mDispatchPendingOffsetRunnable.run();
+            }
+        }
+    }
+
+    /**
+     * Returns whether offset changes are coalesced to at most one dispatch per frame.
+     *
+     * @see #setCoalesceOffsetUpdates(boolean)
+     */
+    public boolean getCoalesceOffsetUpdates() {
+        return mCoalesceOffsetUpdates;
+    }
+
+    /**
+     * Set whether the time spent in each {@link OnOffsetChangedListener} should be recorded.
+     * This is intended for finding slow listeners and is disabled by default.
+     *
+     * @see #getOnOffsetChangedListenerTime(OnOffsetChangedListener)
+     */
+    public void setOnOffsetChangedListenerTimingEnabled(boolean enabled) {
+        mListenerTimingEnabled = enabled;
+    }
+
+    /**
+     * Returns the total time, in nanoseconds, that the given listener has spent handling
+     * offset changes since timing was enabled or last reset, or -1 if the listener has
+     * not been added to this layout.
+     *
+     * @see #setOnOffsetChangedListenerTimingEnabled(boolean)
+     */
+    public long getOnOffsetChangedListenerTime(OnOffsetChangedListener listener) {
+        final int index = indexOfListener(listener);
+        return index >= 0 ? mListeners.get(index).totalTimeNanos : -1;
+    }
+
+    /**
+     * Reset the recorded time of all {@link OnOffsetChangedListener}s to zero.
+     */
+    public void resetOnOffsetChangedListenerTimes() {
+        for (int i = 0, z = mListeners.size(); i < z; i++) {
+            mListeners.get(i).totalTimeNanos = 0;
+        }
+    }
+
+    void dispatchOffsetUpdates(int offset) {
+        if (mCoalesceOffsetUpdates) {
+            mPendingOffset = offset;
+            if (!mOffsetUpdatePending) {
+                mOffsetUpdatePending = true;
+                ViewCompat.postOnAnimation(this, mDispatchPendingOffsetRunnable);
+            }
+        } else {
+            dispatchOffsetUpdatesNow(offset);
+        }
+    }
+
+    void dispatchOffsetUpdatesNow(int offset) {
+        final List<OffsetListenerRecord> listeners = mListeners;
+        for (int i = 0, z = listeners.size(); i < z; i++) {
+            final OffsetListenerRecord record = listeners.get(i);
+            if (!record.shouldDispatch(offset)) {
+                continue;
+            }
+            record.lastOffset = offset;
+            if (mListenerTimingEnabled) {
+                final long start = System.nanoTime();
+                record.listener.onOffsetChanged(this, offset);
+                record.totalTimeNanos += System.nanoTime() - start;
+            } else {
+                record.listener.onOffsetChanged(this, offset);
+            }
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mOffsetUpdatePending) {
+            removeCallbacks(mDispatchPendingOffsetRunnable);
+            mDispatchPendingOffsetRunnable.run();
         }
     }
 
@@ -983,16 +1154,7 @@ public class AppBarLayout extends LinearLayout {
         }
 
         private void dispatchOffsetUpdates(AppBarLayout layout) {
-            final List<OnOffsetChangedListener> listeners = layout.mListeners;
-
-            // Iterate backwards through the list so that most recently added listeners
-            // get the first chance to decide
-            for (int i = 0, z = listeners.size(); i < z; i++) {
-                final OnOffsetChangedListener listener = listeners.get(i);
-                if (listener != null) {
-                    listener.onOffsetChanged(layout, getTopAndBottomOffset());
-                }
-            }
+            layout.dispatchOffsetUpdates(getTopAndBottomOffset());
         }
 
         private int interpolateOffset(AppBarLayout layout, final int offset) {
@@ -1132,6 +1294,11 @@ public class AppBarLayout extends LinearLayout {
     public static class ScrollingViewBehavior extends HeaderScrollingViewBehavior {
         private int mOverlayTop;
 
+        private int mLastDependencyOffset;
+        private int mLastDependencyHeight = -1;
+        private int mLastDependencyScrollRange;
+        private int mLastOverlap;
+
         public ScrollingViewBehavior() {}
 
         public ScrollingViewBehavior(Context context, AttributeSet attrs) {
@@ -1180,8 +1347,18 @@ public class AppBarLayout extends LinearLayout {
             if (behavior instanceof Behavior) {
                 // Offset the child so that it is below the app-bar (with any overlap)
                 final int offset = ((Behavior) behavior).getTopBottomOffsetForScrollingSibling();
-                setTopAndBottomOffset(dependency.getHeight() + offset
-                        - getOverlapForOffset(dependency, offset));
+                final int height = dependency.getHeight();
+                final int scrollRange = dependency instanceof AppBarLayout
+                        ? ((AppBarLayout) dependency).getTotalScrollRange() : 0;
+                if (offset != mLastDependencyOffset || height != mLastDependencyHeight
+                        || scrollRange != mLastDependencyScrollRange) {
+                    // Only recompute the overlap when the app bar actually moved or resized
+                    mLastDependencyOffset = offset;
+                    mLastDependencyHeight = height;
+                    mLastDependencyScrollRange = scrollRange;
+                    mLastOverlap = getOverlapForOffset(dependency, offset);
+                }
+                setTopAndBottomOffset(height + offset - mLastOverlap);
                 return true;
             }
             return false;
@@ -1216,6 +1393,7 @@ public class AppBarLayout extends LinearLayout {
          */
         public void setOverlayTop(int overlayTop) {
             mOverlayTop = overlayTop;
+            mLastDependencyHeight = -1;
         }
 
         /**
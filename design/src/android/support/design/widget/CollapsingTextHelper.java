@@ -80,8 +80,15 @@ final class CollapsingTextHelper {
     private CharSequence mTextToDraw;
     private boolean mIsRtl;
 
+    // Ellipsized titles for the collapsed and expanded states, reused until the text,
+    // available width, text size or typeface changes
+    private final EllipsizedText mCollapsedEllipsizedText = new EllipsizedText();
+    private final EllipsizedText mExpandedEllipsizedText = new EllipsizedText();
+
     private boolean mUseTexture;
     private Bitmap mExpandedTitleTexture;
+    private Bitmap mRecycledTitleTexture;
+    private Canvas mTextureCanvas;
     private Paint mTexturePaint;
     private float mTextureAscent;
     private float mTextureDescent;
@@ -500,9 +507,11 @@ final class CollapsingTextHelper {
 
         final float availableWidth;
         final float newTextSize;
+        final EllipsizedText ellipsizedText;
         boolean updateDrawText = false;
 
         if (isClose(textSize, mCollapsedTextSize)) {
+            ellipsizedText = mCollapsedEllipsizedText;
             availableWidth = mCollapsedBounds.width();
             newTextSize = mCollapsedTextSize;
             mScale = 1f;
@@ -511,6 +520,7 @@ final class CollapsingTextHelper {
                 updateDrawText = true;
             }
         } else {
+            ellipsizedText = mExpandedEllipsizedText;
             availableWidth = mExpandedBounds.width();
             newTextSize = mExpandedTextSize;
             if (mCurrentTypeface != mExpandedTypeface) {
@@ -538,8 +548,13 @@ final class CollapsingTextHelper {
             mTextPaint.setTypeface(mCurrentTypeface);
 
             // If we don't currently have text to draw, or the text size has changed, ellipsize...
-            final CharSequence title = TextUtils.ellipsize(mText, mTextPaint,
-                    availableWidth, TextUtils.TruncateAt.END);
+            CharSequence title = ellipsizedText.get(availableWidth, mCurrentTextSize,
+                    mCurrentTypeface);
+            if (title == null) {
+                title = TextUtils.ellipsize(mText, mTextPaint,
+                        availableWidth, TextUtils.TruncateAt.END);
+                ellipsizedText.set(title, availableWidth, mCurrentTextSize, mCurrentTypeface);
+            }
             if (!TextUtils.equals(title, mTextToDraw)) {
                 mTextToDraw = title;
                 mIsRtl = calculateIsRtl(mTextToDraw);
@@ -564,10 +579,14 @@ final class CollapsingTextHelper {
             return; // If the width or height are 0, return
         }
 
-        mExpandedTitleTexture = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        mExpandedTitleTexture = obtainTexture(w, h);
 
-        Canvas c = new Canvas(mExpandedTitleTexture);
-        c.drawText(mTextToDraw, 0, mTextToDraw.length(), 0, h - mTextPaint.descent(), mTextPaint);
+        if (mTextureCanvas == null) {
+            mTextureCanvas = new Canvas();
+        }
+        mTextureCanvas.setBitmap(mExpandedTitleTexture);
+        mTextureCanvas.drawText(mTextToDraw, 0, mTextToDraw.length(), 0,
+                h - mTextPaint.descent(), mTextPaint);
 
         if (mTexturePaint == null) {
             // Make sure we have a paint
@@ -575,6 +594,26 @@ final class CollapsingTextHelper {
         }
     }
 
+    /**
+     * Returns a cleared bitmap of at least the given size, reusing the last cleared texture
+     * when it is large enough without wasting more than twice the required area.
+     */
+    private Bitmap obtainTexture(int width, int height) {
+        final Bitmap recycled = mRecycledTitleTexture;
+        mRecycledTitleTexture = null;
+        if (recycled != null) {
+            final int recycledWidth = recycled.getWidth();
+            final int recycledHeight = recycled.getHeight();
+            if (recycledWidth >= width && recycledHeight >= height
+                    && (long) recycledWidth * recycledHeight <= 2L * width * height) {
+                recycled.eraseColor(Color.TRANSPARENT);
+                return recycled;
+            }
+            recycled.recycle();
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
     public void recalculate() {
         if (mView.getHeight() > 0 && mView.getWidth() > 0) {
             // If we've already been laid out, calculate everything now otherwise we'll wait
@@ -593,6 +632,8 @@ final class CollapsingTextHelper {
         if (text == null || !text.equals(mText)) {
             mText = text;
             mTextToDraw = null;
+            mCollapsedEllipsizedText.clear();
+            mExpandedEllipsizedText.clear();
             clearTexture();
             recalculate();
         }
@@ -604,7 +645,11 @@ final class CollapsingTextHelper {
 
     private void clearTexture() {
         if (mExpandedTitleTexture != null) {
-            mExpandedTitleTexture.recycle();
+            // Keep the bitmap so that the next texture can be drawn into it
+            if (mRecycledTitleTexture != null) {
+                mRecycledTitleTexture.recycle();
+            }
+            mRecycledTitleTexture = mExpandedTitleTexture;
             mExpandedTitleTexture = null;
         }
     }
@@ -651,4 +696,34 @@ final class CollapsingTextHelper {
     private static boolean rectEquals(Rect r, int left, int top, int right, int bottom) {
         return !(r.left != left || r.top != top || r.right != right || r.bottom != bottom);
     }
+
+    /**
+     * The result of ellipsizing the title for a given available width, text size and typeface.
+     */
+    private static final class EllipsizedText {
+        private CharSequence mText;
+        private float mAvailableWidth;
+        private float mTextSize;
+        private Typeface mTypeface;
+
+        CharSequence get(float availableWidth, float textSize, Typeface typeface) {
+            if (mText != null && mAvailableWidth == availableWidth && mTextSize == textSize
+                    && mTypeface == typeface) {
+                return mText;
+            }
+            return null;
+        }
+
+        void set(CharSequence text, float availableWidth, float textSize, Typeface typeface) {
+            mText = text;
+            mAvailableWidth = availableWidth;
+            mTextSize = textSize;
+            mTypeface = typeface;
+        }
+
+        void clear() {
+            mText = null;
+            mTypeface = null;
+        }
+    }
 }
@@ -54,6 +54,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -115,27 +116,11 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     static final ThreadLocal<Map<String, Constructor<Behavior>>> sConstructors =
             new ThreadLocal<>();
 
-    final Comparator<View> mLayoutDependencyComparator = new Comparator<View>() {
-        @Override
-        public int compare(View lhs, View rhs) {
-            if (lhs == rhs) {
-                return 0;
-            } else if (((LayoutParams) lhs.getLayoutParams()).dependsOn(
-                    CoordinatorLayout.this, lhs, rhs)) {
-                return 1;
-            } else if (((LayoutParams) rhs.getLayoutParams()).dependsOn(
-                    CoordinatorLayout.this, rhs, lhs)) {
-                return -1;
-            } else {
-                return 0;
-            }
-        }
-    };
-
     static final Comparator<View> TOP_SORTED_CHILDREN_COMPARATOR;
     static final CoordinatorLayoutInsetsHelper INSETS_HELPER;
 
     private final List<View> mDependencySortedChildren = new ArrayList<View>();
+    private boolean mDependencyGraphDirty = true;
     private final List<View> mTempList1 = new ArrayList<>();
     private final List<View> mTempDependenciesList = new ArrayList<>();
     private final Rect mTempRect1 = new Rect();
@@ -557,18 +542,95 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     }
 
     private void prepareChildren() {
-        mDependencySortedChildren.clear();
-        for (int i = 0, count = getChildCount(); i < count; i++) {
+        final int count = getChildCount();
+        boolean graphDirty = mDependencyGraphDirty || mDependencySortedChildren.size() != count;
+        for (int i = 0; i < count; i++) {
             final View child = getChildAt(i);
 
             final LayoutParams lp = getResolvedLayoutParams(child);
+            final View lastAnchorDirectChild = lp.mAnchorDirectChild;
             lp.findAnchorView(this, child);
 
-            mDependencySortedChildren.add(child);
+            if (!graphDirty && (!lp.mInDependencyGraph
+                    || lp.mAnchorDirectChild != lastAnchorDirectChild
+                    || lp.isDirty(this, child))) {
+                graphDirty = true;
+            }
+        }
+        if (graphDirty) {
+            buildDependencyGraph();
+        }
+    }
+
+    /**
+     * Rebuild the cached dependency graph and sort the children so that every child comes
+     * after the views it depends on. The graph is only rebuilt when a child was added or
+     * removed, or a child's behavior, anchor or layout params changed since the last build.
+     */
+    private void buildDependencyGraph() {
+        final int count = getChildCount();
+        final List<View> sorted = mDependencySortedChildren;
+        sorted.clear();
+
+        // Query each pair of children once and record the edges
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            lp.clearDependencies();
+            for (int j = 0; j < count; j++) {
+                final View other = getChildAt(j);
+                if (other != child && lp.dependsOn(this, child, other)) {
+                    lp.addDependency(other);
+                }
+            }
+        }
+
+        // Depth-first topological sort which keeps the child order between unrelated views
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (((LayoutParams) child.getLayoutParams()).mSortedIndex == LayoutParams.UNSORTED) {
+                sortDependencies(child);
+            }
+        }
+
+        // Only behavior dependencies sorted before their dependents receive change callbacks
+        for (int i = 0; i < count; i++) {
+            final View child = sorted.get(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            final Behavior b = lp.getBehavior();
+            for (int k = 0; k < lp.mDependencyCount; k++) {
+                final View dependency = lp.mDependencies[k];
+                final LayoutParams dependencyLp = (LayoutParams) dependency.getLayoutParams();
+                if (dependencyLp.mSortedIndex < i && b != null
+                        && b.layoutDependsOn(this, child, dependency)) {
+                    dependencyLp.addDependent(i);
+                }
+            }
+            lp.mInDependencyGraph = true;
+        }
+        mDependencyGraphDirty = false;
+    }
+
+    private void sortDependencies(View child) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        lp.mSortedIndex = LayoutParams.SORTING;
+        for (int k = 0; k < lp.mDependencyCount; k++) {
+            final View dependency = lp.mDependencies[k];
+            // Dependencies already being sorted are part of a cycle and are skipped
+            if (((LayoutParams) dependency.getLayoutParams()).mSortedIndex
+                    == LayoutParams.UNSORTED) {
+                sortDependencies(dependency);
+            }
         }
-        // We need to use a selection sort here to make sure that every item is compared
-        // against each other
-        selectionSort(mDependencySortedChildren, mLayoutDependencyComparator);
+        lp.mSortedIndex = mDependencySortedChildren.size();
+        mDependencySortedChildren.add(child);
+    }
+
+    /**
+     * Check if the cached dependency graph is up to date for the given child.
+     */
+    private boolean isDependencyGraphValid(View child, LayoutParams lp) {
+        return !mDependencyGraphDirty && lp.mInDependencyGraph && !lp.isDirty(this, child);
     }
 
     /**
@@ -1101,11 +1163,12 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             final View child = mDependencySortedChildren.get(i);
             final LayoutParams lp = (LayoutParams) child.getLayoutParams();
 
-            // Check child views before for anchor
-            for (int j = 0; j < i; j++) {
-                final View checkChild = mDependencySortedChildren.get(j);
-
-                if (lp.mAnchorDirectChild == checkChild) {
+            // Anchors are sorted before the views anchored to them
+            final View anchor = lp.mAnchorDirectChild;
+            if (anchor != null) {
+                final int anchorIndex = ((LayoutParams) anchor.getLayoutParams()).mSortedIndex;
+                if (anchorIndex >= 0 && anchorIndex < i
+                        && mDependencySortedChildren.get(anchorIndex) == anchor) {
                     offsetChildToAnchor(child, layoutDirection);
                 }
             }
@@ -1120,13 +1183,14 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             }
             recordLastChildRect(child, newRect);
 
-            // Update any behavior-dependent views for the change
-            for (int j = i + 1; j < childCount; j++) {
-                final View checkChild = mDependencySortedChildren.get(j);
+            // Update only the behavior-dependent views of the changed view
+            final int[] dependents = lp.mDependents;
+            for (int k = 0; k < lp.mDependentCount; k++) {
+                final View checkChild = mDependencySortedChildren.get(dependents[k]);
                 final LayoutParams checkLp = (LayoutParams) checkChild.getLayoutParams();
                 final Behavior b = checkLp.getBehavior();
 
-                if (b != null && b.layoutDependsOn(this, checkChild, child)) {
+                if (b != null) {
                     if (!fromNestedScroll && checkLp.getChangedAfterNestedScroll()) {
                         // If this is not from a nested scroll and we have already been changed
                         // from a nested scroll, skip the dispatch and reset the flag
@@ -1207,12 +1271,17 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
      * @return the list of views which {@code child} depends on.
      */
     public List<View> getDependencies(View child) {
-        // TODO The result of this is probably a good candidate for caching
-
         final LayoutParams lp = (LayoutParams) child.getLayoutParams();
         final List<View> list = mTempDependenciesList;
         list.clear();
 
+        if (isDependencyGraphValid(child, lp)) {
+            for (int i = 0; i < lp.mDependencyCount; i++) {
+                list.add(lp.mDependencies[i]);
+            }
+            return list;
+        }
+
         final int childCount = getChildCount();
         for (int i = 0; i < childCount; i++) {
             final View other = getChildAt(i);
@@ -1258,6 +1327,9 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
         if (lp.mAnchorView != null) {
             return true;
         }
+        if (isDependencyGraphValid(child, lp)) {
+            return lp.mDependencyCount > 0;
+        }
 
         final int childCount = getChildCount();
         for (int i = 0; i < childCount; i++) {
@@ -2202,6 +2274,21 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
         View mAnchorView;
         View mAnchorDirectChild;
 
+        static final int UNSORTED = -1;
+        static final int SORTING = -2;
+
+        /**
+         * Cached dependency graph state, owned by the parent CoordinatorLayout.
+         * mDependencies holds the views this child depends on, mDependents the sorted
+         * indices of the children whose behaviors depend on this child.
+         */
+        boolean mInDependencyGraph;
+        int mSortedIndex = UNSORTED;
+        View[] mDependencies;
+        int mDependencyCount;
+        int[] mDependents;
+        int mDependentCount;
+
         private boolean mDidBlockInteraction;
         private boolean mDidAcceptNestedScroll;
         private boolean mDidChangeAfterNestedScroll;
@@ -2302,6 +2389,7 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
                 mBehavior = behavior;
                 mBehaviorTag = null;
                 mBehaviorResolved = true;
+                mInDependencyGraph = false;
             }
         }
 
@@ -2420,6 +2508,39 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
          */
         void invalidateAnchor() {
             mAnchorView = mAnchorDirectChild = null;
+            mInDependencyGraph = false;
+        }
+
+        void clearDependencies() {
+            mInDependencyGraph = false;
+            mSortedIndex = UNSORTED;
+            if (mDependencies != null) {
+                Arrays.fill(mDependencies, 0, mDependencyCount, null);
+            }
+            mDependencyCount = 0;
+            mDependentCount = 0;
+        }
+
+        void addDependency(View dependency) {
+            if (mDependencies == null) {
+                mDependencies = new View[4];
+            } else if (mDependencyCount == mDependencies.length) {
+                final View[] dependencies = new View[mDependencyCount * 2];
+                System.arraycopy(mDependencies, 0, dependencies, 0, mDependencyCount);
+                mDependencies = dependencies;
+            }
+            mDependencies[mDependencyCount++] = dependency;
+        }
+
+        void addDependent(int sortedIndex) {
+            if (mDependents == null) {
+                mDependents = new int[4];
+            } else if (mDependentCount == mDependents.length) {
+                final int[] dependents = new int[mDependentCount * 2];
+                System.arraycopy(mDependents, 0, dependents, 0, mDependentCount);
+                mDependents = dependents;
+            }
+            mDependents[mDependentCount++] = sortedIndex;
         }
 
         /**
@@ -2539,6 +2660,7 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
     final class HierarchyChangeListener implements OnHierarchyChangeListener {
         @Override
         public void onChildViewAdded(View parent, View child) {
+            mDependencyGraphDirty = true;
             if (mOnHierarchyChangeListener != null) {
                 mOnHierarchyChangeListener.onChildViewAdded(parent, child);
             }
@@ -2547,6 +2669,7 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
         @Override
         public void onChildViewRemoved(View parent, View child) {
             dispatchDependentViewRemoved(child);
+            mDependencyGraphDirty = true;
 
             if (mOnHierarchyChangeListener != null) {
                 mOnHierarchyChangeListener.onChildViewRemoved(parent, child);
@@ -2654,37 +2777,4 @@ public class CoordinatorLayout extends ViewGroup implements NestedScrollingParen
             }
         });
     }
-
-    private static void selectionSort(final List<View> list, final Comparator<View> comparator) {
-        if (list == null || list.size() < 2) {
-            return;
-        }
-
-        final View[] array = new View[list.size()];
-        list.toArray(array);
-        final int count = array.length;
-
-        for (int i = 0; i < count; i++) {
-            int min = i;
-
-            for (int j = i + 1; j < count; j++) {
-                if (comparator.compare(array[j], array[min]) < 0) {
-                    min = j;
-                }
-            }
-
-            if (i != min) {
-                // We have a different min so swap the items
-                final View minItem = array[min];
-                array[min] = array[i];
-                array[i] = minItem;
-            }
-        }
-
-        // Finally add the array back into the collection
-        list.clear();
-        for (int i = 0; i < count; i++) {
-            list.add(array[i]);
-        }
-    }
 }
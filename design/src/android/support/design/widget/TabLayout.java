@@ -33,6 +33,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import android.support.design.R;
+import android.support.v4.util.Pools;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewCompat;
@@ -184,9 +185,14 @@ public class TabLayout extends HorizontalScrollView {
         public void onTabReselected(Tab tab);
     }
 
+    private static final int TAB_POOL_SIZE = 16;
+
     private final ArrayList<Tab> mTabs = new ArrayList<>();
     private Tab mSelectedTab;
 
+    // Removed tab views are kept for reuse. Tabs are not, since apps may hold on to them.
+    private final Pools.Pool<TabView> mTabViewPool = new Pools.SimplePool<>(TAB_POOL_SIZE);
+
     private final SlidingTabStrip mTabStrip;
 
     private int mTabPaddingStart;
@@ -500,6 +506,9 @@ public class TabLayout extends HorizontalScrollView {
      */
     public void removeAllTabs() {
         // Remove all the views
+        for (int i = mTabStrip.getChildCount() - 1; i >= 0; i--) {
+            recycleTabView(getTabView(i));
+        }
         mTabStrip.removeAllViews();
 
         for (Iterator<Tab> i = mTabs.iterator(); i.hasNext(); ) {
@@ -632,16 +641,53 @@ public class TabLayout extends HorizontalScrollView {
     /**
      * Populate our tab content from the given {@link PagerAdapter}.
      * <p>
-     * Any existing tabs will be removed first. Each tab will have it's text set to the value
-     * returned from {@link PagerAdapter#getPageTitle(int)}
+     * Each tab will have it's text set to the value returned from
+     * {@link PagerAdapter#getPageTitle(int)}. Existing tabs are reused, with their icon,
+     * custom view, tag and content description cleared, extra tabs are removed from the end and
+     * missing tabs are added. The selected position is kept if it still exists, and
+     * {@link OnTabSelectedListener#onTabSelected(Tab)} is dispatched again for its new content.
      * </p>
      *
      * @param adapter the adapter to populate from
      */
     public void setTabsFromPagerAdapter(@NonNull PagerAdapter adapter) {
-        removeAllTabs();
-        for (int i = 0, count = adapter.getCount(); i < count; i++) {
-            addTab(newTab().setText(adapter.getPageTitle(i)));
+        final int count = adapter.getCount();
+
+        // Remove the tabs past the end of the adapter, without moving the selection around
+        for (int i = mTabs.size() - 1; i >= count; i--) {
+            removeTabViewAt(i);
+            final Tab tab = mTabs.remove(i);
+            if (tab == mSelectedTab) {
+                mSelectedTab = null;
+            }
+            tab.setPosition(Tab.INVALID_POSITION);
+        }
+
+        // Reused tabs keep nothing from the previous adapter
+        for (int i = 0, z = mTabs.size(); i < z; i++) {
+            final Tab tab = mTabs.get(i);
+            tab.reset();
+            tab.setText(adapter.getPageTitle(i));
+        }
+
+        for (int i = mTabs.size(); i < count; i++) {
+            addTab(newTab().setText(adapter.getPageTitle(i)), false);
+        }
+
+        if (mSelectedTab == null) {
+            if (!mTabs.isEmpty()) {
+                selectTab(mTabs.get(0));
+            }
+        } else if (mOnTabSelectedListener != null) {
+            // The selected tab now shows the new adapter's content
+            mOnTabSelectedListener.onTabSelected(mSelectedTab);
+        }
+    }
+
+    private void recycleTabView(TabView tabView) {
+        if (tabView != null) {
+            tabView.reset();
+            mTabViewPool.release(tabView);
         }
     }
 
@@ -652,7 +698,11 @@ public class TabLayout extends HorizontalScrollView {
     }
 
     private TabView createTabView(Tab tab) {
-        final TabView tabView = new TabView(getContext(), tab);
+        TabView tabView = mTabViewPool.acquire();
+        if (tabView == null) {
+            tabView = new TabView(getContext());
+        }
+        tabView.setTab(tab);
         tabView.setFocusable(true);
         tabView.setMinimumWidth(getTabMinWidth());
 
@@ -785,7 +835,9 @@ public class TabLayout extends HorizontalScrollView {
     }
 
     private void removeTabViewAt(int position) {
+        final TabView tabView = getTabView(position);
         mTabStrip.removeViewAt(position);
+        recycleTabView(tabView);
         requestLayout();
     }
 
@@ -1043,6 +1095,14 @@ public class TabLayout extends HorizontalScrollView {
             mPosition = position;
         }
 
+        void reset() {
+            mTag = null;
+            mIcon = null;
+            mText = null;
+            mContentDesc = null;
+            mCustomView = null;
+        }
+
         /**
          * Return the text of this tab.
          *
@@ -1167,7 +1227,7 @@ public class TabLayout extends HorizontalScrollView {
     }
 
     class TabView extends LinearLayout implements OnLongClickListener {
-        private final Tab mTab;
+        private Tab mTab;
         private TextView mTextView;
         private ImageView mIconView;
 
@@ -1177,9 +1237,8 @@ public class TabLayout extends HorizontalScrollView {
 
         private int mDefaultMaxLines = 2;
 
-        public TabView(Context context, Tab tab) {
+        public TabView(Context context) {
             super(context);
-            mTab = tab;
             if (mTabBackgroundResId != 0) {
                 setBackgroundDrawable(
                         AppCompatDrawableManager.get().getDrawable(context, mTabBackgroundResId));
@@ -1188,7 +1247,18 @@ public class TabLayout extends HorizontalScrollView {
                     mTabPaddingEnd, mTabPaddingBottom);
             setGravity(Gravity.CENTER);
             setOrientation(VERTICAL);
-            update();
+        }
+
+        void setTab(@Nullable Tab tab) {
+            if (tab != mTab) {
+                mTab = tab;
+                update();
+            }
+        }
+
+        void reset() {
+            setTab(null);
+            setSelected(false);
         }
 
         @Override
@@ -1290,7 +1360,7 @@ public class TabLayout extends HorizontalScrollView {
 
         final void update() {
             final Tab tab = mTab;
-            final View custom = tab.getCustomView();
+            final View custom = tab != null ? tab.getCustomView() : null;
             if (custom != null) {
                 final ViewParent customParent = custom.getParent();
                 if (customParent != this) {
@@ -1351,9 +1421,11 @@ public class TabLayout extends HorizontalScrollView {
             }
         }
 
-        private void updateTextAndIcon(Tab tab, TextView textView, ImageView iconView) {
-            final Drawable icon = tab.getIcon();
-            final CharSequence text = tab.getText();
+        private void updateTextAndIcon(@Nullable Tab tab, TextView textView,
+                ImageView iconView) {
+            final Drawable icon = tab != null ? tab.getIcon() : null;
+            final CharSequence text = tab != null ? tab.getText() : null;
+            final CharSequence contentDesc = tab != null ? tab.getContentDescription() : null;
 
             if (iconView != null) {
                 if (icon != null) {
@@ -1364,14 +1436,14 @@ public class TabLayout extends HorizontalScrollView {
                     iconView.setVisibility(GONE);
                     iconView.setImageDrawable(null);
                 }
-                iconView.setContentDescription(tab.getContentDescription());
+                iconView.setContentDescription(contentDesc);
             }
 
             final boolean hasText = !TextUtils.isEmpty(text);
             if (textView != null) {
                 if (hasText) {
                     textView.setText(text);
-                    textView.setContentDescription(tab.getContentDescription());
+                    textView.setContentDescription(contentDesc);
                     textView.setVisibility(VISIBLE);
                     setVisibility(VISIBLE);
                 } else {
@@ -1393,7 +1465,7 @@ public class TabLayout extends HorizontalScrollView {
                 }
             }
 
-            if (!hasText && !TextUtils.isEmpty(tab.getContentDescription())) {
+            if (!hasText && !TextUtils.isEmpty(contentDesc)) {
                 setOnLongClickListener(this);
             } else {
                 setOnLongClickListener(null);
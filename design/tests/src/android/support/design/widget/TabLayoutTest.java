@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.design.widget;
+
+import android.graphics.drawable.ColorDrawable;
+import android.support.design.R;
+import android.support.v4.view.PagerAdapter;
+import android.test.AndroidTestCase;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TabLayoutTest extends AndroidTestCase {
+
+    static class TitleAdapter extends PagerAdapter {
+        final List<String> mTitles;
+
+        TitleAdapter(String... titles) {
+            mTitles = Arrays.asList(titles);
+        }
+
+        @Override
+        public int getCount() {
+            return mTitles.size();
+        }
+
+        @Override
+        public boolean isViewFromObject(View view, Object object) {
+            return view == object;
+        }
+
+        @Override
+        public CharSequence getPageTitle(int position) {
+            return mTitles.get(position);
+        }
+    }
+
+    static class RecordingListener implements TabLayout.OnTabSelectedListener {
+        final ArrayList<TabLayout.Tab> mSelected = new ArrayList<>();
+
+        @Override
+        public void onTabSelected(TabLayout.Tab tab) {
+            mSelected.add(tab);
+        }
+
+        @Override
+        public void onTabUnselected(TabLayout.Tab tab) {
+        }
+
+        @Override
+        public void onTabReselected(TabLayout.Tab tab) {
+        }
+    }
+
+    private TabLayout mTabLayout;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mTabLayout = new TabLayout(new ContextThemeWrapper(getContext(),
+                R.style.Theme_AppCompat));
+    }
+
+    public void testSwapAdapterResetsReusedTabs() {
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("a0", "a1", "a2"));
+        TabLayout.Tab tab = mTabLayout.getTabAt(1);
+        tab.setIcon(new ColorDrawable())
+                .setCustomView(new TextView(mTabLayout.getContext()))
+                .setTag("a")
+                .setContentDescription("a1 page");
+
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("b0", "b1"));
+        assertEquals(2, mTabLayout.getTabCount());
+        assertSame(tab, mTabLayout.getTabAt(1));
+        assertEquals("b1", tab.getText());
+        assertNull(tab.getIcon());
+        assertNull(tab.getCustomView());
+        assertNull(tab.getTag());
+        assertNull(tab.getContentDescription());
+    }
+
+    public void testSwapAdapterDispatchesKeptSelection() {
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("a0", "a1", "a2"));
+        mTabLayout.getTabAt(1).select();
+        RecordingListener listener = new RecordingListener();
+        mTabLayout.setOnTabSelectedListener(listener);
+
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("b0", "b1"));
+        assertEquals(1, mTabLayout.getSelectedTabPosition());
+        assertEquals(1, listener.mSelected.size());
+        assertSame(mTabLayout.getTabAt(1), listener.mSelected.get(0));
+    }
+
+    public void testSwapAdapterSelectsFirstTabWhenSelectionRemoved() {
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("a0", "a1", "a2"));
+        mTabLayout.getTabAt(2).select();
+        RecordingListener listener = new RecordingListener();
+        mTabLayout.setOnTabSelectedListener(listener);
+
+        mTabLayout.setTabsFromPagerAdapter(new TitleAdapter("b0", "b1"));
+        assertEquals(0, mTabLayout.getSelectedTabPosition());
+        assertEquals(1, listener.mSelected.size());
+        assertSame(mTabLayout.getTabAt(0), listener.mSelected.get(0));
+    }
+}
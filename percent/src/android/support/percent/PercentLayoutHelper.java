@@ -96,7 +96,8 @@ public class PercentLayoutHelper {
      * @param heightMeasureSpec Height MeasureSpec of the parent ViewGroup.
      */
     public void adjustChildren(int widthMeasureSpec, int heightMeasureSpec) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
+        final boolean debug = Log.isLoggable(TAG, Log.DEBUG);
+        if (debug) {
             Log.d(TAG, "adjustChildren: " + mHost + " widthMeasureSpec: "
                     + View.MeasureSpec.toString(widthMeasureSpec) + " heightMeasureSpec: "
                     + View.MeasureSpec.toString(heightMeasureSpec));
@@ -107,13 +108,13 @@ public class PercentLayoutHelper {
         for (int i = 0, N = mHost.getChildCount(); i < N; i++) {
             View view = mHost.getChildAt(i);
             ViewGroup.LayoutParams params = view.getLayoutParams();
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
+            if (debug) {
                 Log.d(TAG, "should adjust " + view + " " + params);
             }
             if (params instanceof PercentLayoutParams) {
                 PercentLayoutInfo info =
                         ((PercentLayoutParams) params).getPercentLayoutInfo();
-                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                if (debug) {
                     Log.d(TAG, "using " + info);
                 }
                 if (info != null) {
@@ -241,16 +242,17 @@ public class PercentLayoutHelper {
      * {@link PercentLayoutHelper#adjustChildren(int, int)}.
      */
     public void restoreOriginalParams() {
+        final boolean debug = Log.isLoggable(TAG, Log.DEBUG);
         for (int i = 0, N = mHost.getChildCount(); i < N; i++) {
             View view = mHost.getChildAt(i);
             ViewGroup.LayoutParams params = view.getLayoutParams();
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
+            if (debug) {
                 Log.d(TAG, "should restore " + view + " " + params);
             }
             if (params instanceof PercentLayoutParams) {
                 PercentLayoutInfo info =
                         ((PercentLayoutParams) params).getPercentLayoutInfo();
-                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                if (debug) {
                     Log.d(TAG, "using " + info);
                 }
                 if (info != null) {
@@ -279,11 +281,12 @@ public class PercentLayoutHelper {
      * to receive more space.
      */
     public boolean handleMeasuredStateTooSmall() {
+        final boolean debug = Log.isLoggable(TAG, Log.DEBUG);
         boolean needsSecondMeasure = false;
         for (int i = 0, N = mHost.getChildCount(); i < N; i++) {
             View view = mHost.getChildAt(i);
             ViewGroup.LayoutParams params = view.getLayoutParams();
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
+            if (debug) {
                 Log.d(TAG, "should handle measured state too small " + view + " " + params);
             }
             if (params instanceof PercentLayoutParams) {
@@ -298,10 +301,13 @@ public class PercentLayoutHelper {
                         needsSecondMeasure = true;
                         params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
                     }
+                    // Keep the wrap_content dimensions if the parent measures again before
+                    // the original params are restored
+                    info.updateFilledSize(params);
                 }
             }
         }
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
+        if (debug) {
             Log.d(TAG, "should trigger second measure pass: " + needsSecondMeasure);
         }
         return needsSecondMeasure;
@@ -344,6 +350,14 @@ public class PercentLayoutHelper {
 
         /* package */ final ViewGroup.MarginLayoutParams mPreservedParams;
 
+        // The parent size and resulting dimensions of the last fill, valid until the params
+        // are restored. Used to skip resolving again when the parent measures more than once.
+        private boolean mFilled;
+        private int mFilledWidthHint;
+        private int mFilledHeightHint;
+        private int mFilledWidth;
+        private int mFilledHeight;
+
         public PercentLayoutInfo() {
             widthPercent = -1f;
             heightPercent = -1f;
@@ -361,6 +375,14 @@ public class PercentLayoutHelper {
          */
         public void fillLayoutParams(ViewGroup.LayoutParams params, int widthHint,
                 int heightHint) {
+            if (isFilled(params)) {
+                if (isFilledFor(widthHint, heightHint)) {
+                    return;
+                }
+                // Resolve from the original values rather than the previously resolved ones
+                restoreLayoutParams(params);
+            }
+
             // Preserve the original layout params, so we can restore them after the measure step.
             mPreservedParams.width = params.width;
             mPreservedParams.height = params.height;
@@ -389,17 +411,42 @@ public class PercentLayoutHelper {
                 }
             }
 
+            mFilled = true;
+            mFilledWidthHint = widthHint;
+            mFilledHeightHint = heightHint;
+            updateFilledSize(params);
+
             if (Log.isLoggable(TAG, Log.DEBUG)) {
                 Log.d(TAG, "after fillLayoutParams: (" + params.width + ", " + params.height + ")");
             }
         }
 
+        private boolean isFilled(ViewGroup.LayoutParams params) {
+            return mFilled && params.width == mFilledWidth && params.height == mFilledHeight;
+        }
+
+        private boolean isFilledFor(int widthHint, int heightHint) {
+            return widthHint == mFilledWidthHint && heightHint == mFilledHeightHint;
+        }
+
+        /* package */ void updateFilledSize(ViewGroup.LayoutParams params) {
+            mFilledWidth = params.width;
+            mFilledHeight = params.height;
+        }
+
         /**
          * Fills {@code ViewGroup.MarginLayoutParams} dimensions and margins based on percentage
          * values.
          */
         public void fillMarginLayoutParams(ViewGroup.MarginLayoutParams params, int widthHint,
                 int heightHint) {
+            if (isFilled(params)) {
+                if (isFilledFor(widthHint, heightHint)) {
+                    // Already resolved for this parent size during this measure step
+                    return;
+                }
+                restoreMarginLayoutParams(params);
+            }
             fillLayoutParams(params, widthHint, heightHint);
 
             // Preserver the original margins, so we can restore them after the measure step.
@@ -472,6 +519,7 @@ public class PercentLayoutHelper {
         public void restoreLayoutParams(ViewGroup.LayoutParams params) {
             params.width = mPreservedParams.width;
             params.height = mPreservedParams.height;
+            mFilled = false;
         }
     }
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.app;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.test.InstrumentationTestCase;
+
+/**
+ * Tests for the id/tag index and saved state of {@link FragmentManagerImpl}.
+ */
+public class FragmentManagerStateTest extends InstrumentationTestCase {
+    private static final int FRAGMENT_COUNT = 500;
+
+    private static class HostCallbacks extends FragmentHostCallback<Object> {
+        HostCallbacks(InstrumentationTestCase test) {
+            super(test.getInstrumentation().getTargetContext(),
+                    new Handler(Looper.getMainLooper()), 0);
+        }
+
+        @Override
+        public Object onGetHost() {
+            return null;
+        }
+    }
+
+    private FragmentController mController;
+
+    private FragmentController createController() {
+        FragmentController controller = FragmentController.createController(
+                new HostCallbacks(this));
+        controller.attachHost(null);
+        return controller;
+    }
+
+    private void addFragments(int count) {
+        FragmentTransaction ft = mController.getSupportFragmentManager().beginTransaction();
+        for (int i = 0; i < count; i++) {
+            ft.add(new Fragment(), "fragment" + i);
+        }
+        ft.commit();
+        mController.execPendingActions();
+    }
+
+    private void runOnMainSync(Runnable runnable) {
+        getInstrumentation().runOnMainSync(runnable);
+    }
+
+    public void testFindFragmentByTag() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController = createController();
+                mController.dispatchCreate();
+                addFragments(FRAGMENT_COUNT);
+                FragmentManager fm = mController.getSupportFragmentManager();
+                for (int i = 0; i < FRAGMENT_COUNT; i++) {
+                    Fragment f = fm.findFragmentByTag("fragment" + i);
+                    assertNotNull(f);
+                    assertEquals("fragment" + i, f.getTag());
+                }
+                assertNull(fm.findFragmentByTag("missing"));
+
+                Fragment removed = fm.findFragmentByTag("fragment7");
+                fm.beginTransaction().remove(removed).commit();
+                mController.execPendingActions();
+                assertNull(fm.findFragmentByTag("fragment7"));
+                assertNotNull(fm.findFragmentByTag("fragment8"));
+            }
+        });
+    }
+
+    public void testFindFragmentByIdPrefersLastAdded() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController = createController();
+                mController.dispatchCreate();
+                FragmentManager fm = mController.getSupportFragmentManager();
+                Fragment first = new Fragment();
+                Fragment second = new Fragment();
+                fm.beginTransaction().add(1, first).commit();
+                mController.execPendingActions();
+                assertSame(first, fm.findFragmentById(1));
+
+                fm.beginTransaction().add(1, second).commit();
+                mController.execPendingActions();
+                assertSame(second, fm.findFragmentById(1));
+
+                fm.beginTransaction().remove(second).commit();
+                mController.execPendingActions();
+                assertSame(first, fm.findFragmentById(1));
+                assertNull(fm.findFragmentById(2));
+            }
+        });
+    }
+
+    public static class CountingFragment extends Fragment {
+        int mValue;
+        int mSaveCount;
+
+        @Override
+        public void onSaveInstanceState(Bundle outState) {
+            super.onSaveInstanceState(outState);
+            mSaveCount++;
+            outState.putInt("value", mValue);
+        }
+    }
+
+    public void testEarlierSnapshotUnchanged() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController = createController();
+                mController.dispatchCreate();
+                CountingFragment fragment = new CountingFragment();
+                mController.getSupportFragmentManager().beginTransaction()
+                        .add(fragment, "counting").commit();
+                mController.execPendingActions();
+
+                fragment.mValue = 1;
+                FragmentManagerState first = (FragmentManagerState) mController.saveAllState();
+                assertEquals(1, fragment.mSaveCount);
+
+                mController.noteStateNotSaved();
+                fragment.mValue = 2;
+                FragmentManagerState second = (FragmentManagerState) mController.saveAllState();
+                assertEquals(2, fragment.mSaveCount);
+                assertNotSame(first.mActive[fragment.mIndex], second.mActive[fragment.mIndex]);
+                assertEquals(2, second.mActive[fragment.mIndex].mSavedFragmentState
+                        .getInt("value"));
+                // Saving again must not change a state that was already handed out.
+                assertEquals(1, first.mActive[fragment.mIndex].mSavedFragmentState
+                        .getInt("value"));
+            }
+        });
+    }
+
+    public void testSaveRestore() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mController = createController();
+                mController.dispatchCreate();
+                addFragments(FRAGMENT_COUNT);
+                Parcelable state = mController.saveAllState();
+
+                mController = createController();
+                mController.restoreAllState(state, null);
+                mController.dispatchCreate();
+                FragmentManager fm = mController.getSupportFragmentManager();
+                for (int i = 0; i < FRAGMENT_COUNT; i++) {
+                    Fragment f = fm.findFragmentByTag("fragment" + i);
+                    assertNotNull(f);
+                    assertTrue(f.mRestored);
+                }
+            }
+        });
+    }
+}
@@ -13,7 +13,10 @@
  */
 package android.support.v17.leanback.app;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.WeakReference;
+import java.util.Map;
 
 import android.support.annotation.ColorInt;
 import android.graphics.PixelFormat;
@@ -23,10 +26,12 @@ import android.support.v17.leanback.R;
 import android.animation.Animator;
 import android.animation.ValueAnimator;
 import android.app.Activity;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
@@ -35,8 +40,11 @@ import android.graphics.Paint;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Handler;
 import android.support.v17.leanback.widget.BackgroundHelper;
+import android.support.v4.util.LruCache;
 import android.support.v4.view.animation.FastOutLinearInInterpolator;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -75,6 +83,11 @@ import android.support.v4.content.ContextCompat;
  *   {@link #setDrawable}), which may be in transition</li>
  * </ul>
  *
+ * <p>Bitmaps may be loaded asynchronously via {@link #setBitmapAsync} or
+ * {@link #setUri}.  They are decoded and downsampled to the size of the screen
+ * on a background thread, kept in a cache shared with the other Activities,
+ * and faded in once they are ready.
+ *
  * <p>BackgroundManager holds references to potentially large bitmap Drawables.
  * Call {@link #release} to release these references when the Activity is not
  * visible.
@@ -88,6 +101,22 @@ public final class BackgroundManager {
         public boolean isResumed();
     }
 
+    /**
+     * Loads a background bitmap for {@link BackgroundManager#setBitmapAsync}.
+     */
+    public interface BitmapLoader {
+        /**
+         * Loads the bitmap.  Called on a background thread.  The bitmap may be decoded at a
+         * lower resolution as long as it still covers the given size; BackgroundManager scales
+         * and crops it to that size.
+         *
+         * @param width The width of the background in pixels.
+         * @param height The height of the background in pixels.
+         * @return The bitmap, or null if it could not be loaded.
+         */
+        Bitmap loadBitmap(int width, int height) throws IOException;
+    }
+
     private static final String TAG = "BackgroundManager";
     private static final boolean DEBUG = false;
 
@@ -95,6 +124,9 @@ public final class BackgroundManager {
     private static final int DIM_ALPHA_ON_SOLID = (int) (0.8f * FULL_ALPHA);
     private static final int CHANGE_BG_DELAY_MS = 500;
     private static final int FADE_DURATION = 500;
+    // Number of screen-sized bitmaps kept in the cache by default, up to the byte limit below.
+    private static final int DEFAULT_CACHED_BITMAPS = 2;
+    private static final int DEFAULT_BITMAP_CACHE_MAX_BYTES = 16 * 1024 * 1024;
 
     /**
      * Using a separate window for backgrounds can improve graphics performance by
@@ -121,6 +153,9 @@ public final class BackgroundManager {
     private int mBackgroundColor;
     private boolean mAttached;
     private long mLastSetTime;
+    // Incremented by every change of the background, so a bitmap that finishes loading after
+    // a later change is only cached.
+    private int mLoadGeneration;
 
     private final Interpolator mAccelerateInterpolator;
     private final Interpolator mDecelerateInterpolator;
@@ -133,10 +168,13 @@ public final class BackgroundManager {
             Bitmap mBitmap;
             Matrix mMatrix;
             Paint mPaint;
+            Object mKey;
 
             @Override
             public Drawable newDrawable() {
-                return new BitmapDrawable(null, mBitmap, mMatrix);
+                BitmapDrawable drawable = new BitmapDrawable(null, mBitmap, mMatrix);
+                drawable.mState.mKey = mKey;
+                return drawable;
             }
 
             @Override
@@ -162,6 +200,13 @@ public final class BackgroundManager {
             return mState.mBitmap;
         }
 
+        /**
+         * Returns the key the bitmap was loaded with, or null.
+         */
+        Object getKey() {
+            return mState.mKey;
+        }
+
         @Override
         public void draw(Canvas canvas) {
             if (mState.mBitmap == null) {
@@ -511,6 +556,9 @@ public final class BackgroundManager {
         private Drawable mDrawable;
         private int mCount;
 
+        /** Recently loaded bitmaps, by key, shared by all activities */
+        private LruCache<Object, Bitmap> mBitmapCache;
+
         /** Single cache of theme drawable */
         private int mLastThemeDrawableId;
         private WeakReference<Drawable.ConstantState> mLastThemeDrawableState;
@@ -522,6 +570,9 @@ public final class BackgroundManager {
         private void reset() {
             mColor = Color.TRANSPARENT;
             mDrawable = null;
+            if (mBitmapCache != null) {
+                mBitmapCache.evictAll();
+            }
         }
 
         public static BackgroundContinuityService getInstance() {
@@ -549,6 +600,23 @@ public final class BackgroundManager {
         public void setDrawable(Drawable drawable) {
             mDrawable = drawable;
         }
+        public LruCache<Object, Bitmap> getBitmapCache(int defaultMaxBytes) {
+            if (mBitmapCache == null) {
+                mBitmapCache = new BitmapCache(defaultMaxBytes);
+            }
+            return mBitmapCache;
+        }
+        public void setBitmapCacheSize(int maxBytes) {
+            if (mBitmapCache == null || mBitmapCache.maxSize() != maxBytes) {
+                LruCache<Object, Bitmap> oldCache = mBitmapCache;
+                mBitmapCache = new BitmapCache(maxBytes);
+                if (oldCache != null) {
+                    for (Map.Entry<Object, Bitmap> entry : oldCache.snapshot().entrySet()) {
+                        mBitmapCache.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
         public Drawable getThemeDrawable(Context context, int themeDrawableId) {
             Drawable drawable = null;
             if (mLastThemeDrawableState != null && mLastThemeDrawableId == themeDrawableId) {
@@ -570,6 +638,17 @@ public final class BackgroundManager {
         }
     }
 
+    private static class BitmapCache extends LruCache<Object, Bitmap> {
+        BitmapCache(int maxBytes) {
+            super(Math.max(1, maxBytes));
+        }
+
+        @Override
+        protected int sizeOf(Object key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    }
+
     private Drawable getThemeDrawable() {
         Drawable drawable = null;
         if (mThemeDrawableResourceId != -1) {
@@ -877,6 +956,7 @@ public final class BackgroundManager {
             mHandler.removeCallbacks(mChangeRunnable);
             mChangeRunnable = null;
         }
+        mLoadGeneration++;
         releaseBackgroundBitmap();
     }
 
@@ -985,6 +1065,7 @@ public final class BackgroundManager {
      */
     public void setDrawable(Drawable drawable) {
         if (DEBUG) Log.v(TAG, "setBackgroundDrawable " + drawable);
+        mLoadGeneration++;
         setDrawableInternal(drawable);
     }
 
@@ -1033,7 +1114,163 @@ public final class BackgroundManager {
         if (DEBUG) {
             Log.v(TAG, "setBitmap " + bitmap);
         }
+        mLoadGeneration++;
+        setBitmapInternal(bitmap, null);
+    }
 
+    /**
+     * Sets the bitmap identified by the given key into the background.  The bitmap is taken
+     * from the cache of recently used backgrounds if possible, otherwise it is loaded by the
+     * given loader on a background thread, scaled and cropped to fit within the dimensions of
+     * the view, and faded in once it is ready.  Until then the current background is kept.
+     * If another background is set before the bitmap is loaded, the bitmap is only cached.
+     *
+     * @param key Identifies the bitmap, for example its {@link Uri}.  Backgrounds with equal
+     *        keys are considered the same and are not changed.
+     * @param loader Loads the bitmap if it is not cached.
+     */
+    public void setBitmapAsync(final Object key, final BitmapLoader loader) {
+        if (DEBUG) Log.v(TAG, "setBitmapAsync " + key);
+        if (key == null || loader == null) {
+            throw new IllegalArgumentException("key and loader must not be null");
+        }
+        final int generation = ++mLoadGeneration;
+        final LruCache<Object, Bitmap> cache = getBitmapCache();
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            if (DEBUG) Log.v(TAG, "bitmap cache hit " + key);
+            setBitmapInternal(bitmap, key);
+            return;
+        }
+        final int width = mWidthPx;
+        final int height = mHeightPx;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Any failure is reported as a null bitmap, which is not set or cached.
+                Bitmap fittedBitmap = null;
+                try {
+                    Bitmap loaded = loader.loadBitmap(width, height);
+                    if (loaded != null) {
+                        fittedBitmap = fitBitmap(loaded, width, height);
+                    }
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to load background " + key, e);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Failed to load background " + key, e);
+                } catch (OutOfMemoryError e) {
+                    Log.w(TAG, "Out of memory loading background " + key, e);
+                }
+                final Bitmap fitted = fittedBitmap;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (fitted == null || mService == null) {
+                            // don't cache for a detached manager, the service may be reset
+                            return;
+                        }
+                        cache.put(key, fitted);
+                        if (generation == mLoadGeneration && mAttached) {
+                            setBitmapInternal(fitted, key);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets the image at the given {@link Uri} into the background, as with
+     * {@link #setBitmapAsync}.  The image is decoded on a background thread at the lowest
+     * resolution that still covers the view.  Supports the schemes supported by
+     * {@link ContentResolver#openInputStream(Uri)}.
+     */
+    public void setUri(final Uri uri) {
+        if (uri == null) {
+            setBitmap(null);
+            return;
+        }
+        final ContentResolver resolver = mContext.getContentResolver();
+        setBitmapAsync(uri, new BitmapLoader() {
+            @Override
+            public Bitmap loadBitmap(int width, int height) throws IOException {
+                return decodeUri(resolver, uri, width, height);
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum number of bytes of bitmaps kept in the cache of recently used
+     * backgrounds.  The cache is shared by all activities and is cleared once the last of
+     * them is destroyed; by default it holds up to two screen-sized bitmaps, but no more than
+     * 16MB.
+     */
+    public void setBitmapCacheSize(int maxBytes) {
+        mService.setBitmapCacheSize(maxBytes);
+    }
+
+    private LruCache<Object, Bitmap> getBitmapCache() {
+        return mService.getBitmapCache((int) Math.min(
+                (long) DEFAULT_CACHED_BITMAPS * mWidthPx * mHeightPx * 4,
+                DEFAULT_BITMAP_CACHE_MAX_BYTES));
+    }
+
+    static Bitmap decodeUri(ContentResolver resolver, Uri uri, int width, int height)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = resolver.openInputStream(uri);
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        in = resolver.openInputStream(uri);
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Scales a bitmap that is larger than needed to cover width x height, keeping its aspect
+     * ratio, and crops it horizontally to the center, so no scaling is needed when drawing.
+     */
+    static Bitmap fitBitmap(Bitmap bitmap, int width, int height) {
+        final int dwidth = bitmap.getWidth();
+        final int dheight = bitmap.getHeight();
+        if (dwidth <= 0 || dheight <= 0) {
+            return null;
+        }
+        final float scale;
+        if (dwidth * height > width * dheight) {
+            scale = (float) height / (float) dheight;
+        } else {
+            scale = (float) width / (float) dwidth;
+        }
+        if (scale >= 1f) {
+            return bitmap;
+        }
+        final int subX = Math.min((int) (width / scale), dwidth);
+        final int dx = Math.max(0, (dwidth - subX) / 2);
+        final int subY = Math.min((int) (height / scale), dheight);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        return Bitmap.createBitmap(bitmap, dx, 0, subX, subY, matrix, true);
+    }
+
+    private void setBitmapInternal(Bitmap bitmap, Object key) {
         if (bitmap == null) {
             setDrawableInternal(null);
             return;
@@ -1072,6 +1309,7 @@ public final class BackgroundManager {
         }
 
         BitmapDrawable bitmapDrawable = new BitmapDrawable(mContext.getResources(), bitmap, matrix);
+        bitmapDrawable.mState.mKey = key;
 
         setDrawableInternal(bitmapDrawable);
     }
@@ -1137,7 +1375,16 @@ public final class BackgroundManager {
             return true;
         }
         if (first instanceof BitmapDrawable && second instanceof BitmapDrawable) {
-            if (((BitmapDrawable) first).getBitmap().sameAs(((BitmapDrawable) second).getBitmap())) {
+            // Compare by key or bitmap identity; comparing the pixels is too slow for the
+            // main thread.
+            BitmapDrawable firstBitmap = (BitmapDrawable) first;
+            BitmapDrawable secondBitmap = (BitmapDrawable) second;
+            if (firstBitmap.getKey() != null && firstBitmap.getKey().equals(secondBitmap.getKey())) {
+                return true;
+            }
+            Bitmap bitmap = firstBitmap.getBitmap();
+            if (bitmap != null && bitmap == secondBitmap.getBitmap()
+                    && firstBitmap.mState.mMatrix.equals(secondBitmap.mState.mMatrix)) {
                 return true;
             }
         }
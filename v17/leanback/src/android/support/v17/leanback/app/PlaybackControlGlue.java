@@ -17,6 +17,7 @@ import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.support.v17.leanback.widget.SparseArrayObjectAdapter;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.InputEvent;
 import android.view.KeyEvent;
 import android.view.View;
@@ -66,9 +67,11 @@ import android.view.View;
  * {@link RowPresenter.ViewHolder#setOnKeyListener(android.view.View.OnKeyListener)}.
  * </p>
  *
- * <p>To update the controls row progress during playback, override {@link #enableProgressUpdating}
- * to manage the lifecycle of a periodic callback to {@link #updateProgress()}.
- * {@link #getUpdatePeriod()} provides a recommended update period.
+ * <p>During playback the glue calls {@link #updateProgress()} every {@link #getUpdatePeriod()}
+ * milliseconds, aligned with display frames.  Updates are suspended while the controls of the
+ * {@link PlaybackOverlayFragment} are faded out.  A subclass may instead override
+ * {@link #enableProgressUpdating} to manage the lifecycle of its own periodic callback to
+ * {@link #updateProgress()}.
  * </p>
  *
  */
@@ -177,6 +180,40 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
     private OnItemViewClickedListener mExternalOnItemViewClickedListener;
     private int mPlaybackSpeed = PLAYBACK_SPEED_NORMAL;
     private boolean mFadeWhenPlaying = true;
+    private boolean mProgressUpdatingEnabled;
+    private boolean mProgressUpdateScheduled;
+
+    private final Choreographer.FrameCallback mUpdateProgressFrameCallback =
+            new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mProgressUpdateScheduled = false;
+            if (mProgressUpdatingEnabled && mControlsRow != null) {
+                updateProgress();
+                scheduleProgressUpdate();
+            }
+        }
+    };
+
+    private final PlaybackOverlayFragment.OnControlsVisibilityChangedListener
+            mControlsVisibilityListener =
+            new PlaybackOverlayFragment.OnControlsVisibilityChangedListener() {
+        @Override
+        public void onControlsVisibilityChanged(boolean visible) {
+            if (!mProgressUpdatingEnabled) {
+                return;
+            }
+            if (visible) {
+                // bring the progress up to date before the controls appear
+                if (mControlsRow != null) {
+                    updateProgress();
+                }
+                scheduleProgressUpdate();
+            } else {
+                cancelProgressUpdate();
+            }
+        }
+    };
 
     private final Handler mHandler = new Handler() {
         @Override
@@ -281,6 +318,7 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
 
     private void attachToFragment() {
         mFragment.setInputEventHandler(mOnInputEventHandler);
+        mFragment.setOnControlsVisibilityChangedListener(mControlsVisibilityListener);
     }
 
     /**
@@ -408,10 +446,36 @@ public abstract class PlaybackControlGlue implements OnActionClickedListener, Vi
     }
 
     /**
-     * Override this to start/stop a runnable to call {@link #updateProgress} at
-     * an interval such as {@link #getUpdatePeriod}.
+     * Starts or stops calling {@link #updateProgress} every {@link #getUpdatePeriod}
+     * milliseconds.  Calls are posted as {@link Choreographer} frame callbacks so that
+     * progress changes are drawn in the frame they are made, and are suspended while the
+     * controls of the fragment are faded out or the fragment is stopped.  Override this to
+     * start/stop a runnable of your own instead, without calling the super implementation,
+     * or {@link #updateProgress} is called by both.
      */
     public void enableProgressUpdating(boolean enable) {
+        mProgressUpdatingEnabled = enable;
+        if (enable) {
+            scheduleProgressUpdate();
+        } else {
+            cancelProgressUpdate();
+        }
+    }
+
+    private void scheduleProgressUpdate() {
+        if (mProgressUpdateScheduled || (mFragment != null && !mFragment.areControlsShown())) {
+            return;
+        }
+        mProgressUpdateScheduled = true;
+        Choreographer.getInstance().postFrameCallbackDelayed(mUpdateProgressFrameCallback,
+                getUpdatePeriod());
+    }
+
+    private void cancelProgressUpdate() {
+        if (mProgressUpdateScheduled) {
+            mProgressUpdateScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mUpdateProgressFrameCallback);
+        }
     }
 
     /**
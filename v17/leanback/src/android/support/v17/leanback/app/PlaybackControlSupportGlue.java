@@ -19,6 +19,7 @@ import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.support.v17.leanback.widget.SparseArrayObjectAdapter;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.InputEvent;
 import android.view.KeyEvent;
 import android.view.View;
@@ -68,9 +69,11 @@ import android.view.View;
  * {@link RowPresenter.ViewHolder#setOnKeyListener(android.view.View.OnKeyListener)}.
  * </p>
  *
- * <p>To update the controls row progress during playback, override {@link #enableProgressUpdating}
- * to manage the lifecycle of a periodic callback to {@link #updateProgress()}.
- * {@link #getUpdatePeriod()} provides a recommended update period.
+ * <p>During playback the glue calls {@link #updateProgress()} every {@link #getUpdatePeriod()}
+ * milliseconds, aligned with display frames.  Updates are suspended while the controls of the
+ * {@link PlaybackOverlaySupportFragment} are faded out.  A subclass may instead override
+ * {@link #enableProgressUpdating} to manage the lifecycle of its own periodic callback to
+ * {@link #updateProgress()}.
  * </p>
  *
  */
@@ -179,6 +182,40 @@ public abstract class PlaybackControlSupportGlue implements OnActionClickedListe
     private OnItemViewClickedListener mExternalOnItemViewClickedListener;
     private int mPlaybackSpeed = PLAYBACK_SPEED_NORMAL;
     private boolean mFadeWhenPlaying = true;
+    private boolean mProgressUpdatingEnabled;
+    private boolean mProgressUpdateScheduled;
+
+    private final Choreographer.FrameCallback mUpdateProgressFrameCallback =
+            new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mProgressUpdateScheduled = false;
+            if (mProgressUpdatingEnabled && mControlsRow != null) {
+                updateProgress();
+                scheduleProgressUpdate();
+            }
+        }
+    };
+
+    private final PlaybackOverlaySupportFragment.OnControlsVisibilityChangedListener
+            mControlsVisibilityListener =
+            new PlaybackOverlaySupportFragment.OnControlsVisibilityChangedListener() {
+        @Override
+        public void onControlsVisibilityChanged(boolean visible) {
+            if (!mProgressUpdatingEnabled) {
+                return;
+            }
+            if (visible) {
+                // bring the progress up to date before the controls appear
+                if (mControlsRow != null) {
+                    updateProgress();
+                }
+                scheduleProgressUpdate();
+            } else {
+                cancelProgressUpdate();
+            }
+        }
+    };
 
     private final Handler mHandler = new Handler() {
         @Override
@@ -283,6 +320,7 @@ public abstract class PlaybackControlSupportGlue implements OnActionClickedListe
 
     private void attachToFragment() {
         mFragment.setInputEventHandler(mOnInputEventHandler);
+        mFragment.setOnControlsVisibilityChangedListener(mControlsVisibilityListener);
     }
 
     /**
@@ -410,10 +448,36 @@ public abstract class PlaybackControlSupportGlue implements OnActionClickedListe
     }
 
     /**
-     * Override this to start/stop a runnable to call {@link #updateProgress} at
-     * an interval such as {@link #getUpdatePeriod}.
+     * Starts or stops calling {@link #updateProgress} every {@link #getUpdatePeriod}
+     * milliseconds.  Calls are posted as {@link Choreographer} frame callbacks so that
+     * progress changes are drawn in the frame they are made, and are suspended while the
+     * controls of the fragment are faded out or the fragment is stopped.  Override this to
+     * start/stop a runnable of your own instead, without calling the super implementation,
+     * or {@link #updateProgress} is called by both.
      */
     public void enableProgressUpdating(boolean enable) {
+        mProgressUpdatingEnabled = enable;
+        if (enable) {
+            scheduleProgressUpdate();
+        } else {
+            cancelProgressUpdate();
+        }
+    }
+
+    private void scheduleProgressUpdate() {
+        if (mProgressUpdateScheduled || (mFragment != null && !mFragment.areControlsShown())) {
+            return;
+        }
+        mProgressUpdateScheduled = true;
+        Choreographer.getInstance().postFrameCallbackDelayed(mUpdateProgressFrameCallback,
+                getUpdatePeriod());
+    }
+
+    private void cancelProgressUpdate() {
+        if (mProgressUpdateScheduled) {
+            mProgressUpdateScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mUpdateProgressFrameCallback);
+        }
     }
 
     /**
@@ -101,6 +101,14 @@ public class PlaybackOverlayFragment extends DetailsFragment {
         public boolean handleInputEvent(InputEvent event);
     }
 
+    /**
+     * Listener notified when the controls start fading in or have faded out, and when the
+     * fragment is started with its controls shown or is stopped.
+     */
+    interface OnControlsVisibilityChangedListener {
+        public void onControlsVisibilityChanged(boolean visible);
+    }
+
     private static final String TAG = "PlaybackOverlayFragment";
     private static final boolean DEBUG = false;
     private static final int ANIMATION_MULTIPLIER = 1;
@@ -122,9 +130,11 @@ public class PlaybackOverlayFragment extends DetailsFragment {
     private int mMajorFadeTranslateY, mMinorFadeTranslateY;
     private int mAnimationTranslateY;
     private OnFadeCompleteListener mFadeCompleteListener;
+    private OnControlsVisibilityChangedListener mControlsVisibilityListener;
     private InputEventHandler mInputEventHandler;
     private boolean mFadingEnabled = true;
     private int mFadingStatus = IDLE;
+    private boolean mStarted;
     private int mBgAlpha;
     private ValueAnimator mBgFadeInAnimator, mBgFadeOutAnimator;
     private ValueAnimator mControlRowFadeInAnimator, mControlRowFadeOutAnimator;
@@ -164,6 +174,9 @@ public class PlaybackOverlayFragment extends DetailsFragment {
                 if (mFadeCompleteListener != null) {
                     mFadeCompleteListener.onFadeOutComplete();
                 }
+                if (mControlsVisibilityListener != null) {
+                    mControlsVisibilityListener.onControlsVisibilityChanged(false);
+                }
             }
             mFadingStatus = IDLE;
         }
@@ -295,10 +308,24 @@ public class PlaybackOverlayFragment extends DetailsFragment {
         }
     }
 
-    private boolean areControlsHidden() {
+    /**
+     * Sets the listener notified when the controls start fading in or have faded out.
+     */
+    void setOnControlsVisibilityChangedListener(OnControlsVisibilityChangedListener listener) {
+        mControlsVisibilityListener = listener;
+    }
+
+    boolean areControlsHidden() {
         return mFadingStatus == IDLE && mBgAlpha == 0;
     }
 
+    /**
+     * Returns true if the fragment is started and its controls are not faded out.
+     */
+    boolean areControlsShown() {
+        return mStarted && !areControlsHidden();
+    }
+
     private boolean onInterceptInputEvent(InputEvent event) {
         final boolean controlsHidden = areControlsHidden();
         if (DEBUG) Log.v(TAG, "onInterceptInputEvent hidden " + controlsHidden + " " + event);
@@ -345,6 +372,24 @@ public class PlaybackOverlayFragment extends DetailsFragment {
         return consumeEvent;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        mStarted = true;
+        if (mControlsVisibilityListener != null && !areControlsHidden()) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(true);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        mStarted = false;
+        if (mControlsVisibilityListener != null) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(false);
+        }
+        super.onStop();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -564,6 +609,9 @@ public class PlaybackOverlayFragment extends DetailsFragment {
         }
 
         mFadingStatus = fadeIn ? IN : OUT;
+        if (fadeIn && mControlsVisibilityListener != null) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(true);
+        }
     }
 
     /**
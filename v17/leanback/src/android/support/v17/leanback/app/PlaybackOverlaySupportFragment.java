@@ -103,6 +103,14 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
         public boolean handleInputEvent(InputEvent event);
     }
 
+    /**
+     * Listener notified when the controls start fading in or have faded out, and when the
+     * fragment is started with its controls shown or is stopped.
+     */
+    interface OnControlsVisibilityChangedListener {
+        public void onControlsVisibilityChanged(boolean visible);
+    }
+
     private static final String TAG = "PlaybackOverlaySupportFragment";
     private static final boolean DEBUG = false;
     private static final int ANIMATION_MULTIPLIER = 1;
@@ -124,9 +132,11 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
     private int mMajorFadeTranslateY, mMinorFadeTranslateY;
     private int mAnimationTranslateY;
     private OnFadeCompleteListener mFadeCompleteListener;
+    private OnControlsVisibilityChangedListener mControlsVisibilityListener;
     private InputEventHandler mInputEventHandler;
     private boolean mFadingEnabled = true;
     private int mFadingStatus = IDLE;
+    private boolean mStarted;
     private int mBgAlpha;
     private ValueAnimator mBgFadeInAnimator, mBgFadeOutAnimator;
     private ValueAnimator mControlRowFadeInAnimator, mControlRowFadeOutAnimator;
@@ -166,6 +176,9 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
                 if (mFadeCompleteListener != null) {
                     mFadeCompleteListener.onFadeOutComplete();
                 }
+                if (mControlsVisibilityListener != null) {
+                    mControlsVisibilityListener.onControlsVisibilityChanged(false);
+                }
             }
             mFadingStatus = IDLE;
         }
@@ -297,10 +310,24 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
         }
     }
 
-    private boolean areControlsHidden() {
+    /**
+     * Sets the listener notified when the controls start fading in or have faded out.
+     */
+    void setOnControlsVisibilityChangedListener(OnControlsVisibilityChangedListener listener) {
+        mControlsVisibilityListener = listener;
+    }
+
+    boolean areControlsHidden() {
         return mFadingStatus == IDLE && mBgAlpha == 0;
     }
 
+    /**
+     * Returns true if the fragment is started and its controls are not faded out.
+     */
+    boolean areControlsShown() {
+        return mStarted && !areControlsHidden();
+    }
+
     private boolean onInterceptInputEvent(InputEvent event) {
         final boolean controlsHidden = areControlsHidden();
         if (DEBUG) Log.v(TAG, "onInterceptInputEvent hidden " + controlsHidden + " " + event);
@@ -347,6 +374,24 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
         return consumeEvent;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        mStarted = true;
+        if (mControlsVisibilityListener != null && !areControlsHidden()) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(true);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        mStarted = false;
+        if (mControlsVisibilityListener != null) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(false);
+        }
+        super.onStop();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -566,6 +611,9 @@ public class PlaybackOverlaySupportFragment extends DetailsSupportFragment {
         }
 
         mFadingStatus = fadeIn ? IN : OUT;
+        if (fadeIn && mControlsVisibilityListener != null) {
+            mControlsVisibilityListener.onControlsVisibilityChanged(true);
+        }
     }
 
     /**
@@ -114,6 +114,7 @@ public class RowsFragment extends BaseRowFragment {
     private ItemBridgeAdapter.ViewHolder mSelectedViewHolder;
     private int mSubPosition;
     private boolean mExpand = true;
+    private boolean mItemPrefetchEnabled;
     private boolean mViewsCreated;
     private float mRowScaleFactor;
     private int mAlignedTop;
@@ -179,6 +180,19 @@ public class RowsFragment extends BaseRowFragment {
         }
     }
 
+    /**
+     * Enables or disables prefetching of rows.  When enabled, once scrolling stops the rows
+     * next to the visible ones are created and bound, so their item views don't need to be
+     * created when they scroll into view.  Disabled by default.
+     */
+    public void setItemPrefetchEnabled(boolean enabled) {
+        mItemPrefetchEnabled = enabled;
+        VerticalGridView listView = getVerticalGridView();
+        if (listView != null) {
+            listView.setItemPrefetchEnabled(enabled);
+        }
+    }
+
     /**
      * Sets an item selection listener.
      */
@@ -261,6 +275,7 @@ public class RowsFragment extends BaseRowFragment {
         // Need set this for directly using RowsFragment.
         getVerticalGridView().setItemAlignmentViewId(R.id.row_content);
         getVerticalGridView().setSaveChildrenPolicy(VerticalGridView.SAVE_LIMITED_CHILD);
+        getVerticalGridView().setItemPrefetchEnabled(mItemPrefetchEnabled);
 
         mRecycledViewPool = null;
         mPresenterMapper = null;
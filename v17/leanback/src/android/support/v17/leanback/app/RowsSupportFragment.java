@@ -116,6 +116,7 @@ public class RowsSupportFragment extends BaseRowSupportFragment {
     private ItemBridgeAdapter.ViewHolder mSelectedViewHolder;
     private int mSubPosition;
     private boolean mExpand = true;
+    private boolean mItemPrefetchEnabled;
     private boolean mViewsCreated;
     private float mRowScaleFactor;
     private int mAlignedTop;
@@ -181,6 +182,19 @@ public class RowsSupportFragment extends BaseRowSupportFragment {
         }
     }
 
+    /**
+     * Enables or disables prefetching of rows.  When enabled, once scrolling stops the rows
+     * next to the visible ones are created and bound, so their item views don't need to be
+     * created when they scroll into view.  Disabled by default.
+     */
+    public void setItemPrefetchEnabled(boolean enabled) {
+        mItemPrefetchEnabled = enabled;
+        VerticalGridView listView = getVerticalGridView();
+        if (listView != null) {
+            listView.setItemPrefetchEnabled(enabled);
+        }
+    }
+
     /**
      * Sets an item selection listener.
      */
@@ -263,6 +277,7 @@ public class RowsSupportFragment extends BaseRowSupportFragment {
         // Need set this for directly using RowsSupportFragment.
         getVerticalGridView().setItemAlignmentViewId(R.id.row_content);
         getVerticalGridView().setSaveChildrenPolicy(VerticalGridView.SAVE_LIMITED_CHILD);
+        getVerticalGridView().setItemPrefetchEnabled(mItemPrefetchEnabled);
 
         mRecycledViewPool = null;
         mPresenterMapper = null;
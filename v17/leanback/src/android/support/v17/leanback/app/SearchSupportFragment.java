@@ -18,8 +18,11 @@ package android.support.v17.leanback.app;
 import android.support.v4.app.Fragment;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
+import android.os.OperationCanceledException;
 import android.speech.SpeechRecognizer;
 import android.speech.RecognizerIntent;
 import android.support.v17.leanback.widget.ObjectAdapter;
@@ -32,6 +35,7 @@ import android.support.v17.leanback.widget.SearchBar;
 import android.support.v17.leanback.widget.VerticalGridView;
 import android.support.v17.leanback.widget.Presenter.ViewHolder;
 import android.support.v17.leanback.widget.SpeechRecognitionCallback;
+import android.support.v4.util.LruCache;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -42,6 +46,7 @@ import android.support.v17.leanback.R;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A fragment to handle searches. An application will supply an implementation
@@ -60,6 +65,12 @@ import java.util.List;
  * not when fragment is restored from an instance state.  Activity may manually
  * call {@link #startRecognition()}, typically in onNewIntent().
  * </p>
+ * <p>
+ * Queries typed in the search bar can be debounced with {@link #setQueryDelay(long)}.  A
+ * provider implementing {@link AsyncSearchResultProvider} has its queries loaded on a
+ * background {@link Executor}, superseded queries are canceled, and results of recent
+ * queries are kept in a small cache so that going back to a previous query is immediate.
+ * </p>
  */
 public class SearchSupportFragment extends Fragment {
     private static final String TAG = SearchSupportFragment.class.getSimpleName();
@@ -75,6 +86,8 @@ public class SearchSupportFragment extends Fragment {
     private static final int RESULTS_CHANGED = 0x1;
     private static final int QUERY_COMPLETE = 0x2;
 
+    private static final int DEFAULT_RESULTS_CACHE_SIZE = 8;
+
     /**
      * Search API to be provided by the application.
      */
@@ -93,8 +106,8 @@ public class SearchSupportFragment extends Fragment {
         /**
          * <p>Method invoked when the search query is updated.</p>
          *
-         * <p>This is called as soon as the query changes; it is up to the application to add a
-         * delay before actually executing the queries if needed.
+         * <p>This is called as soon as the query changes, or once the query has not changed
+         * for the delay set by {@link SearchSupportFragment#setQueryDelay(long)}.
          *
          * <p>This method might not always be called before onQueryTextSubmit gets called, in
          * particular for voice input.
@@ -114,6 +127,90 @@ public class SearchSupportFragment extends Fragment {
         public boolean onQueryTextSubmit(String query);
     }
 
+    /**
+     * A {@link SearchResultProvider} that loads results on a background thread.  For such a
+     * provider {@link SearchResultProvider#onQueryTextChange onQueryTextChange} is never called,
+     * so implementations can simply return false from it; the fragment calls
+     * {@link #loadResults} on the executor set by {@link SearchSupportFragment#setQueryExecutor(Executor)}
+     * and passes the results of the latest query to {@link #onQueryResults} on the main thread.
+     */
+    public static interface AsyncSearchResultProvider extends SearchResultProvider {
+        /**
+         * Loads the results of a query.  Called on a background thread.
+         *
+         * <p>The signal is canceled as soon as the query is superseded by a newer one; long
+         * running implementations should check it periodically and return early, the results
+         * of a canceled query are discarded.</p>
+         *
+         * @param query The search query.
+         * @param cancellationSignal Signal canceled when the query is superseded.
+         * @return The results of the query, or null if there is no result to deliver.
+         */
+        public Object loadResults(String query, CancellationSignal cancellationSignal);
+
+        /**
+         * Invoked on the main thread with results returned by {@link #loadResults} for the
+         * current query, or with results of a recent query kept in the results cache.  The
+         * application should update the results adapter here.
+         *
+         * @param query The search query.
+         * @param results The results returned by {@link #loadResults}.
+         * @return whether the results changed.
+         */
+        public boolean onQueryResults(String query, Object results);
+    }
+
+    /**
+     * A query being loaded on the query executor.
+     */
+    private final class QueryTask implements Runnable {
+        final String mQuery;
+        final CancellationSignal mCancellationSignal = new CancellationSignal();
+        final AsyncSearchResultProvider mTaskProvider;
+        Object mResults;
+
+        QueryTask(String query, AsyncSearchResultProvider provider) {
+            mQuery = query;
+            mTaskProvider = provider;
+        }
+
+        @Override
+        public void run() {
+            if (mCancellationSignal.isCanceled()) {
+                return;
+            }
+            try {
+                mResults = mTaskProvider.loadResults(mQuery, mCancellationSignal);
+            } catch (OperationCanceledException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to load results for " + mQuery, e);
+                return;
+            }
+            if (!mCancellationSignal.isCanceled()) {
+                mHandler.post(mDeliverResults);
+            }
+        }
+
+        final Runnable mDeliverResults = new Runnable() {
+            @Override
+            public void run() {
+                if (mRunningQuery != QueryTask.this || mCancellationSignal.isCanceled()) {
+                    return;
+                }
+                mRunningQuery = null;
+                if (mResults == null) {
+                    return;
+                }
+                LruCache<String, Object> cache = getResultsCache();
+                if (cache != null) {
+                    cache.put(mQuery, mResults);
+                }
+                deliverResults(mQuery, mResults);
+            }
+        };
+    }
+
     private final DataObserver mAdapterObserver = new DataObserver() {
         @Override
         public void onChanged() {
@@ -188,6 +285,17 @@ public class SearchSupportFragment extends Fragment {
         }
     };
 
+    private final Runnable mDelayedQueryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String query = mDelayedQuery;
+            mDelayedQuery = null;
+            if (query != null && mProvider != null) {
+                executeQuery(query);
+            }
+        }
+    };
+
     private final Runnable mStartRecognitionRunnable = new Runnable() {
         @Override
         public void run() {
@@ -215,6 +323,15 @@ public class SearchSupportFragment extends Fragment {
     private int mStatus;
     private boolean mAutoStartRecognition = true;
 
+    private long mQueryDelayMs;
+    private String mDelayedQuery;
+    // Query last submitted, until the query changes again.
+    private String mSubmittedQuery;
+    private Executor mQueryExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private QueryTask mRunningQuery;
+    private int mResultsCacheSize = DEFAULT_RESULTS_CACHE_SIZE;
+    private LruCache<String, Object> mResultsCache;
+
     /**
      * @param args Bundle to use for the arguments, if null a new Bundle will be created.
      */
@@ -367,6 +484,7 @@ public class SearchSupportFragment extends Fragment {
 
     @Override
     public void onDestroy() {
+        cancelQuery();
         releaseAdapter();
         super.onDestroy();
     }
@@ -396,11 +514,93 @@ public class SearchSupportFragment extends Fragment {
      */
     public void setSearchResultProvider(SearchResultProvider searchResultProvider) {
         if (mProvider != searchResultProvider) {
+            cancelQuery();
+            if (mResultsCache != null) {
+                mResultsCache.evictAll();
+            }
             mProvider = searchResultProvider;
             onSetSearchResultProvider();
         }
     }
 
+    /**
+     * Sets the delay between the last change of the query typed in the search bar and the
+     * execution of the query.  Changes within the delay are coalesced into a single query.
+     * Submitted queries are executed immediately.  The default is 0, executing every change.
+     *
+     * @param delayMs Delay in milliseconds.
+     */
+    public void setQueryDelay(long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("Query delay must not be negative");
+        }
+        mQueryDelayMs = delayMs;
+    }
+
+    /**
+     * Returns the delay in milliseconds before executing a changed query.
+     */
+    public long getQueryDelay() {
+        return mQueryDelayMs;
+    }
+
+    /**
+     * Sets the executor on which {@link AsyncSearchResultProvider#loadResults} is called.
+     * The default is {@link AsyncTask#THREAD_POOL_EXECUTOR}.
+     */
+    public void setQueryExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        }
+        mQueryExecutor = executor;
+    }
+
+    /**
+     * Returns the executor on which {@link AsyncSearchResultProvider#loadResults} is called.
+     */
+    public Executor getQueryExecutor() {
+        return mQueryExecutor;
+    }
+
+    /**
+     * Sets how many recent query results of an {@link AsyncSearchResultProvider} are cached.
+     * A query found in the cache is delivered immediately without calling
+     * {@link AsyncSearchResultProvider#loadResults}.  The default is 8, 0 disables the cache.
+     * The cache is cleared when the provider changes.
+     *
+     * @param maxEntries Maximum number of cached query results.
+     */
+    public void setResultsCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        if (mResultsCacheSize == maxEntries) {
+            return;
+        }
+        mResultsCacheSize = maxEntries;
+        if (maxEntries == 0) {
+            mResultsCache = null;
+        } else if (mResultsCache != null) {
+            mResultsCache.resize(maxEntries);
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached query results.
+     */
+    public int getResultsCacheSize() {
+        return mResultsCacheSize;
+    }
+
+    /**
+     * Clears the cached query results, typically after the searched data changed.
+     */
+    public void clearResultsCache() {
+        if (mResultsCache != null) {
+            mResultsCache.evictAll();
+        }
+    }
+
     /**
      * Sets an item selection listener for the results.
      *
@@ -571,12 +771,79 @@ public class SearchSupportFragment extends Fragment {
 
     private void retrieveResults(String searchQuery) {
         if (DEBUG) Log.v(TAG, "retrieveResults " + searchQuery);
-        if (mProvider.onQueryTextChange(searchQuery)) {
+        mHandler.removeCallbacks(mDelayedQueryRunnable);
+        mDelayedQuery = null;
+        if (!searchQuery.equals(mSubmittedQuery)) {
+            mSubmittedQuery = null;
+        }
+        LruCache<String, Object> cache = getResultsCache();
+        if (mProvider instanceof AsyncSearchResultProvider && cache != null) {
+            Object results = cache.get(searchQuery);
+            if (results != null) {
+                if (DEBUG) Log.v(TAG, "cached results for " + searchQuery);
+                cancelRunningQuery();
+                deliverResults(searchQuery, results);
+                return;
+            }
+        }
+        if (mQueryDelayMs > 0) {
+            mDelayedQuery = searchQuery;
+            mHandler.postDelayed(mDelayedQueryRunnable, mQueryDelayMs);
+        } else {
+            executeQuery(searchQuery);
+        }
+    }
+
+    private void executeQuery(String searchQuery) {
+        if (mProvider instanceof AsyncSearchResultProvider) {
+            cancelRunningQuery();
+            mRunningQuery = new QueryTask(searchQuery, (AsyncSearchResultProvider) mProvider);
+            mQueryExecutor.execute(mRunningQuery);
+        } else if (mProvider.onQueryTextChange(searchQuery)) {
+            mStatus &= ~QUERY_COMPLETE;
+        }
+    }
+
+    private void deliverResults(String searchQuery, Object results) {
+        if (((AsyncSearchResultProvider) mProvider).onQueryResults(searchQuery, results)
+                && !searchQuery.equals(mSubmittedQuery)) {
+            // Results of a submitted query usually arrive after it completed; they
+            // must still move the focus to the results.
             mStatus &= ~QUERY_COMPLETE;
         }
     }
 
+    private LruCache<String, Object> getResultsCache() {
+        if (mResultsCache == null && mResultsCacheSize > 0) {
+            mResultsCache = new LruCache<String, Object>(mResultsCacheSize);
+        }
+        return mResultsCache;
+    }
+
+    private void cancelRunningQuery() {
+        if (mRunningQuery != null) {
+            mRunningQuery.mCancellationSignal.cancel();
+            mRunningQuery = null;
+        }
+    }
+
+    private void cancelQuery() {
+        mHandler.removeCallbacks(mDelayedQueryRunnable);
+        mDelayedQuery = null;
+        cancelRunningQuery();
+    }
+
     private void submitQuery(String query) {
+        // don't wait for the delay of a pending change, the query is complete
+        mSubmittedQuery = query;
+        mHandler.removeCallbacks(mDelayedQueryRunnable);
+        if (mDelayedQuery != null) {
+            String delayedQuery = mDelayedQuery;
+            mDelayedQuery = null;
+            if (null != mProvider) {
+                executeQuery(delayedQuery);
+            }
+        }
         queryComplete();
         if (null != mProvider) {
             mProvider.onQueryTextSubmit(query);
@@ -13,6 +13,10 @@
  */
 package android.support.v17.leanback.widget;
 
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,6 +29,14 @@ public class ArrayObjectAdapter extends ObjectAdapter {
 
     private ArrayList<Object> mItems = new ArrayList<Object>();
 
+    private static Handler sMainHandler;
+
+    // Incremented on every change of mItems, so a diff computed in the background against an
+    // older list is not applied.
+    private int mModificationCount;
+    // Identifies the latest call to setItemsAsync(), earlier results are dropped.
+    private int mSetItemsGeneration;
+
     /**
      * Constructs an adapter with the given {@link PresenterSelector}.
      */
@@ -96,6 +108,7 @@ public class ArrayObjectAdapter extends ObjectAdapter {
      * @param item The item to insert into the adapter.
      */
     public void add(int index, Object item) {
+        mModificationCount++;
         mItems.add(index, item);
         notifyItemRangeInserted(index, 1);
     }
@@ -112,6 +125,7 @@ public class ArrayObjectAdapter extends ObjectAdapter {
         if (itemsCount == 0) {
             return;
         }
+        mModificationCount++;
         mItems.addAll(index, items);
         notifyItemRangeInserted(index, itemsCount);
     }
@@ -125,6 +139,7 @@ public class ArrayObjectAdapter extends ObjectAdapter {
     public boolean remove(Object item) {
         int index = mItems.indexOf(item);
         if (index >= 0) {
+            mModificationCount++;
             mItems.remove(index);
             notifyItemRangeRemoved(index, 1);
         }
@@ -139,6 +154,7 @@ public class ArrayObjectAdapter extends ObjectAdapter {
      * @param item      The new item to be placed at given position.
      */
     public void replace(int position, Object item) {
+        mModificationCount++;
         mItems.set(position, item);
         notifyItemRangeChanged(position, 1);
     }
@@ -157,9 +173,8 @@ public class ArrayObjectAdapter extends ObjectAdapter {
             return 0;
         }
 
-        for (int i = 0; i < itemsToRemove; i++) {
-            mItems.remove(position);
-        }
+        mModificationCount++;
+        mItems.subList(position, position + itemsToRemove).clear();
         notifyItemRangeRemoved(position, itemsToRemove);
         return itemsToRemove;
     }
@@ -172,10 +187,131 @@ public class ArrayObjectAdapter extends ObjectAdapter {
         if (itemCount == 0) {
             return;
         }
+        mModificationCount++;
         mItems.clear();
         notifyItemRangeRemoved(0, itemCount);
     }
 
+    /**
+     * Moves an item from one position to another.
+     *
+     * @param fromPosition The index of the item to move.
+     * @param toPosition The index the item is moved to.
+     */
+    public void move(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        mModificationCount++;
+        mItems.add(toPosition, mItems.remove(fromPosition));
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
+    /**
+     * Replaces the items of the adapter with the items of the given list.  Items that are the
+     * same according to the {@link DiffCallback} are kept, or moved, and only the items that
+     * changed are reported as changed, so that focus and scroll position of views showing this
+     * adapter are preserved.  The list is copied.
+     *
+     * When the lists differ too much, the whole adapter is reported as changed.
+     *
+     * @param itemList The new items.
+     * @param callback Compares the current items, which must be of the same type as the new
+     *        ones, with the new ones, or null to report the whole adapter as changed.
+     */
+    public <E> void setItems(List<E> itemList, DiffCallback<? super E> callback) {
+        mSetItemsGeneration++;
+        ArrayList<Object> newItems = new ArrayList<Object>(itemList);
+        if (callback == null) {
+            mModificationCount++;
+            mItems = newItems;
+            notifyChanged();
+            return;
+        }
+        applyDiff(ItemListDiff.compute(ArrayObjectAdapter.<E>asItemList(mItems),
+                ArrayObjectAdapter.<E>asItemList(newItems), callback), newItems);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> asItemList(ArrayList<Object> items) {
+        return (List<E>) (List<?>) items;
+    }
+
+    /**
+     * Like {@link #setItems(List, DiffCallback)}, but computes the changes on a background
+     * thread and applies them on the main thread.  Must be called on the main thread.  If the
+     * adapter is modified before the changes are applied, they are computed again on the main
+     * thread; if setItems or setItemsAsync is called again, this call is dropped.
+     *
+     * @param itemList The new items.  The list is copied.
+     * @param callback Compares the current items with the new ones.  May be called on a
+     *        background thread.
+     */
+    public <E> void setItemsAsync(List<E> itemList, final DiffCallback<? super E> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("DiffCallback must not be null");
+        }
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        final int generation = ++mSetItemsGeneration;
+        final int modificationCount = mModificationCount;
+        final ArrayList<Object> oldItems = new ArrayList<Object>(mItems);
+        final ArrayList<Object> newItems = new ArrayList<Object>(itemList);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ItemListDiff diff = ItemListDiff.compute(
+                        ArrayObjectAdapter.<E>asItemList(oldItems),
+                        ArrayObjectAdapter.<E>asItemList(newItems), callback);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSetItemsGeneration) {
+                            return;
+                        }
+                        if (modificationCount != mModificationCount) {
+                            setItems(ArrayObjectAdapter.<E>asItemList(newItems), callback);
+                        } else {
+                            applyDiff(diff, newItems);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyDiff(ItemListDiff diff, ArrayList<Object> newItems) {
+        mModificationCount++;
+        mItems = newItems;
+        diff.dispatch(new ItemListDiff.Callback() {
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                notifyItemRangeChanged(position, count);
+            }
+
+            @Override
+            public void onDataSetChanged() {
+                notifyChanged();
+            }
+        });
+    }
+
     /**
      * Gets a read-only view of the list of object of this ArrayObjectAdapter.
      */
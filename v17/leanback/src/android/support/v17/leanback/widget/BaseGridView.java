@@ -824,6 +824,23 @@ abstract class BaseGridView extends RecyclerView {
         mLayoutManager.mChildrenStates.setLimitNumber(limitNumber);
     }
 
+    /**
+     * Returns the maximum total size in bytes of the saved states of off screen children.
+     */
+    public final int getSaveChildrenLimitBytes() {
+        return mLayoutManager.mChildrenStates.getLimitBytes();
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the saved states of off screen children, when
+     * {@link #getSaveChildrenPolicy()} is {@link #SAVE_LIMITED_CHILD} or
+     * {@link #SAVE_ALL_CHILD}.  The least recently saved states are dropped first.  By default
+     * the size is not limited.  Limiting it requires measuring the parceled size of each state.
+     */
+    public final void setSaveChildrenLimitBytes(int limitBytes) {
+        mLayoutManager.mChildrenStates.setLimitBytes(limitBytes);
+    }
+
     @Override
     public boolean hasOverlappingRendering() {
         return mHasOverlappingRendering;
@@ -865,4 +882,41 @@ abstract class BaseGridView extends RecyclerView {
     public int getExtraLayoutSpace() {
         return mLayoutManager.getExtraLayoutSpace();
     }
+
+    /**
+     * Enables or disables prefetching of items.  When enabled, once scrolling stops the item
+     * just outside each edge of the visible area is created and bound, typically during an idle
+     * frame, so it doesn't need to be created when it scrolls into view.  Disabled by default.
+     *
+     * @param enabled True to prefetch the items next to the visible area.
+     */
+    public void setItemPrefetchEnabled(boolean enabled) {
+        mLayoutManager.setItemPrefetchEnabled(enabled);
+    }
+
+    /**
+     * Returns true if the items next to the visible area are prefetched.
+     */
+    public boolean isItemPrefetchEnabled() {
+        return mLayoutManager.isItemPrefetchEnabled();
+    }
+
+    /**
+     * Enables or disables incremental relayout.  When enabled, a layout pass without structural
+     * change that finds an item changed size moves the following items of the same row instead
+     * of removing and re-adding them, and only keeps cached locations of items close to the
+     * visible area.  Disabled by default.
+     *
+     * @param enabled True to relayout resized items incrementally.
+     */
+    public void setIncrementalRelayoutEnabled(boolean enabled) {
+        mLayoutManager.setIncrementalRelayoutEnabled(enabled);
+    }
+
+    /**
+     * Returns true if resized items are relaid out incrementally.
+     */
+    public boolean isIncrementalRelayoutEnabled() {
+        return mLayoutManager.isIncrementalRelayoutEnabled();
+    }
 }
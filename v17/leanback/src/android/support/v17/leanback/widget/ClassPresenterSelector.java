@@ -26,11 +26,17 @@ public final class ClassPresenterSelector extends PresenterSelector {
 
     private final HashMap<Class<?>, Presenter> mClassMap = new HashMap<Class<?>, Presenter>();
 
+    // Presenter found for each item class, including the classes matched through a superclass,
+    // so the superclass chain is walked once per class.  Null values are cached too.
+    private final HashMap<Class<?>, Presenter> mResolvedClassMap =
+            new HashMap<Class<?>, Presenter>();
+
     /**
      * Adds a presenter to be used for the given class.
      */
     public void addClassPresenter(Class<?> cls, Presenter presenter) {
         mClassMap.put(cls, presenter);
+        mResolvedClassMap.clear();
         if (!mPresenters.contains(presenter)) {
             mPresenters.add(presenter);
         }
@@ -38,14 +44,19 @@ public final class ClassPresenterSelector extends PresenterSelector {
 
     @Override
     public Presenter getPresenter(Object item) {
-        Class<?> cls = item.getClass();
-        Presenter presenter = null;
+        final Class<?> itemClass = item.getClass();
+        Presenter presenter = mResolvedClassMap.get(itemClass);
+        if (presenter != null || mResolvedClassMap.containsKey(itemClass)) {
+            return presenter;
+        }
 
+        Class<?> cls = itemClass;
         do {
             presenter = mClassMap.get(cls);
             cls = cls.getSuperclass();
         } while (presenter == null && cls != null);
 
+        mResolvedClassMap.put(itemClass, presenter);
         return presenter;
     }
 
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package android.support.v17.leanback.widget;
+
+/**
+ * Callback that informs {@link ArrayObjectAdapter} how to compute the changes between its
+ * current items and a new list passed to {@link ArrayObjectAdapter#setItems}.
+ * <p>
+ * The methods may be called from a background thread and must not modify the items.
+ * </p>
+ */
+public abstract class DiffCallback<Value> {
+
+    /**
+     * Returns true if the two items represent the same object, for example if they have the
+     * same id.  Items that are the same are kept, or moved, rather than removed and inserted.
+     *
+     * @param oldItem The item in the current list.
+     * @param newItem The item in the new list.
+     */
+    public abstract boolean areItemsTheSame(Value oldItem, Value newItem);
+
+    /**
+     * Returns true if two items that are the same according to {@link #areItemsTheSame} also
+     * have the same data, so that they don't need to be presented again.
+     *
+     * @param oldItem The item in the current list.
+     * @param newItem The item in the new list.
+     */
+    public abstract boolean areContentsTheSame(Value oldItem, Value newItem);
+}
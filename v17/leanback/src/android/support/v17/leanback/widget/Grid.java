@@ -247,10 +247,27 @@ abstract class Grid {
     /**
      * Gets the row index of item at given index.
      */
-    public final int getRowIndex(int index) {
+    public int getRowIndex(int index) {
         return getLocation(index).row;
     }
 
+    /**
+     * Updates the cached size of a visible item that was measured again and laid out in place.
+     * Default implementation does nothing since there is no cached size.
+     */
+    public void updateItemSize(int index, int size) {
+    }
+
+    /**
+     * Called after visible items were resized and the items following them in each row were
+     * shifted in place, instead of calling invalidateItemsAfter().  rowShifts[row] is the
+     * distance that the next item of each row moved.  Cached results of up to cacheMargin items
+     * after the last visible item are updated, the rest are removed.  Default implementation
+     * does nothing since there is no cached result.
+     */
+    public void revalidateVisibleItems(int[] rowShifts, int cacheMargin) {
+    }
+
     /**
      * Gets {@link Location} of item.  The return object is read only and temporarily.
      */
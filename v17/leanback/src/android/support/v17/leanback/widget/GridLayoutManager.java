@@ -17,6 +17,8 @@ import android.content.Context;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.v4.util.CircularIntArray;
@@ -37,6 +39,7 @@ import static android.support.v7.widget.RecyclerView.VERTICAL;
 
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.FocusFinder;
 import android.view.Gravity;
 import android.view.View;
@@ -48,6 +51,7 @@ import android.view.ViewGroup;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 final class GridLayoutManager extends RecyclerView.LayoutManager {
@@ -584,6 +588,40 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
      */
     private int mExtraLayoutSpace;
 
+    /**
+     * True if one more item is laid out beyond each edge when scrolling stops.
+     */
+    private boolean mItemPrefetchEnabled;
+
+    /**
+     * Pixels of space laid out beyond each edge in addition to mExtraLayoutSpace, set while
+     * the view is not scrolling to the size of an item so that the next item is created and
+     * bound before it scrolls into view.
+     */
+    private int mPrefetchLayoutSpace;
+
+    private boolean mPrefetchScheduled;
+
+    /**
+     * True if fastRelayout() shifts items after a resized item in place instead of removing
+     * them and the cached locations after it.
+     */
+    private boolean mIncrementalRelayoutEnabled;
+
+    /**
+     * Distance that items after resized items in each row are shifted during fastRelayout().
+     */
+    private int[] mTmpRowShifts;
+
+    private final MessageQueue.IdleHandler mPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mPrefetchScheduled = false;
+            updatePrefetchLayoutSpace();
+            return false;
+        }
+    };
+
     /**
      *  Allow DPAD key to navigate out at the front of the View (where position = 0),
      *  default is false.
@@ -1619,17 +1657,89 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
         return mExtraLayoutSpace;
     }
 
+    void setItemPrefetchEnabled(boolean enabled) {
+        if (mItemPrefetchEnabled == enabled) {
+            return;
+        }
+        mItemPrefetchEnabled = enabled;
+        if (enabled) {
+            schedulePrefetch();
+        } else {
+            cancelPrefetch();
+            if (mPrefetchLayoutSpace != 0) {
+                mPrefetchLayoutSpace = 0;
+                requestLayout();
+            }
+        }
+    }
+
+    boolean isItemPrefetchEnabled() {
+        return mItemPrefetchEnabled;
+    }
+
+    void setIncrementalRelayoutEnabled(boolean enabled) {
+        mIncrementalRelayoutEnabled = enabled;
+    }
+
+    boolean isIncrementalRelayoutEnabled() {
+        return mIncrementalRelayoutEnabled;
+    }
+
+    private void schedulePrefetch() {
+        if (mItemPrefetchEnabled && !mPrefetchScheduled && mBaseGridView != null
+                && mBaseGridView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE) {
+            mPrefetchScheduled = true;
+            Looper.myQueue().addIdleHandler(mPrefetchIdleHandler);
+        }
+    }
+
+    private void cancelPrefetch() {
+        if (mPrefetchScheduled) {
+            mPrefetchScheduled = false;
+            Looper.myQueue().removeIdleHandler(mPrefetchIdleHandler);
+        }
+    }
+
+    /**
+     * Extends the layout by the size of the focused item, or of the first item, so the next
+     * layout pass creates the items just outside the visible area.
+     */
+    private void updatePrefetchLayoutSpace() {
+        if (!mItemPrefetchEnabled || mBaseGridView == null || getChildCount() == 0
+                || mBaseGridView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        View view = findViewByPosition(mFocusPosition);
+        if (view == null) {
+            view = getChildAt(0);
+        }
+        final int space = getViewPrimarySize(view);
+        if (space > 0 && space != mPrefetchLayoutSpace) {
+            mPrefetchLayoutSpace = space;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Pixels laid out beyond the visible area on each side.
+     */
+    private int getInvisibleLayoutSpace() {
+        return mExtraLayoutSpace + mPrefetchLayoutSpace;
+    }
+
     private void removeInvisibleViewsAtEnd() {
         if (mPruneChild) {
+            final int space = getInvisibleLayoutSpace();
             mGrid.removeInvisibleItemsAtEnd(mFocusPosition,
-                    mReverseFlowPrimary ? -mExtraLayoutSpace : mSizePrimary + mExtraLayoutSpace);
+                    mReverseFlowPrimary ? -space : mSizePrimary + space);
         }
     }
 
     private void removeInvisibleViewsAtFront() {
         if (mPruneChild) {
+            final int space = getInvisibleLayoutSpace();
             mGrid.removeInvisibleItemsAtFront(mFocusPosition,
-                    mReverseFlowPrimary ? mSizePrimary + mExtraLayoutSpace: -mExtraLayoutSpace);
+                    mReverseFlowPrimary ? mSizePrimary + space : -space);
         }
     }
 
@@ -1642,21 +1752,27 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
     }
 
     private void appendVisibleItems() {
-        mGrid.appendVisibleItems(mReverseFlowPrimary ? -mExtraLayoutSpace
-                : mSizePrimary + mExtraLayoutSpace);
+        final int space = getInvisibleLayoutSpace();
+        mGrid.appendVisibleItems(mReverseFlowPrimary ? -space : mSizePrimary + space);
     }
 
     private void prependVisibleItems() {
-        mGrid.prependVisibleItems(mReverseFlowPrimary ? mSizePrimary + mExtraLayoutSpace
-                : -mExtraLayoutSpace);
+        final int space = getInvisibleLayoutSpace();
+        mGrid.prependVisibleItems(mReverseFlowPrimary ? mSizePrimary + space : -space);
     }
 
     /**
      * Fast layout when there is no structure change, adapter change, etc.
      * It will layout all views was layout requested or updated, until hit a view
      * with different size,  then it break and detachAndScrap all views after that. 
+     * In incremental relayout mode, views after a view with different size are shifted
+     * in place instead and only cached locations near the visible window are kept.
      */
     private void fastRelayout() {
+        if (mIncrementalRelayoutEnabled) {
+            fastRelayoutIncremental();
+            return;
+        }
         boolean invalidateAfter = false;
         final int childCount = getChildCount();
         int position = -1;
@@ -1725,6 +1841,76 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
         updateScrollSecondAxis();
     }
 
+    /**
+     * Incremental version of fastRelayout(): every view stays attached, a view with different
+     * size pushes the following views of the same row, then the Grid revalidates Locations of
+     * the visible items and of as many cached items after them.
+     */
+    private void fastRelayoutIncremental() {
+        if (mTmpRowShifts == null || mTmpRowShifts.length != mNumRows) {
+            mTmpRowShifts = new int[mNumRows];
+        } else {
+            Arrays.fill(mTmpRowShifts, 0);
+        }
+        final int[] rowShifts = mTmpRowShifts;
+        boolean sizeChanged = false;
+        final int childCount = getChildCount();
+        for (int index = 0; index < childCount; index++) {
+            View view = getChildAt(index);
+            final int position = getPositionByIndex(index);
+            Grid.Location location = mGrid.getLocation(position);
+            if (location == null) {
+                if (DEBUG) Log.w(getTag(), "fastRelayout(): no Location at " + position);
+                mGrid.invalidateItemsAfter(position);
+                appendVisibleItems();
+                break;
+            }
+            final int row = location.row;
+
+            int startSecondary = getRowStartSecondary(row) - mScrollOffsetSecondary;
+            int oldStart = getViewMin(view);
+            int oldPrimarySize = getViewPrimarySize(view);
+
+            LayoutParams lp = (LayoutParams) view.getLayoutParams();
+            if (lp.viewNeedsUpdate()) {
+                int viewIndex = mBaseGridView.indexOfChild(view);
+                detachAndScrapView(view, mRecycler);
+                view = getViewForPosition(position);
+                addView(view, viewIndex);
+            }
+
+            if (view.isLayoutRequested()) {
+                measureChild(view);
+            }
+            final int primarySize = mOrientation == HORIZONTAL
+                    ? getDecoratedMeasuredWidthWithMargin(view)
+                    : getDecoratedMeasuredHeightWithMargin(view);
+            final int delta = primarySize - oldPrimarySize;
+            int start;
+            if (!mReverseFlowPrimary) {
+                // min edge is anchored, the view grows towards following items.
+                start = oldStart + rowShifts[row];
+                rowShifts[row] += delta;
+            } else {
+                // max edge is anchored, the view grows towards following items.
+                start = oldStart + rowShifts[row] - delta;
+                rowShifts[row] -= delta;
+            }
+            layoutChild(row, view, start, start + primarySize, startSecondary);
+            if (delta != 0) {
+                if (DEBUG) Log.d(getTag(), "fastRelayout: view size changed at " + position);
+                mGrid.updateItemSize(position, primarySize);
+                sizeChanged = true;
+            }
+        }
+        if (sizeChanged) {
+            mGrid.revalidateVisibleItems(rowShifts, childCount);
+        }
+        updateScrollMin();
+        updateScrollMax();
+        updateScrollSecondAxis();
+    }
+
     public void removeAndRecycleAllViews(RecyclerView.Recycler recycler) {
         if (TRACE) TraceHelper.beginSection("removeAndRecycleAllViews");
         if (DEBUG) Log.v(TAG, "removeAndRecycleAllViews " + getChildCount());
@@ -1875,9 +2061,30 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
 
         mInLayout = false;
         leaveContext();
+        if (mPrefetchLayoutSpace == 0) {
+            schedulePrefetch();
+        }
         if (DEBUG) Log.v(getTag(), "layoutChildren end");
     }
 
+    @Override
+    public void onScrollStateChanged(int state) {
+        if (state == RecyclerView.SCROLL_STATE_IDLE) {
+            schedulePrefetch();
+        } else {
+            // Items beyond the prefetched ones are laid out as they scroll into view, and the
+            // ones left behind are recycled as usual.
+            cancelPrefetch();
+            mPrefetchLayoutSpace = 0;
+        }
+    }
+
+    @Override
+    public void onDetachedFromWindow(RecyclerView view, Recycler recycler) {
+        cancelPrefetch();
+        super.onDetachedFromWindow(view, recycler);
+    }
+
     private void offsetChildrenSecondary(int increment) {
         final int childCount = getChildCount();
         if (mOrientation == HORIZONTAL) {
@@ -2253,7 +2460,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 mFocusPositionOffset += itemCount;
             }
         }
-        mChildrenStates.clear();
+        mChildrenStates.onItemsAdded(positionStart, itemCount);
     }
 
     @Override
@@ -2278,7 +2485,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 }
             }
         }
-        mChildrenStates.clear();
+        mChildrenStates.onItemsRemoved(positionStart, itemCount);
     }
 
     @Override
@@ -2299,7 +2506,7 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
                 mFocusPositionOffset += itemCount;
             }
         }
-        mChildrenStates.clear();
+        mChildrenStates.onItemsMoved(fromPosition, toPosition, itemCount);
     }
 
     @Override
@@ -3024,16 +3231,16 @@ final class GridLayoutManager extends RecyclerView.LayoutManager {
         // save selected index
         ss.index = getSelection();
         // save offscreen child (state when they are recycled)
-        Bundle bundle = mChildrenStates.saveAsBundle();
         // save views currently is on screen (TODO save cached views)
+        SparseArray<SparseArray<Parcelable>> onScreenStates = null;
         for (int i = 0, count = getChildCount(); i < count; i++) {
             View view = getChildAt(i);
             int position = getPositionByView(view);
             if (position != NO_POSITION) {
-                bundle = mChildrenStates.saveOnScreenView(bundle, view, position);
+                onScreenStates = mChildrenStates.saveOnScreenView(onScreenStates, view, position);
             }
         }
-        ss.childStates = bundle;
+        ss.childStates = mChildrenStates.saveAsBundle(onScreenStates);
         return ss;
     }
 
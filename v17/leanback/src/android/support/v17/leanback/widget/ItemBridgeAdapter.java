@@ -13,12 +13,14 @@
  */
 package android.support.v17.leanback.widget;
 
+import android.support.v17.leanback.os.TraceHelper;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 /**
  * Bridge from {@link Presenter} to {@link RecyclerView.Adapter}. Public to allow use by third
@@ -27,6 +29,56 @@ import java.util.ArrayList;
 public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProviderAdapter {
     private static final String TAG = "ItemBridgeAdapter";
     private static final boolean DEBUG = false;
+    private static final boolean TRACE = false;
+
+    /**
+     * Counts and times the view holders created and bound by a {@link Presenter}.
+     *
+     * @see ItemBridgeAdapter#setPresenterStatsEnabled(boolean)
+     */
+    public static final class PresenterStats {
+        int mCreateCount;
+        long mCreateTimeNs;
+        int mBindCount;
+        long mBindTimeNs;
+
+        PresenterStats() {
+        }
+
+        /**
+         * Returns the number of view holders created.
+         */
+        public int getCreateCount() {
+            return mCreateCount;
+        }
+
+        /**
+         * Returns the total time spent creating view holders, in nanoseconds.
+         */
+        public long getCreateTimeNanos() {
+            return mCreateTimeNs;
+        }
+
+        /**
+         * Returns the number of times a view holder was bound.
+         */
+        public int getBindCount() {
+            return mBindCount;
+        }
+
+        /**
+         * Returns the total time spent binding view holders, in nanoseconds.
+         */
+        public long getBindTimeNanos() {
+            return mBindTimeNs;
+        }
+
+        @Override
+        public String toString() {
+            return "created " + mCreateCount + " in " + mCreateTimeNs / 1000 + "us, bound "
+                    + mBindCount + " in " + mBindTimeNs / 1000 + "us";
+        }
+    }
 
     /**
      * Interface for listening to ViewHolder operations.
@@ -61,6 +113,13 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
     private FocusHighlightHandler mFocusHighlight;
     private AdapterListener mAdapterListener;
     private ArrayList<Presenter> mPresenters = new ArrayList<Presenter>();
+    // View type of each presenter in mPresenters by identity.  mPresenters may be shared with
+    // other adapters that append to it, so only its first mIndexedPresenterCount entries are
+    // known to be indexed.
+    private final IdentityHashMap<Presenter, Integer> mPresenterTypes =
+            new IdentityHashMap<Presenter, Integer>();
+    private int mIndexedPresenterCount;
+    private IdentityHashMap<Presenter, PresenterStats> mPresenterStats;
 
     final class OnFocusChangeListener implements View.OnFocusChangeListener {
         View.OnFocusChangeListener mChainedListener;
@@ -159,6 +218,10 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         public void onItemRangeRemoved(int positionStart, int itemCount) {
             ItemBridgeAdapter.this.notifyItemRangeRemoved(positionStart, itemCount);
         }
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            ItemBridgeAdapter.this.notifyItemMoved(fromPosition, toPosition);
+        }
     };
 
     public ItemBridgeAdapter(ObjectAdapter adapter, PresenterSelector presenterSelector) {
@@ -227,6 +290,8 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
      */
     public void setPresenterMapper(ArrayList<Presenter> presenters) {
         mPresenters = presenters;
+        mPresenterTypes.clear();
+        mIndexedPresenterCount = 0;
     }
 
     /**
@@ -247,10 +312,11 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
                 mPresenterSelector : mAdapter.getPresenterSelector();
         Object item = mAdapter.get(position);
         Presenter presenter = presenterSelector.getPresenter(item);
-        int type = mPresenters.indexOf(presenter);
+        int type = getPresenterType(presenter);
         if (type < 0) {
+            type = mPresenters.size();
             mPresenters.add(presenter);
-            type = mPresenters.indexOf(presenter);
+            indexPresenters();
             if (DEBUG) Log.v(TAG, "getItemViewType added presenter " + presenter + " type " + type);
             onAddPresenter(presenter, type);
             if (mAdapterListener != null) {
@@ -260,6 +326,63 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         return type;
     }
 
+    private int getPresenterType(Presenter presenter) {
+        Integer type = mPresenterTypes.get(presenter);
+        if (type == null && mIndexedPresenterCount < mPresenters.size()) {
+            indexPresenters();
+            type = mPresenterTypes.get(presenter);
+        }
+        return type != null ? type : -1;
+    }
+
+    private void indexPresenters() {
+        for (int size = mPresenters.size(); mIndexedPresenterCount < size;
+                mIndexedPresenterCount++) {
+            Presenter presenter = mPresenters.get(mIndexedPresenterCount);
+            if (!mPresenterTypes.containsKey(presenter)) {
+                mPresenterTypes.put(presenter, mIndexedPresenterCount);
+            }
+        }
+    }
+
+    /**
+     * Enables or disables counting and timing the creation and binding of view holders for
+     * each {@link Presenter}.  Disabling the stats discards them.
+     */
+    public void setPresenterStatsEnabled(boolean enabled) {
+        if (enabled) {
+            if (mPresenterStats == null) {
+                mPresenterStats = new IdentityHashMap<Presenter, PresenterStats>();
+            }
+        } else {
+            mPresenterStats = null;
+        }
+    }
+
+    /**
+     * Returns true if the creation and binding of view holders is counted and timed.
+     */
+    public boolean isPresenterStatsEnabled() {
+        return mPresenterStats != null;
+    }
+
+    /**
+     * Returns the stats of the given presenter, or null if stats are not enabled or the
+     * presenter has not been used since they were enabled.
+     */
+    public PresenterStats getPresenterStats(Presenter presenter) {
+        return mPresenterStats == null ? null : mPresenterStats.get(presenter);
+    }
+
+    private PresenterStats obtainPresenterStats(Presenter presenter) {
+        PresenterStats stats = mPresenterStats.get(presenter);
+        if (stats == null) {
+            stats = new PresenterStats();
+            mPresenterStats.put(presenter, stats);
+        }
+        return stats;
+    }
+
     /**
      * Called when presenter is added to Adapter.
      */
@@ -305,6 +428,8 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
     public final RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         if (DEBUG) Log.v(TAG, "onCreateViewHolder viewType " + viewType);
         Presenter presenter = mPresenters.get(viewType);
+        if (TRACE) TraceHelper.beginSection("create " + presenter.getClass().getSimpleName());
+        final long startNs = mPresenterStats != null ? System.nanoTime() : 0;
         Presenter.ViewHolder presenterVh;
         View view;
         if (mWrapper != null) {
@@ -328,6 +453,12 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         if (mFocusHighlight != null) {
             mFocusHighlight.onInitializeView(view);
         }
+        if (mPresenterStats != null) {
+            PresenterStats stats = obtainPresenterStats(presenter);
+            stats.mCreateCount++;
+            stats.mCreateTimeNs += System.nanoTime() - startNs;
+        }
+        if (TRACE) TraceHelper.endSection();
         return viewHolder;
     }
 
@@ -343,6 +474,10 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         if (DEBUG) Log.v(TAG, "onBindViewHolder position " + position);
         ViewHolder viewHolder = (ViewHolder) holder;
         viewHolder.mItem = mAdapter.get(position);
+        if (TRACE) {
+            TraceHelper.beginSection("bind " + viewHolder.mPresenter.getClass().getSimpleName());
+        }
+        final long startNs = mPresenterStats != null ? System.nanoTime() : 0;
 
         viewHolder.mPresenter.onBindViewHolder(viewHolder.mHolder, viewHolder.mItem);
 
@@ -350,6 +485,12 @@ public class ItemBridgeAdapter extends RecyclerView.Adapter implements FacetProv
         if (mAdapterListener != null) {
             mAdapterListener.onBind(viewHolder);
         }
+        if (mPresenterStats != null) {
+            PresenterStats stats = obtainPresenterStats(viewHolder.mPresenter);
+            stats.mBindCount++;
+            stats.mBindTimeNs += System.nanoTime() - startNs;
+        }
+        if (TRACE) TraceHelper.endSection();
     }
 
     @Override
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package android.support.v17.leanback.widget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change script between two lists of items, as computed with a {@link DiffCallback}.
+ * <p>
+ * Items kept in place are found with Myers' O((N+M)D) longest common subsequence algorithm
+ * after trimming the common prefix and suffix.  Remaining items of the old list that are the
+ * same as remaining items of the new list are reported as moves; all others are removed or
+ * inserted.  Lists with too many differences are reported as changed altogether.  Computing
+ * the script only reads the two lists, so it can be done on any thread, while
+ * {@link #dispatch(Callback)} replays it on the thread owning the adapter.
+ * </p>
+ */
+final class ItemListDiff {
+
+    /**
+     * Receives the changes of a diff, with positions relative to the list as it is after the
+     * changes already reported.
+     */
+    interface Callback {
+        void onRemoved(int position, int count);
+        void onInserted(int position, int count);
+        void onMoved(int fromPosition, int toPosition);
+        void onChanged(int position, int count);
+        void onDataSetChanged();
+    }
+
+    /**
+     * Past this many edits, the trace kept to find the common subsequence, which grows with the
+     * square of the number of edits, gets too large and the whole list is reported as changed.
+     */
+    private static final int MAX_EDIT_DISTANCE = 512;
+
+    private final int mOldSize;
+    private final int mNewSize;
+    // Old position of the item at each new position, or -1 for inserted items.
+    private final int[] mNewToOld;
+    // Whether the item at each new position stays in place relative to the other kept items.
+    private final boolean[] mInPlace;
+    // Whether the item at each new position has different contents than its old item.
+    private final boolean[] mChanged;
+    // Whether the lists differ too much for a change script.
+    private boolean mDataSetChanged;
+
+    private ItemListDiff(int oldSize, int newSize) {
+        mOldSize = oldSize;
+        mNewSize = newSize;
+        mNewToOld = new int[newSize];
+        mInPlace = new boolean[newSize];
+        mChanged = new boolean[newSize];
+    }
+
+    /**
+     * Computes the changes turning oldList into newList.
+     */
+    static <T> ItemListDiff compute(List<? extends T> oldList, List<? extends T> newList,
+            DiffCallback<? super T> callback) {
+        final int oldSize = oldList.size();
+        final int newSize = newList.size();
+        ItemListDiff diff = new ItemListDiff(oldSize, newSize);
+        final int[] newToOld = diff.mNewToOld;
+        final int[] oldToNew = new int[oldSize];
+        for (int i = 0; i < oldSize; i++) {
+            oldToNew[i] = -1;
+        }
+        for (int j = 0; j < newSize; j++) {
+            newToOld[j] = -1;
+        }
+
+        // Common prefix and suffix.
+        int start = 0;
+        while (start < oldSize && start < newSize
+                && callback.areItemsTheSame(oldList.get(start), newList.get(start))) {
+            diff.match(oldToNew, start, start, true);
+            start++;
+        }
+        int oldEnd = oldSize;
+        int newEnd = newSize;
+        while (oldEnd > start && newEnd > start
+                && callback.areItemsTheSame(oldList.get(oldEnd - 1), newList.get(newEnd - 1))) {
+            oldEnd--;
+            newEnd--;
+            diff.match(oldToNew, oldEnd, newEnd, true);
+        }
+
+        // Longest common subsequence of what is left.
+        if (!diff.matchCommonSubsequence(oldList, newList, callback, oldToNew,
+                start, oldEnd, start, newEnd)) {
+            diff.mDataSetChanged = true;
+            return diff;
+        }
+
+        // Moves: the same item elsewhere in the remaining old items.  There are at most
+        // MAX_EDIT_DISTANCE of them on either side.
+        for (int j = start; j < newEnd; j++) {
+            if (newToOld[j] >= 0) {
+                continue;
+            }
+            final T newItem = newList.get(j);
+            for (int i = start; i < oldEnd; i++) {
+                if (oldToNew[i] < 0 && callback.areItemsTheSame(oldList.get(i), newItem)) {
+                    diff.match(oldToNew, i, j, false);
+                    break;
+                }
+            }
+        }
+
+        for (int j = 0; j < newSize; j++) {
+            final int i = newToOld[j];
+            if (i >= 0) {
+                diff.mChanged[j] = !callback.areContentsTheSame(oldList.get(i), newList.get(j));
+            }
+        }
+        return diff;
+    }
+
+    private void match(int[] oldToNew, int oldPosition, int newPosition, boolean inPlace) {
+        oldToNew[oldPosition] = newPosition;
+        mNewToOld[newPosition] = oldPosition;
+        mInPlace[newPosition] = inPlace;
+    }
+
+    /**
+     * Matches the items of the longest common subsequence of the given ranges.
+     *
+     * @return False if the ranges have more than {@link #MAX_EDIT_DISTANCE} differences.
+     */
+    private <T> boolean matchCommonSubsequence(List<? extends T> oldList,
+            List<? extends T> newList, DiffCallback<? super T> callback, int[] oldToNew,
+            int oldStart, int oldEnd, int newStart, int newEnd) {
+        final int n = oldEnd - oldStart;
+        final int m = newEnd - newStart;
+        if (n == 0 || m == 0) {
+            return true;
+        }
+        final int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        final int offset = max + 1;
+        final int[] v = new int[2 * max + 3];
+        final ArrayList<int[]> trace = new ArrayList<int[]>();
+        int endD = -1;
+        for (int d = 0; d <= max && endD < 0; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && callback.areItemsTheSame(
+                        oldList.get(oldStart + x), newList.get(newStart + y))) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    endD = d;
+                }
+            }
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, 2 * d + 1);
+            trace.add(snapshot);
+        }
+        if (endD < 0) {
+            return false;
+        }
+
+        int x = n;
+        int y = m;
+        for (int d = endD; d > 0; d--) {
+            final int[] prev = trace.get(d - 1);
+            final int k = x - y;
+            final int prevK;
+            if (k == -d || (k != d && prev[k - 1 + d - 1] < prev[k + 1 + d - 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            final int prevX = prev[prevK + d - 1];
+            final int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+                match(oldToNew, oldStart + x, newStart + y, true);
+            }
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            match(oldToNew, oldStart + x, newStart + y, true);
+        }
+        return true;
+    }
+
+    /**
+     * Reports the changes: removals from the end first, then moves and insertions in the
+     * order of the new list, and finally the items whose contents changed.
+     */
+    void dispatch(Callback callback) {
+        if (mDataSetChanged) {
+            callback.onDataSetChanged();
+            return;
+        }
+        final int[] newToOld = mNewToOld;
+        final boolean[] kept = new boolean[mOldSize];
+        for (int j = 0; j < mNewSize; j++) {
+            if (newToOld[j] >= 0) {
+                kept[newToOld[j]] = true;
+            }
+        }
+
+        // Removals, coalesced into ranges.
+        ArrayList<Integer> current = new ArrayList<Integer>(mOldSize);
+        int i = mOldSize - 1;
+        while (i >= 0) {
+            if (kept[i]) {
+                i--;
+                continue;
+            }
+            int end = i;
+            while (i >= 0 && !kept[i]) {
+                i--;
+            }
+            callback.onRemoved(i + 1, end - i);
+        }
+        for (i = 0; i < mOldSize; i++) {
+            if (kept[i]) {
+                current.add(i);
+            }
+        }
+
+        // Moves: place each moved item right after the kept item preceding it in the new list.
+        int previousKept = -1;
+        for (int j = 0; j < mNewSize; j++) {
+            final int oldPosition = newToOld[j];
+            if (oldPosition < 0) {
+                continue;
+            }
+            if (!mInPlace[j]) {
+                final int from = current.indexOf(oldPosition);
+                current.remove(from);
+                final int to = previousKept < 0 ? 0 : current.indexOf(previousKept) + 1;
+                current.add(to, oldPosition);
+                if (from != to) {
+                    callback.onMoved(from, to);
+                }
+            }
+            previousKept = oldPosition;
+        }
+
+        // Insertions, coalesced into ranges.
+        int j = 0;
+        while (j < mNewSize) {
+            if (newToOld[j] >= 0) {
+                j++;
+                continue;
+            }
+            final int insertStart = j;
+            while (j < mNewSize && newToOld[j] < 0) {
+                j++;
+            }
+            callback.onInserted(insertStart, j - insertStart);
+        }
+
+        // Content changes, coalesced into ranges.
+        j = 0;
+        while (j < mNewSize) {
+            if (!mChanged[j]) {
+                j++;
+                continue;
+            }
+            final int changeStart = j;
+            while (j < mNewSize && mChanged[j]) {
+                j++;
+            }
+            callback.onChanged(changeStart, j - changeStart);
+        }
+    }
+}
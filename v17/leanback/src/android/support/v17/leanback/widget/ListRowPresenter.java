@@ -16,9 +16,12 @@ package android.support.v17.leanback.widget;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.v17.leanback.R;
 import android.support.v17.leanback.system.Settings;
 import android.support.v17.leanback.transition.TransitionHelper;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
@@ -143,8 +146,45 @@ public class ListRowPresenter extends RowPresenter {
 
         @Override
         public void onAddPresenter(Presenter presenter, int type) {
+            final int poolSize = getRecycledPoolSize(presenter);
             mRowViewHolder.getGridView().getRecycledViewPool().setMaxRecycledViews(
-                    type, getRecycledPoolSize(presenter));
+                    type, poolSize);
+            final int precreateCount = Math.min(getItemViewPrecreateCount(presenter), poolSize);
+            if (precreateCount > 0) {
+                Looper.myQueue().addIdleHandler(new ItemViewPrecreator(this,
+                        mRowViewHolder.getGridView(), type, precreateCount));
+            }
+        }
+    }
+
+    /**
+     * Creates item views of one type into the recycled view pool of a row ahead of time, one
+     * view each time the message queue is idle.  When the pool is shared between rows, as in
+     * RowsFragment, the views are used by all of them.
+     */
+    static final class ItemViewPrecreator implements MessageQueue.IdleHandler {
+        private final ItemBridgeAdapter mBridgeAdapter;
+        private final HorizontalGridView mGridView;
+        private final int mViewType;
+        private int mRemaining;
+
+        ItemViewPrecreator(ItemBridgeAdapter bridgeAdapter, HorizontalGridView gridView,
+                int viewType, int count) {
+            mBridgeAdapter = bridgeAdapter;
+            mGridView = gridView;
+            mViewType = viewType;
+            mRemaining = count;
+        }
+
+        @Override
+        public boolean queueIdle() {
+            if (mGridView.getWindowToken() == null || mGridView.getAdapter() != mBridgeAdapter) {
+                return false;
+            }
+            RecyclerView.ViewHolder viewHolder =
+                    mBridgeAdapter.createViewHolder(mGridView, mViewType);
+            mGridView.getRecycledViewPool().putRecycledView(viewHolder);
+            return --mRemaining > 0;
         }
     }
 
@@ -158,6 +198,8 @@ public class ListRowPresenter extends RowPresenter {
     private boolean mRoundedCornersEnabled = true;
     private boolean mKeepChildForeground = true;
     private HashMap<Presenter, Integer> mRecycledPoolSize = new HashMap<Presenter, Integer>();
+    private HashMap<Presenter, Integer> mItemViewPrecreateCount =
+            new HashMap<Presenter, Integer>();
     private ShadowOverlayHelper mShadowOverlayHelper;
     private ItemBridgeAdapter.Wrapper mShadowOverlayWrapper;
 
@@ -336,6 +378,27 @@ public class ListRowPresenter extends RowPresenter {
                 DEFAULT_RECYCLED_POOL_SIZE;
     }
 
+    /**
+     * Sets the number of item views to create ahead of time for the given presenter.  The
+     * views are created when the presenter is first used by a row, while the main thread is
+     * idle, and are put in the recycled view pool of the row, so the number is limited by
+     * {@link #getRecycledPoolSize(Presenter)}.  The default is 0.
+     */
+    public void setItemViewPrecreateCount(Presenter presenter, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid precreate count " + count);
+        }
+        mItemViewPrecreateCount.put(presenter, count);
+    }
+
+    /**
+     * Returns the number of item views to create ahead of time for the given presenter.
+     */
+    public int getItemViewPrecreateCount(Presenter presenter) {
+        Integer count = mItemViewPrecreateCount.get(presenter);
+        return count != null ? count : 0;
+    }
+
     /**
      * Sets the {@link PresenterSelector} used for showing a select object in a hover card.
      */
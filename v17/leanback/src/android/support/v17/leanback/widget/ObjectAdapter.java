@@ -68,6 +68,16 @@ public abstract class ObjectAdapter {
         public void onItemRangeRemoved(int positionStart, int itemCount) {
             onChanged();
         }
+
+        /**
+         * Called when an item in the ObjectAdapter is moved to a new position.
+         *
+         * @param fromPosition The previous position of the item.
+         * @param toPosition The new position of the item.
+         */
+        public void onItemMoved(int fromPosition, int toPosition) {
+            onChanged();
+        }
     }
 
     private static final class DataObservable extends Observable<DataObserver> {
@@ -95,6 +105,12 @@ public abstract class ObjectAdapter {
                 mObservers.get(i).onItemRangeRemoved(positionStart, itemCount);
             }
         }
+
+        public void notifyItemMoved(int fromPosition, int toPosition) {
+            for (int i = mObservers.size() - 1; i >= 0; i--) {
+                mObservers.get(i).onItemMoved(fromPosition, toPosition);
+            }
+        }
     }
 
     private final DataObservable mObservable = new DataObservable();
@@ -188,6 +204,10 @@ public abstract class ObjectAdapter {
         mObservable.notifyItemRangeRemoved(positionStart, itemCount);
     }
 
+    final protected void notifyItemMoved(int fromPosition, int toPosition) {
+        mObservable.notifyItemMoved(fromPosition, toPosition);
+    }
+
     final protected void notifyChanged() {
         mObservable.notifyChanged();
     }
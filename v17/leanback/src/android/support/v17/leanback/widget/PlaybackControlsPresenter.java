@@ -58,6 +58,9 @@ class PlaybackControlsPresenter extends ControlBarPresenter {
         final TextView mCurrentTime;
         final TextView mTotalTime;
         final ProgressBar mProgressBar;
+        int mTotalTimeMs = -1;
+        int mCurrentTimeMs;
+        int mSecondaryProgressMs;
         int mCurrentTimeInSeconds = -1;
         StringBuilder mTotalTimeStringBuilder = new StringBuilder();
         StringBuilder mCurrentTimeStringBuilder = new StringBuilder();
@@ -140,6 +143,10 @@ class PlaybackControlsPresenter extends ControlBarPresenter {
         }
 
         void setTotalTime(int totalTimeMs) {
+            if (totalTimeMs == mTotalTimeMs) {
+                return;
+            }
+            mTotalTimeMs = totalTimeMs;
             if (totalTimeMs <= 0) {
                 mTotalTime.setVisibility(View.GONE);
                 mProgressBar.setVisibility(View.GONE);
@@ -150,6 +157,8 @@ class PlaybackControlsPresenter extends ControlBarPresenter {
                 mTotalTime.setText(mTotalTimeStringBuilder.toString());
                 mProgressBar.setMax(totalTimeMs);
             }
+            mProgressBar.setProgress(mCurrentTimeMs);
+            mProgressBar.setSecondaryProgress(mSecondaryProgressMs);
         }
 
         int getTotalTime() {
@@ -163,19 +172,41 @@ class PlaybackControlsPresenter extends ControlBarPresenter {
                 formatTime(mCurrentTimeInSeconds, mCurrentTimeStringBuilder);
                 mCurrentTime.setText(mCurrentTimeStringBuilder.toString());
             }
-            mProgressBar.setProgress(currentTimeMs);
+            final int oldTimeMs = mCurrentTimeMs;
+            mCurrentTimeMs = currentTimeMs;
+            if (isProgressChangeVisible(oldTimeMs, currentTimeMs)) {
+                mProgressBar.setProgress(currentTimeMs);
+            }
         }
 
         int getCurrentTime() {
-            return mProgressBar.getProgress();
+            return mCurrentTimeMs;
         }
 
         void setSecondaryProgress(int progressMs) {
-            mProgressBar.setSecondaryProgress(progressMs);
+            final int oldProgressMs = mSecondaryProgressMs;
+            mSecondaryProgressMs = progressMs;
+            if (isProgressChangeVisible(oldProgressMs, progressMs)) {
+                mProgressBar.setSecondaryProgress(progressMs);
+            }
         }
 
         int getSecondaryProgress() {
-            return mProgressBar.getSecondaryProgress();
+            return mSecondaryProgressMs;
+        }
+
+        /**
+         * Returns false if the progress bar would draw both values at the same pixel, in which
+         * case updating the progress bar is skipped.  For long media one pixel spans seconds
+         * of playback.
+         */
+        private boolean isProgressChangeVisible(int oldValue, int newValue) {
+            final int width = mProgressBar.getWidth();
+            final int max = mProgressBar.getMax();
+            if (width <= 0 || max <= 0) {
+                return oldValue != newValue;
+            }
+            return (long) oldValue * width / max != (long) newValue * width / max;
         }
     }
 
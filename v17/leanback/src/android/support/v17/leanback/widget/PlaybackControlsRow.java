@@ -700,11 +700,14 @@ public class PlaybackControlsRow extends Row {
 
     /**
      * Sets the total time in milliseconds for the playback controls row.
-     * <p>If set after the row has been bound to a view, the adapter must be notified that
-     * this row has changed.</p>
+     * If this row is bound to a view, the view will automatically
+     * be updated to reflect the new value.
      */
     public void setTotalTime(int ms) {
-        mTotalTimeMs = ms;
+        if (mTotalTimeMs != ms) {
+            mTotalTimeMs = ms;
+            totalTimeChanged();
+        }
     }
 
     /**
@@ -781,6 +784,7 @@ public class PlaybackControlsRow extends Row {
     }
 
     interface OnPlaybackStateChangedListener {
+        public void onTotalTimeChanged(int totalTimeMs);
         public void onCurrentTimeChanged(int currentTimeMs);
         public void onBufferedProgressChanged(int bufferedProgressMs);
     }
@@ -799,6 +803,12 @@ public class PlaybackControlsRow extends Row {
         return mListener;
     }
 
+    private void totalTimeChanged() {
+        if (mListener != null) {
+            mListener.onTotalTimeChanged(mTotalTimeMs);
+        }
+    }
+
     private void currentTimeChanged() {
         if (mListener != null) {
             mListener.onCurrentTimeChanged(mCurrentTimeMs);
@@ -69,15 +69,32 @@ public class PlaybackControlsRowPresenter extends RowPresenter {
         BoundData mSecondaryBoundData = new BoundData();
         Presenter.ViewHolder mSelectedViewHolder;
         Object mSelectedItem;
+        boolean mProgressUpdatePending;
         final PlaybackControlsRow.OnPlaybackStateChangedListener mListener =
                 new PlaybackControlsRow.OnPlaybackStateChangedListener() {
             @Override
+            public void onTotalTimeChanged(int ms) {
+                scheduleProgressUpdate();
+            }
+            @Override
             public void onCurrentTimeChanged(int ms) {
-                mPlaybackControlsPresenter.setCurrentTime(mControlsVh, ms);
+                scheduleProgressUpdate();
             }
             @Override
             public void onBufferedProgressChanged(int ms) {
-                mPlaybackControlsPresenter.setSecondaryProgress(mControlsVh, ms);
+                scheduleProgressUpdate();
+            }
+        };
+
+        // Progress and time views are updated at most once per frame, without rebinding the row.
+        final Runnable mUpdateProgressRunnable = new Runnable() {
+            @Override
+            public void run() {
+                mProgressUpdatePending = false;
+                PlaybackControlsRow row = (PlaybackControlsRow) getRow();
+                if (row != null) {
+                    updateProgress(row);
+                }
             }
         };
 
@@ -99,6 +116,31 @@ public class PlaybackControlsRowPresenter extends RowPresenter {
             }
         }
 
+        void scheduleProgressUpdate() {
+            if (!mProgressUpdatePending) {
+                mProgressUpdatePending = true;
+                view.postOnAnimation(mUpdateProgressRunnable);
+            }
+        }
+
+        void cancelProgressUpdate() {
+            if (mProgressUpdatePending) {
+                mProgressUpdatePending = false;
+                view.removeCallbacks(mUpdateProgressRunnable);
+            }
+        }
+
+        /**
+         * Updates only the progress bar and time views from the row, a lightweight
+         * alternative to rebinding the whole row.
+         */
+        void updateProgress(PlaybackControlsRow row) {
+            mPlaybackControlsPresenter.setTotalTime(mControlsVh, row.getTotalTime());
+            mPlaybackControlsPresenter.setCurrentTime(mControlsVh, row.getCurrentTime());
+            mPlaybackControlsPresenter.setSecondaryProgress(mControlsVh,
+                    row.getBufferedProgress());
+        }
+
         void dispatchItemSelection() {
             if (!isSelected()) {
                 return;
@@ -396,9 +438,8 @@ public class PlaybackControlsRowPresenter extends RowPresenter {
         mSecondaryControlsPresenter.onBindViewHolder(vh.mSecondaryControlsVh,
                 vh.mSecondaryBoundData);
 
-        mPlaybackControlsPresenter.setTotalTime(vh.mControlsVh, row.getTotalTime());
-        mPlaybackControlsPresenter.setCurrentTime(vh.mControlsVh, row.getCurrentTime());
-        mPlaybackControlsPresenter.setSecondaryProgress(vh.mControlsVh, row.getBufferedProgress());
+        vh.cancelProgressUpdate();
+        vh.updateProgress(row);
         row.setOnPlaybackStateChangedListener(vh.mListener);
     }
 
@@ -443,6 +484,7 @@ public class PlaybackControlsRowPresenter extends RowPresenter {
         mPlaybackControlsPresenter.onUnbindViewHolder(vh.mControlsVh);
         mSecondaryControlsPresenter.onUnbindViewHolder(vh.mSecondaryControlsVh);
         row.setOnPlaybackStateChangedListener(null);
+        vh.cancelProgressUpdate();
 
         super.onUnbindRowViewHolder(holder);
     }
@@ -13,12 +13,9 @@
  */
 package android.support.v17.leanback.widget;
 
-import android.support.v4.util.CircularArray;
 import android.support.v4.util.CircularIntArray;
 
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A dynamic data structure that caches staggered grid position information
@@ -33,7 +30,9 @@ import java.util.List;
  * scrolls back to 0 and we don't keep history location information, edges of
  * the very beginning of rows will not be aligned. It is recommended to keep a
  * list of tens of thousands of {@link StaggeredGrid.Location}s which will be
- * big enough to remember a typical user's scroll history.
+ * big enough to remember a typical user's scroll history.  Locations are packed
+ * into a {@link LocationArray} of primitive ints so the cache does not hold an
+ * object per item.
  *
  * <p>
  * This class is abstract and can be replaced with different implementations.
@@ -63,7 +62,138 @@ abstract class StaggeredGrid extends Grid {
         }
     }
 
-    protected CircularArray<Location> mLocations = new CircularArray<Location>(64);
+    /**
+     * Circular array of {@link Location}s whose fields are packed into parallel int arrays.
+     */
+    static final class LocationArray {
+        private int[] mRows;
+        private int[] mOffsets;
+        private int[] mSizes;
+        private int mHead;
+        private int mSize;
+        private int mCapacityBitmask;
+
+        LocationArray(int minCapacity) {
+            if (minCapacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            int arrayCapacity = minCapacity;
+            // If minCapacity isn't a power of 2, round up to the next highest power of 2.
+            if (Integer.bitCount(minCapacity) != 1) {
+                arrayCapacity = Integer.highestOneBit(minCapacity) << 1;
+            }
+            mCapacityBitmask = arrayCapacity - 1;
+            mRows = new int[arrayCapacity];
+            mOffsets = new int[arrayCapacity];
+            mSizes = new int[arrayCapacity];
+        }
+
+        private void doubleCapacity() {
+            final int n = mRows.length;
+            final int r = n - mHead;
+            final int newCapacity = n << 1;
+            if (newCapacity < 0) {
+                throw new RuntimeException("Max array capacity exceeded");
+            }
+            mRows = copy(mRows, newCapacity, r);
+            mOffsets = copy(mOffsets, newCapacity, r);
+            mSizes = copy(mSizes, newCapacity, r);
+            mHead = 0;
+            mCapacityBitmask = newCapacity - 1;
+        }
+
+        private int[] copy(int[] src, int newCapacity, int headLength) {
+            final int[] dst = new int[newCapacity];
+            System.arraycopy(src, mHead, dst, 0, headLength);
+            System.arraycopy(src, 0, dst, headLength, mHead);
+            return dst;
+        }
+
+        private int physicalIndex(int i) {
+            if (i < 0 || i >= mSize) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            return (mHead + i) & mCapacityBitmask;
+        }
+
+        void addFirst(int row, int offset, int size) {
+            if (mSize == mRows.length) {
+                doubleCapacity();
+            }
+            mHead = (mHead - 1) & mCapacityBitmask;
+            mRows[mHead] = row;
+            mOffsets[mHead] = offset;
+            mSizes[mHead] = size;
+            mSize++;
+        }
+
+        void addLast(int row, int offset, int size) {
+            if (mSize == mRows.length) {
+                doubleCapacity();
+            }
+            final int tail = (mHead + mSize) & mCapacityBitmask;
+            mRows[tail] = row;
+            mOffsets[tail] = offset;
+            mSizes[tail] = size;
+            mSize++;
+        }
+
+        void removeFromStart(int numOfElements) {
+            if (numOfElements <= 0) {
+                return;
+            }
+            if (numOfElements > mSize) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            mHead = (mHead + numOfElements) & mCapacityBitmask;
+            mSize -= numOfElements;
+        }
+
+        void removeFromEnd(int numOfElements) {
+            if (numOfElements <= 0) {
+                return;
+            }
+            if (numOfElements > mSize) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+            mSize -= numOfElements;
+        }
+
+        void clear() {
+            mHead = 0;
+            mSize = 0;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        int getRow(int i) {
+            return mRows[physicalIndex(i)];
+        }
+
+        int getOffset(int i) {
+            return mOffsets[physicalIndex(i)];
+        }
+
+        int getSize(int i) {
+            return mSizes[physicalIndex(i)];
+        }
+
+        void setOffset(int i, int offset) {
+            mOffsets[physicalIndex(i)] = offset;
+        }
+
+        void setSize(int i, int size) {
+            mSizes[physicalIndex(i)] = size;
+        }
+    }
+
+    protected final LocationArray mLocations = new LocationArray(64);
+
+    // Shared object returned by getLocation(), see Grid.getLocation().
+    private final Location mTmpLocation = new Location(0, 0, 0);
+
 
     // mFirstIndex <= mFirstVisibleIndex <= mLastVisibleIndex
     //    <= mFirstIndex + mLocations.size() - 1
@@ -102,14 +232,36 @@ abstract class StaggeredGrid extends Grid {
         if (mLocations.size() == 0) {
             return null;
         }
-        return mLocations.get(index - mFirstIndex);
+        final int i = index - mFirstIndex;
+        mTmpLocation.row = mLocations.getRow(i);
+        mTmpLocation.offset = mLocations.getOffset(i);
+        mTmpLocation.size = mLocations.getSize(i);
+        return mTmpLocation;
+    }
+
+    @Override
+    public final int getRowIndex(int index) {
+        return mLocations.getRow(index - mFirstIndex);
+    }
+
+    /**
+     * Returns {@link Location#offset} of a cached item.
+     */
+    protected final int getLocationOffset(int index) {
+        return mLocations.getOffset(index - mFirstIndex);
+    }
+
+    /**
+     * Returns {@link Location#size} of a cached item.
+     */
+    protected final int getLocationSize(int index) {
+        return mLocations.getSize(index - mFirstIndex);
     }
 
     @Override
     public final void debugPrint(PrintWriter pw) {
         for (int i = 0, size = mLocations.size(); i < size; i++) {
-            Location loc = mLocations.get(i);
-            pw.print("<" + (mFirstIndex + i) + "," + loc.row + ">");
+            pw.print("<" + (mFirstIndex + i) + "," + mLocations.getRow(i) + ">");
             pw.print(" ");
             pw.println();
         }
@@ -150,7 +302,7 @@ abstract class StaggeredGrid extends Grid {
         if (mFirstVisibleIndex >= 0) {
             // prepend visible items from first visible index
             edge = mProvider.getEdge(mFirstVisibleIndex);
-            offset = getLocation(mFirstVisibleIndex).offset;
+            offset = getLocationOffset(mFirstVisibleIndex);
             itemIndex = mFirstVisibleIndex - 1;
         } else {
             // prepend first visible item
@@ -167,10 +319,9 @@ abstract class StaggeredGrid extends Grid {
             }
         }
         for (; itemIndex >= mFirstIndex; itemIndex--) {
-            Location loc = getLocation(itemIndex);
-            int rowIndex = loc.row;
+            int rowIndex = getRowIndex(itemIndex);
             int size = mProvider.createItem(itemIndex, false, mTmpItem);
-            if (size != loc.size) {
+            if (size != getLocationSize(itemIndex)) {
                 mLocations.removeFromStart(itemIndex + 1 - mFirstIndex);
                 mFirstIndex = mFirstVisibleIndex;
                 // pending item will be added in prependVisibleItemsWithoutCache
@@ -187,7 +338,7 @@ abstract class StaggeredGrid extends Grid {
                 return true;
             }
             edge = mProvider.getEdge(itemIndex);
-            offset = loc.offset;
+            offset = getLocationOffset(itemIndex);
             // Check limit after filled a full column
             if (rowIndex == 0) {
                 if (oneColumnMode) {
@@ -206,8 +357,7 @@ abstract class StaggeredGrid extends Grid {
         int cachedIndex = getLastIndex();
         boolean foundCachedItemInSameRow = false;
         while (cachedIndex >= mFirstIndex) {
-            Location loc = getLocation(cachedIndex);
-            if (loc.row == row) {
+            if (getRowIndex(cachedIndex) == row) {
                 foundCachedItemInSameRow = true;
                 break;
             }
@@ -219,10 +369,10 @@ abstract class StaggeredGrid extends Grid {
         // Assuming the cachedIndex is next to item on the same row, so the
         // sum of offset of [cachedIndex + 1, itemIndex] should be size of the
         // cached item plus margin.
-        int offset = isReversedFlow() ?  -getLocation(cachedIndex).size - mMargin:
-                getLocation(cachedIndex).size + mMargin;
+        int offset = isReversedFlow() ?  -getLocationSize(cachedIndex) - mMargin:
+                getLocationSize(cachedIndex) + mMargin;
         for (int i = cachedIndex + 1; i <= getLastIndex(); i++) {
-            offset -= getLocation(i).offset;
+            offset -= getLocationOffset(i);
         }
         return offset;
     }
@@ -246,29 +396,30 @@ abstract class StaggeredGrid extends Grid {
                 throw new IllegalStateException();
             }
         }
-        Location oldFirstLoc = mFirstIndex >= 0 ? getLocation(mFirstIndex) : null;
+        boolean hasOldFirst = mFirstIndex >= 0;
         int oldFirstEdge = mProvider.getEdge(mFirstIndex);
-        Location loc = new Location(rowIndex, 0, 0);
-        mLocations.addFirst(loc);
+        int size;
         Object item;
         if (mPendingItem != null) {
-            loc.size = mPendingItemSize;
+            size = mPendingItemSize;
             item = mPendingItem;
             mPendingItem = null;
         } else {
-            loc.size = mProvider.createItem(itemIndex, false, mTmpItem);
+            size = mProvider.createItem(itemIndex, false, mTmpItem);
             item = mTmpItem[0];
         }
+        mLocations.addFirst(rowIndex, 0, size);
         mFirstIndex = mFirstVisibleIndex = itemIndex;
         if (mLastVisibleIndex < 0) {
             mLastVisibleIndex = itemIndex;
         }
-        int thisEdge = !mReversedFlow ? edge - loc.size : edge + loc.size;
-        if (oldFirstLoc != null) {
-            oldFirstLoc.offset = oldFirstEdge - thisEdge;
+        int thisEdge = !mReversedFlow ? edge - size : edge + size;
+        if (hasOldFirst) {
+            // old first item is now at position 1 of the array
+            mLocations.setOffset(1, oldFirstEdge - thisEdge);
         }
-        mProvider.addItem(item, itemIndex, loc.size, rowIndex, thisEdge);
-        return loc.size;
+        mProvider.addItem(item, itemIndex, size, rowIndex, thisEdge);
+        return size;
     }
 
     @Override
@@ -321,14 +472,13 @@ abstract class StaggeredGrid extends Grid {
         }
         int lastIndex = getLastIndex();
         for (; itemIndex < count && itemIndex <= lastIndex; itemIndex++) {
-            Location loc = getLocation(itemIndex);
             if (edge != Integer.MAX_VALUE) {
-                edge = edge + loc.offset;
+                edge = edge + getLocationOffset(itemIndex);
             }
-            int rowIndex = loc.row;
+            int rowIndex = getRowIndex(itemIndex);
             int size = mProvider.createItem(itemIndex, true, mTmpItem);
-            if (size != loc.size) {
-                loc.size = size;
+            if (size != getLocationSize(itemIndex)) {
+                mLocations.setSize(itemIndex - mFirstIndex, size);
                 mLocations.removeFromEnd(lastIndex - itemIndex);
                 lastIndex = itemIndex;
             }
@@ -382,17 +532,17 @@ abstract class StaggeredGrid extends Grid {
         } else {
             offset = location - mProvider.getEdge(mLastVisibleIndex);
         }
-        Location loc = new Location(rowIndex, offset, 0);
-        mLocations.addLast(loc);
+        int size;
         Object item;
         if (mPendingItem != null) {
-            loc.size = mPendingItemSize;
+            size = mPendingItemSize;
             item = mPendingItem;
             mPendingItem = null;
         } else {
-            loc.size = mProvider.createItem(itemIndex, true, mTmpItem);
+            size = mProvider.createItem(itemIndex, true, mTmpItem);
             item = mTmpItem[0];
         }
+        mLocations.addLast(rowIndex, offset, size);
         if (mLocations.size() == 1) {
             mFirstIndex = mFirstVisibleIndex = mLastVisibleIndex = itemIndex;
         } else {
@@ -402,8 +552,8 @@ abstract class StaggeredGrid extends Grid {
                 mLastVisibleIndex++;
             }
         }
-        mProvider.addItem(item, itemIndex, loc.size, rowIndex, location);
-        return loc.size;
+        mProvider.addItem(item, itemIndex, size, rowIndex, location);
+        return size;
     }
 
     @Override
@@ -413,7 +563,7 @@ abstract class StaggeredGrid extends Grid {
         }
         if (startPos >= 0) {
             for (int i = startPos; i <= endPos; i++) {
-                CircularIntArray row = mTmpItemPositionsInRows[getLocation(i).row];
+                CircularIntArray row = mTmpItemPositionsInRows[getRowIndex(i)];
                 if (row.size() > 0 && row.getLast() == i - 1) {
                     // update continuous range
                     row.popLast();
@@ -437,4 +587,42 @@ abstract class StaggeredGrid extends Grid {
         }
     }
 
+    @Override
+    public void updateItemSize(int index, int size) {
+        if (index >= mFirstIndex && index <= getLastIndex()) {
+            mLocations.setSize(index - mFirstIndex, size);
+        }
+    }
+
+    @Override
+    public void revalidateVisibleItems(int[] rowShifts, int cacheMargin) {
+        if (mFirstVisibleIndex < 0 || mLocations.size() == 0) {
+            return;
+        }
+        // First visible item is never moved; rebuild offsets of the remaining visible items
+        // from their new edges while tracking how far the last one moved.
+        int oldEdge = mProvider.getEdge(mFirstVisibleIndex);
+        int prevEdge = oldEdge;
+        int lastShift = 0;
+        for (int i = mFirstVisibleIndex + 1; i <= mLastVisibleIndex; i++) {
+            final int arrayIndex = i - mFirstIndex;
+            final int edge = mProvider.getEdge(i);
+            oldEdge += mLocations.getOffset(arrayIndex);
+            mLocations.setOffset(arrayIndex, edge - prevEdge);
+            lastShift = edge - oldEdge;
+            prevEdge = edge;
+        }
+        // Cached items close to the visible window move along with the rest of their row,
+        // cached items further away are discarded and recomputed when they are needed.
+        final int lastIndex = getLastIndex();
+        final int lastKept = Math.min(lastIndex, mLastVisibleIndex + Math.max(cacheMargin, 0));
+        for (int i = mLastVisibleIndex + 1; i <= lastKept; i++) {
+            final int arrayIndex = i - mFirstIndex;
+            final int shift = rowShifts[mLocations.getRow(arrayIndex)];
+            mLocations.setOffset(arrayIndex, mLocations.getOffset(arrayIndex) + shift - lastShift);
+            lastShift = shift;
+        }
+        mLocations.removeFromEnd(lastIndex - lastKept);
+    }
+
 }
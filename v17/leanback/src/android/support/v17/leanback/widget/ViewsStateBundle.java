@@ -14,14 +14,12 @@
 package android.support.v17.leanback.widget;
 
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.Parcelable;
-import android.support.v4.util.LruCache;
 import android.util.SparseArray;
 import android.view.View;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.ArrayList;
 
 import static android.support.v17.leanback.widget.BaseGridView.SAVE_NO_CHILD;
 import static android.support.v17.leanback.widget.BaseGridView.SAVE_ON_SCREEN_CHILD;
@@ -37,6 +35,12 @@ import static android.support.v17.leanback.widget.BaseGridView.SAVE_ALL_CHILD;
  * Vertical list maintains id->bundle mapping of all it's children (even the children is offscreen
  * and being pruned).
  * <p>
+ * States are keyed by the adapter position of the view.  When items are inserted, removed or
+ * moved, {@link #onItemsAdded}, {@link #onItemsRemoved} and {@link #onItemsMoved} remap the
+ * keys so states follow their items.  Besides the number of states, the total size of the
+ * states may be limited, see {@link #setLimitBytes(int)}; the least recently saved states are
+ * dropped first.
+ * <p>
  * The class is currently used within {@link GridLayoutManager}, but it might be used by other
  * ViewGroup.
  */
@@ -45,52 +49,225 @@ class ViewsStateBundle {
     public static final int LIMIT_DEFAULT = 100;
     public static final int UNLIMITED = Integer.MAX_VALUE;
 
+    // Keys of the compact saved bundle format.
+    private static final String KEY_IDS = "ids";
+    private static final String KEY_COUNTS = "counts";
+    private static final String KEY_VIEW_IDS = "viewIds";
+    private static final String KEY_STATES = "states";
+
     private int mSavePolicy;
     private int mLimitNumber;
+    private int mLimitBytes;
+
+    private SparseArray<ChildState> mChildStates;
+    // Total size of the states in mChildStates, only tracked when mLimitBytes is set.
+    private int mTotalBytes;
+    private int mSaveCounter;
+
+    /**
+     * Saved state of one view.
+     */
+    static final class ChildState {
+        final SparseArray<Parcelable> mContainer;
+        final int mBytes;
+        // Order of the save, for dropping the least recently saved states first.
+        final int mSaveOrder;
 
-    private LruCache<String, SparseArray<Parcelable>> mChildStates;
+        ChildState(SparseArray<Parcelable> container, int bytes, int saveOrder) {
+            mContainer = container;
+            mBytes = bytes;
+            mSaveOrder = saveOrder;
+        }
+    }
 
     public ViewsStateBundle() {
         mSavePolicy = SAVE_NO_CHILD;
         mLimitNumber = LIMIT_DEFAULT;
+        mLimitBytes = UNLIMITED;
     }
 
     public void clear() {
         if (mChildStates != null) {
-            mChildStates.evictAll();
+            mChildStates.clear();
+            mTotalBytes = 0;
         }
     }
 
     public void remove(int id) {
         if (mChildStates != null && mChildStates.size() != 0) {
-            mChildStates.remove(getSaveStatesKey(id));
+            int index = mChildStates.indexOfKey(id);
+            if (index >= 0) {
+                mTotalBytes -= mChildStates.valueAt(index).mBytes;
+                mChildStates.removeAt(index);
+            }
         }
     }
 
+    /**
+     * Returns the number of saved states.
+     */
+    final int size() {
+        return mChildStates == null ? 0 : mChildStates.size();
+    }
+
+    /**
+     * Shifts the ids at or after positionStart by itemCount.
+     */
+    public void onItemsAdded(int positionStart, int itemCount) {
+        if (mChildStates == null || mChildStates.size() == 0) {
+            return;
+        }
+        SparseArray<ChildState> states = new SparseArray<ChildState>(mChildStates.size());
+        for (int i = 0, size = mChildStates.size(); i < size; i++) {
+            int id = mChildStates.keyAt(i);
+            states.append(id >= positionStart ? id + itemCount : id, mChildStates.valueAt(i));
+        }
+        mChildStates = states;
+    }
+
+    /**
+     * Drops the states of the removed ids and shifts the ids after them.
+     */
+    public void onItemsRemoved(int positionStart, int itemCount) {
+        if (mChildStates == null || mChildStates.size() == 0) {
+            return;
+        }
+        final int positionEnd = positionStart + itemCount;
+        SparseArray<ChildState> states = new SparseArray<ChildState>(mChildStates.size());
+        for (int i = 0, size = mChildStates.size(); i < size; i++) {
+            int id = mChildStates.keyAt(i);
+            ChildState state = mChildStates.valueAt(i);
+            if (id < positionStart) {
+                states.append(id, state);
+            } else if (id >= positionEnd) {
+                states.append(id - itemCount, state);
+            } else {
+                mTotalBytes -= state.mBytes;
+            }
+        }
+        mChildStates = states;
+    }
+
+    /**
+     * Moves the states of itemCount ids from fromPosition to toPosition, shifting the ids in
+     * between.
+     */
+    public void onItemsMoved(int fromPosition, int toPosition, int itemCount) {
+        if (mChildStates == null || mChildStates.size() == 0 || fromPosition == toPosition) {
+            return;
+        }
+        SparseArray<ChildState> states = new SparseArray<ChildState>(mChildStates.size());
+        for (int i = 0, size = mChildStates.size(); i < size; i++) {
+            int id = mChildStates.keyAt(i);
+            states.put(getMovedId(id, fromPosition, toPosition, itemCount),
+                    mChildStates.valueAt(i));
+        }
+        mChildStates = states;
+    }
+
+    static int getMovedId(int id, int fromPosition, int toPosition, int itemCount) {
+        if (id >= fromPosition && id < fromPosition + itemCount) {
+            return id + toPosition - fromPosition;
+        }
+        if (fromPosition < toPosition) {
+            if (id >= fromPosition + itemCount && id < toPosition + itemCount) {
+                return id - itemCount;
+            }
+        } else if (id >= toPosition && id < fromPosition) {
+            return id + itemCount;
+        }
+        return id;
+    }
+
     /**
      * @return the saved views states
      */
     public final Bundle saveAsBundle() {
-        if (mChildStates == null || mChildStates.size() == 0) {
+        return saveAsBundle(null);
+    }
+
+    /**
+     * Saves the states, including the given states of on screen views, into a Bundle holding
+     * a few flat arrays.
+     *
+     * @param onScreenStates States returned by {@link #saveOnScreenView}, or null.
+     * @return the saved views states, or null if there are none.
+     */
+    public final Bundle saveAsBundle(SparseArray<SparseArray<Parcelable>> onScreenStates) {
+        SparseArray<SparseArray<Parcelable>> containers =
+                new SparseArray<SparseArray<Parcelable>>();
+        if (mChildStates != null) {
+            for (int i = 0, size = mChildStates.size(); i < size; i++) {
+                containers.append(mChildStates.keyAt(i), mChildStates.valueAt(i).mContainer);
+            }
+        }
+        if (onScreenStates != null) {
+            for (int i = 0, size = onScreenStates.size(); i < size; i++) {
+                containers.put(onScreenStates.keyAt(i), onScreenStates.valueAt(i));
+            }
+        }
+        final int count = containers.size();
+        if (count == 0) {
             return null;
         }
-        Map<String, SparseArray<Parcelable>> snapshot = mChildStates.snapshot();
-        Bundle bundle = new Bundle();
-        for (Iterator<Entry<String, SparseArray<Parcelable>>> i =
-                snapshot.entrySet().iterator(); i.hasNext(); ) {
-            Entry<String, SparseArray<Parcelable>> e = i.next();
-            bundle.putSparseParcelableArray(e.getKey(), e.getValue());
+        int[] ids = new int[count];
+        int[] counts = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            ids[i] = containers.keyAt(i);
+            counts[i] = containers.valueAt(i).size();
+            total += counts[i];
         }
+        int[] viewIds = new int[total];
+        ArrayList<Parcelable> states = new ArrayList<Parcelable>(total);
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            SparseArray<Parcelable> container = containers.valueAt(i);
+            for (int j = 0, size = container.size(); j < size; j++) {
+                viewIds[index++] = container.keyAt(j);
+                states.add(container.valueAt(j));
+            }
+        }
+        Bundle bundle = new Bundle();
+        bundle.putIntArray(KEY_IDS, ids);
+        bundle.putIntArray(KEY_COUNTS, counts);
+        bundle.putIntArray(KEY_VIEW_IDS, viewIds);
+        bundle.putParcelableArrayList(KEY_STATES, states);
         return bundle;
     }
 
     public final void loadFromBundle(Bundle savedBundle) {
-        if (mChildStates != null && savedBundle != null) {
-            mChildStates.evictAll();
-            for (Iterator<String> i = savedBundle.keySet().iterator(); i.hasNext(); ) {
-                String key = i.next();
-                mChildStates.put(key, savedBundle.getSparseParcelableArray(key));
+        if (mChildStates == null || savedBundle == null) {
+            return;
+        }
+        clear();
+        int[] ids = savedBundle.getIntArray(KEY_IDS);
+        if (ids == null) {
+            // Bundle saved with one SparseParcelableArray per id.
+            for (String key : savedBundle.keySet()) {
+                try {
+                    SparseArray<Parcelable> container = savedBundle.getSparseParcelableArray(key);
+                    putState(Integer.parseInt(key), container);
+                } catch (NumberFormatException e) {
+                    // not a state
+                }
+            }
+            return;
+        }
+        int[] counts = savedBundle.getIntArray(KEY_COUNTS);
+        int[] viewIds = savedBundle.getIntArray(KEY_VIEW_IDS);
+        ArrayList<Parcelable> states = savedBundle.getParcelableArrayList(KEY_STATES);
+        if (counts == null || viewIds == null || states == null || counts.length != ids.length
+                || viewIds.length != states.size()) {
+            return;
+        }
+        int index = 0;
+        for (int i = 0; i < ids.length; i++) {
+            SparseArray<Parcelable> container = new SparseArray<Parcelable>(counts[i]);
+            for (int j = 0; j < counts[i]; j++, index++) {
+                container.append(viewIds[index], states.get(index));
             }
+            putState(ids[i], container);
         }
     }
 
@@ -110,6 +287,14 @@ class ViewsStateBundle {
         return mLimitNumber;
     }
 
+    /**
+     * @return the maximum total size in bytes of the off screen states, only works when
+     *         {@link #getSavePolicy()} is {@link #SAVE_LIMITED_CHILD} or {@link #SAVE_ALL_CHILD}
+     */
+    public final int getLimitBytes() {
+        return mLimitBytes;
+    }
+
     /**
      * @see ViewsStateBundle#getSavePolicy()
      */
@@ -126,20 +311,88 @@ class ViewsStateBundle {
         applyPolicyChanges();
     }
 
+    /**
+     * @see ViewsStateBundle#getLimitBytes()
+     */
+    public final void setLimitBytes(int limitBytes) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (mLimitBytes != limitBytes) {
+            final boolean wasTracked = mLimitBytes != UNLIMITED;
+            mLimitBytes = limitBytes;
+            if (!wasTracked) {
+                // Sizes were not measured so far; drop the states rather than measure them all.
+                clear();
+            }
+            trimToLimits();
+        }
+    }
+
     protected void applyPolicyChanges() {
         if (mSavePolicy == SAVE_LIMITED_CHILD) {
             if (mLimitNumber <= 0) {
                 throw new IllegalArgumentException();
             }
-            if (mChildStates == null || mChildStates.maxSize() != mLimitNumber) {
-                mChildStates = new LruCache<String, SparseArray<Parcelable>>(mLimitNumber);
-            }
-        } else if (mSavePolicy == SAVE_ALL_CHILD || mSavePolicy == SAVE_ON_SCREEN_CHILD) {
-            if (mChildStates == null || mChildStates.maxSize() != UNLIMITED) {
-                mChildStates = new LruCache<String, SparseArray<Parcelable>>(UNLIMITED);
+        }
+        if (mSavePolicy == SAVE_LIMITED_CHILD || mSavePolicy == SAVE_ALL_CHILD
+                || mSavePolicy == SAVE_ON_SCREEN_CHILD) {
+            if (mChildStates == null) {
+                mChildStates = new SparseArray<ChildState>();
+                mTotalBytes = 0;
             }
+            trimToLimits();
         } else {
             mChildStates = null;
+            mTotalBytes = 0;
+        }
+    }
+
+    private int getEffectiveLimitNumber() {
+        return mSavePolicy == SAVE_LIMITED_CHILD ? mLimitNumber : UNLIMITED;
+    }
+
+    private void putState(int id, SparseArray<Parcelable> container) {
+        if (container == null) {
+            return;
+        }
+        remove(id);
+        final int bytes = mLimitBytes != UNLIMITED ? measure(container) : 0;
+        mChildStates.put(id, new ChildState(container, bytes, mSaveCounter++));
+        mTotalBytes += bytes;
+        trimToLimits();
+    }
+
+    /**
+     * Drops the least recently saved states until both the number and the size limits are met.
+     */
+    private void trimToLimits() {
+        if (mChildStates == null) {
+            return;
+        }
+        final int limitNumber = getEffectiveLimitNumber();
+        while (mChildStates.size() > 0 && (mChildStates.size() > limitNumber
+                || (mLimitBytes != UNLIMITED && mTotalBytes > mLimitBytes))) {
+            int oldest = 0;
+            for (int i = 1, size = mChildStates.size(); i < size; i++) {
+                if (mChildStates.valueAt(i).mSaveOrder
+                        < mChildStates.valueAt(oldest).mSaveOrder) {
+                    oldest = i;
+                }
+            }
+            mTotalBytes -= mChildStates.valueAt(oldest).mBytes;
+            mChildStates.removeAt(oldest);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int measure(SparseArray<Parcelable> container) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeSparseArray((SparseArray<Object>) (SparseArray<?>) container);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
         }
     }
 
@@ -151,12 +404,14 @@ class ViewsStateBundle {
      */
     public final void loadView(View view, int id) {
         if (mChildStates != null) {
-            String key = getSaveStatesKey(id);
             // Once loaded the state, do not keep the state of child. The child state will
             // be saved again either when child is offscreen or when the parent is saved.
-            SparseArray<Parcelable> container = mChildStates.remove(key);
-            if (container != null) {
-                view.restoreHierarchyState(container);
+            int index = mChildStates.indexOfKey(id);
+            if (index >= 0) {
+                ChildState state = mChildStates.valueAt(index);
+                mChildStates.removeAt(index);
+                mTotalBytes -= state.mBytes;
+                view.restoreHierarchyState(state.mContainer);
             }
         }
     }
@@ -169,32 +424,31 @@ class ViewsStateBundle {
      */
     protected final void saveViewUnchecked(View view, int id) {
         if (mChildStates != null) {
-            String key = getSaveStatesKey(id);
             SparseArray<Parcelable> container = new SparseArray<Parcelable>();
             view.saveHierarchyState(container);
-            mChildStates.put(key, container);
+            putState(id, container);
         }
     }
 
     /**
      * The on screen view is saved when policy is not {@link #SAVE_NO_CHILD}.
      *
-     * @param bundle   Bundle where we save the on screen view state.  If null,
-     *                 a new Bundle is created and returned.
+     * @param states   States of on screen views to pass to {@link #saveAsBundle(SparseArray)}.
+     *                 If null, a new SparseArray is created and returned.
      * @param view     The view to save.
      * @param id       Id of the view.
      */
-    public final Bundle saveOnScreenView(Bundle bundle, View view, int id) {
+    public final SparseArray<SparseArray<Parcelable>> saveOnScreenView(
+            SparseArray<SparseArray<Parcelable>> states, View view, int id) {
         if (mSavePolicy != SAVE_NO_CHILD) {
-            String key = getSaveStatesKey(id);
             SparseArray<Parcelable> container = new SparseArray<Parcelable>();
             view.saveHierarchyState(container);
-            if (bundle == null) {
-                bundle = new Bundle();
+            if (states == null) {
+                states = new SparseArray<SparseArray<Parcelable>>();
             }
-            bundle.putSparseParcelableArray(key, container);
+            states.put(id, container);
         }
-        return bundle;
+        return states;
     }
 
     /**
@@ -216,8 +470,4 @@ class ViewsStateBundle {
                 break;
         }
     }
-
-    static String getSaveStatesKey(int id) {
-        return Integer.toString(id);
-    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.app.Instrumentation;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.test.ActivityInstrumentationTestCase2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @hide from javadoc
+ */
+public class BackgroundManagerTest extends
+        ActivityInstrumentationTestCase2<BackgroundManagerTestActivity> {
+
+    static final long LOAD_TIMEOUT_MS = 5000;
+    static final long CHANGE_BG_WAIT_MS = 1500;
+
+    Instrumentation mInstrumentation;
+    BackgroundManagerTestActivity mActivity;
+    BackgroundManager mBackgroundManager;
+
+    public BackgroundManagerTest() {
+        super(BackgroundManagerTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mInstrumentation = getInstrumentation();
+        mActivity = getActivity();
+        mInstrumentation.waitForIdleSync();
+        mBackgroundManager = BackgroundManager.getInstance(mActivity);
+    }
+
+    static class CountingLoader implements BackgroundManager.BitmapLoader {
+        final AtomicInteger mLoadCount = new AtomicInteger();
+        final CountDownLatch mLoaded = new CountDownLatch(1);
+
+        @Override
+        public Bitmap loadBitmap(int width, int height) {
+            mLoadCount.incrementAndGet();
+            mLoaded.countDown();
+            return Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        }
+    }
+
+    static class FailingLoader extends CountingLoader {
+        @Override
+        public Bitmap loadBitmap(int width, int height) {
+            super.loadBitmap(width, height);
+            throw new SecurityException("no access");
+        }
+    }
+
+    private void setBitmapAsync(final Object key, final BackgroundManager.BitmapLoader loader)
+            throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mBackgroundManager.setBitmapAsync(key, loader);
+            }
+        });
+    }
+
+    public void testFitBitmapScalesAndCrops() {
+        Bitmap bitmap = Bitmap.createBitmap(400, 100, Bitmap.Config.ARGB_8888);
+        Bitmap fitted = BackgroundManager.fitBitmap(bitmap, 100, 50);
+        assertEquals(100, fitted.getWidth());
+        assertEquals(50, fitted.getHeight());
+    }
+
+    public void testFitBitmapKeepsSmallBitmap() {
+        Bitmap bitmap = Bitmap.createBitmap(50, 50, Bitmap.Config.ARGB_8888);
+        assertSame(bitmap, BackgroundManager.fitBitmap(bitmap, 100, 100));
+    }
+
+    public void testDecodeUriDownsamples() throws Exception {
+        File file = new File(mActivity.getCacheDir(), "background_test.png");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            Bitmap.createBitmap(400, 400, Bitmap.Config.ARGB_8888)
+                    .compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+        try {
+            Bitmap decoded = BackgroundManager.decodeUri(mActivity.getContentResolver(),
+                    Uri.fromFile(file), 100, 100);
+            assertEquals(100, decoded.getWidth());
+            assertEquals(100, decoded.getHeight());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testSetBitmapAsyncLoadsOnce() throws Throwable {
+        Object key = new Object();
+        CountingLoader loader = new CountingLoader();
+        setBitmapAsync(key, loader);
+        assertTrue(loader.mLoaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        Thread.sleep(CHANGE_BG_WAIT_MS);
+        mInstrumentation.waitForIdleSync();
+        assertNotNull(mBackgroundManager.getDrawable());
+
+        CountingLoader secondLoader = new CountingLoader();
+        setBitmapAsync(key, secondLoader);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(1, loader.mLoadCount.get());
+        assertEquals(0, secondLoader.mLoadCount.get());
+    }
+
+    public void testSetBitmapAsyncSupersededLoadIsCached() throws Throwable {
+        Object firstKey = new Object();
+        Object secondKey = new Object();
+        CountingLoader firstLoader = new CountingLoader();
+        CountingLoader secondLoader = new CountingLoader();
+        setBitmapAsync(firstKey, firstLoader);
+        setBitmapAsync(secondKey, secondLoader);
+        assertTrue(firstLoader.mLoaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(secondLoader.mLoaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        Thread.sleep(CHANGE_BG_WAIT_MS);
+        mInstrumentation.waitForIdleSync();
+
+        CountingLoader reloader = new CountingLoader();
+        setBitmapAsync(firstKey, reloader);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(0, reloader.mLoadCount.get());
+    }
+
+    public void testSetBitmapAsyncFailedLoadIsNotCached() throws Throwable {
+        Object key = new Object();
+        FailingLoader failingLoader = new FailingLoader();
+        setBitmapAsync(key, failingLoader);
+        assertTrue(failingLoader.mLoaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        Thread.sleep(CHANGE_BG_WAIT_MS);
+        mInstrumentation.waitForIdleSync();
+
+        CountingLoader loader = new CountingLoader();
+        setBitmapAsync(key, loader);
+        assertTrue(loader.mLoaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(1, loader.mLoadCount.get());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.app.Instrumentation;
+import android.support.v17.leanback.tests.R;
+import android.test.ActivityInstrumentationTestCase2;
+
+/**
+ * @hide from javadoc
+ */
+public class PlaybackOverlayFragmentTest extends
+        ActivityInstrumentationTestCase2<PlaybackOverlayFragmentTestActivity> {
+
+    static final long UPDATE_WAIT = 2000;
+
+    Instrumentation mInstrumentation;
+    PlaybackOverlayFragmentTestActivity mActivity;
+    PlaybackOverlayTestFragment mFragment;
+
+    public PlaybackOverlayFragmentTest() {
+        super(PlaybackOverlayFragmentTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mInstrumentation = getInstrumentation();
+        mActivity = getActivity();
+        mInstrumentation.waitForIdleSync();
+        mFragment = (PlaybackOverlayTestFragment)
+                mActivity.getFragmentManager().findFragmentById(R.id.main_frame);
+    }
+
+    private void setProgressUpdating(final boolean enable) throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mFragment.mGlue.enableProgressUpdating(enable);
+            }
+        });
+    }
+
+    public void testProgressUpdatesWhileShown() throws Throwable {
+        setProgressUpdating(true);
+        Thread.sleep(UPDATE_WAIT);
+        assertTrue(mFragment.mGlue.mUpdateProgressCount > 0);
+
+        setProgressUpdating(false);
+        mInstrumentation.waitForIdleSync();
+        int count = mFragment.mGlue.mUpdateProgressCount;
+        Thread.sleep(UPDATE_WAIT);
+        assertEquals(count, mFragment.mGlue.mUpdateProgressCount);
+    }
+
+    public void testProgressUpdatesStopWhenFragmentRemoved() throws Throwable {
+        setProgressUpdating(true);
+        Thread.sleep(UPDATE_WAIT);
+        assertTrue(mFragment.mGlue.mUpdateProgressCount > 0);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mActivity.getFragmentManager().beginTransaction().remove(mFragment).commit();
+                mActivity.getFragmentManager().executePendingTransactions();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        int count = mFragment.mGlue.mUpdateProgressCount;
+        Thread.sleep(UPDATE_WAIT);
+        assertEquals(count, mFragment.mGlue.mUpdateProgressCount);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.support.v17.leanback.widget.ArrayObjectAdapter;
+import android.support.v17.leanback.widget.ClassPresenterSelector;
+import android.support.v17.leanback.widget.PlaybackControlsRow;
+import android.support.v17.leanback.widget.PlaybackControlsRowPresenter;
+
+/**
+ * @hide from javadoc
+ */
+public class PlaybackOverlayTestFragment extends PlaybackOverlayFragment {
+
+    static class TestGlue extends PlaybackControlGlue {
+        int mUpdateProgressCount;
+
+        TestGlue(Context context, PlaybackOverlayFragment fragment) {
+            super(context, fragment, new int[] { PLAYBACK_SPEED_FAST_L0 });
+        }
+
+        @Override
+        public void updateProgress() {
+            mUpdateProgressCount++;
+            super.updateProgress();
+        }
+
+        @Override
+        public boolean hasValidMedia() {
+            return true;
+        }
+
+        @Override
+        public boolean isMediaPlaying() {
+            return false;
+        }
+
+        @Override
+        public CharSequence getMediaTitle() {
+            return "Title";
+        }
+
+        @Override
+        public CharSequence getMediaSubtitle() {
+            return "Subtitle";
+        }
+
+        @Override
+        public int getMediaDuration() {
+            return 60000;
+        }
+
+        @Override
+        public Drawable getMediaArt() {
+            return null;
+        }
+
+        @Override
+        public long getSupportedActions() {
+            return ACTION_PLAY_PAUSE;
+        }
+
+        @Override
+        public int getCurrentSpeedId() {
+            return PLAYBACK_SPEED_PAUSED;
+        }
+
+        @Override
+        public int getCurrentPosition() {
+            return 0;
+        }
+
+        @Override
+        protected void startPlayback(int speed) {
+        }
+
+        @Override
+        protected void pausePlayback() {
+        }
+
+        @Override
+        protected void skipToNext() {
+        }
+
+        @Override
+        protected void skipToPrevious() {
+        }
+
+        @Override
+        protected void onRowChanged(PlaybackControlsRow row) {
+        }
+    }
+
+    TestGlue mGlue;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setFadingEnabled(false);
+        mGlue = new TestGlue(getActivity(), this);
+        PlaybackControlsRowPresenter presenter = mGlue.createControlsRowAndPresenter();
+        ClassPresenterSelector presenterSelector = new ClassPresenterSelector();
+        presenterSelector.addClassPresenter(PlaybackControlsRow.class, presenter);
+        ArrayObjectAdapter adapter = new ArrayObjectAdapter(presenterSelector);
+        adapter.add(mGlue.getControlsRow());
+        setAdapter(adapter);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.support.v17.leanback.tests.R;
+import android.test.ActivityInstrumentationTestCase2;
+
+/**
+ * @hide from javadoc
+ */
+public class RowsFragmentTest extends
+        ActivityInstrumentationTestCase2<RowsFragmentTestActivity> {
+
+    public RowsFragmentTest() {
+        super(RowsFragmentTestActivity.class);
+    }
+
+    private RowsFragment addFragment(final boolean prefetchBeforeCreate) throws Throwable {
+        final RowsFragment fragment = new RowsFragment();
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (prefetchBeforeCreate) {
+                    fragment.setItemPrefetchEnabled(true);
+                }
+                getActivity().getFragmentManager().beginTransaction()
+                        .replace(R.id.main_frame, fragment)
+                        .commit();
+                getActivity().getFragmentManager().executePendingTransactions();
+            }
+        });
+        assertNotNull(fragment.getVerticalGridView());
+        return fragment;
+    }
+
+    public void testItemPrefetchDisabledByDefault() throws Throwable {
+        RowsFragment fragment = addFragment(false);
+        assertFalse(fragment.getVerticalGridView().isItemPrefetchEnabled());
+    }
+
+    public void testItemPrefetchSetBeforeViewCreated() throws Throwable {
+        RowsFragment fragment = addFragment(true);
+        assertTrue(fragment.getVerticalGridView().isItemPrefetchEnabled());
+    }
+
+    public void testItemPrefetchSetAfterViewCreated() throws Throwable {
+        final RowsFragment fragment = addFragment(false);
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fragment.setItemPrefetchEnabled(true);
+            }
+        });
+        assertTrue(fragment.getVerticalGridView().isItemPrefetchEnabled());
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                fragment.setItemPrefetchEnabled(false);
+            }
+        });
+        assertFalse(fragment.getVerticalGridView().isItemPrefetchEnabled());
+    }
+}
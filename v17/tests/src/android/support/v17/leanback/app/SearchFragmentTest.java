@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.app.Instrumentation;
+import android.os.CancellationSignal;
+import android.support.v17.leanback.tests.R;
+import android.support.v17.leanback.widget.ArrayObjectAdapter;
+import android.support.v17.leanback.widget.HeaderItem;
+import android.support.v17.leanback.widget.ListRow;
+import android.support.v17.leanback.widget.ListRowPresenter;
+import android.support.v17.leanback.widget.ObjectAdapter;
+import android.test.ActivityInstrumentationTestCase2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * @hide from javadoc
+ */
+public class SearchFragmentTest extends
+        ActivityInstrumentationTestCase2<SearchFragmentTestActivity> {
+
+    static final long QUERY_DELAY_MS = 300;
+
+    Instrumentation mInstrumentation;
+    SearchFragmentTestActivity mActivity;
+    SearchFragment mFragment;
+    TestProvider mProvider;
+
+    /**
+     * Runs the queries on the calling thread.
+     */
+    static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Holds on to the queries until {@link #runAll} is called.
+     */
+    static class QueuedExecutor implements Executor {
+        final List<Runnable> mQueued = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueued.add(command);
+        }
+
+        void runAll() {
+            for (Runnable command : mQueued) {
+                command.run();
+            }
+            mQueued.clear();
+        }
+    }
+
+    static class TestProvider implements SearchFragment.AsyncSearchResultProvider {
+        final ArrayObjectAdapter mAdapter = new ArrayObjectAdapter(new ListRowPresenter());
+        final List<String> mLoaded = new ArrayList<String>();
+        final List<String> mDelivered = new ArrayList<String>();
+        final List<String> mSubmitted = new ArrayList<String>();
+        String mFailingQuery;
+
+        @Override
+        public ObjectAdapter getResultsAdapter() {
+            return mAdapter;
+        }
+
+        @Override
+        public boolean onQueryTextChange(String newQuery) {
+            return false;
+        }
+
+        @Override
+        public boolean onQueryTextSubmit(String query) {
+            mSubmitted.add(query);
+            return false;
+        }
+
+        @Override
+        public Object loadResults(String query, CancellationSignal cancellationSignal) {
+            mLoaded.add(query);
+            if (query.equals(mFailingQuery)) {
+                throw new IllegalStateException("failed " + query);
+            }
+            return "results:" + query;
+        }
+
+        @Override
+        public boolean onQueryResults(String query, Object results) {
+            assertEquals("results:" + query, results);
+            mDelivered.add(query);
+            ArrayObjectAdapter items = new ArrayObjectAdapter(new StringPresenter());
+            items.add(query);
+            mAdapter.clear();
+            mAdapter.add(new ListRow(new HeaderItem(0, query), items));
+            return true;
+        }
+    }
+
+    public SearchFragmentTest() {
+        super(SearchFragmentTestActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mInstrumentation = getInstrumentation();
+        setActivityInitialTouchMode(false);
+        mActivity = getActivity();
+        mInstrumentation.waitForIdleSync();
+        mFragment = (SearchFragment)
+                mActivity.getFragmentManager().findFragmentById(R.id.main_frame);
+        mProvider = new TestProvider();
+    }
+
+    private void setUpFragment(final long queryDelayMs, final Executor executor)
+            throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mFragment.setQueryDelay(queryDelayMs);
+                mFragment.setQueryExecutor(executor);
+                mFragment.setSearchResultProvider(mProvider);
+            }
+        });
+    }
+
+    private void setSearchQuery(final boolean submit, final String... queries) throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                for (String query : queries) {
+                    mFragment.setSearchQuery(query, submit);
+                }
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+    }
+
+    public void testQueryDelayCoalescesChanges() throws Throwable {
+        setUpFragment(QUERY_DELAY_MS, DIRECT_EXECUTOR);
+        setSearchQuery(false, "a", "ab", "abc");
+        assertTrue(mProvider.mLoaded.isEmpty());
+
+        Thread.sleep(QUERY_DELAY_MS * 2);
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Arrays.asList("abc"), mProvider.mLoaded);
+        assertEquals(Arrays.asList("abc"), mProvider.mDelivered);
+    }
+
+    public void testSubmitExecutesPendingQuery() throws Throwable {
+        setUpFragment(QUERY_DELAY_MS * 100, DIRECT_EXECUTOR);
+        setSearchQuery(true, "abc");
+        assertEquals(Arrays.asList("abc"), mProvider.mLoaded);
+        assertEquals(Arrays.asList("abc"), mProvider.mDelivered);
+        assertEquals(Arrays.asList("abc"), mProvider.mSubmitted);
+    }
+
+    public void testSubmittedResultsTakeFocus() throws Throwable {
+        final QueuedExecutor executor = new QueuedExecutor();
+        setUpFragment(0, executor);
+        setSearchQuery(true, "abc");
+        assertTrue(mProvider.mDelivered.isEmpty());
+
+        // The results arrive once the query is already complete.
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                executor.runAll();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Arrays.asList("abc"), mProvider.mDelivered);
+        RowsFragment rowsFragment = (RowsFragment)
+                mFragment.getChildFragmentManager().findFragmentById(R.id.lb_results_frame);
+        assertTrue(rowsFragment.getVerticalGridView().hasFocus());
+    }
+
+    public void testFailedQueryNotDelivered() throws Throwable {
+        mProvider.mFailingQuery = "a";
+        setUpFragment(0, DIRECT_EXECUTOR);
+        setSearchQuery(false, "a");
+        assertEquals(Arrays.asList("a"), mProvider.mLoaded);
+        assertTrue(mProvider.mDelivered.isEmpty());
+
+        setSearchQuery(false, "ab");
+        assertEquals(Arrays.asList("ab"), mProvider.mDelivered);
+    }
+
+    public void testSupersededQueryCanceled() throws Throwable {
+        final QueuedExecutor executor = new QueuedExecutor();
+        setUpFragment(0, executor);
+        setSearchQuery(false, "a", "ab");
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(2, executor.mQueued.size());
+                executor.runAll();
+            }
+        });
+        mInstrumentation.waitForIdleSync();
+        assertEquals(Arrays.asList("ab"), mProvider.mLoaded);
+        assertEquals(Arrays.asList("ab"), mProvider.mDelivered);
+    }
+
+    public void testCachedResultsDelivered() throws Throwable {
+        setUpFragment(0, DIRECT_EXECUTOR);
+        setSearchQuery(false, "a");
+        setSearchQuery(false, "ab");
+        setSearchQuery(false, "a");
+        assertEquals(Arrays.asList("a", "ab"), mProvider.mLoaded);
+        assertEquals(Arrays.asList("a", "ab", "a"), mProvider.mDelivered);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mFragment.clearResultsCache();
+            }
+        });
+        setSearchQuery(false, "ab");
+        assertEquals(Arrays.asList("a", "ab", "ab"), mProvider.mLoaded);
+    }
+}
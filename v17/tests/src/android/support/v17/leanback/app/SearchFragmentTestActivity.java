@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.app;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.support.v17.leanback.tests.R;
+import android.support.v17.leanback.widget.SpeechRecognitionCallback;
+
+/**
+ * @hide from javadoc
+ */
+public class SearchFragmentTestActivity extends Activity {
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.browse);
+        SearchFragment fragment = new SearchFragment();
+        // Keep the speech recognizer out of the tests.
+        fragment.setSpeechRecognitionCallback(new SpeechRecognitionCallback() {
+            @Override
+            public void recognizeSpeech() {
+            }
+        });
+        getFragmentManager().beginTransaction()
+                .replace(R.id.main_frame, fragment)
+                .commit();
+    }
+}
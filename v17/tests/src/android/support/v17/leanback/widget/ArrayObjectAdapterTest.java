@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ArrayObjectAdapterTest extends AndroidTestCase {
+
+    static class Item {
+        final int mId;
+        final int mContent;
+
+        Item(int id, int content) {
+            mId = id;
+            mContent = content;
+        }
+    }
+
+    static final DiffCallback<Item> sDiffCallback = new DiffCallback<Item>() {
+        @Override
+        public boolean areItemsTheSame(Item oldItem, Item newItem) {
+            return oldItem.mId == newItem.mId;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.mContent == newItem.mContent;
+        }
+    };
+
+    /**
+     * Replays the notifications of an adapter on a copy of its items.
+     */
+    static class ReplayObserver extends ObjectAdapter.DataObserver {
+        final ArrayObjectAdapter mAdapter;
+        final ArrayList<Object> mItems;
+        int mFullChanges;
+        int mMoves;
+        int mChangedItems;
+
+        ReplayObserver(ArrayObjectAdapter adapter) {
+            mAdapter = adapter;
+            mItems = new ArrayList<Object>(adapter.unmodifiableList());
+        }
+
+        @Override
+        public void onChanged() {
+            mFullChanges++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mItems.set(i, mAdapter.get(i));
+                mChangedItems++;
+            }
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mItems.add(i, mAdapter.get(i));
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            for (int i = 0; i < itemCount; i++) {
+                mItems.remove(positionStart);
+            }
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            mMoves++;
+            mItems.add(toPosition, mItems.remove(fromPosition));
+        }
+
+        void assertMatches(List<Item> expected) {
+            assertEquals(0, mFullChanges);
+            assertEquals(expected.size(), mItems.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Item item = (Item) mItems.get(i);
+                assertEquals(expected.get(i).mId, item.mId);
+                assertEquals(expected.get(i).mContent, item.mContent);
+            }
+        }
+    }
+
+    private static ArrayObjectAdapter createAdapter(int... ids) {
+        ArrayObjectAdapter adapter = new ArrayObjectAdapter();
+        for (int id : ids) {
+            adapter.add(new Item(id, 0));
+        }
+        return adapter;
+    }
+
+    public void testMove() {
+        ArrayObjectAdapter adapter = createAdapter(0, 1, 2, 3);
+        ReplayObserver observer = new ReplayObserver(adapter);
+        adapter.registerObserver(observer);
+        adapter.move(0, 3);
+        adapter.move(2, 1);
+        assertEquals(2, observer.mMoves);
+        observer.assertMatches(Arrays.asList(new Item(1, 0), new Item(3, 0), new Item(2, 0),
+                new Item(0, 0)));
+    }
+
+    public void testSetItemsKeepsUnchangedItems() {
+        ArrayObjectAdapter adapter = createAdapter(0, 1, 2, 3, 4, 5);
+        ReplayObserver observer = new ReplayObserver(adapter);
+        adapter.registerObserver(observer);
+        Object unchanged = adapter.get(1);
+        List<Item> newItems = Arrays.asList(new Item(5, 0), new Item(1, 0), new Item(2, 1),
+                new Item(6, 0), new Item(3, 0));
+        adapter.setItems(newItems, sDiffCallback);
+        observer.assertMatches(newItems);
+        assertEquals(1, observer.mMoves);
+        assertEquals(1, observer.mChangedItems);
+        assertSame(unchanged, observer.mItems.get(1));
+    }
+
+    public void testSetItemsWithoutCallback() {
+        ArrayObjectAdapter adapter = createAdapter(0, 1, 2);
+        ReplayObserver observer = new ReplayObserver(adapter);
+        adapter.registerObserver(observer);
+        adapter.setItems(Arrays.asList(new Item(3, 0)), null);
+        assertEquals(1, observer.mFullChanges);
+        assertEquals(1, adapter.size());
+    }
+
+    public void testSetItemsLargeDiffChangesAll() {
+        ArrayObjectAdapter adapter = new ArrayObjectAdapter();
+        ArrayList<Item> newItems = new ArrayList<Item>();
+        for (int i = 0; i < 1000; i++) {
+            adapter.add(new Item(2 * i, 0));
+            newItems.add(new Item(2 * i + 1, 0));
+        }
+        ReplayObserver observer = new ReplayObserver(adapter);
+        adapter.registerObserver(observer);
+        adapter.setItems(newItems, sDiffCallback);
+        assertEquals(1, observer.mFullChanges);
+        assertEquals(0, observer.mMoves);
+        assertEquals(newItems, adapter.unmodifiableList());
+    }
+
+    public void testSetItemsRandom() {
+        Random random = new Random(0);
+        for (int round = 0; round < 200; round++) {
+            ArrayObjectAdapter adapter = new ArrayObjectAdapter();
+            ArrayList<Item> newItems = new ArrayList<Item>();
+            int nextId = 0;
+            for (int i = random.nextInt(40); i > 0; i--) {
+                Item item = new Item(nextId++, 0);
+                adapter.add(item);
+                if (random.nextInt(4) != 0) {
+                    newItems.add(new Item(item.mId, random.nextInt(5) == 0 ? 1 : 0));
+                }
+            }
+            for (int i = random.nextInt(4); i > 0 && newItems.size() > 1; i--) {
+                Item item = newItems.remove(random.nextInt(newItems.size()));
+                newItems.add(random.nextInt(newItems.size() + 1), item);
+            }
+            for (int i = random.nextInt(8); i > 0; i--) {
+                newItems.add(random.nextInt(newItems.size() + 1), new Item(nextId++, 0));
+            }
+            ReplayObserver observer = new ReplayObserver(adapter);
+            adapter.registerObserver(observer);
+            adapter.setItems(newItems, sDiffCallback);
+            observer.assertMatches(newItems);
+        }
+    }
+}
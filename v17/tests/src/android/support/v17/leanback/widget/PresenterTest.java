@@ -105,4 +105,33 @@ public class PresenterTest extends AndroidTestCase {
                 vh.view.findViewById(R.id.description_dock).getLayoutParams().height, 0);
         controlsRowPresenter.onUnbindRowViewHolder(vh);
     }
+
+    public void testPlaybackControlsRowProgressUpdate() {
+        PlaybackControlsRowPresenter controlsRowPresenter = new PlaybackControlsRowPresenter();
+        PlaybackControlsRowPresenter.ViewHolder vh = (PlaybackControlsRowPresenter.ViewHolder)
+                controlsRowPresenter.onCreateViewHolder(new FrameLayout(getContext()));
+        PlaybackControlsRow controlsRow = new PlaybackControlsRow();
+        controlsRow.setTotalTime(100000);
+        controlsRow.setCurrentTime(5000);
+        controlsRowPresenter.onBindRowViewHolder(vh, controlsRow);
+        assertEquals(100000, vh.mControlsVh.getTotalTime());
+        assertEquals(5000, vh.mControlsVh.getCurrentTime());
+
+        // Changes after binding are batched until the next frame.
+        controlsRow.setTotalTime(200000);
+        controlsRow.setCurrentTime(6000);
+        controlsRow.setBufferedProgress(9000);
+        assertTrue(vh.mProgressUpdatePending);
+        assertEquals(5000, vh.mControlsVh.getCurrentTime());
+
+        vh.mUpdateProgressRunnable.run();
+        assertFalse(vh.mProgressUpdatePending);
+        assertEquals(200000, vh.mControlsVh.getTotalTime());
+        assertEquals(6000, vh.mControlsVh.getCurrentTime());
+        assertEquals(9000, vh.mControlsVh.getSecondaryProgress());
+
+        controlsRowPresenter.onUnbindRowViewHolder(vh);
+        controlsRow.setCurrentTime(7000);
+        assertFalse(vh.mProgressUpdatePending);
+    }
 }
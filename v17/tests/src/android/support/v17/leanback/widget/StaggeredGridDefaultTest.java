@@ -55,4 +55,92 @@ public class StaggeredGridDefaultTest extends GridTest {
         assertEquals(dump(mStaggeredGrid) + " last item should be placed on row 1",
                 1, row_result2);
     }
+
+    public void testLocationArray() throws Throwable {
+        StaggeredGrid.LocationArray locations = new StaggeredGrid.LocationArray(4);
+        for (int i = 0; i < 10; i++) {
+            locations.addLast(i % 3, i, i * 10);
+            locations.addFirst(-i % 3, -i, -i * 10);
+        }
+        assertEquals(20, locations.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(-9 + i, locations.getOffset(i));
+            assertEquals((-9 + i) * 10, locations.getSize(i));
+            assertEquals(i, locations.getOffset(i + 10));
+            assertEquals(i % 3, locations.getRow(i + 10));
+        }
+        locations.removeFromStart(5);
+        locations.removeFromEnd(5);
+        assertEquals(10, locations.size());
+        assertEquals(-4, locations.getOffset(0));
+        assertEquals(4, locations.getOffset(9));
+        locations.setSize(0, 7);
+        assertEquals(7, locations.getSize(0));
+        try {
+            locations.getRow(10);
+            fail("should throw ArrayIndexOutOfBoundsException");
+        } catch (ArrayIndexOutOfBoundsException ex) {
+        }
+        locations.clear();
+        assertEquals(0, locations.size());
+    }
+
+    private void layoutAndResizeFirstItem(int cacheMargin) {
+        mProvider = new Provider(new int[]{100, 100, 100, 100, 100, 100});
+        mStaggeredGrid = new StaggeredGridDefault();
+        mStaggeredGrid.setNumRows(2);
+        mStaggeredGrid.setMargin(20);
+        mStaggeredGrid.setProvider(mProvider);
+        mStaggeredGrid.appendVisibleItems(100000);
+        assertEquals(dump(mStaggeredGrid), 6, mStaggeredGrid.mLocations.size());
+
+        // keep items 0 - 3 visible, items 4 and 5 are only cached.
+        mStaggeredGrid.removeInvisibleItemsAtEnd(3, mProvider.getEdge(4));
+        assertEquals(3, mStaggeredGrid.getLastVisibleIndex());
+
+        // item 0 grows by 50 in place and pushes visible items of the same row.
+        final int row = mStaggeredGrid.getRowIndex(0);
+        mProvider.mItems[0] = 150;
+        for (int i = 1; i <= 3; i++) {
+            if (mStaggeredGrid.getRowIndex(i) == row) {
+                mProvider.mEdges[i] += 50;
+            }
+        }
+        int[] rowShifts = new int[2];
+        rowShifts[row] = 50;
+        mStaggeredGrid.updateItemSize(0, 150);
+        mStaggeredGrid.revalidateVisibleItems(rowShifts, cacheMargin);
+    }
+
+    public void testRevalidateVisibleItems() throws Throwable {
+        layoutAndResizeFirstItem(100);
+        assertEquals(dump(mStaggeredGrid) + " cached items should be kept",
+                6, mStaggeredGrid.mLocations.size());
+        assertEquals(150, mStaggeredGrid.getLocation(0).size);
+
+        // cached items are appended where the resized row moved them.
+        int[] rows = new int[6];
+        for (int i = 0; i < 6; i++) {
+            rows[i] = mStaggeredGrid.getRowIndex(i);
+        }
+        mStaggeredGrid.appendVisibleItems(100000);
+        assertEquals(5, mStaggeredGrid.getLastVisibleIndex());
+        for (int i = 4; i < 6; i++) {
+            assertEquals(rows[i], mStaggeredGrid.getRowIndex(i));
+            int expectedEdge = 0;
+            for (int j = i - 1; j >= 0; j--) {
+                if (rows[j] == rows[i]) {
+                    expectedEdge = mProvider.getEdge(j) + mProvider.getSize(j) + 20;
+                    break;
+                }
+            }
+            assertEquals("edge of item " + i, expectedEdge, mProvider.getEdge(i));
+        }
+    }
+
+    public void testRevalidateVisibleItemsOutsideMargin() throws Throwable {
+        layoutAndResizeFirstItem(1);
+        assertEquals(dump(mStaggeredGrid) + " only one cached item should be kept",
+                5, mStaggeredGrid.mLocations.size());
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.v17.leanback.widget;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.test.AndroidTestCase;
+import android.widget.TextView;
+
+public class ViewsStateBundleTest extends AndroidTestCase {
+
+    private static final int VIEW_ID = 1;
+
+    private TextView createView(String text) {
+        TextView view = new TextView(getContext());
+        view.setId(VIEW_ID);
+        view.setFreezesText(true);
+        view.setText(text);
+        return view;
+    }
+
+    private ViewsStateBundle createBundle(int... ids) {
+        ViewsStateBundle bundle = new ViewsStateBundle();
+        bundle.setSavePolicy(BaseGridView.SAVE_ALL_CHILD);
+        for (int id : ids) {
+            bundle.saveOffscreenView(createView("item" + id), id);
+        }
+        return bundle;
+    }
+
+    private void assertState(ViewsStateBundle bundle, int id, String expectedText) {
+        TextView view = createView("");
+        bundle.loadView(view, id);
+        assertEquals(expectedText, view.getText().toString());
+    }
+
+    public void testItemsAdded() {
+        ViewsStateBundle bundle = createBundle(0, 1, 2);
+        bundle.onItemsAdded(1, 2);
+        assertEquals(3, bundle.size());
+        assertState(bundle, 0, "item0");
+        assertState(bundle, 3, "item1");
+        assertState(bundle, 4, "item2");
+    }
+
+    public void testItemsRemoved() {
+        ViewsStateBundle bundle = createBundle(0, 1, 2, 3);
+        bundle.onItemsRemoved(1, 2);
+        assertEquals(2, bundle.size());
+        assertState(bundle, 0, "item0");
+        assertState(bundle, 1, "item3");
+    }
+
+    public void testItemsMoved() {
+        ViewsStateBundle bundle = createBundle(0, 1, 2, 3);
+        bundle.onItemsMoved(0, 2, 1);
+        assertState(bundle, 0, "item1");
+        assertState(bundle, 1, "item2");
+        assertState(bundle, 2, "item0");
+        assertState(bundle, 3, "item3");
+
+        bundle = createBundle(0, 1, 2, 3);
+        bundle.onItemsMoved(3, 1, 1);
+        assertState(bundle, 0, "item0");
+        assertState(bundle, 1, "item3");
+        assertState(bundle, 2, "item1");
+        assertState(bundle, 3, "item2");
+    }
+
+    public void testLimitNumber() {
+        ViewsStateBundle bundle = new ViewsStateBundle();
+        bundle.setSavePolicy(BaseGridView.SAVE_LIMITED_CHILD);
+        bundle.setLimitNumber(2);
+        for (int id = 0; id < 4; id++) {
+            bundle.saveOffscreenView(createView("item" + id), id);
+        }
+        assertEquals(2, bundle.size());
+        assertState(bundle, 2, "item2");
+        assertState(bundle, 3, "item3");
+    }
+
+    public void testLimitBytes() {
+        ViewsStateBundle bundle = createBundle();
+        bundle.setLimitBytes(1);
+        bundle.saveOffscreenView(createView("item0"), 0);
+        assertEquals(0, bundle.size());
+
+        bundle.setLimitBytes(Integer.MAX_VALUE - 1);
+        for (int id = 0; id < 10; id++) {
+            bundle.saveOffscreenView(createView("item" + id), id);
+        }
+        assertEquals(10, bundle.size());
+    }
+
+    public void testSaveAndLoadBundle() {
+        ViewsStateBundle bundle = createBundle(0, 5, 9);
+        Bundle saved = bundle.saveAsBundle(
+                bundle.saveOnScreenView(null, createView("onscreen"), 5));
+
+        Parcel parcel = Parcel.obtain();
+        saved.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        Bundle restored = parcel.readBundle(getClass().getClassLoader());
+        parcel.recycle();
+
+        ViewsStateBundle loaded = createBundle();
+        loaded.loadFromBundle(restored);
+        assertEquals(3, loaded.size());
+        assertState(loaded, 0, "item0");
+        assertState(loaded, 5, "onscreen");
+        assertState(loaded, 9, "item9");
+    }
+}
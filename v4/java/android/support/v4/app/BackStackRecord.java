@@ -431,6 +431,13 @@ final class BackStackRecord extends FragmentTransaction implements
             fragment.mContainerId = fragment.mFragmentId = containerViewId;
         }
 
+        if (fragment.mIndexed && mManager.mActive != null
+                && fragment.mIndex < mManager.mActive.size()
+                && mManager.mActive.get(fragment.mIndex) == fragment) {
+            // Already active here, so make it findable under its new id and tag.
+            mManager.indexFragment(fragment);
+        }
+
         Op op = new Op();
         op.cmd = opcmd;
         op.fragment = fragment;
@@ -213,6 +213,14 @@ public class Fragment implements ComponentCallbacks, OnCreateContextMenuListener
 
     // True if the fragment is in the list of added fragments.
     boolean mAdded;
+
+    // Order in which the fragment was put in the list of added fragments.
+    int mAddedOrder;
+
+    // The id and tag under which the fragment manager has indexed this fragment.
+    boolean mIndexed;
+    int mIndexedId;
+    String mIndexedTag;
     
     // If set this fragment is being removed from its activity.
     boolean mRemoving;
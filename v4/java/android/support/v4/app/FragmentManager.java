@@ -55,6 +55,7 @@ import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -486,6 +487,15 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     ArrayList<Integer> mAvailIndices;
     ArrayList<BackStackRecord> mBackStack;
     ArrayList<Fragment> mCreatedMenus;
+
+    // Active fragments indexed by id and by tag, so that findFragmentById() and
+    // findFragmentByTag() don't have to walk every fragment.  Kept up to date
+    // by makeActive()/makeInactive() and whenever a fragment is (re)added.
+    SparseArray<ArrayList<Fragment>> mActiveById;
+    HashMap<String, ArrayList<Fragment>> mActiveByTag;
+
+    // Incremented each time a fragment is put in mAdded, to order lookups.
+    int mNextAddedOrder;
     
     // Must be accessed while locked.
     ArrayList<BackStackRecord> mBackStackIndices;
@@ -1293,6 +1303,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
             f.setIndex(mAvailIndices.remove(mAvailIndices.size()-1), mParent);
             mActive.set(f.mIndex, f);
         }
+        indexFragment(f);
         if (DEBUG) Log.v(TAG, "Allocated fragment index " + f);
     }
     
@@ -1302,6 +1313,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         }
         
         if (DEBUG) Log.v(TAG, "Freeing fragment index " + f);
+        unindexFragment(f);
         mActive.set(f.mIndex, null);
         if (mAvailIndices == null) {
             mAvailIndices = new ArrayList<Integer>();
@@ -1310,6 +1322,85 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         mHost.inactivateFragment(f.mWho);
         f.initState();
     }
+
+    /**
+     * Brings the id and tag index up to date with the current id and tag of
+     * an active fragment.
+     */
+    void indexFragment(Fragment f) {
+        if (f.mIndexed && f.mIndexedId == f.mFragmentId
+                && (f.mTag == null ? f.mIndexedTag == null : f.mTag.equals(f.mIndexedTag))) {
+            return;
+        }
+        unindexFragment(f);
+        if (mActiveById == null) {
+            mActiveById = new SparseArray<ArrayList<Fragment>>();
+        }
+        ArrayList<Fragment> byId = mActiveById.get(f.mFragmentId);
+        if (byId == null) {
+            byId = new ArrayList<Fragment>(1);
+            mActiveById.put(f.mFragmentId, byId);
+        }
+        byId.add(f);
+        if (f.mTag != null) {
+            if (mActiveByTag == null) {
+                mActiveByTag = new HashMap<String, ArrayList<Fragment>>();
+            }
+            ArrayList<Fragment> byTag = mActiveByTag.get(f.mTag);
+            if (byTag == null) {
+                byTag = new ArrayList<Fragment>(1);
+                mActiveByTag.put(f.mTag, byTag);
+            }
+            byTag.add(f);
+        }
+        f.mIndexed = true;
+        f.mIndexedId = f.mFragmentId;
+        f.mIndexedTag = f.mTag;
+    }
+
+    void unindexFragment(Fragment f) {
+        if (!f.mIndexed) {
+            return;
+        }
+        if (mActiveById != null) {
+            ArrayList<Fragment> byId = mActiveById.get(f.mIndexedId);
+            if (byId != null && byId.remove(f) && byId.isEmpty()) {
+                mActiveById.remove(f.mIndexedId);
+            }
+        }
+        if (mActiveByTag != null && f.mIndexedTag != null) {
+            ArrayList<Fragment> byTag = mActiveByTag.get(f.mIndexedTag);
+            if (byTag != null && byTag.remove(f) && byTag.isEmpty()) {
+                mActiveByTag.remove(f.mIndexedTag);
+            }
+        }
+        f.mIndexed = false;
+        f.mIndexedTag = null;
+    }
+
+    /**
+     * Picks from fragments sharing an id or tag the one a scan of mAdded and
+     * then mActive would find first: the most recently added fragment, or
+     * else the active fragment with the highest index.
+     */
+    static Fragment findIndexedFragment(ArrayList<Fragment> candidates) {
+        if (candidates == null) {
+            return null;
+        }
+        Fragment added = null;
+        Fragment active = null;
+        for (int i=candidates.size()-1; i>=0; i--) {
+            Fragment f = candidates.get(i);
+            if (f.mAdded) {
+                if (added == null || f.mAddedOrder > added.mAddedOrder) {
+                    added = f;
+                }
+            } else if (active == null || f.mIndex > active.mIndex) {
+                active = f;
+            }
+        }
+        return added != null ? added : active;
+    }
     
     public void addFragment(Fragment fragment, boolean moveToStateNow) {
         if (mAdded == null) {
@@ -1317,12 +1408,14 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         }
         if (DEBUG) Log.v(TAG, "add: " + fragment);
         makeActive(fragment);
+        indexFragment(fragment);
         if (!fragment.mDetached) {
             if (mAdded.contains(fragment)) {
                 throw new IllegalStateException("Fragment already added: " + fragment);
             }
             mAdded.add(fragment);
             fragment.mAdded = true;
+            fragment.mAddedOrder = mNextAddedOrder++;
             fragment.mRemoving = false;
             if (fragment.mHasMenu && fragment.mMenuVisible) {
                 mNeedMenuInvalidate = true;
@@ -1421,8 +1514,10 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                     throw new IllegalStateException("Fragment already added: " + fragment);
                 }
                 if (DEBUG) Log.v(TAG, "add from attach: " + fragment);
+                indexFragment(fragment);
                 mAdded.add(fragment);
                 fragment.mAdded = true;
+                fragment.mAddedOrder = mNextAddedOrder++;
                 if (fragment.mHasMenu && fragment.mMenuVisible) {
                     mNeedMenuInvalidate = true;
                 }
@@ -1432,47 +1527,17 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
     }
 
     public Fragment findFragmentById(int id) {
-        if (mAdded != null) {
-            // First look through added fragments.
-            for (int i=mAdded.size()-1; i>=0; i--) {
-                Fragment f = mAdded.get(i);
-                if (f != null && f.mFragmentId == id) {
-                    return f;
-                }
-            }
-        }
-        if (mActive != null) {
-            // Now for any known fragment.
-            for (int i=mActive.size()-1; i>=0; i--) {
-                Fragment f = mActive.get(i);
-                if (f != null && f.mFragmentId == id) {
-                    return f;
-                }
-            }
+        if (mActiveById == null) {
+            return null;
         }
-        return null;
+        return findIndexedFragment(mActiveById.get(id));
     }
     
     public Fragment findFragmentByTag(String tag) {
-        if (mAdded != null && tag != null) {
-            // First look through added fragments.
-            for (int i=mAdded.size()-1; i>=0; i--) {
-                Fragment f = mAdded.get(i);
-                if (f != null && tag.equals(f.mTag)) {
-                    return f;
-                }
-            }
-        }
-        if (mActive != null && tag != null) {
-            // Now for any known fragment.
-            for (int i=mActive.size()-1; i>=0; i--) {
-                Fragment f = mActive.get(i);
-                if (f != null && tag.equals(f.mTag)) {
-                    return f;
-                }
-            }
+        if (mActiveByTag == null || tag == null) {
+            return null;
         }
-        return null;
+        return findIndexedFragment(mActiveByTag.get(tag));
     }
     
     public Fragment findFragmentByWho(String who) {
@@ -1930,6 +1995,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                 f.mInLayout = false;
                 f.mAdded = false;
                 f.mTarget = null;
+                f.mIndexed = false;
                 if (fs.mSavedFragmentState != null) {
                     fs.mSavedFragmentState.setClassLoader(mHost.getContext().getClassLoader());
                     f.mSavedViewState = fs.mSavedFragmentState.getSparseParcelableArray(
@@ -1991,6 +2057,7 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
                             "No instantiated fragment for index #" + fms.mAdded[i]));
                 }
                 f.mAdded = true;
+                f.mAddedOrder = mNextAddedOrder++;
                 if (DEBUG) Log.v(TAG, "restoreAllState: added #" + i + ": " + f);
                 if (mAdded.contains(f)) {
                     throw new IllegalStateException("Already added!");
@@ -2000,6 +2067,16 @@ final class FragmentManagerImpl extends FragmentManager implements LayoutInflate
         } else {
             mAdded = null;
         }
+
+        // Rebuild the id and tag index from the restored fragments.
+        mActiveById = null;
+        mActiveByTag = null;
+        for (int i=0; i<mActive.size(); i++) {
+            Fragment f = mActive.get(i);
+            if (f != null) {
+                indexFragment(f);
+            }
+        }
         
         // Build the back stack.
         if (fms.mBackStack != null) {
@@ -16,12 +16,27 @@
 
 package android.support.v4.app;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
 import android.os.Parcelable;
+import android.support.v4.util.LruCache;
 import android.support.v4.view.PagerAdapter;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -44,6 +59,13 @@ import android.view.ViewGroup;
  * <p>Subclasses only need to implement {@link #getItem(int)}
  * and {@link #getCount()} to have a working adapter.
  *
+ * <p>By default the saved state of every page that has been visited is kept,
+ * both in memory and in the state saved by {@link #saveState()}.  For pagers
+ * with many pages, {@link #setMaxSavedStateBytes(int)} bounds the amount of
+ * saved state held, dropping the state of the least recently visited pages
+ * first, or moving it to files when a directory has been supplied through
+ * {@link #setSavedStateSpillDirectory(File)}.
+ *
  * <p>Here is an example implementation of a pager containing fragments of
  * lists:
  *
@@ -68,10 +90,73 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
     private final FragmentManager mFragmentManager;
     private FragmentTransaction mCurTransaction = null;
 
-    private ArrayList<Fragment.SavedState> mSavedState = new ArrayList<Fragment.SavedState>();
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // Number of pages on either side of the primary item whose spilled state
+    // is read back ahead of time.
+    private static final int SPILL_READ_AHEAD = 3;
+
+    // Writes, reads and deletes spill files for all adapters, in order.
+    private static Executor sSpillExecutor;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private int mMaxSavedStateBytes = UNLIMITED;
+    private SavedStateCache mSavedState = new SavedStateCache(UNLIMITED);
+    private File mSpillDirectory;
+    // Prefix of the names of this adapter's spill files, created on the first spill
+    // and kept in the saved state so a restored adapter finds the same files.
+    private String mSpillPrefix;
+    // Spilled positions with the id of their state, so that background reads and
+    // writes finishing after the state was replaced or taken back are ignored.
+    private SparseIntArray mSpillIds = new SparseIntArray();
+    private int mNextSpillId = 1;
+    // Spilled states still being written to their file.
+    private SparseArray<byte[]> mSpillWrites = new SparseArray<byte[]>();
+    // Spilled states near the primary item already read back from their file,
+    // and the ids of the states being read.
+    private SparseArray<byte[]> mSpillReadAhead = new SparseArray<byte[]>();
+    private SparseIntArray mSpillReads = new SparseIntArray();
     private ArrayList<Fragment> mFragments = new ArrayList<Fragment>();
     private Fragment mCurrentPrimaryItem = null;
 
+    /**
+     * Saved state of a page along with its parceled size, so that it only
+     * needs to be measured once.
+     */
+    private static class SavedStateEntry {
+        final Fragment.SavedState mState;
+        final int mSize;
+
+        SavedStateEntry(Fragment.SavedState state, int size) {
+            mState = state;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Saved page states by position, evicting the least recently used states
+     * once their total size exceeds {@link #mMaxSavedStateBytes}.
+     */
+    private class SavedStateCache extends LruCache<Integer, SavedStateEntry> {
+        SavedStateCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Integer position, SavedStateEntry entry) {
+            return entry.mSize;
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Integer position,
+                SavedStateEntry oldValue, SavedStateEntry newValue) {
+            if (evicted) {
+                spillSavedState(position, oldValue.mState);
+            }
+        }
+    }
+
     public FragmentStatePagerAdapter(FragmentManager fm) {
         mFragmentManager = fm;
     }
@@ -81,6 +166,77 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
      */
     public abstract Fragment getItem(int position);
 
+    /**
+     * Set the maximum number of bytes, as measured by parceling them, of saved
+     * page state to hold on to.  When the limit is exceeded the state of the
+     * least recently visited pages is dropped, or spilled to disk if a
+     * directory was set with {@link #setSavedStateSpillDirectory(File)}.
+     * The default is to keep the state of every page.
+     *
+     * @param maxBytes Maximum size of the saved page state, or
+     *                 {@link Integer#MAX_VALUE} for no limit.
+     */
+    public void setMaxSavedStateBytes(int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes <= 0");
+        }
+        if (maxBytes == mMaxSavedStateBytes) {
+            return;
+        }
+        final boolean wasUnlimited = mMaxSavedStateBytes == UNLIMITED;
+        mMaxSavedStateBytes = maxBytes;
+        if (wasUnlimited != (maxBytes == UNLIMITED)) {
+            // Entries have been sized the other way; size them again.
+            Map<Integer, SavedStateEntry> entries = mSavedState.snapshot();
+            mSavedState = new SavedStateCache(maxBytes);
+            for (Map.Entry<Integer, SavedStateEntry> entry : entries.entrySet()) {
+                putSavedState(entry.getKey(), entry.getValue().mState);
+            }
+        } else {
+            mSavedState.resize(maxBytes);
+        }
+    }
+
+    /**
+     * Set a directory in which the saved state of pages evicted because of
+     * {@link #setMaxSavedStateBytes(int)} is kept instead of being dropped.
+     * The directory should be private to the application, such as
+     * {@link android.content.Context#getCacheDir()}; it may be shared by several
+     * adapters.  States that can not be written to a file, for example because
+     * they hold file descriptors, are still dropped.  Files are deleted when
+     * their page is visited again or by {@link #clearSpilledSavedState()}.
+     *
+     * <p>Files are written, deleted and read on a background thread.  The
+     * state of pages close to the current page is read back as the current
+     * page changes, so it is in memory by the time the pages are shown; only
+     * jumping straight to a page whose state was spilled, for example with
+     * {@link android.support.v4.view.ViewPager#setCurrentItem(int)}, reads its
+     * file on the main thread.
+     *
+     * @param directory Directory for spilled page state, or null to drop evicted states.
+     */
+    public void setSavedStateSpillDirectory(File directory) {
+        mSpillDirectory = directory;
+    }
+
+    /**
+     * Delete the files holding the saved state of pages that was spilled to
+     * the directory set with {@link #setSavedStateSpillDirectory(File)}, and
+     * forget that state.  Call this once the saved state of the adapter is no
+     * longer needed, for example when its activity is finishing.
+     */
+    public void clearSpilledSavedState() {
+        if (mSpillDirectory != null) {
+            for (int i=0; i<mSpillIds.size(); i++) {
+                deleteInBackground(getSpillFile(mSpillIds.keyAt(i)));
+            }
+        }
+        mSpillIds.clear();
+        mSpillWrites.clear();
+        mSpillReadAhead.clear();
+        mSpillReads.clear();
+    }
+
     @Override
     public void startUpdate(ViewGroup container) {
     }
@@ -104,11 +260,11 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
 
         Fragment fragment = getItem(position);
         if (DEBUG) Log.v(TAG, "Adding item #" + position + ": f=" + fragment);
-        if (mSavedState.size() > position) {
-            Fragment.SavedState fss = mSavedState.get(position);
-            if (fss != null) {
-                fragment.setInitialSavedState(fss);
-            }
+        // The state is only needed until the fragment is live again, at which
+        // point the fragment manager is responsible for it.
+        Fragment.SavedState fss = takeSavedState(position);
+        if (fss != null) {
+            fragment.setInitialSavedState(fss);
         }
         while (mFragments.size() <= position) {
             mFragments.add(null);
@@ -130,10 +286,12 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
         }
         if (DEBUG) Log.v(TAG, "Removing item #" + position + ": f=" + object
                 + " v=" + ((Fragment)object).getView());
-        while (mSavedState.size() <= position) {
-            mSavedState.add(null);
+        Fragment.SavedState fss = mFragmentManager.saveFragmentInstanceState(fragment);
+        if (fss != null) {
+            putSavedState(position, fss);
+        } else {
+            removeSavedState(position);
         }
-        mSavedState.set(position, mFragmentManager.saveFragmentInstanceState(fragment));
         mFragments.set(position, null);
 
         mCurTransaction.remove(fragment);
@@ -153,6 +311,7 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
             }
             mCurrentPrimaryItem = fragment;
         }
+        readAheadSpilledStates(position);
     }
 
     @Override
@@ -173,11 +332,29 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
     public Parcelable saveState() {
         Bundle state = null;
         if (mSavedState.size() > 0) {
+            Map<Integer, SavedStateEntry> entries = mSavedState.snapshot();
+            int count = 0;
+            for (Integer position : entries.keySet()) {
+                count = Math.max(count, position + 1);
+            }
             state = new Bundle();
-            Fragment.SavedState[] fss = new Fragment.SavedState[mSavedState.size()];
-            mSavedState.toArray(fss);
+            Fragment.SavedState[] fss = new Fragment.SavedState[count];
+            for (Map.Entry<Integer, SavedStateEntry> entry : entries.entrySet()) {
+                fss[entry.getKey()] = entry.getValue().mState;
+            }
             state.putParcelableArray("states", fss);
         }
+        if (mSpillIds.size() > 0) {
+            if (state == null) {
+                state = new Bundle();
+            }
+            int[] spilled = new int[mSpillIds.size()];
+            for (int i=0; i<spilled.length; i++) {
+                spilled[i] = mSpillIds.keyAt(i);
+            }
+            state.putIntArray("spilled", spilled);
+            state.putString("spillPrefix", mSpillPrefix);
+        }
         for (int i=0; i<mFragments.size(); i++) {
             Fragment f = mFragments.get(i);
             if (f != null && f.isAdded()) {
@@ -197,11 +374,30 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
             Bundle bundle = (Bundle)state;
             bundle.setClassLoader(loader);
             Parcelable[] fss = bundle.getParcelableArray("states");
-            mSavedState.clear();
+            int[] spilled = bundle.getIntArray("spilled");
+            String spillPrefix = bundle.getString("spillPrefix");
+            mSavedState = new SavedStateCache(mMaxSavedStateBytes);
+            if (mSpillPrefix != null && !mSpillPrefix.equals(spillPrefix)) {
+                // The files spilled so far are not part of the restored state.
+                clearSpilledSavedState();
+            }
+            mSpillIds.clear();
+            mSpillWrites.clear();
+            mSpillReadAhead.clear();
+            mSpillReads.clear();
             mFragments.clear();
+            if (spilled != null) {
+                mSpillPrefix = spillPrefix;
+                for (int i=0; i<spilled.length; i++) {
+                    mSpillIds.put(spilled[i], mNextSpillId++);
+                }
+                deleteUnusedSpillFiles();
+            }
             if (fss != null) {
                 for (int i=0; i<fss.length; i++) {
-                    mSavedState.add((Fragment.SavedState)fss[i]);
+                    if (fss[i] != null) {
+                        putSavedState(i, (Fragment.SavedState)fss[i]);
+                    }
                 }
             }
             Iterable<String> keys = bundle.keySet();
@@ -222,4 +418,273 @@ public abstract class FragmentStatePagerAdapter extends PagerAdapter {
             }
         }
     }
+
+    private void putSavedState(int position, Fragment.SavedState state) {
+        int size = 1;
+        if (mMaxSavedStateBytes != UNLIMITED) {
+            Parcel parcel = Parcel.obtain();
+            state.writeToParcel(parcel, 0);
+            size = Math.max(1, parcel.dataSize());
+            parcel.recycle();
+        }
+        // A newer state replaces the one that was spilled.
+        discardSpilledState(position);
+        mSavedState.put(position, new SavedStateEntry(state, size));
+    }
+
+    private Fragment.SavedState takeSavedState(int position) {
+        SavedStateEntry entry = mSavedState.remove(position);
+        if (entry != null) {
+            return entry.mState;
+        }
+        return unspillSavedState(position);
+    }
+
+    private void removeSavedState(int position) {
+        mSavedState.remove(position);
+        discardSpilledState(position);
+    }
+
+    private void discardSpilledState(int position) {
+        if (mSpillIds.indexOfKey(position) < 0) {
+            return;
+        }
+        mSpillIds.delete(position);
+        mSpillWrites.remove(position);
+        mSpillReadAhead.remove(position);
+        if (mSpillDirectory != null) {
+            deleteInBackground(getSpillFile(position));
+        }
+    }
+
+    static synchronized Executor getSpillExecutor() {
+        if (sSpillExecutor == null) {
+            sSpillExecutor = Executors.newSingleThreadExecutor();
+        }
+        return sSpillExecutor;
+    }
+
+    private static void deleteInBackground(final File file) {
+        getSpillExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                file.delete();
+            }
+        });
+    }
+
+    private File getSpillFile(int position) {
+        return new File(mSpillDirectory, mSpillPrefix + position);
+    }
+
+    /**
+     * Deletes the files spilled under our prefix, for example after the state
+     * referencing them was saved, that the restored state doesn't reference.
+     */
+    private void deleteUnusedSpillFiles() {
+        if (mSpillDirectory == null || mSpillPrefix == null) {
+            return;
+        }
+        final File directory = mSpillDirectory;
+        final String prefix = mSpillPrefix;
+        final SparseBooleanArray referenced = new SparseBooleanArray();
+        for (int i=0; i<mSpillIds.size(); i++) {
+            referenced.put(mSpillIds.keyAt(i), true);
+        }
+        getSpillExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String[] names = directory.list();
+                if (names == null) {
+                    return;
+                }
+                for (String name : names) {
+                    if (!name.startsWith(prefix)) {
+                        continue;
+                    }
+                    try {
+                        int position = Integer.parseInt(name.substring(prefix.length()));
+                        if (referenced.get(position)) {
+                            continue;
+                        }
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    new File(directory, name).delete();
+                }
+            }
+        });
+    }
+
+    void spillSavedState(final int position, Fragment.SavedState state) {
+        if (mSpillDirectory == null) {
+            if (DEBUG) Log.v(TAG, "Dropping saved state #" + position);
+            return;
+        }
+        final byte[] data;
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            data = parcel.marshall();
+        } catch (RuntimeException e) {
+            // Parcels holding file descriptors can't be marshalled.
+            Log.w(TAG, "Unable to spill saved state #" + position, e);
+            return;
+        } finally {
+            parcel.recycle();
+        }
+        if (mSpillPrefix == null) {
+            mSpillPrefix = "page-" + UUID.randomUUID() + "-";
+        }
+        final int spillId = mNextSpillId++;
+        mSpillIds.put(position, spillId);
+        // Kept in memory until written, in case the page is visited before then.
+        mSpillWrites.put(position, data);
+        final File directory = mSpillDirectory;
+        final File file = getSpillFile(position);
+        getSpillExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean written = writeSpillFile(directory, file, data);
+                if (DEBUG && written) {
+                    Log.v(TAG, "Spilled saved state #" + position + ": " + data.length);
+                }
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mSpillIds.get(position) != spillId) {
+                            return;
+                        }
+                        mSpillWrites.remove(position);
+                        if (!written) {
+                            mSpillIds.delete(position);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private Fragment.SavedState unspillSavedState(int position) {
+        if (mSpillDirectory == null || mSpillIds.indexOfKey(position) < 0) {
+            return null;
+        }
+        final File file = getSpillFile(position);
+        byte[] data = mSpillWrites.get(position);
+        if (data == null) {
+            data = mSpillReadAhead.get(position);
+        }
+        if (data == null) {
+            // Not read ahead, for example after a jump to a distant page.
+            data = readSpillFile(file);
+        }
+        mSpillIds.delete(position);
+        mSpillWrites.remove(position);
+        mSpillReadAhead.remove(position);
+        deleteInBackground(file);
+        if (data == null) {
+            return null;
+        }
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            return new Fragment.SavedState(parcel, null);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Reads back in the background the spilled state of the pages around the
+     * primary item, and forgets the states read back for pages further away.
+     */
+    private void readAheadSpilledStates(int primaryPosition) {
+        for (int i=mSpillReadAhead.size()-1; i>=0; i--) {
+            if (Math.abs(mSpillReadAhead.keyAt(i) - primaryPosition) > SPILL_READ_AHEAD) {
+                mSpillReadAhead.removeAt(i);
+            }
+        }
+        if (mSpillDirectory == null) {
+            return;
+        }
+        for (int i=0; i<mSpillIds.size(); i++) {
+            final int position = mSpillIds.keyAt(i);
+            final int spillId = mSpillIds.valueAt(i);
+            if (Math.abs(position - primaryPosition) > SPILL_READ_AHEAD
+                    || mSpillWrites.get(position) != null
+                    || mSpillReadAhead.get(position) != null
+                    || mSpillReads.get(position) == spillId) {
+                continue;
+            }
+            mSpillReads.put(position, spillId);
+            final File file = getSpillFile(position);
+            getSpillExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final byte[] data = readSpillFile(file);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mSpillReads.get(position) == spillId) {
+                                mSpillReads.delete(position);
+                            }
+                            if (data != null && mSpillIds.get(position) == spillId) {
+                                mSpillReadAhead.put(position, data);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    private static boolean writeSpillFile(File directory, File file, byte[] data) {
+        FileOutputStream out = null;
+        try {
+            directory.mkdirs();
+            out = new FileOutputStream(file);
+            out.write(data);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + file, e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static byte[] readSpillFile(File file) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                read += count;
+            }
+            return data;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + file, e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
 }
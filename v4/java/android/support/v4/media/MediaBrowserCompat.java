@@ -60,6 +60,24 @@ public final class MediaBrowserCompat {
     public static final int MSG_ON_CONNECT_FAILED = 2;
     public static final int MSG_ON_LOAD_CHILDREN = 3;
 
+    /**
+     * Used as an int extra field to denote the page number to subscribe.
+     * The value of {@code EXTRA_PAGE} should be greater than or equal to 0.
+     *
+     * @see #subscribe(String, Bundle, SubscriptionCallback)
+     * @see #EXTRA_PAGE_SIZE
+     */
+    public static final String EXTRA_PAGE = "android.media.browse.extra.PAGE";
+
+    /**
+     * Used as an int extra field to denote the number of media items in a page.
+     * The value of {@code EXTRA_PAGE_SIZE} should be greater than or equal to 1.
+     *
+     * @see #subscribe(String, Bundle, SubscriptionCallback)
+     * @see #EXTRA_PAGE
+     */
+    public static final String EXTRA_PAGE_SIZE = "android.media.browse.extra.PAGE_SIZE";
+
     private final MediaBrowserImpl mImpl;
 
     /**
@@ -174,21 +192,64 @@ public final class MediaBrowserCompat {
      * @param callback The callback to receive the list of children.
      */
     public void subscribe(@NonNull String parentId, @NonNull SubscriptionCallback callback) {
-        mImpl.subscribe(parentId, callback);
+        mImpl.subscribe(parentId, null, callback);
+    }
+
+    /**
+     * Queries with service-specific arguments for information about the media items
+     * that are contained within the specified id and subscribes to receive updates
+     * when they change.
+     * <p>
+     * Passing {@link #EXTRA_PAGE} and {@link #EXTRA_PAGE_SIZE} in the options loads
+     * only one page of the children, so that large folders can be fetched lazily
+     * with one subscription per page. Each page is delivered to
+     * {@link SubscriptionCallback#onChildrenLoaded(String, List, Bundle)} together
+     * with the options it was subscribed with.
+     * </p>
+     * <p>
+     * If the id is already subscribed with the same options then the new callback
+     * will replace the previous one and the child data will be reloaded.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose list of children
+     *            will be subscribed.
+     * @param options A bundle of service-specific arguments to send to the media
+     *            browse service, or null to load the whole list of children.
+     * @param callback The callback to receive the list of children.
+     */
+    public void subscribe(@NonNull String parentId, @Nullable Bundle options,
+            @NonNull SubscriptionCallback callback) {
+        mImpl.subscribe(parentId, options == null ? null : new Bundle(options), callback);
     }
 
     /**
      * Unsubscribes for changes to the children of the specified media id.
      * <p>
      * The query callback will no longer be invoked for results associated with
-     * this id once this method returns.
+     * this id once this method returns. This removes the subscriptions for all
+     * pages of the children.
      * </p>
      *
      * @param parentId The id of the parent media item whose list of children
      * will be unsubscribed.
      */
     public void unsubscribe(@NonNull String parentId) {
-        mImpl.unsubscribe(parentId);
+        mImpl.unsubscribe(parentId, null);
+    }
+
+    /**
+     * Unsubscribes for changes to the page of children of the specified media id
+     * that was subscribed with the given options.
+     *
+     * @param parentId The id of the parent media item whose list of children
+     * will be unsubscribed.
+     * @param options The options the page was subscribed with.
+     */
+    public void unsubscribe(@NonNull String parentId, @NonNull Bundle options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options are null");
+        }
+        mImpl.unsubscribe(parentId, options);
     }
 
     /**
@@ -402,6 +463,18 @@ public final class MediaBrowserCompat {
                                      @NonNull List<MediaItem> children) {
         }
 
+        /**
+         * Called when the list of children is loaded or updated for a subscription
+         * made with options, such as a single page of the children.
+         *
+         * @param parentId The media id of the parent media item.
+         * @param children The children which were loaded.
+         * @param options The options the children were subscribed with.
+         */
+        public void onChildrenLoaded(@NonNull String parentId, @NonNull List<MediaItem> children,
+                @NonNull Bundle options) {
+        }
+
         /**
          * Called when the id doesn't exist or other errors in subscribing.
          * <p>
@@ -415,6 +488,16 @@ public final class MediaBrowserCompat {
         public void onError(@NonNull String parentId) {
         }
 
+        /**
+         * Called when the id doesn't exist or other errors in subscribing with options.
+         *
+         * @param parentId The media id of the parent media item whose children could
+         * not be loaded.
+         * @param options The options the children were subscribed with.
+         */
+        public void onError(@NonNull String parentId, @NonNull Bundle options) {
+        }
+
         private class StubApi21 implements MediaBrowserCompatApi21.SubscriptionCallback {
             @Override
             public void onChildrenLoaded(@NonNull String parentId, @NonNull List<Parcel> children) {
@@ -467,8 +550,9 @@ public final class MediaBrowserCompat {
         @NonNull String getRoot();
         @Nullable Bundle getExtras();
         @NonNull MediaSessionCompat.Token getSessionToken();
-        void subscribe(@NonNull String parentId, @NonNull SubscriptionCallback callback);
-        void unsubscribe(@NonNull String parentId);
+        void subscribe(@NonNull String parentId, @Nullable Bundle options,
+                @NonNull SubscriptionCallback callback);
+        void unsubscribe(@NonNull String parentId, @Nullable Bundle options);
         void getItem(final @NonNull String mediaId, @NonNull final ItemCallback cb);
     }
 
@@ -654,7 +738,8 @@ public final class MediaBrowserCompat {
             return mMediaSessionToken;
         }
 
-        public void subscribe(@NonNull String parentId, @NonNull SubscriptionCallback callback) {
+        public void subscribe(@NonNull String parentId, Bundle options,
+                @NonNull SubscriptionCallback callback) {
             // Check arguments.
             if (parentId == null) {
                 throw new IllegalArgumentException("parentId is null");
@@ -665,18 +750,17 @@ public final class MediaBrowserCompat {
 
             // Update or create the subscription.
             Subscription sub = mSubscriptions.get(parentId);
-            boolean newSubscription = sub == null;
-            if (newSubscription) {
-                sub = new Subscription(parentId);
+            if (sub == null) {
+                sub = new Subscription();
                 mSubscriptions.put(parentId, sub);
             }
-            sub.callback = callback;
+            sub.putCallback(options, callback);
 
             // If we are connected, tell the service that we are watching.  If we aren't
             // connected, the service will be told when we connect.
             if (mState == CONNECT_STATE_CONNECTED) {
                 try {
-                    mServiceBinderWrapper.addSubscription(parentId);
+                    mServiceBinderWrapper.addSubscription(parentId, options);
                 } catch (RemoteException ex) {
                     // Process is crashing.  We will disconnect, and upon reconnect we will
                     // automatically reregister. So nothing to do here.
@@ -685,19 +769,25 @@ public final class MediaBrowserCompat {
             }
         }
 
-        public void unsubscribe(@NonNull String parentId) {
+        public void unsubscribe(@NonNull String parentId, Bundle options) {
             // Check arguments.
             if (TextUtils.isEmpty(parentId)) {
                 throw new IllegalArgumentException("parentId is empty.");
             }
 
             // Remove from our list.
-            final Subscription sub = mSubscriptions.remove(parentId);
+            final Subscription sub = mSubscriptions.get(parentId);
+            if (sub == null || (options != null && !sub.removeCallback(options))) {
+                return;
+            }
+            if (options == null || sub.isEmpty()) {
+                mSubscriptions.remove(parentId);
+            }
 
             // Tell the service if necessary.
-            if (mState == CONNECT_STATE_CONNECTED && sub != null) {
+            if (mState == CONNECT_STATE_CONNECTED) {
                 try {
-                    mServiceBinderWrapper.removeSubscription(parentId);
+                    mServiceBinderWrapper.removeSubscription(parentId, options);
                 } catch (RemoteException ex) {
                     // Process is crashing.  We will disconnect, and upon reconnect we will
                     // automatically reregister. So nothing to do here.
@@ -797,9 +887,13 @@ public final class MediaBrowserCompat {
 
             // we may receive some subscriptions before we are connected, so re-subscribe
             // everything now
-            for (String id : mSubscriptions.keySet()) {
+            for (int i = 0, size = mSubscriptions.size(); i < size; i++) {
+                final String id = mSubscriptions.keyAt(i);
+                final Subscription sub = mSubscriptions.valueAt(i);
                 try {
-                    mServiceBinderWrapper.addSubscription(id);
+                    for (int j = 0, count = sub.mOptionsList.size(); j < count; j++) {
+                        mServiceBinderWrapper.addSubscription(id, sub.mOptionsList.get(j));
+                    }
                 } catch (RemoteException ex) {
                     // Process is crashing.  We will disconnect, and upon reconnect we will
                     // automatically reregister. So nothing to do here.
@@ -830,7 +924,7 @@ public final class MediaBrowserCompat {
         }
 
         private final void onLoadChildren(final Messenger callback, final String parentId,
-                final List list) {
+                final List list, final Bundle options) {
         // Check that there hasn't been a disconnect or a different ServiceConnection.
         if (!isCurrent(callback, "onLoadChildren")) {
             return;
@@ -854,7 +948,7 @@ public final class MediaBrowserCompat {
         }
 
         // Tell the app.
-        subscription.callback.onChildrenLoaded(parentId, data);
+        subscription.deliverChildren(parentId, data, options);
         }
 
         /**
@@ -905,13 +999,17 @@ public final class MediaBrowserCompat {
                         mCallbacksMessenger);
             }
 
-            void addSubscription(String parentId) throws RemoteException {
-                sendRequest(MediaBrowserServiceCompat.MSG_ADD_SUBSCRIPTION, parentId, null,
+            void addSubscription(String parentId, Bundle options) throws RemoteException {
+                Bundle data = new Bundle();
+                data.putBundle(MediaBrowserServiceCompat.DATA_OPTIONS, options);
+                sendRequest(MediaBrowserServiceCompat.MSG_ADD_SUBSCRIPTION, parentId, data,
                         mCallbacksMessenger);
             }
 
-            void removeSubscription(String parentId) throws RemoteException {
-                sendRequest(MediaBrowserServiceCompat.MSG_REMOVE_SUBSCRIPTION, parentId, null,
+            void removeSubscription(String parentId, Bundle options) throws RemoteException {
+                Bundle data = new Bundle();
+                data.putBundle(MediaBrowserServiceCompat.DATA_OPTIONS, options);
+                sendRequest(MediaBrowserServiceCompat.MSG_REMOVE_SUBSCRIPTION, parentId, data,
                         mCallbacksMessenger);
             }
 
@@ -1035,25 +1133,19 @@ public final class MediaBrowserCompat {
                     case MSG_ON_LOAD_CHILDREN:
                         onLoadChildren(mCallbacksMessenger,  (String) msg.obj,
                                 data.getParcelableArrayList(
-                                        MediaBrowserServiceCompat.DATA_MEDIA_ITEM_LIST));
+                                        MediaBrowserServiceCompat.DATA_MEDIA_ITEM_LIST),
+                                data.getBundle(MediaBrowserServiceCompat.DATA_OPTIONS));
                         break;
                     default:
                         super.handleMessage(msg);
                 }
             }
         }
-
-        private static class Subscription {
-            final String id;
-            SubscriptionCallback callback;
-
-            Subscription(String id) {
-                this.id = id;
-            }
-        }
     }
 
     static class MediaBrowserImplApi21 implements MediaBrowserImpl {
+        private final ArrayMap<String,Subscription> mSubscriptions = new ArrayMap<>();
+        private final Handler mHandler = new Handler();
         Object mBrowserObj;
 
         public MediaBrowserImplApi21(Context context, ComponentName serviceComponent,
@@ -1102,14 +1194,43 @@ public final class MediaBrowserCompat {
         }
 
         @Override
-        public void subscribe(@NonNull String parentId, @NonNull SubscriptionCallback callback) {
-            MediaBrowserCompatApi21.subscribe(
-                    mBrowserObj, parentId, callback.mSubscriptionCallbackObj);
+        public void subscribe(@NonNull final String parentId, final Bundle options,
+                @NonNull SubscriptionCallback callback) {
+            Subscription sub = mSubscriptions.get(parentId);
+            if (sub == null) {
+                sub = new Subscription();
+                mSubscriptions.put(parentId, sub);
+                sub.putCallback(options, callback);
+                // The framework can't pass options to the service, so every page of a parent
+                // shares one subscription to the whole list and is cut out of it on delivery.
+                MediaBrowserCompatApi21.subscribe(mBrowserObj, parentId,
+                        sub.mSubscriptionCallbackObj);
+                return;
+            }
+            sub.putCallback(options, callback);
+            // Subscribing again would make the service send the whole list once more, so
+            // the new callback gets the children already loaded, if any.
+            final Subscription subscription = sub;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mSubscriptions.get(parentId) == subscription) {
+                        subscription.deliverLoadedChildren(parentId, options);
+                    }
+                }
+            });
         }
 
         @Override
-        public void unsubscribe(@NonNull String parentId) {
-            MediaBrowserCompatApi21.unsubscribe(mBrowserObj, parentId);
+        public void unsubscribe(@NonNull String parentId, Bundle options) {
+            final Subscription sub = mSubscriptions.get(parentId);
+            if (sub == null || (options != null && !sub.removeCallback(options))) {
+                return;
+            }
+            if (options == null || sub.isEmpty()) {
+                mSubscriptions.remove(parentId);
+                MediaBrowserCompatApi21.unsubscribe(mBrowserObj, parentId);
+            }
         }
 
         @Override
@@ -1118,4 +1239,109 @@ public final class MediaBrowserCompat {
             cb.onItemLoaded(null);
         }
     }
+
+    /**
+     * The callbacks subscribed to the children of one parent id, one for each set of options
+     * the children were subscribed with. A null options bundle stands for the whole list.
+     * <p>
+     * On API 21+ this is itself the callback of the framework subscription, which only
+     * delivers whole lists, and cuts each subscribed page out of them.
+     * </p>
+     */
+    static class Subscription extends SubscriptionCallback {
+        final List<Bundle> mOptionsList = new ArrayList<>();
+        final List<SubscriptionCallback> mCallbacks = new ArrayList<>();
+        // The whole list last delivered by the framework, or null if not loaded yet.
+        List<MediaItem> mLoadedChildren;
+
+        boolean isEmpty() {
+            return mCallbacks.isEmpty();
+        }
+
+        int indexOf(Bundle options) {
+            for (int i = 0, size = mOptionsList.size(); i < size; i++) {
+                if (MediaBrowserCompatUtils.areSameOptions(mOptionsList.get(i), options)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void putCallback(Bundle options, SubscriptionCallback callback) {
+            final int index = indexOf(options);
+            if (index >= 0) {
+                mCallbacks.set(index, callback);
+            } else {
+                mOptionsList.add(options);
+                mCallbacks.add(callback);
+            }
+        }
+
+        boolean removeCallback(Bundle options) {
+            final int index = indexOf(options);
+            if (index < 0) {
+                return false;
+            }
+            mOptionsList.remove(index);
+            mCallbacks.remove(index);
+            return true;
+        }
+
+        void deliverChildren(String parentId, List<MediaItem> children, Bundle options) {
+            final int index = indexOf(options);
+            if (index < 0) {
+                return;
+            }
+            final SubscriptionCallback callback = mCallbacks.get(index);
+            if (options == null) {
+                callback.onChildrenLoaded(parentId, children);
+            } else {
+                callback.onChildrenLoaded(parentId, children, options);
+            }
+        }
+
+        /**
+         * Delivers the page selected by {@code options} out of the children loaded last, if
+         * the children were loaded and the page is still subscribed.
+         */
+        void deliverLoadedChildren(String parentId, Bundle options) {
+            if (mLoadedChildren != null) {
+                deliverChildren(parentId, options == null ? mLoadedChildren
+                        : MediaBrowserCompatUtils.applyOptions(mLoadedChildren, options), options);
+            }
+        }
+
+        @Override
+        public void onChildrenLoaded(@NonNull String parentId,
+                @NonNull List<MediaItem> children) {
+            mLoadedChildren = children;
+            // Copy, since a callback may unsubscribe while being called.
+            final List<Bundle> optionsList = new ArrayList<>(mOptionsList);
+            final List<SubscriptionCallback> callbacks = new ArrayList<>(mCallbacks);
+            for (int i = 0, size = callbacks.size(); i < size; i++) {
+                final Bundle options = optionsList.get(i);
+                if (options == null || children == null) {
+                    callbacks.get(i).onChildrenLoaded(parentId, children);
+                } else {
+                    callbacks.get(i).onChildrenLoaded(parentId,
+                            MediaBrowserCompatUtils.applyOptions(children, options), options);
+                }
+            }
+        }
+
+        @Override
+        public void onError(@NonNull String parentId) {
+            mLoadedChildren = null;
+            final List<Bundle> optionsList = new ArrayList<>(mOptionsList);
+            final List<SubscriptionCallback> callbacks = new ArrayList<>(mCallbacks);
+            for (int i = 0, size = callbacks.size(); i < size; i++) {
+                final Bundle options = optionsList.get(i);
+                if (options == null) {
+                    callbacks.get(i).onError(parentId);
+                } else {
+                    callbacks.get(i).onError(parentId, options);
+                }
+            }
+        }
+    }
 }
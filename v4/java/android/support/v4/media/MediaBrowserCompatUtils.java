@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media;
+
+import android.os.Bundle;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helpers for the paging options of media browser subscriptions.
+ */
+class MediaBrowserCompatUtils {
+    /**
+     * Returns whether the two option bundles select the same page. A null bundle selects the
+     * whole list of children.
+     */
+    static boolean areSameOptions(Bundle options1, Bundle options2) {
+        if (options1 == options2) {
+            return true;
+        }
+        return getPage(options1) == getPage(options2)
+                && getPageSize(options1) == getPageSize(options2);
+    }
+
+    /**
+     * Cuts the page selected by {@code options} out of the given list of children. Returns an
+     * empty list if the page lies beyond the end of the list, and the list itself if the
+     * options don't select a page.
+     */
+    static List<MediaItem> applyOptions(List<MediaItem> list, Bundle options) {
+        final int page = getPage(options);
+        final int pageSize = getPageSize(options);
+        if (page == -1 && pageSize == -1) {
+            return list;
+        }
+        final int fromIndex = pageSize * page;
+        if (page < 0 || pageSize < 1 || fromIndex >= list.size()) {
+            return Collections.emptyList();
+        }
+        final int toIndex = Math.min(fromIndex + pageSize, list.size());
+        return list.subList(fromIndex, toIndex);
+    }
+
+    private static int getPage(Bundle options) {
+        return options == null ? -1 : options.getInt(MediaBrowserCompat.EXTRA_PAGE, -1);
+    }
+
+    private static int getPageSize(Bundle options) {
+        return options == null ? -1 : options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, -1);
+    }
+}
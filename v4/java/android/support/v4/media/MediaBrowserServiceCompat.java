@@ -39,7 +39,7 @@ import android.util.Log;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -71,6 +71,7 @@ public abstract class MediaBrowserServiceCompat extends Service {
     public static final String DATA_MEDIA_SESSION_TOKEN = "data_media_session_token";
     public static final String DATA_EXTRAS = "data_extras";
     public static final String DATA_MEDIA_ITEM_LIST = "data_media_item_list";
+    public static final String DATA_OPTIONS = "data_options";
 
     public static final int MSG_CONNECT = 1;
     public static final int MSG_DISCONNECT = 2;
@@ -149,10 +150,12 @@ public abstract class MediaBrowserServiceCompat extends Service {
                     break;
                 case MSG_ADD_SUBSCRIPTION:
                     mServiceImpl.addSubscription((String) msg.obj,
+                            msg.getData().getBundle(DATA_OPTIONS),
                             new ServiceCallbacksCompat(msg.replyTo));
                     break;
                 case MSG_REMOVE_SUBSCRIPTION:
                     mServiceImpl.removeSubscription((String) msg.obj,
+                            msg.getData().getBundle(DATA_OPTIONS),
                             new ServiceCallbacksCompat(msg.replyTo));
                     break;
                 case MSG_GET_MEDIA_ITEM:
@@ -185,7 +188,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
         Bundle rootHints;
         ServiceCallbacks callbacks;
         BrowserRoot root;
-        HashSet<String> subscriptions = new HashSet();
+        // The options of each subscribed page by parent id, null standing for the whole list.
+        HashMap<String, List<Bundle>> subscriptions = new HashMap();
     }
 
     /**
@@ -205,6 +209,7 @@ public abstract class MediaBrowserServiceCompat extends Service {
         private Object mDebug;
         private boolean mDetachCalled;
         private boolean mSendResultCalled;
+        private boolean mOptionsNotHandled;
 
         Result(Object debug) {
             mDebug = debug;
@@ -241,6 +246,18 @@ public abstract class MediaBrowserServiceCompat extends Service {
             return mDetachCalled || mSendResultCalled;
         }
 
+        /**
+         * Marks the result as not honoring the options it was requested with, so that
+         * they need to be applied to it before it is sent.
+         */
+        void setOptionsNotHandled(boolean notHandled) {
+            mOptionsNotHandled = notHandled;
+        }
+
+        boolean isOptionsNotHandled() {
+            return mOptionsNotHandled;
+        }
+
         /**
          * Called when the result is sent, after assertions about not being called twice
          * have happened.
@@ -318,7 +335,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
         }
 
 
-        public void addSubscription(final String id, final ServiceCallbacks callbacks) {
+        public void addSubscription(final String id, final Bundle options,
+                final ServiceCallbacks callbacks) {
             mHandler.postOrRun(new Runnable() {
                 @Override
                 public void run() {
@@ -332,12 +350,13 @@ public abstract class MediaBrowserServiceCompat extends Service {
                         return;
                     }
 
-                    MediaBrowserServiceCompat.this.addSubscription(id, connection);
+                    MediaBrowserServiceCompat.this.addSubscription(id, options, connection);
                 }
             });
         }
 
-        public void removeSubscription(final String id, final ServiceCallbacks callbacks) {
+        public void removeSubscription(final String id, final Bundle options,
+                final ServiceCallbacks callbacks) {
             mHandler.postOrRun(new Runnable() {
                 @Override
                 public void run() {
@@ -349,7 +368,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
                                 + id);
                         return;
                     }
-                    if (!connection.subscriptions.remove(id)) {
+                    if (!MediaBrowserServiceCompat.this.removeSubscription(
+                            id, options, connection)) {
                         Log.w(TAG, "removeSubscription called for " + id
                                 + " which is not subscribed");
                     }
@@ -393,13 +413,13 @@ public abstract class MediaBrowserServiceCompat extends Service {
         @Override
         public void addSubscription(
                 final String id, final MediaBrowserServiceCompatApi21.ServiceCallbacks callbacks) {
-            mServiceImpl.addSubscription(id, new ServiceCallbacksApi21(callbacks));
+            mServiceImpl.addSubscription(id, null, new ServiceCallbacksApi21(callbacks));
         }
 
         @Override
         public void removeSubscription(final String id,
                 final MediaBrowserServiceCompatApi21.ServiceCallbacks callbacks) {
-            mServiceImpl.removeSubscription(id, new ServiceCallbacksApi21(callbacks));
+            mServiceImpl.removeSubscription(id, null, new ServiceCallbacksApi21(callbacks));
         }
 
         @Override
@@ -419,8 +439,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
         void onConnect(String root, MediaSessionCompat.Token session, Bundle extras)
                 throws RemoteException;
         void onConnectFailed() throws RemoteException;
-        void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list)
-                throws RemoteException;
+        void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list,
+                Bundle options) throws RemoteException;
     }
 
     private class ServiceCallbacksCompat implements ServiceCallbacks {
@@ -446,11 +466,12 @@ public abstract class MediaBrowserServiceCompat extends Service {
             sendRequest(MediaBrowserCompat.MSG_ON_CONNECT_FAILED, null, null);
         }
 
-        public void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list)
-                throws RemoteException {
+        public void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list,
+                Bundle options) throws RemoteException {
             Bundle data = new Bundle();
             data.putParcelableArrayList(DATA_MEDIA_ITEM_LIST,
                     list instanceof ArrayList ? (ArrayList) list : new ArrayList<>(list));
+            data.putBundle(DATA_OPTIONS, options);
             sendRequest(MediaBrowserCompat.MSG_ON_LOAD_CHILDREN, mediaId, data);
         }
 
@@ -483,8 +504,9 @@ public abstract class MediaBrowserServiceCompat extends Service {
             mCallbacks.onConnectFailed();
         }
 
-        public void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list)
-                throws RemoteException {
+        public void onLoadChildren(String mediaId, List<MediaBrowserCompat.MediaItem> list,
+                Bundle options) throws RemoteException {
+            // Framework browsers only subscribe to whole lists, so there are no options here.
             List<Parcel> parcelList = null;
             if (list != null) {
                 parcelList = new ArrayList<>();
@@ -558,6 +580,33 @@ public abstract class MediaBrowserServiceCompat extends Service {
     public abstract void onLoadChildren(@NonNull String parentId,
             @NonNull Result<List<MediaBrowserCompat.MediaItem>> result);
 
+    /**
+     * Called to get information about the children of a media item, for a
+     * subscription made with options such as {@link MediaBrowserCompat#EXTRA_PAGE}
+     * and {@link MediaBrowserCompat#EXTRA_PAGE_SIZE}.
+     * <p>
+     * Implementations must call {@link Result#sendResult result.sendResult}
+     * with the list of children that the options select, which for a paged
+     * subscription is only the requested page. Like the other variant,
+     * {@link Result#detach result.detach} may be called to load the page on
+     * another thread.
+     * </p><p>
+     * The default implementation calls {@link #onLoadChildren(String, Result)}
+     * and cuts the requested page out of the whole list it sends.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose children are to be
+     *            queried.
+     * @param result The Result to send the list of children to.
+     * @param options A bundle of service-specific arguments sent from the media
+     *            browser, never null.
+     */
+    public void onLoadChildren(@NonNull String parentId,
+            @NonNull Result<List<MediaBrowserCompat.MediaItem>> result, @NonNull Bundle options) {
+        result.setOptionsNotHandled(true);
+        onLoadChildren(parentId, result);
+    }
+
     /**
      * Called to get information about a specific media item.
      * <p>
@@ -636,8 +685,53 @@ public abstract class MediaBrowserServiceCompat extends Service {
             public void run() {
                 for (IBinder binder : mConnections.keySet()) {
                     ConnectionRecord connection = mConnections.get(binder);
-                    if (connection.subscriptions.contains(parentId)) {
-                        performLoadChildren(parentId, connection);
+                    List<Bundle> optionsList = connection.subscriptions.get(parentId);
+                    if (optionsList != null) {
+                        for (Bundle options : optionsList) {
+                            performLoadChildren(parentId, connection, options);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Notifies the connected media browsers that subscribed to the children of
+     * the specified parent id with the given options that those children have
+     * changed. Only those subscriptions fetch their content again.
+     * <p>
+     * With paged subscriptions this lets the service push each page to the
+     * browsers as soon as it becomes available, instead of reloading every
+     * subscribed page of a large folder.
+     * </p>
+     *
+     * @param parentId The id of the parent media item whose
+     * children changed.
+     * @param options The options the children were subscribed with, such as
+     * {@link MediaBrowserCompat#EXTRA_PAGE} and {@link MediaBrowserCompat#EXTRA_PAGE_SIZE}.
+     */
+    public void notifyChildrenChanged(@NonNull final String parentId,
+            @NonNull final Bundle options) {
+        if (parentId == null) {
+            throw new IllegalArgumentException("parentId cannot be null in notifyChildrenChanged");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("options cannot be null in notifyChildrenChanged");
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (IBinder binder : mConnections.keySet()) {
+                    ConnectionRecord connection = mConnections.get(binder);
+                    List<Bundle> optionsList = connection.subscriptions.get(parentId);
+                    if (optionsList == null) {
+                        continue;
+                    }
+                    for (Bundle subscribed : optionsList) {
+                        if (MediaBrowserCompatUtils.areSameOptions(subscribed, options)) {
+                            performLoadChildren(parentId, connection, subscribed);
+                        }
                     }
                 }
             }
@@ -665,12 +759,52 @@ public abstract class MediaBrowserServiceCompat extends Service {
     /**
      * Save the subscription and if it is a new subscription send the results.
      */
-    private void addSubscription(String id, ConnectionRecord connection) {
+    private void addSubscription(String id, Bundle options, ConnectionRecord connection) {
         // Save the subscription
-        connection.subscriptions.add(id);
+        List<Bundle> optionsList = connection.subscriptions.get(id);
+        if (optionsList == null) {
+            optionsList = new ArrayList<>();
+            connection.subscriptions.put(id, optionsList);
+        }
+        boolean subscribed = false;
+        for (Bundle subscribedOptions : optionsList) {
+            if (MediaBrowserCompatUtils.areSameOptions(subscribedOptions, options)) {
+                subscribed = true;
+                break;
+            }
+        }
+        if (!subscribed) {
+            optionsList.add(options);
+        }
 
         // send the results
-        performLoadChildren(id, connection);
+        performLoadChildren(id, connection, options);
+    }
+
+    /**
+     * Remove the subscription with the given options, or all subscriptions to the id if the
+     * options are null.
+     *
+     * @return Whether anything was subscribed.
+     */
+    private boolean removeSubscription(String id, Bundle options, ConnectionRecord connection) {
+        if (options == null) {
+            return connection.subscriptions.remove(id) != null;
+        }
+        List<Bundle> optionsList = connection.subscriptions.get(id);
+        if (optionsList == null) {
+            return false;
+        }
+        for (int i = 0; i < optionsList.size(); i++) {
+            if (MediaBrowserCompatUtils.areSameOptions(optionsList.get(i), options)) {
+                optionsList.remove(i);
+                if (optionsList.isEmpty()) {
+                    connection.subscriptions.remove(id);
+                }
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -678,7 +812,8 @@ public abstract class MediaBrowserServiceCompat extends Service {
      * <p>
      * Callers must make sure that this connection is still connected.
      */
-    private void performLoadChildren(final String parentId, final ConnectionRecord connection) {
+    private void performLoadChildren(final String parentId, final ConnectionRecord connection,
+            final Bundle options) {
         final Result<List<MediaBrowserCompat.MediaItem>> result
                 = new Result<List<MediaBrowserCompat.MediaItem>>(parentId) {
             @Override
@@ -695,8 +830,11 @@ public abstract class MediaBrowserServiceCompat extends Service {
                     return;
                 }
 
+                final List<MediaBrowserCompat.MediaItem> filteredList =
+                        options != null && isOptionsNotHandled()
+                                ? MediaBrowserCompatUtils.applyOptions(list, options) : list;
                 try {
-                    connection.callbacks.onLoadChildren(parentId, list);
+                    connection.callbacks.onLoadChildren(parentId, filteredList, options);
                 } catch (RemoteException ex) {
                     // The other side is in the process of crashing.
                     Log.w(TAG, "Calling onLoadChildren() failed for id=" + parentId
@@ -705,7 +843,11 @@ public abstract class MediaBrowserServiceCompat extends Service {
             }
         };
 
-        onLoadChildren(parentId, result);
+        if (options == null) {
+            onLoadChildren(parentId, result);
+        } else {
+            onLoadChildren(parentId, result, options);
+        }
 
         if (!result.isDone()) {
             throw new IllegalStateException("onLoadChildren must call detach() or sendResult()"
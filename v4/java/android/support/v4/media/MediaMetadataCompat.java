@@ -28,6 +28,7 @@ import android.util.Log;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
 import java.util.Set;
 
 /**
@@ -601,6 +602,7 @@ public final class MediaMetadataCompat implements Parcelable {
      */
     public static final class Builder {
         private final Bundle mBundle;
+        private int mMaxBitmapSize;
 
         /**
          * Create an empty Builder. Any field that should be included in the
@@ -767,10 +769,50 @@ public final class MediaMetadataCompat implements Parcelable {
                             + " key cannot be used to put a Bitmap");
                 }
             }
-            mBundle.putParcelable(key, value);
+            mBundle.putParcelable(key, scaleBitmap(value));
             return this;
         }
 
+        /**
+         * Set the maximum width and height of the bitmaps in the metadata. Larger
+         * bitmaps, including those already put into this builder, are scaled down
+         * to fit while keeping their aspect ratio. Since metadata is sent to every
+         * controller, this keeps artwork from costing megabytes per update.
+         *
+         * @param maxBitmapSize The maximum width and height in pixels, or 0 to
+         *            keep bitmaps at their original size, which is the default.
+         * @return The Builder to allow chaining
+         */
+        public Builder setMaxBitmapSize(int maxBitmapSize) {
+            if (maxBitmapSize < 0) {
+                throw new IllegalArgumentException("maxBitmapSize may not be negative");
+            }
+            mMaxBitmapSize = maxBitmapSize;
+            if (maxBitmapSize > 0) {
+                for (String key : new ArrayList<String>(mBundle.keySet())) {
+                    Object value = mBundle.get(key);
+                    if (value instanceof Bitmap) {
+                        mBundle.putParcelable(key, scaleBitmap((Bitmap) value));
+                    }
+                }
+            }
+            return this;
+        }
+
+        private Bitmap scaleBitmap(Bitmap bitmap) {
+            if (bitmap == null || mMaxBitmapSize == 0) {
+                return bitmap;
+            }
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            if (width <= mMaxBitmapSize && height <= mMaxBitmapSize) {
+                return bitmap;
+            }
+            final float scale = (float) mMaxBitmapSize / Math.max(width, height);
+            return Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)),
+                    Math.max(1, Math.round(height * scale)), true);
+        }
+
         /**
          * Creates a {@link MediaMetadataCompat} instance with the specified fields.
          *
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media.session;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.support.v4.media.MediaMetadataCompat;
+import android.support.v4.util.LruCache;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the artwork of metadata sent by a {@link MediaSessionCompat} with references to
+ * artwork the controller already received, and resolves them again on the controller side.
+ * This is only used on pre-Lollipop systems, for controllers that enabled it.
+ * <p>
+ * Every artwork bitmap that is sent is tagged with a hash of its contents. When the next
+ * metadata has artwork with the same contents, only the hash is sent and the controller takes
+ * the bitmap from its cache.
+ * </p>
+ */
+final class ArtworkReferences {
+    private static final String[] ARTWORK_KEYS = {
+            MediaMetadataCompat.METADATA_KEY_DISPLAY_ICON,
+            MediaMetadataCompat.METADATA_KEY_ART,
+            MediaMetadataCompat.METADATA_KEY_ALBUM_ART
+    };
+
+    private static final String KEY_PREFIX_HASH =
+            "android.support.v4.media.session.ARTWORK_HASH:";
+    private static final String KEY_PREFIX_REFERENCE =
+            "android.support.v4.media.session.ARTWORK_REFERENCE:";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ArtworkReferences() {
+    }
+
+    /**
+     * Returns a copy of the metadata to send where the artwork whose hash is in
+     * {@code sentHashes} is replaced by a reference, and the remaining artwork is tagged with
+     * its hash. The hashes of all the artwork of the metadata are added to {@code outHashes}.
+     *
+     * @param hashCache Cache of the hashes of immutable bitmaps, by instance.
+     */
+    static MediaMetadataCompat replaceSentArtwork(MediaMetadataCompat metadata,
+            Set<Long> sentHashes, Set<Long> outHashes, Map<Bitmap, Long> hashCache) {
+        if (metadata == null) {
+            return null;
+        }
+        MediaMetadataCompat result = null;
+        for (String key : ARTWORK_KEYS) {
+            final Bitmap bitmap = metadata.getBitmap(key);
+            if (bitmap == null) {
+                continue;
+            }
+            Long hash = hashCache.get(bitmap);
+            if (hash == null) {
+                hash = computeHash(bitmap);
+                if (!bitmap.isMutable()) {
+                    hashCache.put(bitmap, hash);
+                }
+            }
+            outHashes.add(hash);
+            if (result == null) {
+                result = new MediaMetadataCompat.Builder(metadata).build();
+            }
+            final Bundle bundle = result.getBundle();
+            if (sentHashes.contains(hash)) {
+                bundle.remove(key);
+                bundle.putLong(KEY_PREFIX_REFERENCE + key, hash);
+            } else {
+                bundle.putLong(KEY_PREFIX_HASH + key, hash);
+            }
+        }
+        return result == null ? metadata : result;
+    }
+
+    /**
+     * Returns a copy of the received metadata with the artwork references replaced by the
+     * bitmaps from the cache, and adds the artwork that was sent to the cache. Returns null
+     * if a referenced bitmap is no longer in the cache.
+     */
+    static MediaMetadataCompat resolveArtwork(MediaMetadataCompat metadata,
+            LruCache<Long, Bitmap> cache) {
+        if (metadata == null) {
+            return null;
+        }
+        MediaMetadataCompat result = null;
+        for (String key : ARTWORK_KEYS) {
+            final Bundle source = metadata.getBundle();
+            final String hashKey = KEY_PREFIX_HASH + key;
+            final String referenceKey = KEY_PREFIX_REFERENCE + key;
+            final boolean hasHash = source.containsKey(hashKey);
+            final boolean hasReference = source.containsKey(referenceKey);
+            if (!hasHash && !hasReference) {
+                continue;
+            }
+            if (result == null) {
+                result = new MediaMetadataCompat.Builder(metadata).build();
+            }
+            final Bundle bundle = result.getBundle();
+            if (hasReference) {
+                final Bitmap bitmap = cache.get(source.getLong(referenceKey));
+                if (bitmap == null) {
+                    return null;
+                }
+                bundle.remove(referenceKey);
+                bundle.putParcelable(key, bitmap);
+            } else {
+                bundle.remove(hashKey);
+                final Bitmap bitmap = metadata.getBitmap(key);
+                if (bitmap != null) {
+                    cache.put(source.getLong(hashKey), bitmap);
+                }
+            }
+        }
+        return result == null ? metadata : result;
+    }
+
+    private static long computeHash(Bitmap bitmap) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        // 64 bit FNV-1a over the size and the pixels
+        long hash = FNV_OFFSET_BASIS;
+        hash = (hash ^ width) * FNV_PRIME;
+        hash = (hash ^ height) * FNV_PRIME;
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                hash = (hash ^ row[x]) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+}
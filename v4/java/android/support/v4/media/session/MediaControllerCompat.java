@@ -18,6 +18,7 @@ package android.support.v4.media.session;
 
 import android.app.PendingIntent;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Bundle;
@@ -32,6 +33,7 @@ import android.support.v4.media.RatingCompat;
 import android.support.v4.media.VolumeProviderCompat;
 import android.support.v4.media.session.MediaSessionCompat.QueueItem;
 import android.support.v4.media.session.PlaybackStateCompat.CustomAction;
+import android.support.v4.util.LruCache;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.KeyEvent;
@@ -339,6 +341,10 @@ public final class MediaControllerCompat {
      * registered using {@link #registerCallback}
      */
     public static abstract class Callback implements IBinder.DeathRecipient {
+        // The number of artwork bitmaps kept to resolve references from the session, enough
+        // for the artwork of two metadata updates.
+        private static final int ARTWORK_CACHE_SIZE = 6;
+
         private final Object mCallbackObj;
         private MessageHandler mHandler;
 
@@ -462,6 +468,27 @@ public final class MediaControllerCompat {
         }
 
         private class StubCompat extends IMediaControllerCallback.Stub {
+            // The session this callback receives queue deltas and artwork references from,
+            // the local copy of its queue the deltas are applied to and the artwork that can
+            // be referenced. Oneway calls to this binder are delivered one at a time and in
+            // order.
+            private IMediaSession mSession;
+            private List<QueueItem> mQueue;
+            private int mQueueVersion = -1;
+            private final LruCache<Long, Bitmap> mArtworkCache =
+                    new LruCache<Long, Bitmap>(ARTWORK_CACHE_SIZE);
+
+            void enableQueueDeltas(IMediaSession session) throws RemoteException {
+                mSession = session;
+                mQueueVersion = -1;
+                mQueue = null;
+                session.setQueueDeltasEnabled(this, true);
+            }
+
+            void enableArtworkReferences(IMediaSession session) throws RemoteException {
+                mSession = session;
+                session.setArtworkReferencesEnabled(this, true);
+            }
 
             @Override
             public void onEvent(String event, Bundle extras) throws RemoteException {
@@ -480,7 +507,16 @@ public final class MediaControllerCompat {
 
             @Override
             public void onMetadataChanged(MediaMetadataCompat metadata) throws RemoteException {
-                mHandler.post(MessageHandler.MSG_UPDATE_METADATA, metadata, null);
+                MediaMetadataCompat resolved =
+                        ArtworkReferences.resolveArtwork(metadata, mArtworkCache);
+                if (resolved == null) {
+                    // Referenced artwork was evicted, ask for the metadata with all of it.
+                    if (mSession != null) {
+                        enableArtworkReferences(mSession);
+                    }
+                    return;
+                }
+                mHandler.post(MessageHandler.MSG_UPDATE_METADATA, resolved, null);
             }
 
             @Override
@@ -493,6 +529,65 @@ public final class MediaControllerCompat {
                 mHandler.post(MessageHandler.MSG_UPDATE_QUEUE_TITLE, title, null);
             }
 
+            @Override
+            public void onQueueSnapshot(int version, List<QueueItem> queue)
+                    throws RemoteException {
+                if (version < mQueueVersion) {
+                    return;
+                }
+                mQueueVersion = version;
+                // Sessions in the same process pass their own list, which is shared with other
+                // controllers, so the deltas are applied to a copy.
+                mQueue = queue == null ? null : new ArrayList<QueueItem>(queue);
+                postQueue();
+            }
+
+            @Override
+            public void onQueueItemsReplaced(int version, int start, int removeCount,
+                    List<QueueItem> items) throws RemoteException {
+                if (!checkQueueVersion(version)) {
+                    return;
+                }
+                mQueue.subList(start, start + removeCount).clear();
+                if (items != null) {
+                    mQueue.addAll(start, items);
+                }
+                postQueue();
+            }
+
+            @Override
+            public void onQueueItemMoved(int version, int from, int to) throws RemoteException {
+                if (!checkQueueVersion(version)) {
+                    return;
+                }
+                mQueue.add(to, mQueue.remove(from));
+                postQueue();
+            }
+
+            /**
+             * Returns whether a delta to the given version applies to the local queue. If
+             * updates were missed, a new snapshot is requested from the session.
+             */
+            private boolean checkQueueVersion(int version) throws RemoteException {
+                if (version <= mQueueVersion) {
+                    return false;
+                }
+                if (version == mQueueVersion + 1 && mQueue != null) {
+                    mQueueVersion = version;
+                    return true;
+                }
+                if (mSession != null) {
+                    enableQueueDeltas(mSession);
+                }
+                return false;
+            }
+
+            private void postQueue() {
+                // Callbacks get their own copy since the local queue keeps being updated
+                mHandler.post(MessageHandler.MSG_UPDATE_QUEUE,
+                        mQueue == null ? null : new ArrayList<QueueItem>(mQueue), null);
+            }
+
             @Override
             public void onExtrasChanged(Bundle extras) throws RemoteException {
                 mHandler.post(MessageHandler.MSG_UPDATE_EXTRAS, extras, null);
@@ -820,6 +915,11 @@ public final class MediaControllerCompat {
                 mBinder.registerCallbackListener((IMediaControllerCallback) callback.mCallbackObj);
                 callback.setHandler(handler);
                 callback.mRegistered = true;
+                // Sessions that don't know about queue deltas or artwork references ignore
+                // these and keep sending the whole queue and all artwork on every change.
+                Callback.StubCompat stub = (Callback.StubCompat) callback.mCallbackObj;
+                stub.enableQueueDeltas(mBinder);
+                stub.enableArtworkReferences(mBinder);
             } catch (RemoteException e) {
                 Log.e(TAG, "Dead object in registerCallback. " + e);
                 callback.onSessionDestroyed();
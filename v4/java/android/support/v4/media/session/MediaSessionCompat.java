@@ -25,6 +25,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Bundle;
@@ -51,7 +52,10 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Allows interaction with media controllers, volume keys, media buttons, and
@@ -83,6 +87,7 @@ public class MediaSessionCompat {
     private static final String TAG = "MediaSessionCompat";
 
     private final MediaSessionImpl mImpl;
+    private final PlaybackStateCoalescer mStateCoalescer;
     private final MediaControllerCompat mController;
     private final ArrayList<OnActiveChangeListener>
             mActiveListeners = new ArrayList<OnActiveChangeListener>();
@@ -175,11 +180,13 @@ public class MediaSessionCompat {
         } else {
             mImpl = new MediaSessionImplBase(context, tag, mediaButtonEventReceiver, mbrIntent);
         }
+        mStateCoalescer = new PlaybackStateCoalescer(mImpl);
         mController = new MediaControllerCompat(context, this);
     }
 
     private MediaSessionCompat(Context context, MediaSessionImpl impl) {
         mImpl = impl;
+        mStateCoalescer = new PlaybackStateCoalescer(mImpl);
         mController = new MediaControllerCompat(context, this);
     }
 
@@ -330,6 +337,7 @@ public class MediaSessionCompat {
      * but it must be released if your activity or service is being destroyed.
      */
     public void release() {
+        mStateCoalescer.release();
         mImpl.release();
     }
 
@@ -365,9 +373,64 @@ public class MediaSessionCompat {
      * Update the current playback state.
      *
      * @param state The current state of playback
+     * @see #setCoalescePositionUpdates
+     * @see #setMinPlaybackStateUpdateInterval
      */
     public void setPlaybackState(PlaybackStateCompat state) {
-        mImpl.setPlaybackState(state);
+        mStateCoalescer.setPlaybackState(state);
+    }
+
+    /**
+     * Set whether playback state updates that only move the position as
+     * expected from the last state sent to controllers are dropped. Such an
+     * update has the same state, speed, actions and other fields, and a
+     * position that matches the one extrapolated from the last sent state.
+     * Controllers can compute it with
+     * {@link PlaybackStateCompat#getCurrentPosition()}.
+     * <p>
+     * This lets a session update its position many times per second without
+     * sending each update to every controller. It is disabled by default.
+     * </p>
+     *
+     * @param coalesce true to drop updates that controllers can extrapolate.
+     */
+    public void setCoalescePositionUpdates(boolean coalesce) {
+        mStateCoalescer.setCoalescePositionUpdates(coalesce);
+    }
+
+    /**
+     * Returns whether position only playback state updates are dropped.
+     *
+     * @see #setCoalescePositionUpdates
+     */
+    public boolean getCoalescePositionUpdates() {
+        return mStateCoalescer.getCoalescePositionUpdates();
+    }
+
+    /**
+     * Set the minimum interval between playback state updates sent to
+     * controllers while the state, such as {@link PlaybackStateCompat#STATE_PLAYING},
+     * stays the same. More frequent updates are held back and only the last
+     * one is sent when the interval ends. Changes of the state are always sent
+     * right away.
+     *
+     * @param intervalMs The minimum interval in ms, or 0 to send every update,
+     *            which is the default.
+     */
+    public void setMinPlaybackStateUpdateInterval(long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("intervalMs may not be negative");
+        }
+        mStateCoalescer.setMinUpdateInterval(intervalMs);
+    }
+
+    /**
+     * Returns the minimum interval between playback state updates in ms.
+     *
+     * @see #setMinPlaybackStateUpdateInterval
+     */
+    public long getMinPlaybackStateUpdateInterval() {
+        return mStateCoalescer.getMinUpdateInterval();
     }
 
     /**
@@ -1010,9 +1073,20 @@ public class MediaSessionCompat {
         private final String mTag;
         private final AudioManager mAudioManager;
 
+        // Optional features of the pre-Lollipop protocol that controller callbacks can enable
+        private static final int FEATURE_QUEUE_DELTAS = 1 << 0;
+        private static final int FEATURE_ARTWORK_REFERENCES = 1 << 1;
+
         private final Object mLock = new Object();
         private final RemoteCallbackList<IMediaControllerCallback> mControllerCallbacks
                 = new RemoteCallbackList<IMediaControllerCallback>();
+        // The features enabled by each controller callback, guarded by mLock
+        private final WeakHashMap<IBinder, Integer> mControllerFeatures =
+                new WeakHashMap<IBinder, Integer>();
+        // The hashes of the artwork in the last metadata sent to the controllers that enabled
+        // artwork references, which can be sent as references in the next metadata.
+        private Set<Long> mSentArtworkHashes = new HashSet<Long>();
+        private final WeakHashMap<Bitmap, Long> mArtworkHashCache = new WeakHashMap<Bitmap, Long>();
 
         private boolean mDestroyed = false;
         private boolean mIsActive = false;
@@ -1026,6 +1100,9 @@ public class MediaSessionCompat {
         private PlaybackStateCompat mState;
         private PendingIntent mSessionActivity;
         private List<QueueItem> mQueue;
+        // Copy of the last queue sent to controllers, to compute the changes of the next one
+        private List<QueueItem> mSentQueue;
+        private int mQueueVersion;
         private CharSequence mQueueTitle;
         private @RatingCompat.Style int mRatingType;
         private Bundle mExtras;
@@ -1277,8 +1354,8 @@ public class MediaSessionCompat {
         public void setMetadata(MediaMetadataCompat metadata) {
             synchronized (mLock) {
                 mMetadata = metadata;
+                sendMetadata(metadata);
             }
-            sendMetadata(metadata);
             if (!mIsActive) {
                 // Don't set metadata until after the rcc has been registered
                 return;
@@ -1307,8 +1384,18 @@ public class MediaSessionCompat {
 
         @Override
         public void setQueue(List<QueueItem> queue) {
-            mQueue = queue;
-            sendQueue(queue);
+            // Queue updates are sent under the lock so that controllers enabling deltas from
+            // another thread receive their snapshot and the deltas in version order.
+            synchronized (mLock) {
+                mQueue = queue;
+                final List<QueueItem> previous = mSentQueue;
+                mSentQueue = queue == null ? null : new ArrayList<QueueItem>(queue);
+                final QueueDelta delta = QueueDelta.create(previous, mSentQueue);
+                if (delta != null) {
+                    mQueueVersion++;
+                }
+                sendQueue(queue, delta);
+            }
         }
 
         @Override
@@ -1512,23 +1599,56 @@ public class MediaSessionCompat {
         }
 
         private void sendMetadata(MediaMetadataCompat metadata) {
+            // Only computed when a controller enabled artwork references
+            MediaMetadataCompat metadataWithReferences = null;
+            Set<Long> artworkHashes = new HashSet<Long>();
             int size = mControllerCallbacks.beginBroadcast();
             for (int i = size - 1; i >= 0; i--) {
                 IMediaControllerCallback cb = mControllerCallbacks.getBroadcastItem(i);
                 try {
-                    cb.onMetadataChanged(metadata);
+                    if ((getControllerFeatures(cb) & FEATURE_ARTWORK_REFERENCES) != 0) {
+                        if (metadataWithReferences == null) {
+                            metadataWithReferences = ArtworkReferences.replaceSentArtwork(
+                                    metadata, mSentArtworkHashes, artworkHashes,
+                                    mArtworkHashCache);
+                        }
+                        cb.onMetadataChanged(metadataWithReferences);
+                    } else {
+                        cb.onMetadataChanged(metadata);
+                    }
                 } catch (RemoteException e) {
                 }
             }
             mControllerCallbacks.finishBroadcast();
+            // If no controller received the artwork, none can be referenced next time.
+            mSentArtworkHashes = artworkHashes;
+        }
+
+        private int getControllerFeatures(IMediaControllerCallback cb) {
+            Integer features = mControllerFeatures.get(cb.asBinder());
+            return features == null ? 0 : features;
+        }
+
+        private void setControllerFeature(IMediaControllerCallback cb, int feature,
+                boolean enabled) {
+            int features = getControllerFeatures(cb);
+            features = enabled ? features | feature : features & ~feature;
+            mControllerFeatures.put(cb.asBinder(), features);
         }
 
-        private void sendQueue(List<QueueItem> queue) {
+        private void sendQueue(List<QueueItem> queue, QueueDelta delta) {
             int size = mControllerCallbacks.beginBroadcast();
             for (int i = size - 1; i >= 0; i--) {
                 IMediaControllerCallback cb = mControllerCallbacks.getBroadcastItem(i);
                 try {
-                    cb.onQueueChanged(queue);
+                    if ((getControllerFeatures(cb) & FEATURE_QUEUE_DELTAS) != 0) {
+                        // Controllers that keep the queue already have this version of it.
+                        if (delta != null) {
+                            delta.send(cb, mQueueVersion, mSentQueue);
+                        }
+                    } else {
+                        cb.onQueueChanged(queue);
+                    }
                 } catch (RemoteException e) {
                 }
             }
@@ -1582,6 +1702,45 @@ public class MediaSessionCompat {
             @Override
             public void unregisterCallbackListener(IMediaControllerCallback cb) {
                 mControllerCallbacks.unregister(cb);
+                synchronized (mLock) {
+                    mControllerFeatures.remove(cb.asBinder());
+                }
+            }
+
+            @Override
+            public void setQueueDeltasEnabled(IMediaControllerCallback cb, boolean enabled) {
+                if (mDestroyed) {
+                    return;
+                }
+                synchronized (mLock) {
+                    setControllerFeature(cb, FEATURE_QUEUE_DELTAS, enabled);
+                    if (enabled) {
+                        try {
+                            cb.onQueueSnapshot(mQueueVersion, mSentQueue);
+                        } catch (RemoteException e) {
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void setArtworkReferencesEnabled(IMediaControllerCallback cb,
+                    boolean enabled) {
+                if (mDestroyed) {
+                    return;
+                }
+                synchronized (mLock) {
+                    setControllerFeature(cb, FEATURE_ARTWORK_REFERENCES, enabled);
+                    if (enabled && mMetadata != null) {
+                        // Resend the metadata with all of its artwork, so that the controller
+                        // can resolve references to it from the next update on.
+                        try {
+                            cb.onMetadataChanged(ArtworkReferences.replaceSentArtwork(mMetadata,
+                                    new HashSet<Long>(), new HashSet<Long>(), mArtworkHashCache));
+                        } catch (RemoteException e) {
+                        }
+                    }
+                }
             }
 
             @Override
@@ -1757,6 +1916,125 @@ public class MediaSessionCompat {
             }
         }
 
+        /**
+         * The change between two versions of the play queue, sent to controllers that enabled
+         * queue deltas instead of the whole queue. Items are matched by their queue id and
+         * description, so unchanged items are never sent again.
+         */
+        static final class QueueDelta {
+            static final int TYPE_SNAPSHOT = 0;
+            static final int TYPE_REPLACE = 1;
+            static final int TYPE_MOVE = 2;
+
+            final int mType;
+            final int mStart;
+            final int mCount;
+            final int mTo;
+
+            private QueueDelta(int type, int start, int count, int to) {
+                mType = type;
+                mStart = start;
+                mCount = count;
+                mTo = to;
+            }
+
+            /**
+             * Returns the change from {@code oldQueue} to {@code newQueue}, or null if they
+             * have the same items.
+             */
+            static QueueDelta create(List<QueueItem> oldQueue, List<QueueItem> newQueue) {
+                if (oldQueue == null && newQueue == null) {
+                    return null;
+                }
+                if (oldQueue == null || newQueue == null) {
+                    return new QueueDelta(TYPE_SNAPSHOT, 0, 0, 0);
+                }
+                // Trim the unchanged items at both ends
+                int start = 0;
+                int oldEnd = oldQueue.size();
+                int newEnd = newQueue.size();
+                while (start < oldEnd && start < newEnd
+                        && isSameItem(oldQueue.get(start), newQueue.get(start))) {
+                    start++;
+                }
+                while (oldEnd > start && newEnd > start
+                        && isSameItem(oldQueue.get(oldEnd - 1), newQueue.get(newEnd - 1))) {
+                    oldEnd--;
+                    newEnd--;
+                }
+                final int count = oldEnd - start;
+                if (count == 0 && newEnd == start) {
+                    return null;
+                }
+                if (count > 1 && count == newEnd - start) {
+                    // Check for a single item moved from one end of the changed range to the
+                    // other, which is what reordering the queue looks like.
+                    if (isSameItem(oldQueue.get(oldEnd - 1), newQueue.get(start))
+                            && isSameRange(oldQueue, start, newQueue, start + 1, count - 1)) {
+                        return new QueueDelta(TYPE_MOVE, oldEnd - 1, 0, start);
+                    }
+                    if (isSameItem(oldQueue.get(start), newQueue.get(newEnd - 1))
+                            && isSameRange(oldQueue, start + 1, newQueue, start, count - 1)) {
+                        return new QueueDelta(TYPE_MOVE, start, 0, oldEnd - 1);
+                    }
+                }
+                return new QueueDelta(TYPE_REPLACE, start, count, newEnd);
+            }
+
+            void send(IMediaControllerCallback cb, int version, List<QueueItem> queue)
+                    throws RemoteException {
+                switch (mType) {
+                    case TYPE_SNAPSHOT:
+                        cb.onQueueSnapshot(version, queue);
+                        break;
+                    case TYPE_REPLACE:
+                        cb.onQueueItemsReplaced(version, mStart, mCount,
+                                queue.subList(mStart, mTo));
+                        break;
+                    case TYPE_MOVE:
+                        cb.onQueueItemMoved(version, mStart, mTo);
+                        break;
+                }
+            }
+
+            private static boolean isSameRange(List<QueueItem> queue1, int start1,
+                    List<QueueItem> queue2, int start2, int count) {
+                for (int i = 0; i < count; i++) {
+                    if (!isSameItem(queue1.get(start1 + i), queue2.get(start2 + i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private static boolean isSameItem(QueueItem item1, QueueItem item2) {
+                if (item1 == item2) {
+                    return true;
+                }
+                if (item1 == null || item2 == null || item1.getQueueId() != item2.getQueueId()) {
+                    return false;
+                }
+                final MediaDescriptionCompat d1 = item1.getDescription();
+                final MediaDescriptionCompat d2 = item2.getDescription();
+                if (d1 == d2) {
+                    return true;
+                }
+                return d1 != null && d2 != null
+                        && TextUtils.equals(d1.getMediaId(), d2.getMediaId())
+                        && TextUtils.equals(d1.getTitle(), d2.getTitle())
+                        && TextUtils.equals(d1.getSubtitle(), d2.getSubtitle())
+                        && TextUtils.equals(d1.getDescription(), d2.getDescription())
+                        && d1.getIconBitmap() == d2.getIconBitmap()
+                        && isSameUri(d1.getIconUri(), d2.getIconUri())
+                        && isSameUri(d1.getMediaUri(), d2.getMediaUri())
+                        && d1.getExtras() == d2.getExtras();
+            }
+
+            private static boolean isSameUri(Uri uri1, Uri uri2) {
+                return uri1 == null ? uri2 == null : uri1.equals(uri2);
+            }
+        }
+
         private static final class Command {
             public final String command;
             public final Bundle extras;
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media.session;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import java.util.List;
+
+/**
+ * Decides which playback state updates of a {@link MediaSessionCompat} are passed on to
+ * its controllers.
+ * <p>
+ * Updates that only move the position the way controllers can extrapolate it from the last
+ * sent state are dropped, and updates that keep the same state are sent at most once per
+ * minimum interval, the last one being sent when the interval ends. Changes of the state
+ * itself are always sent right away.
+ * </p>
+ */
+class PlaybackStateCoalescer {
+    // How far the position may drift from the extrapolated one before an update is sent
+    private static final long POSITION_TOLERANCE_MS = 100;
+
+    private final MediaSessionCompat.MediaSessionImpl mImpl;
+
+    private boolean mCoalescePositionUpdates;
+    private long mMinUpdateInterval;
+
+    private PlaybackStateCompat mSentState;
+    private long mSentTime;
+    private PlaybackStateCompat mPendingState;
+    private Handler mHandler;
+
+    private final Runnable mSendPendingState = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (PlaybackStateCoalescer.this) {
+                final PlaybackStateCompat state = mPendingState;
+                mPendingState = null;
+                if (state != null) {
+                    send(state);
+                }
+            }
+        }
+    };
+
+    PlaybackStateCoalescer(MediaSessionCompat.MediaSessionImpl impl) {
+        mImpl = impl;
+    }
+
+    synchronized void setCoalescePositionUpdates(boolean coalesce) {
+        mCoalescePositionUpdates = coalesce;
+        if (!coalesce) {
+            flushPendingState();
+        }
+    }
+
+    synchronized boolean getCoalescePositionUpdates() {
+        return mCoalescePositionUpdates;
+    }
+
+    synchronized void setMinUpdateInterval(long intervalMs) {
+        mMinUpdateInterval = intervalMs;
+        if (intervalMs <= 0) {
+            flushPendingState();
+        }
+    }
+
+    synchronized long getMinUpdateInterval() {
+        return mMinUpdateInterval;
+    }
+
+    synchronized void setPlaybackState(PlaybackStateCompat state) {
+        if (state == null || mSentState == null || state.getState() != mSentState.getState()
+                || (!mCoalescePositionUpdates && mMinUpdateInterval <= 0)) {
+            cancelPendingState();
+            send(state);
+            return;
+        }
+        if (mCoalescePositionUpdates && isExtrapolated(state, mSentState)) {
+            // Anything pending differs from the sent state in a way this one doesn't.
+            cancelPendingState();
+            return;
+        }
+        final long now = SystemClock.elapsedRealtime();
+        final long nextUpdateTime = mSentTime + mMinUpdateInterval;
+        if (mMinUpdateInterval > 0 && now < nextUpdateTime) {
+            if (mPendingState == null) {
+                getHandler().postDelayed(mSendPendingState, nextUpdateTime - now);
+            }
+            mPendingState = state;
+            return;
+        }
+        cancelPendingState();
+        send(state);
+    }
+
+    /**
+     * Drops any pending update, when the session is released.
+     */
+    synchronized void release() {
+        cancelPendingState();
+    }
+
+    private void send(PlaybackStateCompat state) {
+        mSentState = state;
+        mSentTime = SystemClock.elapsedRealtime();
+        mImpl.setPlaybackState(state);
+    }
+
+    private void flushPendingState() {
+        if (mPendingState != null) {
+            final PlaybackStateCompat state = mPendingState;
+            cancelPendingState();
+            send(state);
+        }
+    }
+
+    private void cancelPendingState() {
+        if (mPendingState != null) {
+            mPendingState = null;
+            mHandler.removeCallbacks(mSendPendingState);
+        }
+    }
+
+    private Handler getHandler() {
+        if (mHandler == null) {
+            final Looper looper = Looper.myLooper();
+            mHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        }
+        return mHandler;
+    }
+
+    /**
+     * Returns whether the state only differs from the sent one by a position that follows
+     * from the sent one.
+     */
+    private static boolean isExtrapolated(PlaybackStateCompat state,
+            PlaybackStateCompat sentState) {
+        if (state.getPlaybackSpeed() != sentState.getPlaybackSpeed()
+                || state.getActions() != sentState.getActions()
+                || state.getBufferedPosition() != sentState.getBufferedPosition()
+                || state.getActiveQueueItemId() != sentState.getActiveQueueItemId()
+                || state.getExtras() != sentState.getExtras()
+                || !TextUtils.equals(state.getErrorMessage(), sentState.getErrorMessage())
+                || !isSameCustomActions(state.getCustomActions(),
+                        sentState.getCustomActions())) {
+            return false;
+        }
+        final long updateTime = state.getLastPositionUpdateTime();
+        if (updateTime <= 0 || sentState.getLastPositionUpdateTime() <= 0) {
+            return false;
+        }
+        final long extrapolated = sentState.getPositionAt(updateTime);
+        return Math.abs(state.getPosition() - extrapolated) <= POSITION_TOLERANCE_MS;
+    }
+
+    private static boolean isSameCustomActions(List<PlaybackStateCompat.CustomAction> actions1,
+            List<PlaybackStateCompat.CustomAction> actions2) {
+        if (actions1 == actions2) {
+            return true;
+        }
+        if (actions1 == null || actions2 == null || actions1.size() != actions2.size()) {
+            return false;
+        }
+        for (int i = 0; i < actions1.size(); i++) {
+            final PlaybackStateCompat.CustomAction action1 = actions1.get(i);
+            final PlaybackStateCompat.CustomAction action2 = actions2.get(i);
+            if (!TextUtils.equals(action1.getAction(), action2.getAction())
+                    || !TextUtils.equals(action1.getName(), action2.getName())
+                    || action1.getIcon() != action2.getIcon()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -430,6 +430,31 @@ public final class PlaybackStateCompat implements Parcelable {
         return mUpdateTime;
     }
 
+    /**
+     * Get the playback position in ms at the current time. While playing,
+     * fast forwarding or rewinding, it is extrapolated from the position, the
+     * time it was last updated and the playback speed. Controllers should use
+     * this to show the position of sessions that don't send every position
+     * update, see {@link MediaSessionCompat#setCoalescePositionUpdates}.
+     *
+     * @return The current playback position in ms.
+     */
+    public long getCurrentPosition() {
+        return getPositionAt(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Returns the position extrapolated to the given elapsed real time.
+     */
+    long getPositionAt(long elapsedRealtime) {
+        if (mUpdateTime <= 0 || (mState != STATE_PLAYING && mState != STATE_FAST_FORWARDING
+                && mState != STATE_REWINDING)) {
+            return mPosition;
+        }
+        final long position = mPosition + (long) (mSpeed * (elapsedRealtime - mUpdateTime));
+        return position < 0 ? 0 : position;
+    }
+
     /**
      * Get the id of the currently active item in the queue. If there is no
      * queue or a queue is not supported by the session this will be
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.app;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.test.InstrumentationTestCase;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @hide
+ */
+public class FragmentStatePagerAdapterTest extends InstrumentationTestCase {
+    private static final int PAGE_COUNT = 10;
+    // Large enough for the parceled size of a page state to be dominated by it.
+    private static final int PADDING_BYTES = 1000;
+    // Room for the state of two pages but not three.
+    private static final int MAX_SAVED_STATE_BYTES = PADDING_BYTES * 3 - 1;
+
+    public static class PageFragment extends Fragment {
+        int mValue = -1;
+        byte[] mPadding = new byte[PADDING_BYTES];
+
+        @Override
+        public void onCreate(Bundle savedInstanceState) {
+            super.onCreate(savedInstanceState);
+            if (savedInstanceState != null) {
+                mValue = savedInstanceState.getInt("value", -1);
+            }
+        }
+
+        @Override
+        public void onSaveInstanceState(Bundle outState) {
+            super.onSaveInstanceState(outState);
+            outState.putInt("value", mValue);
+            outState.putByteArray("padding", mPadding);
+        }
+    }
+
+    private static class TestAdapter extends FragmentStatePagerAdapter {
+        TestAdapter(FragmentManager fm) {
+            super(fm);
+        }
+
+        @Override
+        public Fragment getItem(int position) {
+            return new PageFragment();
+        }
+
+        @Override
+        public int getCount() {
+            return PAGE_COUNT;
+        }
+    }
+
+    private class HostCallbacks extends FragmentHostCallback<Object> {
+        HostCallbacks() {
+            super(getInstrumentation().getTargetContext(),
+                    new Handler(Looper.getMainLooper()), 0);
+        }
+
+        @Override
+        public Object onGetHost() {
+            return null;
+        }
+
+        @Override
+        public View onFindViewById(int id) {
+            return mContainer;
+        }
+    }
+
+    private FragmentController mController;
+    private FrameLayout mContainer;
+    private File mSpillDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSpillDirectory = new File(getInstrumentation().getTargetContext().getCacheDir(),
+                "FragmentStatePagerAdapterTest");
+        deleteSpillDirectory();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteSpillDirectory();
+        super.tearDown();
+    }
+
+    private void deleteSpillDirectory() {
+        File[] files = mSpillDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mSpillDirectory.delete();
+    }
+
+    private int spillFileCount() {
+        String[] names = mSpillDirectory.list();
+        return names == null ? 0 : names.length;
+    }
+
+    /**
+     * Waits for the spill files written and deleted so far to be written and deleted.
+     */
+    private static void waitForSpillFiles() {
+        final CountDownLatch done = new CountDownLatch(1);
+        FragmentStatePagerAdapter.getSpillExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        try {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            fail(e.toString());
+        }
+    }
+
+    private FragmentManager createFragmentManager() {
+        mContainer = new FrameLayout(getInstrumentation().getTargetContext());
+        mContainer.setId(1);
+        mController = FragmentController.createController(new HostCallbacks());
+        mController.attachHost(null);
+        mController.dispatchCreate();
+        return mController.getSupportFragmentManager();
+    }
+
+    private static PageFragment showPage(TestAdapter adapter, FrameLayout container,
+            int position) {
+        adapter.startUpdate(container);
+        PageFragment fragment = (PageFragment) adapter.instantiateItem(container, position);
+        adapter.finishUpdate(container);
+        return fragment;
+    }
+
+    private static void hidePage(TestAdapter adapter, FrameLayout container, int position,
+            PageFragment fragment) {
+        adapter.startUpdate(container);
+        adapter.destroyItem(container, position, fragment);
+        adapter.finishUpdate(container);
+    }
+
+    /**
+     * Visits the given pages in order, giving each page its position plus
+     * {@code offset} as its value.
+     */
+    private static void visitPages(TestAdapter adapter, FrameLayout container, int offset,
+            int... positions) {
+        for (int position : positions) {
+            PageFragment fragment = showPage(adapter, container, position);
+            fragment.mValue = position + offset;
+            hidePage(adapter, container, position, fragment);
+        }
+    }
+
+    private void runOnMainSync(Runnable runnable) {
+        getInstrumentation().runOnMainSync(runnable);
+    }
+
+    public void testPageStateRestored() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                assertEquals(100, showPage(adapter, mContainer, 0).mValue);
+                assertEquals(102, showPage(adapter, mContainer, 2).mValue);
+            }
+        });
+    }
+
+    public void testLeastRecentlyVisitedStateDropped() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                adapter.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                assertEquals(-1, showPage(adapter, mContainer, 0).mValue);
+                assertEquals(101, showPage(adapter, mContainer, 1).mValue);
+                assertEquals(102, showPage(adapter, mContainer, 2).mValue);
+            }
+        });
+    }
+
+    public void testEvictedStateSpilled() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                adapter.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                adapter.setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                waitForSpillFiles();
+                assertEquals(1, spillFileCount());
+
+                assertEquals(100, showPage(adapter, mContainer, 0).mValue);
+                waitForSpillFiles();
+                assertEquals(0, spillFileCount());
+            }
+        });
+    }
+
+    public void testSpilledStateReadAhead() {
+        final TestAdapter[] adapter = new TestAdapter[1];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter[0] = new TestAdapter(createFragmentManager());
+                adapter[0].setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                adapter[0].setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(adapter[0], mContainer, 100, 0, 1, 2);
+                waitForSpillFiles();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                adapter[0].setPrimaryItem(mContainer, 1, null);
+                waitForSpillFiles();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // The state of page 0 was read back when page 1 became primary.
+                deleteSpillDirectory();
+                assertEquals(100, showPage(adapter[0], mContainer, 0).mValue);
+            }
+        });
+    }
+
+    public void testSpillFilesNotShared() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FragmentManager fm = createFragmentManager();
+                TestAdapter first = new TestAdapter(fm);
+                TestAdapter second = new TestAdapter(fm);
+                first.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                second.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                first.setSavedStateSpillDirectory(mSpillDirectory);
+                second.setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(first, mContainer, 100, 0, 1, 2);
+                visitPages(second, mContainer, 200, 0, 1, 2);
+                waitForSpillFiles();
+                assertEquals(2, spillFileCount());
+
+                assertEquals(100, showPage(first, mContainer, 0).mValue);
+                assertEquals(200, showPage(second, mContainer, 0).mValue);
+            }
+        });
+    }
+
+    public void testDroppedStateDeletesSpillFile() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                adapter.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                adapter.setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                waitForSpillFiles();
+                assertEquals(1, spillFileCount());
+
+                adapter.clearSpilledSavedState();
+                waitForSpillFiles();
+                assertEquals(0, spillFileCount());
+                assertEquals(-1, showPage(adapter, mContainer, 0).mValue);
+            }
+        });
+    }
+
+    public void testSaveRestoreState() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                adapter.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                adapter.setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                Parcelable state = adapter.saveState();
+                waitForSpillFiles();
+
+                TestAdapter restored = new TestAdapter(createFragmentManager());
+                restored.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                restored.setSavedStateSpillDirectory(mSpillDirectory);
+                restored.restoreState(state, getClass().getClassLoader());
+                assertEquals(100, showPage(restored, mContainer, 0).mValue);
+                assertEquals(101, showPage(restored, mContainer, 1).mValue);
+                assertEquals(102, showPage(restored, mContainer, 2).mValue);
+                waitForSpillFiles();
+                assertEquals(0, spillFileCount());
+            }
+        });
+    }
+
+    public void testRestoreDeletesUnreferencedSpillFiles() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                TestAdapter adapter = new TestAdapter(createFragmentManager());
+                adapter.setMaxSavedStateBytes(MAX_SAVED_STATE_BYTES);
+                adapter.setSavedStateSpillDirectory(mSpillDirectory);
+                visitPages(adapter, mContainer, 100, 0, 1, 2);
+                Parcelable state = adapter.saveState();
+                // Spilled after the state was saved.
+                visitPages(adapter, mContainer, 100, 3);
+                waitForSpillFiles();
+                assertEquals(2, spillFileCount());
+
+                TestAdapter restored = new TestAdapter(createFragmentManager());
+                restored.setSavedStateSpillDirectory(mSpillDirectory);
+                restored.restoreState(state, getClass().getClassLoader());
+                waitForSpillFiles();
+                assertEquals(1, spillFileCount());
+            }
+        });
+    }
+}
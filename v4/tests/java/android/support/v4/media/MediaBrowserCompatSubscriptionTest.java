@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media;
+
+import static android.support.v4.media.MediaBrowserCompatUtilsTest.items;
+import static android.support.v4.media.MediaBrowserCompatUtilsTest.page;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaBrowserCompat.Subscription;
+import android.support.v4.media.MediaBrowserCompat.SubscriptionCallback;
+import android.test.AndroidTestCase;
+
+import java.util.List;
+
+/**
+ * @hide
+ */
+public class MediaBrowserCompatSubscriptionTest extends AndroidTestCase {
+
+    private static class RecordingCallback extends SubscriptionCallback {
+        List<MediaItem> mChildren;
+        Bundle mOptions;
+        int mLoadCount;
+
+        @Override
+        public void onChildrenLoaded(@NonNull String parentId, @NonNull List<MediaItem> children) {
+            mChildren = children;
+            mOptions = null;
+            mLoadCount++;
+        }
+
+        @Override
+        public void onChildrenLoaded(@NonNull String parentId, @NonNull List<MediaItem> children,
+                @NonNull Bundle options) {
+            mChildren = children;
+            mOptions = options;
+            mLoadCount++;
+        }
+    }
+
+    public void testPagesAreCutFromWholeList() {
+        final Subscription sub = new Subscription();
+        final RecordingCallback whole = new RecordingCallback();
+        final RecordingCallback page0 = new RecordingCallback();
+        final RecordingCallback page1 = new RecordingCallback();
+        sub.putCallback(null, whole);
+        sub.putCallback(page(0, 2), page0);
+        sub.putCallback(page(1, 2), page1);
+
+        final List<MediaItem> items = items(3);
+        sub.onChildrenLoaded("parent", items);
+        assertSame(items, whole.mChildren);
+        assertNull(whole.mOptions);
+        assertEquals(items.subList(0, 2), page0.mChildren);
+        assertEquals(0, page0.mOptions.getInt(MediaBrowserCompat.EXTRA_PAGE));
+        assertEquals(items.subList(2, 3), page1.mChildren);
+    }
+
+    public void testUnsubscribeOnePage() {
+        final Subscription sub = new Subscription();
+        final RecordingCallback page0 = new RecordingCallback();
+        final RecordingCallback page1 = new RecordingCallback();
+        sub.putCallback(page(0, 2), page0);
+        sub.putCallback(page(1, 2), page1);
+
+        assertTrue(sub.removeCallback(page(0, 2)));
+        assertFalse(sub.removeCallback(page(0, 2)));
+        assertFalse(sub.isEmpty());
+
+        sub.onChildrenLoaded("parent", items(4));
+        assertEquals(0, page0.mLoadCount);
+        assertEquals(1, page1.mLoadCount);
+
+        assertTrue(sub.removeCallback(page(1, 2)));
+        assertTrue(sub.isEmpty());
+    }
+
+    public void testSamePageReplacesCallback() {
+        final Subscription sub = new Subscription();
+        final RecordingCallback first = new RecordingCallback();
+        final RecordingCallback second = new RecordingCallback();
+        sub.putCallback(page(0, 2), first);
+        sub.putCallback(page(0, 2), second);
+
+        sub.onChildrenLoaded("parent", items(4));
+        assertEquals(0, first.mLoadCount);
+        assertEquals(1, second.mLoadCount);
+    }
+
+    public void testLoadedChildrenDeliveredToNewPage() {
+        final Subscription sub = new Subscription();
+        final RecordingCallback page0 = new RecordingCallback();
+        final RecordingCallback page1 = new RecordingCallback();
+        sub.putCallback(page(0, 2), page0);
+
+        // nothing loaded yet
+        sub.putCallback(page(1, 2), page1);
+        sub.deliverLoadedChildren("parent", page(1, 2));
+        assertEquals(0, page1.mLoadCount);
+
+        final List<MediaItem> items = items(4);
+        sub.onChildrenLoaded("parent", items);
+        sub.deliverLoadedChildren("parent", page(1, 2));
+        assertEquals(2, page1.mLoadCount);
+        assertEquals(items.subList(2, 4), page1.mChildren);
+        assertEquals(1, page0.mLoadCount);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media;
+
+import android.os.Bundle;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @hide
+ */
+public class MediaBrowserCompatUtilsTest extends AndroidTestCase {
+
+    public void testAreSameOptions() {
+        assertTrue(MediaBrowserCompatUtils.areSameOptions(null, null));
+        assertTrue(MediaBrowserCompatUtils.areSameOptions(page(1, 10), page(1, 10)));
+        assertTrue(MediaBrowserCompatUtils.areSameOptions(null, new Bundle()));
+        assertFalse(MediaBrowserCompatUtils.areSameOptions(page(1, 10), page(2, 10)));
+        assertFalse(MediaBrowserCompatUtils.areSameOptions(page(1, 10), page(1, 20)));
+        assertFalse(MediaBrowserCompatUtils.areSameOptions(null, page(0, 10)));
+    }
+
+    public void testApplyOptionsWithoutPage() {
+        final List<MediaItem> items = items(5);
+        assertSame(items, MediaBrowserCompatUtils.applyOptions(items, null));
+        assertSame(items, MediaBrowserCompatUtils.applyOptions(items, new Bundle()));
+    }
+
+    public void testApplyOptionsPages() {
+        final List<MediaItem> items = items(5);
+        assertEquals(items.subList(0, 2), MediaBrowserCompatUtils.applyOptions(items, page(0, 2)));
+        assertEquals(items.subList(2, 4), MediaBrowserCompatUtils.applyOptions(items, page(1, 2)));
+        // the last page is cut short
+        assertEquals(items.subList(4, 5), MediaBrowserCompatUtils.applyOptions(items, page(2, 2)));
+        // beyond the end
+        assertTrue(MediaBrowserCompatUtils.applyOptions(items, page(3, 2)).isEmpty());
+    }
+
+    public void testApplyOptionsInvalidPage() {
+        final List<MediaItem> items = items(5);
+        assertTrue(MediaBrowserCompatUtils.applyOptions(items, page(-2, 2)).isEmpty());
+        assertTrue(MediaBrowserCompatUtils.applyOptions(items, page(0, 0)).isEmpty());
+    }
+
+    static Bundle page(int page, int pageSize) {
+        final Bundle options = new Bundle();
+        options.putInt(MediaBrowserCompat.EXTRA_PAGE, page);
+        options.putInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, pageSize);
+        return options;
+    }
+
+    static List<MediaItem> items(int count) {
+        final List<MediaItem> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new MediaItem(new MediaDescriptionCompat.Builder()
+                    .setMediaId("media" + i).build(), MediaItem.FLAG_PLAYABLE));
+        }
+        return items;
+    }
+}
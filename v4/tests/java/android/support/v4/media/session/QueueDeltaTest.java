@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v4.media.session;
+
+import android.support.v4.media.MediaDescriptionCompat;
+import android.support.v4.media.session.MediaSessionCompat.MediaSessionImplBase.QueueDelta;
+import android.support.v4.media.session.MediaSessionCompat.QueueItem;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @hide
+ */
+public class QueueDeltaTest extends AndroidTestCase {
+
+    public void testUnchangedQueue() {
+        // Equal items in new instances are not a change
+        assertNull(QueueDelta.create(queue(1, 2, 3), queue(1, 2, 3)));
+        assertNull(QueueDelta.create(queue(), queue()));
+        assertNull(QueueDelta.create(null, null));
+    }
+
+    public void testSnapshot() {
+        assertDelta(QueueDelta.create(null, queue(1, 2)), QueueDelta.TYPE_SNAPSHOT, 0, 0, 0);
+        assertDelta(QueueDelta.create(queue(1, 2), null), QueueDelta.TYPE_SNAPSHOT, 0, 0, 0);
+    }
+
+    public void testReplace() {
+        // [1, 2, 3, 4] -> [1, 5, 4]: 2 items from 1 replaced by new items [1, 2)
+        assertDelta(QueueDelta.create(queue(1, 2, 3, 4), queue(1, 5, 4)),
+                QueueDelta.TYPE_REPLACE, 1, 2, 2);
+        // insertion
+        assertDelta(QueueDelta.create(queue(1, 2), queue(1, 5, 2)),
+                QueueDelta.TYPE_REPLACE, 1, 0, 2);
+        // removal at the end
+        assertDelta(QueueDelta.create(queue(1, 2, 3), queue(1, 2)),
+                QueueDelta.TYPE_REPLACE, 2, 1, 2);
+        // changed description with the same queue id
+        final List<QueueItem> changed = queue(1, 2, 3);
+        changed.set(1, new QueueItem(new MediaDescriptionCompat.Builder()
+                .setMediaId("media2").setTitle("changed").build(), 2));
+        assertDelta(QueueDelta.create(queue(1, 2, 3), changed),
+                QueueDelta.TYPE_REPLACE, 1, 1, 2);
+    }
+
+    public void testMove() {
+        // an item moved back
+        assertDelta(QueueDelta.create(queue(1, 2, 3, 4), queue(1, 3, 4, 2)),
+                QueueDelta.TYPE_MOVE, 1, 0, 3);
+        // an item moved to the front
+        assertDelta(QueueDelta.create(queue(1, 2, 3), queue(3, 1, 2)),
+                QueueDelta.TYPE_MOVE, 2, 0, 0);
+        // swapping two adjacent items is a move
+        assertDelta(QueueDelta.create(queue(1, 2, 3, 4), queue(1, 3, 2, 4)),
+                QueueDelta.TYPE_MOVE, 2, 0, 1);
+        // more than one moved item is a replace
+        assertDelta(QueueDelta.create(queue(1, 2, 3, 4), queue(4, 3, 2, 1)),
+                QueueDelta.TYPE_REPLACE, 0, 4, 4);
+    }
+
+    private static void assertDelta(QueueDelta delta, int type, int start, int count, int to) {
+        assertNotNull(delta);
+        assertEquals("type", type, delta.mType);
+        assertEquals("start", start, delta.mStart);
+        assertEquals("count", count, delta.mCount);
+        assertEquals("to", to, delta.mTo);
+    }
+
+    private static List<QueueItem> queue(int... ids) {
+        final List<QueueItem> queue = new ArrayList<>();
+        for (int id : ids) {
+            queue.add(new QueueItem(new MediaDescriptionCompat.Builder()
+                    .setMediaId("media" + id).setTitle("title" + id).build(), id));
+        }
+        return queue;
+    }
+}
@@ -18,22 +18,25 @@ package android.support.v7.widget;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlSerializer;
 
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ResolveInfo;
 import android.database.DataSetObservable;
-import android.os.AsyncTask;
-import android.support.v4.os.AsyncTaskCompat;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.Xml;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -41,6 +44,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -53,6 +60,13 @@ import java.util.Map;
  * based on historical usage for the current session.
  * <p>
  * </p>
+ * The history file is read off the UI thread the first time the model is used;
+ * until it has been read the activities are in the order reported by the package
+ * manager, and observers are notified once the history is available. New choices
+ * are appended to the file after a short delay, so that several choices in a row
+ * result in a single write.
+ * <p>
+ * </p>
  * For each backing history file there is a singleton instance of this class. Thus,
  * several clients that specify the same history file will share the same model. Note
  * that if multiple clients are sharing the same model they should implement semantically
@@ -158,7 +172,7 @@ class ActivityChooserModel extends DataSetObservable {
     private static final String LOG_TAG = ActivityChooserModel.class.getSimpleName();
 
     /**
-     * The root tag in the history file.
+     * The root tag in the legacy XML history file.
      */
     private static final String TAG_HISTORICAL_RECORDS = "historical-records";
 
@@ -208,6 +222,39 @@ class ActivityChooserModel extends DataSetObservable {
      */
     private static final String HISTORY_FILE_EXTENSION = ".xml";
 
+    /**
+     * The extension of the binary history file that replaces the XML one.
+     */
+    private static final String BINARY_HISTORY_FILE_EXTENSION = ".dat";
+
+    /**
+     * Magic number at the start of the binary history file.
+     */
+    private static final int BINARY_HISTORY_FILE_MAGIC = 0x41434d48;
+
+    /**
+     * Version of the binary history file format.
+     */
+    private static final int BINARY_HISTORY_FILE_VERSION = 1;
+
+    /**
+     * Delay before writing new choices to the history file.
+     */
+    private static final long PERSIST_HISTORY_DELAY_MILLIS = 1000;
+
+    /**
+     * Executor for reading and writing history files, one operation at a time
+     * so that they happen in the order they have been requested.
+     */
+    private static final Executor sHistoryExecutor;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        sHistoryExecutor = executor;
+    }
+
     /**
      * An invalid item index.
      */
@@ -245,19 +292,34 @@ class ActivityChooserModel extends DataSetObservable {
     private final Context mContext;
 
     /**
-     * The name of the history file that backs this model.
+     * The name of the legacy XML history file that backs this model.
      */
     private final String mHistoryFileName;
 
+    /**
+     * The name of the binary history file that backs this model.
+     */
+    private final String mBinaryHistoryFileName;
+
+    /**
+     * Handler on the main thread for reporting read history and delaying writes.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
     /**
      * The intent for which a activity is being chosen.
      */
     private Intent mIntent;
 
+    /**
+     * The default sorter, which can update the order incrementally.
+     */
+    private final DefaultSorter mDefaultSorter = new DefaultSorter();
+
     /**
      * The sorter for ordering activities based on intent and past choices.
      */
-    private ActivitySorter mActivitySorter = new DefaultSorter();
+    private ActivitySorter mActivitySorter = mDefaultSorter;
 
     /**
      * The maximal length of the choice history.
@@ -265,33 +327,51 @@ class ActivityChooserModel extends DataSetObservable {
     private int mHistoryMaxSize = DEFAULT_HISTORY_MAX_LENGTH;
 
     /**
-     * Flag whether choice history can be read. In general many clients can
-     * share the same data model and {@link #readHistoricalDataIfNeeded()} may be called
-     * by arbitrary of them any number of times. Therefore, this class guarantees
-     * that the very first read succeeds and subsequent reads can be performed
-     * only after a call to {@link #persistHistoricalDataIfNeeded()} followed by change
-     * of the share records.
+     * Flag whether reading the choice history has been started. In general many
+     * clients can share the same data model, therefore the history is read only
+     * once, off the UI thread, and merged with any choices made in the meantime.
+     */
+    private boolean mHistoryReadStarted = false;
+
+    /**
+     * Flag whether the choice history has been read. Nothing is persisted before
+     * that so that an existing history file is never overwritten before it is read.
+     */
+    private boolean mHistoryRead = false;
+
+    /**
+     * Records chosen since the history file was last written.
      */
-    private boolean mCanReadHistoricalData = true;
+    private final List<HistoricalRecord> mPendingRecords = new ArrayList<HistoricalRecord>();
 
     /**
-     * Flag whether the choice history was read. This is used to enforce that
-     * before calling {@link #persistHistoricalDataIfNeeded()} a call to
-     * {@link #persistHistoricalDataIfNeeded()} has been made. This aims to avoid a
-     * scenario in which a choice history file exits, it is not read yet and
-     * it is overwritten. Note that always all historical records are read in
-     * full and the file is rewritten. This is necessary since we need to
-     * purge old records that are outside of the sliding window of past choices.
+     * The number of records in the history file. Once it grows past twice the max
+     * history size the file is rewritten with only the current records.
      */
-    private boolean mReadShareHistoryCalled = false;
+    private int mHistoryFileRecordCount;
 
     /**
-     * Flag whether the choice records have changed. In general many clients can
-     * share the same data model and {@link #persistHistoricalDataIfNeeded()} may be called
-     * by arbitrary of them any number of times. Therefore, this class guarantees
-     * that choice history will be persisted only if it has changed.
+     * Flag whether the history file has to be rewritten rather than appended to.
      */
-    private boolean mHistoricalRecordsChanged = true;
+    private boolean mRewriteHistoryFile = true;
+
+    /**
+     * Flag whether the activities are sorted by the default sorter according to the
+     * current history, so that new records can be accounted for incrementally.
+     */
+    private boolean mActivitiesSorted = false;
+
+    /**
+     * Number of records accounted for incrementally since the last full sort.
+     */
+    private int mIncrementalSortCount;
+
+    private final Runnable mPersistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            persistHistoricalDataIfNeeded();
+        }
+    };
 
     /**
      * Flag whether to reload the activities for the current intent.
@@ -352,6 +432,13 @@ class ActivityChooserModel extends DataSetObservable {
         } else {
             mHistoryFileName = historyFileName;
         }
+        if (!TextUtils.isEmpty(mHistoryFileName)) {
+            mBinaryHistoryFileName = mHistoryFileName.substring(0,
+                    mHistoryFileName.length() - HISTORY_FILE_EXTENSION.length())
+                    + BINARY_HISTORY_FILE_EXTENSION;
+        } else {
+            mBinaryHistoryFileName = null;
+        }
     }
 
     /**
@@ -555,28 +642,39 @@ class ActivityChooserModel extends DataSetObservable {
     }
 
     /**
-     * Persists the history data to the backing file if the latter
-     * was provided. Calling this method before a call to {@link #readHistoricalDataIfNeeded()}
-     * throws an exception. Calling this method more than one without choosing an
-     * activity has not effect.
-     *
-     * @throws IllegalStateException If this method is called before a call to
-     *         {@link #readHistoricalDataIfNeeded()}.
+     * Persists the records chosen since the last write to the backing file if
+     * the latter was provided. Records are appended to the file, unless it has
+     * grown enough that it is rewritten with the current history instead. Does
+     * nothing before the history has been read.
      */
     private void persistHistoricalDataIfNeeded() {
-        if (!mReadShareHistoryCalled) {
-            throw new IllegalStateException("No preceding call to #readHistoricalData");
-        }
-        if (!mHistoricalRecordsChanged) {
-            return;
-        }
-        mHistoricalRecordsChanged = false;
-        if (!TextUtils.isEmpty(mHistoryFileName)) {
-            AsyncTaskCompat.executeParallel(new PersistHistoryAsyncTask(),
-                    new ArrayList<HistoricalRecord>(mHistoricalRecords), mHistoryFileName);
+        synchronized (mInstanceLock) {
+            if (!mHistoryRead || TextUtils.isEmpty(mHistoryFileName)) {
+                return;
+            }
+            if (mPendingRecords.isEmpty() && !mRewriteHistoryFile) {
+                return;
+            }
+            final boolean rewrite = mRewriteHistoryFile
+                    || mHistoryFileRecordCount + mPendingRecords.size() > 2 * mHistoryMaxSize;
+            final List<HistoricalRecord> records = new ArrayList<HistoricalRecord>(
+                    rewrite ? mHistoricalRecords : mPendingRecords);
+            mHistoryFileRecordCount = rewrite
+                    ? records.size() : mHistoryFileRecordCount + records.size();
+            mPendingRecords.clear();
+            mRewriteHistoryFile = false;
+            sHistoryExecutor.execute(new PersistHistoryTask(records, rewrite));
         }
     }
 
+    /**
+     * Schedules a write of the history, replacing any write already scheduled.
+     */
+    private void schedulePersistHistoricalData() {
+        mHandler.removeCallbacks(mPersistRunnable);
+        mHandler.postDelayed(mPersistRunnable, PERSIST_HISTORY_DELAY_MILLIS);
+    }
+
     /**
      * Sets the sorter for ordering activities based on historical data and an intent.
      *
@@ -590,6 +688,7 @@ class ActivityChooserModel extends DataSetObservable {
                 return;
             }
             mActivitySorter = activitySorter;
+            mActivitiesSorted = false;
             if (sortActivitiesIfNeeded()) {
                 notifyChanged();
             }
@@ -616,6 +715,7 @@ class ActivityChooserModel extends DataSetObservable {
             }
             mHistoryMaxSize = historyMaxSize;
             pruneExcessiveHistoricalRecordsIfNeeded();
+            mActivitiesSorted = false;
             if (sortActivitiesIfNeeded()) {
                 notifyChanged();
             }
@@ -653,8 +753,10 @@ class ActivityChooserModel extends DataSetObservable {
      */
     private void ensureConsistentState() {
         boolean stateChanged = loadActivitiesIfNeeded();
-        stateChanged |= readHistoricalDataIfNeeded();
-        pruneExcessiveHistoricalRecordsIfNeeded();
+        readHistoricalDataIfNeeded();
+        if (pruneExcessiveHistoricalRecordsIfNeeded() != null) {
+            mActivitiesSorted = false;
+        }
         if (stateChanged) {
             sortActivitiesIfNeeded();
             notifyChanged();
@@ -673,11 +775,32 @@ class ActivityChooserModel extends DataSetObservable {
                 && !mActivities.isEmpty() && !mHistoricalRecords.isEmpty()) {
             mActivitySorter.sort(mIntent, mActivities,
                     Collections.unmodifiableList(mHistoricalRecords));
+            mActivitiesSorted = mActivitySorter == mDefaultSorter;
+            mIncrementalSortCount = 0;
             return true;
         }
         return false;
     }
 
+    /**
+     * Updates the order of the activities for a record added to the history and
+     * the records pruned to make room for it, without sorting all activities again.
+     * Every so often a full sort is performed instead so that rounding errors don't
+     * accumulate.
+     *
+     * @return Whether the order was updated; if not a full sort is needed.
+     */
+    private boolean updateActivitiesIncrementally(HistoricalRecord addedRecord,
+            List<HistoricalRecord> prunedRecords) {
+        if (!mActivitiesSorted || mActivitySorter != mDefaultSorter
+                || mIncrementalSortCount >= mHistoryMaxSize) {
+            return false;
+        }
+        mIncrementalSortCount++;
+        mDefaultSorter.update(mActivities, addedRecord, prunedRecords);
+        return true;
+    }
+
     /**
      * Loads the activities for the current intent if needed which is
      * if they are not already loaded for the current intent.
@@ -687,6 +810,7 @@ class ActivityChooserModel extends DataSetObservable {
     private boolean loadActivitiesIfNeeded() {
         if (mReloadActivities && mIntent != null) {
             mReloadActivities = false;
+            mActivitiesSorted = false;
             mActivities.clear();
             List<ResolveInfo> resolveInfos = mContext.getPackageManager()
                     .queryIntentActivities(mIntent, 0);
@@ -701,21 +825,45 @@ class ActivityChooserModel extends DataSetObservable {
     }
 
     /**
-     * Reads the historical data if necessary which is it has
-     * changed, there is a history file, and there is not persist
-     * in progress.
+     * Starts reading the historical data off the UI thread if it has not been
+     * read yet and there is a history file.
+     */
+    private void readHistoricalDataIfNeeded() {
+        if (mHistoryReadStarted) {
+            return;
+        }
+        mHistoryReadStarted = true;
+        if (TextUtils.isEmpty(mHistoryFileName)) {
+            mHistoryRead = true;
+            return;
+        }
+        sHistoryExecutor.execute(new ReadHistoryTask());
+    }
+
+    /**
+     * Called on the main thread with the records read from the history file.
      *
-     * @return Whether reading was performed.
-     */
-    private boolean readHistoricalDataIfNeeded() {
-        if (mCanReadHistoricalData && mHistoricalRecordsChanged &&
-                !TextUtils.isEmpty(mHistoryFileName)) {
-            mCanReadHistoricalData = false;
-            mReadShareHistoryCalled = true;
-            readHistoricalDataImpl();
-            return true;
+     * @param readRecords The records read.
+     * @param rewrite Whether the history file has to be rewritten, for example
+     *        because it was in the legacy XML format or was truncated.
+     */
+    void onHistoricalDataRead(List<HistoricalRecord> readRecords, boolean rewrite) {
+        synchronized (mInstanceLock) {
+            mHistoryRead = true;
+            mHistoryFileRecordCount = readRecords.size();
+            mRewriteHistoryFile = rewrite;
+            // Choices made while reading are more recent than the ones read.
+            readRecords.addAll(mHistoricalRecords);
+            mHistoricalRecords.clear();
+            mHistoricalRecords.addAll(readRecords);
+            pruneExcessiveHistoricalRecordsIfNeeded();
+            if (!mPendingRecords.isEmpty() || (rewrite && !mHistoricalRecords.isEmpty())) {
+                schedulePersistHistoricalData();
+            }
+            mActivitiesSorted = false;
+            sortActivitiesIfNeeded();
+            notifyChanged();
         }
-        return false;
     }
 
     /**
@@ -727,10 +875,14 @@ class ActivityChooserModel extends DataSetObservable {
     private boolean addHisoricalRecord(HistoricalRecord historicalRecord) {
         final boolean added = mHistoricalRecords.add(historicalRecord);
         if (added) {
-            mHistoricalRecordsChanged = true;
-            pruneExcessiveHistoricalRecordsIfNeeded();
-            persistHistoricalDataIfNeeded();
-            sortActivitiesIfNeeded();
+            List<HistoricalRecord> prunedRecords = pruneExcessiveHistoricalRecordsIfNeeded();
+            if (!TextUtils.isEmpty(mHistoryFileName)) {
+                mPendingRecords.add(historicalRecord);
+                schedulePersistHistoricalData();
+            }
+            if (!updateActivitiesIncrementally(historicalRecord, prunedRecords)) {
+                sortActivitiesIfNeeded();
+            }
             notifyChanged();
         }
         return added;
@@ -738,19 +890,23 @@ class ActivityChooserModel extends DataSetObservable {
 
     /**
      * Prunes older excessive records to guarantee maxHistorySize.
+     *
+     * @return The pruned records, oldest first, or null if none were pruned.
      */
-    private void pruneExcessiveHistoricalRecordsIfNeeded() {
+    private List<HistoricalRecord> pruneExcessiveHistoricalRecordsIfNeeded() {
         final int pruneCount = mHistoricalRecords.size() - mHistoryMaxSize;
         if (pruneCount <= 0) {
-            return;
+            return null;
         }
-        mHistoricalRecordsChanged = true;
+        List<HistoricalRecord> prunedRecords = new ArrayList<HistoricalRecord>(pruneCount);
         for (int i = 0; i < pruneCount; i++) {
             HistoricalRecord prunedRecord = mHistoricalRecords.remove(0);
+            prunedRecords.add(prunedRecord);
             if (DEBUG) {
                 Log.i(LOG_TAG, "Pruned: " + prunedRecord);
             }
         }
+        return prunedRecords;
     }
 
     /**
@@ -862,6 +1018,11 @@ class ActivityChooserModel extends DataSetObservable {
          */
         public float weight;
 
+        /**
+         * Number of historical records for the activity accounted in its weight.
+         */
+        int recordCount;
+
         /**
          * Creates a new instance.
          *
@@ -912,12 +1073,17 @@ class ActivityChooserModel extends DataSetObservable {
     /**
      * Default activity sorter implementation.
      */
-    private final class DefaultSorter implements ActivitySorter {
+    final class DefaultSorter implements ActivitySorter {
         private static final float WEIGHT_DECAY_COEFFICIENT = 0.95f;
 
         private final Map<ComponentName, ActivityResolveInfo> mPackageNameToActivityMap =
                 new HashMap<ComponentName, ActivityResolveInfo>();
 
+        /**
+         * Number of historical records that matched an activity when last sorted.
+         */
+        private int mMatchedRecordCount;
+
         public void sort(Intent intent, List<ActivityResolveInfo> activities,
                 List<HistoricalRecord> historicalRecords) {
             Map<ComponentName, ActivityResolveInfo> componentNameToActivityMap =
@@ -928,6 +1094,7 @@ class ActivityChooserModel extends DataSetObservable {
             for (int i = 0; i < activityCount; i++) {
                 ActivityResolveInfo activity = activities.get(i);
                 activity.weight = 0.0f;
+                activity.recordCount = 0;
                 ComponentName componentName = new ComponentName(
                         activity.resolveInfo.activityInfo.packageName,
                         activity.resolveInfo.activityInfo.name);
@@ -936,15 +1103,19 @@ class ActivityChooserModel extends DataSetObservable {
 
             final int lastShareIndex = historicalRecords.size() - 1;
             float nextRecordWeight = 1;
+            int matchedRecordCount = 0;
             for (int i = lastShareIndex; i >= 0; i--) {
                 HistoricalRecord historicalRecord = historicalRecords.get(i);
                 ComponentName componentName = historicalRecord.activity;
                 ActivityResolveInfo activity = componentNameToActivityMap.get(componentName);
                 if (activity != null) {
                     activity.weight += historicalRecord.weight * nextRecordWeight;
+                    activity.recordCount++;
+                    matchedRecordCount++;
                     nextRecordWeight = nextRecordWeight * WEIGHT_DECAY_COEFFICIENT;
                 }
             }
+            mMatchedRecordCount = matchedRecordCount;
 
             Collections.sort(activities);
 
@@ -954,9 +1125,145 @@ class ActivityChooserModel extends DataSetObservable {
                 }
             }
         }
+
+        /**
+         * Updates the weights of activities last sorted by {@link #sort} for a record
+         * appended to the history and records pruned from its start. Adding a record
+         * decays all weights by the same factor, which keeps their relative order, so
+         * only the activities of the added and pruned records have to be moved.
+         */
+        void update(List<ActivityResolveInfo> activities, HistoricalRecord addedRecord,
+                List<HistoricalRecord> prunedRecords) {
+            ActivityResolveInfo addedActivity =
+                    mPackageNameToActivityMap.get(addedRecord.activity);
+            if (addedActivity != null) {
+                final int activityCount = activities.size();
+                for (int i = 0; i < activityCount; i++) {
+                    activities.get(i).weight *= WEIGHT_DECAY_COEFFICIENT;
+                }
+                addedActivity.weight += addedRecord.weight;
+                addedActivity.recordCount++;
+                mMatchedRecordCount++;
+                moveUp(activities, activities.indexOf(addedActivity));
+            }
+            if (prunedRecords != null) {
+                final int prunedCount = prunedRecords.size();
+                for (int i = 0; i < prunedCount; i++) {
+                    HistoricalRecord prunedRecord = prunedRecords.get(i);
+                    ActivityResolveInfo prunedActivity =
+                            mPackageNameToActivityMap.get(prunedRecord.activity);
+                    if (prunedActivity == null) {
+                        continue;
+                    }
+                    // The oldest record has decayed once per newer matching record.
+                    mMatchedRecordCount--;
+                    prunedActivity.recordCount--;
+                    if (prunedActivity.recordCount <= 0) {
+                        prunedActivity.recordCount = 0;
+                        prunedActivity.weight = 0.0f;
+                    } else {
+                        prunedActivity.weight = Math.max(0.0f, prunedActivity.weight
+                                - prunedRecord.weight * (float) Math.pow(
+                                        WEIGHT_DECAY_COEFFICIENT, mMatchedRecordCount));
+                    }
+                    moveDown(activities, activities.indexOf(prunedActivity));
+                }
+            }
+
+            if (DEBUG) {
+                for (int i = 0; i < activities.size(); i++) {
+                    Log.i(LOG_TAG, "Updated: " + activities.get(i));
+                }
+            }
+        }
+
+        private void moveUp(List<ActivityResolveInfo> activities, int index) {
+            ActivityResolveInfo activity = activities.get(index);
+            while (index > 0 && activities.get(index - 1).compareTo(activity) > 0) {
+                activities.set(index, activities.get(index - 1));
+                index--;
+            }
+            activities.set(index, activity);
+        }
+
+        private void moveDown(List<ActivityResolveInfo> activities, int index) {
+            ActivityResolveInfo activity = activities.get(index);
+            final int lastIndex = activities.size() - 1;
+            while (index < lastIndex && activities.get(index + 1).compareTo(activity) < 0) {
+                activities.set(index, activities.get(index + 1));
+                index++;
+            }
+            activities.set(index, activity);
+        }
+    }
+
+    /**
+     * Reads the binary history file into the given list.
+     *
+     * @return Whether the file exists and is valid.
+     */
+    boolean readBinaryHistoricalData(List<HistoricalRecord> historicalRecords) {
+        BufferedInputStream buffered = null;
+        DataInputStream in = null;
+        try {
+            buffered = new BufferedInputStream(mContext.openFileInput(mBinaryHistoryFileName));
+            in = new DataInputStream(buffered);
+        } catch (FileNotFoundException fnfe) {
+            if (DEBUG) {
+                Log.i(LOG_TAG, "Could not open historical records file: "
+                        + mBinaryHistoryFileName);
+            }
+            return false;
+        }
+        try {
+            if (in.readInt() != BINARY_HISTORY_FILE_MAGIC
+                    || in.readInt() != BINARY_HISTORY_FILE_VERSION) {
+                Log.e(LOG_TAG, "Unknown historical record file format: "
+                        + mBinaryHistoryFileName);
+                return false;
+            }
+            while (true) {
+                // Only the end of the file before a record is a clean end; running
+                // out of bytes within a record means the file was truncated.
+                buffered.mark(1);
+                if (buffered.read() < 0) {
+                    break;
+                }
+                buffered.reset();
+                final String activity = in.readUTF();
+                final long time = in.readLong();
+                final float weight = in.readFloat();
+                HistoricalRecord readRecord = new HistoricalRecord(activity, time, weight);
+                historicalRecords.add(readRecord);
+                if (DEBUG) {
+                    Log.i(LOG_TAG, "Read " + readRecord.toString());
+                }
+            }
+            if (DEBUG) {
+                Log.i(LOG_TAG, "Read " + historicalRecords.size() + " historical records.");
+            }
+            return true;
+        } catch (EOFException eofe) {
+            // A record was only partially written; keep the ones before it.
+            Log.w(LOG_TAG, "Truncated historical record file: " + mBinaryHistoryFileName);
+            return false;
+        } catch (IOException ioe) {
+            Log.e(LOG_TAG, "Error reading historical recrod file: " + mBinaryHistoryFileName,
+                    ioe);
+            return false;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ioe) {
+                /* ignore */
+            }
+        }
     }
 
-    private void readHistoricalDataImpl() {
+    /**
+     * Reads the legacy XML history file into the given list.
+     */
+    void readHistoricalDataImpl(List<HistoricalRecord> historicalRecords) {
         FileInputStream fis = null;
         try {
             fis = mContext.openFileInput(mHistoryFileName);
@@ -980,7 +1287,6 @@ class ActivityChooserModel extends DataSetObservable {
                         + TAG_HISTORICAL_RECORDS + " tag.");
             }
 
-            List<HistoricalRecord> historicalRecords = mHistoricalRecords;
             historicalRecords.clear();
 
             while (true) {
@@ -1028,69 +1334,100 @@ class ActivityChooserModel extends DataSetObservable {
     }
 
     /**
-     * Command for persisting the historical records to a file off the UI thread.
+     * Command for reading the historical records off the UI thread.
      */
-    private final class PersistHistoryAsyncTask extends AsyncTask<Object, Void, Void> {
+    private final class ReadHistoryTask implements Runnable {
 
         @Override
-        @SuppressWarnings("unchecked")
-        public Void doInBackground(Object... args) {
-            List<HistoricalRecord> historicalRecords = (List<HistoricalRecord>) args[0];
-            String hostoryFileName = (String) args[1];
-
-            FileOutputStream fos = null;
-
-            try {
-                fos = mContext.openFileOutput(hostoryFileName, Context.MODE_PRIVATE);
-            } catch (FileNotFoundException fnfe) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + hostoryFileName, fnfe);
-                return null;
+        public void run() {
+            final List<HistoricalRecord> historicalRecords = new ArrayList<HistoricalRecord>();
+            boolean rewrite = false;
+            if (!readBinaryHistoricalData(historicalRecords)) {
+                // Fall back to the XML file written by earlier versions; either
+                // it or whatever could be read from the binary file is rewritten.
+                rewrite = true;
+                if (historicalRecords.isEmpty()) {
+                    readHistoricalDataImpl(historicalRecords);
+                }
             }
+            final boolean rewriteHistory = rewrite;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onHistoricalDataRead(historicalRecords, rewriteHistory);
+                }
+            });
+        }
+    }
 
-            XmlSerializer serializer = Xml.newSerializer();
+    /**
+     * Command for persisting the historical records to a file off the UI thread.
+     */
+    final class PersistHistoryTask implements Runnable {
+        private final List<HistoricalRecord> mRecords;
+        private final boolean mRewrite;
 
-            try {
-                serializer.setOutput(fos, null);
-                serializer.startDocument("UTF-8", true);
-                serializer.startTag(null, TAG_HISTORICAL_RECORDS);
+        /**
+         * @param records The records to write.
+         * @param rewrite Whether to replace the file contents rather than append to them.
+         */
+        PersistHistoryTask(List<HistoricalRecord> records, boolean rewrite) {
+            mRecords = records;
+            mRewrite = rewrite;
+        }
 
-                final int recordCount = historicalRecords.size();
+        @Override
+        public void run() {
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(
+                        mContext.openFileOutput(mBinaryHistoryFileName, mRewrite
+                                ? Context.MODE_PRIVATE
+                                : Context.MODE_PRIVATE | Context.MODE_APPEND)));
+                if (mRewrite) {
+                    out.writeInt(BINARY_HISTORY_FILE_MAGIC);
+                    out.writeInt(BINARY_HISTORY_FILE_VERSION);
+                }
+                final int recordCount = mRecords.size();
                 for (int i = 0; i < recordCount; i++) {
-                    HistoricalRecord record = historicalRecords.remove(0);
-                    serializer.startTag(null, TAG_HISTORICAL_RECORD);
-                    serializer.attribute(null, ATTRIBUTE_ACTIVITY,
-                            record.activity.flattenToString());
-                    serializer.attribute(null, ATTRIBUTE_TIME, String.valueOf(record.time));
-                    serializer.attribute(null, ATTRIBUTE_WEIGHT, String.valueOf(record.weight));
-                    serializer.endTag(null, TAG_HISTORICAL_RECORD);
+                    HistoricalRecord record = mRecords.get(i);
+                    out.writeUTF(record.activity.flattenToString());
+                    out.writeLong(record.time);
+                    out.writeFloat(record.weight);
                     if (DEBUG) {
                         Log.i(LOG_TAG, "Wrote " + record.toString());
                     }
                 }
-
-                serializer.endTag(null, TAG_HISTORICAL_RECORDS);
-                serializer.endDocument();
-
+                out.close();
+                out = null;
+                if (mRewrite) {
+                    // The XML file, if any, has now been converted.
+                    mContext.deleteFile(mHistoryFileName);
+                }
                 if (DEBUG) {
                     Log.i(LOG_TAG, "Wrote " + recordCount + " historical records.");
                 }
-            } catch (IllegalArgumentException iae) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, iae);
-            } catch (IllegalStateException ise) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, ise);
             } catch (IOException ioe) {
-                Log.e(LOG_TAG, "Error writing historical recrod file: " + mHistoryFileName, ioe);
+                Log.e(LOG_TAG, "Error writing historical recrod file: "
+                        + mBinaryHistoryFileName, ioe);
+                // The file may now be incomplete; rewrite it next time.
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (mInstanceLock) {
+                            mRewriteHistoryFile = true;
+                        }
+                    }
+                });
             } finally {
-                mCanReadHistoricalData = true;
-                if (fos != null) {
+                if (out != null) {
                     try {
-                        fos.close();
+                        out.close();
                     } catch (IOException e) {
                         /* ignore */
                     }
                 }
             }
-            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.support.v7.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.ActivityChooserModel.ActivityResolveInfo;
+import android.support.v7.widget.ActivityChooserModel.HistoricalRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ActivityChooserModelTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final String PACKAGE_NAME = "android.support.v7.appcompat.test";
+
+    private static int sModelCount;
+
+    private Context mContext;
+    private String mHistoryName;
+    private ActivityChooserModel mModel;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        // Models are shared by history file name, so each test gets its own file.
+        mHistoryName = "activity_chooser_model_test_" + System.nanoTime() + "_" + sModelCount++;
+        mModel = ActivityChooserModel.get(mContext, mHistoryName);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteFile(xmlFileName());
+        mContext.deleteFile(binaryFileName());
+    }
+
+    private String xmlFileName() {
+        return mHistoryName + ".xml";
+    }
+
+    private String binaryFileName() {
+        return mHistoryName + ".dat";
+    }
+
+    private static HistoricalRecord record(String activity, long time, float weight) {
+        return new HistoricalRecord(new ComponentName(PACKAGE_NAME, activity), time, weight);
+    }
+
+    private List<HistoricalRecord> readBinary() {
+        List<HistoricalRecord> records = new ArrayList<HistoricalRecord>();
+        mModel.readBinaryHistoricalData(records);
+        return records;
+    }
+
+    private static void assertRecordsEqual(List<HistoricalRecord> expected,
+            List<HistoricalRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void binaryHistoryRoundTrip() {
+        List<HistoricalRecord> records = new ArrayList<HistoricalRecord>();
+        records.add(record("A", 1, 1.0f));
+        records.add(record("B", 2, 5.5f));
+        mModel.new PersistHistoryTask(records, true).run();
+        assertRecordsEqual(records, readBinary());
+
+        // Appended records follow the ones already in the file.
+        List<HistoricalRecord> appended = new ArrayList<HistoricalRecord>();
+        appended.add(record("C", 3, 1.0f));
+        mModel.new PersistHistoryTask(appended, false).run();
+        records.addAll(appended);
+        assertRecordsEqual(records, readBinary());
+
+        // Rewriting replaces them.
+        mModel.new PersistHistoryTask(appended, true).run();
+        assertRecordsEqual(appended, readBinary());
+    }
+
+    @Test
+    public void truncatedBinaryHistoryKeepsCompleteRecords() throws IOException {
+        List<HistoricalRecord> records = new ArrayList<HistoricalRecord>();
+        records.add(record("A", 1, 1.0f));
+        records.add(record("B", 2, 1.0f));
+        mModel.new PersistHistoryTask(records, true).run();
+        File file = mContext.getFileStreamPath(binaryFileName());
+        FileOutputStream out = mContext.openFileOutput(binaryFileName(),
+                Context.MODE_PRIVATE | Context.MODE_APPEND);
+        try {
+            // A record whose activity was written but not its time and weight.
+            out.write(new byte[] { 0, 1, 'X' });
+        } finally {
+            out.close();
+        }
+        assertTrue(file.length() > 0);
+
+        List<HistoricalRecord> read = new ArrayList<HistoricalRecord>();
+        assertFalse(mModel.readBinaryHistoricalData(read));
+        assertRecordsEqual(records, read);
+    }
+
+    @Test
+    public void recordTruncatedInActivityNameRewritten() throws Exception {
+        List<HistoricalRecord> records = new ArrayList<HistoricalRecord>();
+        records.add(record("A", 1, 1.0f));
+        records.add(record("B", 2, 1.0f));
+        mModel.new PersistHistoryTask(records, true).run();
+        FileOutputStream out = mContext.openFileOutput(binaryFileName(),
+                Context.MODE_PRIVATE | Context.MODE_APPEND);
+        try {
+            // An activity name of five bytes cut after the first one.
+            out.write(new byte[] { 0, 5, 'X' });
+        } finally {
+            out.close();
+        }
+        List<HistoricalRecord> read = new ArrayList<HistoricalRecord>();
+        assertFalse(mModel.readBinaryHistoricalData(read));
+        assertRecordsEqual(records, read);
+
+        // Loading the history rewrites the file from the complete records.
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((mModel.getHistorySize() != records.size()
+                || !mModel.readBinaryHistoricalData(new ArrayList<HistoricalRecord>()))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        read.clear();
+        assertTrue(mModel.readBinaryHistoricalData(read));
+        assertRecordsEqual(records, read);
+
+        // Records appended afterwards can be read back.
+        List<HistoricalRecord> appended = new ArrayList<HistoricalRecord>();
+        appended.add(record("C", 3, 1.0f));
+        mModel.new PersistHistoryTask(appended, false).run();
+        records.addAll(appended);
+        read.clear();
+        assertTrue(mModel.readBinaryHistoricalData(read));
+        assertRecordsEqual(records, read);
+    }
+
+    @Test
+    public void xmlHistoryMigrated() throws Exception {
+        Writer writer = new OutputStreamWriter(
+                mContext.openFileOutput(xmlFileName(), Context.MODE_PRIVATE), "UTF-8");
+        try {
+            writer.write("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>"
+                    + "<historical-records>"
+                    + "<historical-record activity=\"" + PACKAGE_NAME + "/A\" time=\"1\""
+                    + " weight=\"1.0\" />"
+                    + "<historical-record activity=\"" + PACKAGE_NAME + "/B\" time=\"2\""
+                    + " weight=\"2.0\" />"
+                    + "</historical-records>");
+        } finally {
+            writer.close();
+        }
+        List<HistoricalRecord> expected = new ArrayList<HistoricalRecord>();
+        expected.add(record("A", 1, 1.0f));
+        expected.add(record("B", 2, 2.0f));
+
+        // Using the model reads the XML history and writes it back in the binary format.
+        File xmlFile = mContext.getFileStreamPath(xmlFileName());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((mModel.getHistorySize() != expected.size() || xmlFile.exists())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected.size(), mModel.getHistorySize());
+        assertFalse(xmlFile.exists());
+        assertRecordsEqual(expected, readBinary());
+    }
+
+    @Test
+    public void choicesPersistedAfterDelay() throws Exception {
+        Intent intent = new Intent(Intent.ACTION_MAIN);
+        intent.setClassName(mContext, "android.support.v7.app.WindowDecorActionBarActivity");
+        mModel.setIntent(intent);
+        assertEquals(1, mModel.getActivityCount());
+        mModel.chooseActivity(0);
+        mModel.chooseActivity(0);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (readBinary().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        List<HistoricalRecord> read = readBinary();
+        assertEquals(2, read.size());
+        assertEquals(intent.getComponent(), read.get(0).activity);
+        assertEquals(intent.getComponent(), read.get(1).activity);
+    }
+
+    @Test
+    public void incrementalWeightsMatchFullSort() {
+        final int activityCount = 5;
+        final int historyMaxSize = 10;
+        List<ActivityResolveInfo> incremental = new ArrayList<ActivityResolveInfo>();
+        List<ActivityResolveInfo> full = new ArrayList<ActivityResolveInfo>();
+        for (int i = 0; i < activityCount; i++) {
+            incremental.add(mModel.new ActivityResolveInfo(resolveInfo("Activity" + i)));
+            full.add(mModel.new ActivityResolveInfo(resolveInfo("Activity" + i)));
+        }
+        ActivityChooserModel.DefaultSorter incrementalSorter = mModel.new DefaultSorter();
+        ActivityChooserModel.DefaultSorter fullSorter = mModel.new DefaultSorter();
+
+        List<HistoricalRecord> history = new ArrayList<HistoricalRecord>();
+        history.add(record("Activity0", 0, 1.0f));
+        incrementalSorter.sort(null, incremental, history);
+
+        Random random = new Random(42);
+        for (int time = 1; time < 100; time++) {
+            // Records of unknown activities are kept but don't weigh on the order.
+            int activity = random.nextInt(activityCount + 1);
+            HistoricalRecord added = record("Activity" + activity, time,
+                    random.nextInt(4) == 0 ? 3.0f : 1.0f);
+            history.add(added);
+            List<HistoricalRecord> pruned = null;
+            if (history.size() > historyMaxSize) {
+                pruned = new ArrayList<HistoricalRecord>();
+                pruned.add(history.remove(0));
+            }
+            incrementalSorter.update(incremental, added, pruned);
+            fullSorter.sort(null, full, history);
+            assertSameWeights(full, incremental);
+        }
+    }
+
+    private static ResolveInfo resolveInfo(String activity) {
+        ResolveInfo resolveInfo = new ResolveInfo();
+        resolveInfo.activityInfo = new ActivityInfo();
+        resolveInfo.activityInfo.packageName = PACKAGE_NAME;
+        resolveInfo.activityInfo.name = activity;
+        return resolveInfo;
+    }
+
+    private static void assertSameWeights(List<ActivityResolveInfo> expected,
+            List<ActivityResolveInfo> actual) {
+        Map<String, Float> expectedWeights = new HashMap<String, Float>();
+        for (ActivityResolveInfo info : expected) {
+            expectedWeights.put(info.resolveInfo.activityInfo.name, info.weight);
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            ActivityResolveInfo info = actual.get(i);
+            assertEquals(info.resolveInfo.activityInfo.name,
+                    expectedWeights.get(info.resolveInfo.activityInfo.name), info.weight,
+                    1e-3f);
+            if (i > 0) {
+                assertTrue("not sorted at " + i, actual.get(i - 1).weight >= info.weight);
+            }
+        }
+    }
+}
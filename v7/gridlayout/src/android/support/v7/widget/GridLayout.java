@@ -219,6 +219,8 @@ public class GridLayout extends ViewGroup {
     static final int MAX_SIZE = 100000;
     static final int DEFAULT_CONTAINER_MARGIN = 0;
     static final int UNINITIALIZED_HASH = 0;
+    static final int SOLUTION_CACHE_SIZE = 4;
+    static final int INVALID_ARC_VALUE = Integer.MIN_VALUE;
     static final Printer LOG_PRINTER = new LogPrinter(Log.DEBUG, GridLayout.class.getName());
     static final Printer NO_PRINTER = new Printer() {
         @Override
@@ -1114,6 +1116,14 @@ public class GridLayout extends ViewGroup {
         public int[] locations;
         public boolean locationsValid = false;
 
+        // Recent solutions keyed by the arc values they were solved from. Measuring and laying
+        // out with unchanged constraints copies a previous solution instead of solving again.
+        private int[][] solutionKeys;
+        private int[][] solutionLocations;
+        private int solutionCount;
+        private int nextSolution;
+        private int[] solutionKey;
+
         public boolean hasWeights;
         public boolean hasWeightsValid = false;
         public int[] deltas;
@@ -1489,6 +1499,70 @@ public class GridLayout extends ViewGroup {
         }
 
         private boolean solve(Arc[] arcs, int[] locations, boolean modifyOnError) {
+            final int[] key = getSolutionKey(arcs);
+            final int cached = findSolution(key);
+            if (cached >= 0) {
+                System.arraycopy(solutionLocations[cached], 0, locations, 0, locations.length);
+                return true;
+            }
+            final boolean solved = solveConstraints(arcs, locations, modifyOnError);
+            // Solves that removed inconsistent arcs are not repeatable from the same key
+            if (solved && validityMatches(arcs, key)) {
+                saveSolution(key, locations);
+            }
+            return solved;
+        }
+
+        private int[] getSolutionKey(Arc[] arcs) {
+            if (solutionKey == null || solutionKey.length != arcs.length) {
+                solutionKey = new int[arcs.length];
+            }
+            for (int i = 0; i < arcs.length; i++) {
+                final Arc arc = arcs[i];
+                solutionKey[i] = arc.valid ? arc.value.value : INVALID_ARC_VALUE;
+            }
+            return solutionKey;
+        }
+
+        private boolean validityMatches(Arc[] arcs, int[] key) {
+            for (int i = 0; i < arcs.length; i++) {
+                if (arcs[i].valid != (key[i] != INVALID_ARC_VALUE)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int findSolution(int[] key) {
+            for (int i = 0; i < solutionCount; i++) {
+                if (Arrays.equals(solutionKeys[i], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void saveSolution(int[] key, int[] locations) {
+            if (solutionKeys == null) {
+                solutionKeys = new int[SOLUTION_CACHE_SIZE][];
+                solutionLocations = new int[SOLUTION_CACHE_SIZE][];
+            }
+            final int slot = nextSolution;
+            nextSolution = (nextSolution + 1) % SOLUTION_CACHE_SIZE;
+            solutionCount = Math.min(solutionCount + 1, SOLUTION_CACHE_SIZE);
+            solutionKeys[slot] = copyInto(solutionKeys[slot], key);
+            solutionLocations[slot] = copyInto(solutionLocations[slot], locations);
+        }
+
+        private int[] copyInto(int[] dst, int[] src) {
+            if (dst == null || dst.length != src.length) {
+                dst = new int[src.length];
+            }
+            System.arraycopy(src, 0, dst, 0, src.length);
+            return dst;
+        }
+
+        private boolean solveConstraints(Arc[] arcs, int[] locations, boolean modifyOnError) {
             String axisName = horizontal ? "horizontal" : "vertical";
             int N = getCount() + 1; // The number of vertices is the number of columns/rows + 1.
             boolean[] originalCulprits = null;
@@ -1768,6 +1842,11 @@ public class GridLayout extends ViewGroup {
 
             locations = null;
 
+            solutionKeys = null;
+            solutionLocations = null;
+            solutionCount = 0;
+            nextSolution = 0;
+
             deltas = null;
             hasWeightsValid = false;
 
@@ -110,4 +110,86 @@ public class GridLayoutTest extends ActivityInstrumentationTestCase2 {
                 total < ((ViewGroup)gridView.getParent()).getHeight());
 
     }
+
+    /**
+     * A view that counts how often it is measured.
+     */
+    static class CountingView extends View {
+        int mMeasureCount;
+
+        CountingView(Activity activity) {
+            super(activity);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mMeasureCount++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+
+    private GridLayout createGrid(int size) {
+        final GridLayout grid = new GridLayout(getActivity());
+        grid.setColumnCount(size);
+        for (int i = 0; i < size * size; i++) {
+            final View child = new CountingView(getActivity());
+            grid.addView(child, new GridLayout.LayoutParams(new ViewGroup.LayoutParams(20, 10)));
+        }
+        return grid;
+    }
+
+    private void measure(GridLayout grid) {
+        grid.measure(View.MeasureSpec.makeMeasureSpec(10000, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(10000, View.MeasureSpec.AT_MOST));
+    }
+
+    @UiThreadTest
+    public void testRemeasureWithChangedChild() throws Throwable {
+        final GridLayout grid = createGrid(4);
+        measure(grid);
+        assertEquals(80, grid.getMeasuredWidth());
+        assertEquals(40, grid.getMeasuredHeight());
+
+        // Measuring again with the same constraints must give the same result
+        measure(grid);
+        assertEquals(80, grid.getMeasuredWidth());
+        assertEquals(40, grid.getMeasuredHeight());
+
+        // Changing a child must not reuse the previous solution
+        grid.getChildAt(0).getLayoutParams().width = 50;
+        grid.getChildAt(0).requestLayout();
+        measure(grid);
+        assertEquals(110, grid.getMeasuredWidth());
+        assertEquals(40, grid.getMeasuredHeight());
+
+        grid.getChildAt(0).getLayoutParams().width = 20;
+        grid.getChildAt(0).requestLayout();
+        measure(grid);
+        assertEquals(80, grid.getMeasuredWidth());
+    }
+
+    @UiThreadTest
+    public void testChildMeasureCount() throws Throwable {
+        final int iterations = 20;
+        for (int size = 4; size <= 16; size += 4) {
+            final GridLayout grid = createGrid(size);
+            measure(grid);
+            for (int i = 0; i < grid.getChildCount(); i++) {
+                assertEquals("child " + i + " of " + size + "x" + size + " grid",
+                        1, ((CountingView) grid.getChildAt(i)).mMeasureCount);
+            }
+            for (int i = 0; i < iterations; i++) {
+                grid.requestLayout();
+                measure(grid);
+            }
+            // Children that are not stretched are measured at most once per grid measure
+            for (int i = 0; i < grid.getChildCount(); i++) {
+                final int count = ((CountingView) grid.getChildAt(i)).mMeasureCount;
+                assertTrue("child " + i + " of " + size + "x" + size + " grid measured "
+                        + count + " times", count <= 1 + iterations);
+            }
+            assertEquals(size * 20, grid.getMeasuredWidth());
+            assertEquals(size * 10, grid.getMeasuredHeight());
+        }
+    }
 }
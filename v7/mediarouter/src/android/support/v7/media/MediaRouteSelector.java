@@ -22,8 +22,11 @@ import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -46,8 +49,13 @@ import java.util.List;
 public final class MediaRouteSelector {
     private static final String KEY_CONTROL_CATEGORIES = "controlCategories";
 
+    // Bit index of each control category, shared by all selectors and routes so that
+    // they can be matched by intersecting their category bits.
+    private static final HashMap<String, Integer> sControlCategoryBitIndices = new HashMap<>();
+
     private final Bundle mBundle;
     private List<String> mControlCategories;
+    private BitSet mControlCategoryBits;
 
     /**
      * An empty media route selector that will not match any routes.
@@ -124,6 +132,61 @@ public final class MediaRouteSelector {
         return false;
     }
 
+    /**
+     * Returns true if the selector has one of the categories whose bits are set in the
+     * specified category bits.
+     *
+     * @see #getControlCategoryBits(List)
+     */
+    boolean matchesControlCategoryBits(BitSet categoryBits) {
+        if (mControlCategoryBits == null) {
+            ensureControlCategories();
+            final BitSet bits = new BitSet();
+            final int categoryCount = mControlCategories.size();
+            for (int i = 0; i < categoryCount; i++) {
+                final String category = mControlCategories.get(i);
+                if (category != null) {
+                    bits.set(getControlCategoryBitIndex(category));
+                }
+            }
+            mControlCategoryBits = bits;
+        }
+        return mControlCategoryBits.intersects(categoryBits);
+    }
+
+    /**
+     * Returns the bits of all the categories of the specified control filters.
+     */
+    static BitSet getControlCategoryBits(List<IntentFilter> filters) {
+        final BitSet bits = new BitSet();
+        final int filterCount = filters.size();
+        for (int i = 0; i < filterCount; i++) {
+            final IntentFilter filter = filters.get(i);
+            final Iterator<String> categories =
+                    filter != null ? filter.categoriesIterator() : null;
+            if (categories != null) {
+                while (categories.hasNext()) {
+                    final String category = categories.next();
+                    if (category != null) {
+                        bits.set(getControlCategoryBitIndex(category));
+                    }
+                }
+            }
+        }
+        return bits;
+    }
+
+    private static int getControlCategoryBitIndex(String category) {
+        synchronized (sControlCategoryBitIndices) {
+            Integer index = sControlCategoryBitIndices.get(category);
+            if (index == null) {
+                index = sControlCategoryBitIndices.size();
+                sControlCategoryBitIndices.put(category, index);
+            }
+            return index;
+        }
+    }
+
     /**
      * Returns true if this selector contains all of the capabilities described
      * by the specified selector.
@@ -47,8 +47,10 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -758,6 +760,94 @@ public final class MediaRouter {
         return a == b || (a != null && b != null && a.equals(b));
     }
 
+    /**
+     * Compares the contents of two bundles, since descriptors sent by remote providers
+     * always have new bundle instances. Values that can't be compared by contents are
+     * considered different.
+     */
+    static boolean equalBundles(Bundle a, Bundle b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.size() != b.size()
+                || !a.keySet().equals(b.keySet())) {
+            return false;
+        }
+        for (String key : a.keySet()) {
+            final Object valueA = a.get(key);
+            final Object valueB = b.get(key);
+            if (valueA instanceof Bundle && valueB instanceof Bundle) {
+                if (!equalBundles((Bundle) valueA, (Bundle) valueB)) {
+                    return false;
+                }
+            } else if (!Arrays.deepEquals(new Object[] { valueA }, new Object[] { valueB })) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the contents of two lists of intent filters, which don't implement equals().
+     */
+    static boolean equalIntentFilters(List<IntentFilter> a, List<IntentFilter> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            final IntentFilter filterA = a.get(i);
+            final IntentFilter filterB = b.get(i);
+            if (filterA == filterB) {
+                continue;
+            }
+            if (filterA.getPriority() != filterB.getPriority()
+                    || filterA.countActions() != filterB.countActions()
+                    || filterA.countCategories() != filterB.countCategories()
+                    || filterA.countDataSchemes() != filterB.countDataSchemes()
+                    || filterA.countDataTypes() != filterB.countDataTypes()
+                    || filterA.countDataAuthorities() != filterB.countDataAuthorities()
+                    || filterA.countDataPaths() != filterB.countDataPaths()) {
+                return false;
+            }
+            for (int j = 0; j < filterA.countActions(); j++) {
+                if (!filterA.getAction(j).equals(filterB.getAction(j))) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < filterA.countCategories(); j++) {
+                if (!filterA.getCategory(j).equals(filterB.getCategory(j))) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < filterA.countDataSchemes(); j++) {
+                if (!filterA.getDataScheme(j).equals(filterB.getDataScheme(j))) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < filterA.countDataTypes(); j++) {
+                if (!filterA.getDataType(j).equals(filterB.getDataType(j))) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < filterA.countDataAuthorities(); j++) {
+                final IntentFilter.AuthorityEntry authorityA = filterA.getDataAuthority(j);
+                final IntentFilter.AuthorityEntry authorityB = filterB.getDataAuthority(j);
+                if (!authorityA.getHost().equals(authorityB.getHost())
+                        || authorityA.getPort() != authorityB.getPort()) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < filterA.countDataPaths(); j++) {
+                if (!filterA.getDataPath(j).getPath().equals(filterB.getDataPath(j).getPath())
+                        || filterA.getDataPath(j).getType()
+                                != filterB.getDataPath(j).getType()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Provides information about a media route.
      * <p>
@@ -778,6 +868,8 @@ public final class MediaRouter {
         private int mConnectionState;
         private boolean mCanDisconnect;
         private final ArrayList<IntentFilter> mControlFilters = new ArrayList<>();
+        private BitSet mControlCategoryBits;
+        int mControlFiltersVersion;
         private int mPlaybackType;
         private int mPlaybackStream;
         private int mDeviceType;
@@ -1064,7 +1156,10 @@ public final class MediaRouter {
                 throw new IllegalArgumentException("selector must not be null");
             }
             checkCallingThread();
-            return selector.matchesControlFilters(mControlFilters);
+            if (mControlCategoryBits == null) {
+                mControlCategoryBits = MediaRouteSelector.getControlCategoryBits(mControlFilters);
+            }
+            return selector.matchesControlCategoryBits(mControlCategoryBits);
         }
 
         /**
@@ -1429,9 +1524,11 @@ public final class MediaRouter {
                     mConnectionState = descriptor.getConnectionState();
                     changes |= CHANGE_GENERAL;
                 }
-                if (!mControlFilters.equals(descriptor.getControlFilters())) {
+                if (!equalIntentFilters(mControlFilters, descriptor.getControlFilters())) {
                     mControlFilters.clear();
                     mControlFilters.addAll(descriptor.getControlFilters());
+                    mControlCategoryBits = null;
+                    mControlFiltersVersion++;
                     changes |= CHANGE_GENERAL;
                 }
                 if (mPlaybackType != descriptor.getPlaybackType()) {
@@ -1463,7 +1560,7 @@ public final class MediaRouter {
                     mPresentationDisplay = null;
                     changes |= CHANGE_GENERAL | CHANGE_PRESENTATION_DISPLAY;
                 }
-                if (!equal(mExtras, descriptor.getExtras())) {
+                if (!equalBundles(mExtras, descriptor.getExtras())) {
                     mExtras = descriptor.getExtras();
                     changes |= CHANGE_GENERAL;
                 }
@@ -1801,6 +1898,11 @@ public final class MediaRouter {
         public MediaRouteSelector mSelector;
         public int mFlags;
 
+        // Results of matching routes against mMatchedSelector, along with the version of
+        // the route's control filters they were computed for.
+        private final HashMap<RouteInfo, Integer> mMatchResults = new HashMap<>();
+        private MediaRouteSelector mMatchedSelector;
+
         public CallbackRecord(MediaRouter router, Callback callback) {
             mRouter = router;
             mCallback = callback;
@@ -1808,8 +1910,24 @@ public final class MediaRouter {
         }
 
         public boolean filterRouteEvent(RouteInfo route) {
-            return (mFlags & CALLBACK_FLAG_UNFILTERED_EVENTS) != 0
-                    || route.matchesSelector(mSelector);
+            if ((mFlags & CALLBACK_FLAG_UNFILTERED_EVENTS) != 0) {
+                return true;
+            }
+            if (mMatchedSelector != mSelector) {
+                mMatchResults.clear();
+                mMatchedSelector = mSelector;
+            }
+            final Integer result = mMatchResults.get(route);
+            if (result != null && (result >> 1) == route.mControlFiltersVersion) {
+                return (result & 1) != 0;
+            }
+            final boolean matches = route.matchesSelector(mSelector);
+            mMatchResults.put(route, (route.mControlFiltersVersion << 1) | (matches ? 1 : 0));
+            return matches;
+        }
+
+        public void forgetRoute(RouteInfo route) {
+            mMatchResults.remove(route);
         }
     }
 
@@ -1826,6 +1944,7 @@ public final class MediaRouter {
         private final Context mApplicationContext;
         private final ArrayList<WeakReference<MediaRouter>> mRouters = new ArrayList<>();
         private final ArrayList<RouteInfo> mRoutes = new ArrayList<>();
+        private final Map<String, RouteInfo> mRoutesByUniqueId = new HashMap<>();
         private final Map<Pair<String, String>, String> mUniqueIdMap = new HashMap<>();
         private final ArrayList<ProviderInfo> mProviders = new ArrayList<>();
         private final ArrayList<RemoteControlClientRecord> mRemoteControlClients =
@@ -1991,7 +2110,7 @@ public final class MediaRouter {
         }
 
         public void selectRoute(RouteInfo route, int unselectReason) {
-            if (!mRoutes.contains(route)) {
+            if (mRoutesByUniqueId.get(route.mUniqueId) != route) {
                 Log.w(TAG, "Ignoring attempt to select removed route: " + route);
                 return;
             }
@@ -2157,119 +2276,151 @@ public final class MediaRouter {
         private void updateProviderContents(ProviderInfo provider,
                 MediaRouteProviderDescriptor providerDescriptor) {
             if (provider.updateDescriptor(providerDescriptor)) {
-                // Update all existing routes and reorder them to match
-                // the order of their descriptors.
-                int targetIndex = 0;
-                boolean selectedRouteDescriptorChanged = false;
-                if (providerDescriptor != null) {
-                    if (providerDescriptor.isValid()) {
-                        final List<MediaRouteDescriptor> routeDescriptors =
-                                providerDescriptor.getRoutes();
-                        final int routeCount = routeDescriptors.size();
-                        // Updating route group's contents requires all member routes' information.
-                        // Add the groups to the lists and update them later.
-                        List<Pair<RouteInfo, MediaRouteDescriptor>> addedGroups = new ArrayList<>();
-                        List<Pair<RouteInfo, MediaRouteDescriptor>> updatedGroups =
-                                new ArrayList<>();
-                        for (int i = 0; i < routeCount; i++) {
-                            final MediaRouteDescriptor routeDescriptor = routeDescriptors.get(i);
-                            final String id = routeDescriptor.getId();
-                            final int sourceIndex = provider.findRouteByDescriptorId(id);
-                            if (sourceIndex < 0) {
-                                // 1. Add the route to the list.
-                                String uniqueId = assignRouteUniqueId(provider, id);
-                                boolean isGroup = routeDescriptor.getGroupMemberIds() != null;
-                                RouteInfo route = isGroup ? new RouteGroup(provider, id, uniqueId) :
-                                        new RouteInfo(provider, id, uniqueId);
-                                provider.mRoutes.add(targetIndex++, route);
-                                mRoutes.add(route);
-                                // 2. Create the route's contents.
-                                if (isGroup) {
-                                    addedGroups.add(new Pair(route, routeDescriptor));
-                                } else {
-                                    route.maybeUpdateDescriptor(routeDescriptor);
-                                    // 3. Notify clients about addition.
-                                    if (DEBUG) {
-                                        Log.d(TAG, "Route added: " + route);
-                                    }
-                                    mCallbackHandler.post(CallbackHandler.MSG_ROUTE_ADDED, route);
+                // Deliver all the callbacks of this update in one message.
+                mCallbackHandler.beginBatch();
+                try {
+                    updateProviderRoutes(provider, providerDescriptor);
+                } finally {
+                    mCallbackHandler.endBatch();
+                }
+            }
+        }
+
+        private void updateProviderRoutes(ProviderInfo provider,
+                MediaRouteProviderDescriptor providerDescriptor) {
+            // Update all existing routes and reorder them to match
+            // the order of their descriptors.
+            int targetIndex = 0;
+            boolean selectedRouteDescriptorChanged = false;
+            if (providerDescriptor != null) {
+                if (providerDescriptor.isValid()) {
+                    final List<MediaRouteDescriptor> routeDescriptors =
+                            providerDescriptor.getRoutes();
+                    final int routeCount = routeDescriptors.size();
+                    // Index the existing routes by descriptor id, and build the new
+                    // order of the routes before putting the remaining ones after it.
+                    final Map<String, RouteInfo> existingRoutes =
+                            new HashMap<>(provider.mRoutes.size());
+                    for (RouteInfo route : provider.mRoutes) {
+                        existingRoutes.put(route.mDescriptorId, route);
+                    }
+                    final ArrayList<RouteInfo> orderedRoutes = new ArrayList<>(routeCount);
+                    final HashSet<String> orderedIds = new HashSet<>(routeCount);
+                    // Updating route group's contents requires all member routes' information.
+                    // Add the groups to the lists and update them later.
+                    List<Pair<RouteInfo, MediaRouteDescriptor>> addedGroups = new ArrayList<>();
+                    List<Pair<RouteInfo, MediaRouteDescriptor>> updatedGroups =
+                            new ArrayList<>();
+                    for (int i = 0; i < routeCount; i++) {
+                        final MediaRouteDescriptor routeDescriptor = routeDescriptors.get(i);
+                        final String id = routeDescriptor.getId();
+                        if (!orderedIds.add(id)) {
+                            Log.w(TAG, "Ignoring route descriptor with duplicate id: "
+                                    + routeDescriptor);
+                            continue;
+                        }
+                        final RouteInfo existingRoute = existingRoutes.remove(id);
+                        if (existingRoute == null) {
+                            // 1. Add the route to the list.
+                            String uniqueId = assignRouteUniqueId(provider, id);
+                            boolean isGroup = routeDescriptor.getGroupMemberIds() != null;
+                            RouteInfo route = isGroup ? new RouteGroup(provider, id, uniqueId) :
+                                    new RouteInfo(provider, id, uniqueId);
+                            orderedRoutes.add(route);
+                            mRoutes.add(route);
+                            mRoutesByUniqueId.put(uniqueId, route);
+                            // 2. Create the route's contents.
+                            if (isGroup) {
+                                addedGroups.add(new Pair(route, routeDescriptor));
+                            } else {
+                                route.maybeUpdateDescriptor(routeDescriptor);
+                                // 3. Notify clients about addition.
+                                if (DEBUG) {
+                                    Log.d(TAG, "Route added: " + route);
                                 }
+                                mCallbackHandler.post(CallbackHandler.MSG_ROUTE_ADDED, route);
+                            }
 
-                            } else if (sourceIndex < targetIndex) {
-                                Log.w(TAG, "Ignoring route descriptor with duplicate id: "
-                                        + routeDescriptor);
+                        } else {
+                            // 1. Reorder the route within the list.
+                            RouteInfo route = existingRoute;
+                            orderedRoutes.add(route);
+                            // 2. Update the route's contents.
+                            if (route instanceof RouteGroup) {
+                                updatedGroups.add(new Pair(route, routeDescriptor));
                             } else {
-                                // 1. Reorder the route within the list.
-                                RouteInfo route = provider.mRoutes.get(sourceIndex);
-                                Collections.swap(provider.mRoutes,
-                                        sourceIndex, targetIndex++);
-                                // 2. Update the route's contents.
-                                if (route instanceof RouteGroup) {
-                                    updatedGroups.add(new Pair(route, routeDescriptor));
-                                } else {
-                                    // 3. Notify clients about changes.
-                                    if (updateRouteDescriptorAndNotify(route, routeDescriptor)
-                                            != 0) {
-                                        if (route == mSelectedRoute) {
-                                            selectedRouteDescriptorChanged = true;
-                                        }
+                                // 3. Notify clients about changes.
+                                if (updateRouteDescriptorAndNotify(route, routeDescriptor)
+                                        != 0) {
+                                    if (route == mSelectedRoute) {
+                                        selectedRouteDescriptorChanged = true;
                                     }
                                 }
                             }
                         }
-                        // Update the new and/or existing groups.
-                        for (Pair<RouteInfo, MediaRouteDescriptor> pair : addedGroups) {
-                            RouteInfo route = pair.first;
-                            route.maybeUpdateDescriptor(pair.second);
-                            if (DEBUG) {
-                                Log.d(TAG, "Route added: " + route);
-                            }
-                            mCallbackHandler.post(CallbackHandler.MSG_ROUTE_ADDED, route);
+                    }
+                    // Update the new and/or existing groups.
+                    for (Pair<RouteInfo, MediaRouteDescriptor> pair : addedGroups) {
+                        RouteInfo route = pair.first;
+                        route.maybeUpdateDescriptor(pair.second);
+                        if (DEBUG) {
+                            Log.d(TAG, "Route added: " + route);
                         }
-                        for (Pair<RouteInfo, MediaRouteDescriptor> pair : updatedGroups) {
-                            RouteInfo route = pair.first;
-                            if (updateRouteDescriptorAndNotify(route, pair.second) != 0) {
-                                if (route == mSelectedRoute) {
-                                    selectedRouteDescriptorChanged = true;
-                                }
+                        mCallbackHandler.post(CallbackHandler.MSG_ROUTE_ADDED, route);
+                    }
+                    for (Pair<RouteInfo, MediaRouteDescriptor> pair : updatedGroups) {
+                        RouteInfo route = pair.first;
+                        if (updateRouteDescriptorAndNotify(route, pair.second) != 0) {
+                            if (route == mSelectedRoute) {
+                                selectedRouteDescriptorChanged = true;
                             }
                         }
-                    } else {
-                        Log.w(TAG, "Ignoring invalid provider descriptor: " + providerDescriptor);
                     }
+                    // Keep the routes without descriptors at the end, to dispose them below.
+                    for (RouteInfo route : provider.mRoutes) {
+                        if (existingRoutes.get(route.mDescriptorId) == route) {
+                            orderedRoutes.add(route);
+                        }
+                    }
+                    targetIndex = orderedIds.size();
+                    provider.mRoutes.clear();
+                    provider.mRoutes.addAll(orderedRoutes);
+                } else {
+                    Log.w(TAG, "Ignoring invalid provider descriptor: " + providerDescriptor);
                 }
+            }
 
-                // Dispose all remaining routes that do not have matching descriptors.
-                for (int i = provider.mRoutes.size() - 1; i >= targetIndex; i--) {
-                    // 1. Delete the route's contents.
-                    RouteInfo route = provider.mRoutes.get(i);
-                    route.maybeUpdateDescriptor(null);
-                    // 2. Remove the route from the list.
-                    mRoutes.remove(route);
-                }
-
-                // Update the selected route if needed.
-                updateSelectedRouteIfNeeded(selectedRouteDescriptorChanged);
+            // Dispose all remaining routes that do not have matching descriptors.
+            for (int i = provider.mRoutes.size() - 1; i >= targetIndex; i--) {
+                // 1. Delete the route's contents.
+                RouteInfo route = provider.mRoutes.get(i);
+                route.maybeUpdateDescriptor(null);
+                // 2. Remove the route from the list.
+                mRoutes.remove(route);
+                mRoutesByUniqueId.remove(route.mUniqueId);
+            }
 
-                // Now notify clients about routes that were removed.
-                // We do this after updating the selected route to ensure
-                // that the framework media router observes the new route
-                // selection before the removal since removing the currently
-                // selected route may have side-effects.
-                for (int i = provider.mRoutes.size() - 1; i >= targetIndex; i--) {
-                    RouteInfo route = provider.mRoutes.remove(i);
-                    if (DEBUG) {
-                        Log.d(TAG, "Route removed: " + route);
-                    }
-                    mCallbackHandler.post(CallbackHandler.MSG_ROUTE_REMOVED, route);
-                }
+            // Update the selected route if needed.
+            updateSelectedRouteIfNeeded(selectedRouteDescriptorChanged);
 
-                // Notify provider changed.
+            // Now notify clients about routes that were removed.
+            // We do this after updating the selected route to ensure
+            // that the framework media router observes the new route
+            // selection before the removal since removing the currently
+            // selected route may have side-effects.
+            for (int i = provider.mRoutes.size() - 1; i >= targetIndex; i--) {
+                RouteInfo route = provider.mRoutes.remove(i);
                 if (DEBUG) {
-                    Log.d(TAG, "Provider changed: " + provider);
+                    Log.d(TAG, "Route removed: " + route);
                 }
-                mCallbackHandler.post(CallbackHandler.MSG_PROVIDER_CHANGED, provider);
+                mCallbackHandler.post(CallbackHandler.MSG_ROUTE_REMOVED, route);
             }
+
+            // Notify provider changed.
+            if (DEBUG) {
+                Log.d(TAG, "Provider changed: " + provider);
+            }
+            mCallbackHandler.post(CallbackHandler.MSG_PROVIDER_CHANGED, provider);
         }
 
         private int updateRouteDescriptorAndNotify(RouteInfo route,
@@ -2308,7 +2459,7 @@ public final class MediaRouter {
             // Therefore we must dedupe the composite id.
             String componentName = provider.getComponentName().flattenToShortString();
             String uniqueId = componentName + ":" + routeDescriptorId;
-            if (findRouteByUniqueId(uniqueId) < 0) {
+            if (!mRoutesByUniqueId.containsKey(uniqueId)) {
                 mUniqueIdMap.put(new Pair(componentName, routeDescriptorId), uniqueId);
                 return uniqueId;
             }
@@ -2316,23 +2467,13 @@ public final class MediaRouter {
                     + " or we're trying to assign a unique ID for an already added route");
             for (int i = 2; ; i++) {
                 String newUniqueId = String.format(Locale.US, "%s_%d", uniqueId, i);
-                if (findRouteByUniqueId(newUniqueId) < 0) {
+                if (!mRoutesByUniqueId.containsKey(newUniqueId)) {
                     mUniqueIdMap.put(new Pair(componentName, routeDescriptorId), newUniqueId);
                     return newUniqueId;
                 }
             }
         }
 
-        private int findRouteByUniqueId(String uniqueId) {
-            final int count = mRoutes.size();
-            for (int i = 0; i < count; i++) {
-                if (mRoutes.get(i).mUniqueId.equals(uniqueId)) {
-                    return i;
-                }
-            }
-            return -1;
-        }
-
         private String getUniqueId(ProviderInfo provider, String routeDescriptorId) {
             String componentName = provider.getComponentName().flattenToShortString();
             return mUniqueIdMap.get(new Pair(componentName, routeDescriptorId));
@@ -2686,6 +2827,11 @@ public final class MediaRouter {
             private static final int MSG_TYPE_MASK = 0xff00;
             private static final int MSG_TYPE_ROUTE = 0x0100;
             private static final int MSG_TYPE_PROVIDER = 0x0200;
+            private static final int MSG_BATCH = 0x0300;
+
+            // Events posted while a batch is open.
+            private EventBatch mBatch;
+            private int mBatchDepth;
 
             public static final int MSG_ROUTE_ADDED = MSG_TYPE_ROUTE | 1;
             public static final int MSG_ROUTE_REMOVED = MSG_TYPE_ROUTE | 2;
@@ -2700,18 +2846,46 @@ public final class MediaRouter {
             public static final int MSG_PROVIDER_CHANGED = MSG_TYPE_PROVIDER | 3;
 
             public void post(int msg, Object obj) {
+                if (mBatchDepth > 0) {
+                    final Pair<Integer, Object> event = new Pair<Integer, Object>(msg, obj);
+                    // Changes only need to be delivered once per batch.
+                    if (msg == MSG_ROUTE_CHANGED || msg == MSG_ROUTE_VOLUME_CHANGED
+                            || msg == MSG_ROUTE_PRESENTATION_DISPLAY_CHANGED
+                            || msg == MSG_PROVIDER_CHANGED) {
+                        if (!mBatch.mChanges.add(event)) {
+                            return;
+                        }
+                    }
+                    mBatch.mEvents.add(event);
+                    return;
+                }
                 obtainMessage(msg, obj).sendToTarget();
             }
 
+            /**
+             * Collects the events posted until the matching {@link #endBatch} call, to
+             * deliver them in one message.
+             */
+            public void beginBatch() {
+                if (mBatchDepth++ == 0) {
+                    mBatch = new EventBatch();
+                }
+            }
+
+            public void endBatch() {
+                if (--mBatchDepth == 0) {
+                    if (!mBatch.mEvents.isEmpty()) {
+                        obtainMessage(MSG_BATCH, mBatch).sendToTarget();
+                    }
+                    mBatch = null;
+                }
+            }
+
             @Override
             public void handleMessage(Message msg) {
                 final int what = msg.what;
                 final Object obj = msg.obj;
 
-                // Synchronize state with the system media router.
-                syncWithSystemProvider(what, obj);
-
-                // Invoke all registered callbacks.
                 // Build a list of callbacks before invoking them in case callbacks
                 // are added or removed during dispatch.
                 try {
@@ -2724,15 +2898,29 @@ public final class MediaRouter {
                         }
                     }
 
-                    final int callbackCount = mTempCallbackRecords.size();
-                    for (int i = 0; i < callbackCount; i++) {
-                        invokeCallback(mTempCallbackRecords.get(i), what, obj);
+                    if (what == MSG_BATCH) {
+                        for (Pair<Integer, Object> event : ((EventBatch) obj).mEvents) {
+                            dispatchEvent(event.first, event.second);
+                        }
+                    } else {
+                        dispatchEvent(what, obj);
                     }
                 } finally {
                     mTempCallbackRecords.clear();
                 }
             }
 
+            private void dispatchEvent(int what, Object obj) {
+                // Synchronize state with the system media router.
+                syncWithSystemProvider(what, obj);
+
+                // Invoke all registered callbacks.
+                final int callbackCount = mTempCallbackRecords.size();
+                for (int i = 0; i < callbackCount; i++) {
+                    invokeCallback(mTempCallbackRecords.get(i), what, obj);
+                }
+            }
+
             private void syncWithSystemProvider(int what, Object obj) {
                 switch (what) {
                     case MSG_ROUTE_ADDED:
@@ -2756,7 +2944,11 @@ public final class MediaRouter {
                 switch (what & MSG_TYPE_MASK) {
                     case MSG_TYPE_ROUTE: {
                         final RouteInfo route = (RouteInfo)obj;
-                        if (!record.filterRouteEvent(route)) {
+                        final boolean matches = record.filterRouteEvent(route);
+                        if (what == MSG_ROUTE_REMOVED) {
+                            record.forgetRoute(route);
+                        }
+                        if (!matches) {
                             break;
                         }
                         switch (what) {
@@ -2801,5 +2993,15 @@ public final class MediaRouter {
                 }
             }
         }
+
+        /**
+         * Events posted to the {@link CallbackHandler} while a batch is open, as pairs of
+         * message and object, delivered in one message.
+         */
+        private static final class EventBatch {
+            final ArrayList<Pair<Integer, Object>> mEvents = new ArrayList<>();
+            // Change events already in the batch.
+            final HashSet<Pair<Integer, Object>> mChanges = new HashSet<>();
+        }
     }
 }
@@ -243,6 +243,21 @@ public class AdapterHelperTest extends AndroidTestCase {
                 25, mAdapterHelper.findPositionOffset(29));
     }
 
+    @Test
+    public void testFindFirstUndispatchedPosition() {
+        setupBasic(50, 10, 10);
+        assertEquals(-1, mAdapterHelper.findFirstUndispatchedPosition());
+        rm(15, 2);
+        up(12, 1);
+        mv(30, 8);
+        assertEquals(8, mAdapterHelper.findFirstUndispatchedPosition());
+        mAdapterHelper.preProcess();
+        final int first = mAdapterHelper.findFirstUndispatchedPosition();
+        assertTrue("postponed updates start at " + first, first >= 0 && first <= 12);
+        mAdapterHelper.consumePostponedUpdates();
+        assertEquals(-1, mAdapterHelper.findFirstUndispatchedPosition());
+    }
+
     @Test
     public void testSinglePass() {
         setupBasic(10, 2, 3);
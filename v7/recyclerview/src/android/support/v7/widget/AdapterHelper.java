@@ -461,6 +461,31 @@ class AdapterHelper implements OpReorderer.Callback {
         return mPendingUpdates.size() > 0;
     }
 
+    /**
+     * Returns the smallest adapter position changed by an update that has not been dispatched
+     * to the LayoutManager yet, or -1 if there is no such update. The items before it are the
+     * same before and after all of these updates.
+     */
+    int findFirstUndispatchedPosition() {
+        int first = findFirstPosition(mPostponedList, -1);
+        return findFirstPosition(mPendingUpdates, first);
+    }
+
+    private static int findFirstPosition(List<UpdateOp> ops, int first) {
+        final int count = ops.size();
+        for (int i = 0; i < count; i++) {
+            UpdateOp op = ops.get(i);
+            int position = op.positionStart;
+            if (op.cmd == UpdateOp.MOVE) {
+                position = Math.min(position, op.itemCount);
+            }
+            if (first == -1 || position < first) {
+                first = position;
+            }
+        }
+        return first;
+    }
+
     boolean hasAnyUpdateTypes(int updateTypes) {
         return (mExistingUpdateTypes & updateTypes) != 0;
     }
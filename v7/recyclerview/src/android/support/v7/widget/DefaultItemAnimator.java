@@ -16,6 +16,7 @@
 package android.support.v7.widget;
 
 import android.support.v4.animation.AnimatorCompatHelper;
+import android.support.v4.util.Pools;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPropertyAnimatorCompat;
 import android.support.v4.view.ViewPropertyAnimatorListener;
@@ -29,20 +30,38 @@ import java.util.List;
  * This implementation of {@link RecyclerView.ItemAnimator} provides basic
  * animations on remove, add, and move events that happen to the items in
  * a RecyclerView. RecyclerView uses a DefaultItemAnimator by default.
+ * <p>
+ * Items changed with a payload are rebound in place instead of being cross-faded with a new
+ * ViewHolder, see {@link #canReuseUpdatedViewHolder(ViewHolder)}.
  *
  * @see RecyclerView#setItemAnimator(RecyclerView.ItemAnimator)
  */
 public class DefaultItemAnimator extends SimpleItemAnimator {
     private static final boolean DEBUG = false;
 
+    private static final int RECORD_POOL_SIZE = 30;
+    private static final int BATCH_POOL_SIZE = 4;
+
     private ArrayList<ViewHolder> mPendingRemovals = new ArrayList<>();
     private ArrayList<ViewHolder> mPendingAdditions = new ArrayList<>();
     private ArrayList<MoveInfo> mPendingMoves = new ArrayList<>();
     private ArrayList<ChangeInfo> mPendingChanges = new ArrayList<>();
 
-    private ArrayList<ArrayList<ViewHolder>> mAdditionsList = new ArrayList<>();
-    private ArrayList<ArrayList<MoveInfo>> mMovesList = new ArrayList<>();
-    private ArrayList<ArrayList<ChangeInfo>> mChangesList = new ArrayList<>();
+    private ArrayList<AddBatch> mAdditionsList = new ArrayList<>();
+    private ArrayList<MoveBatch> mMovesList = new ArrayList<>();
+    private ArrayList<ChangeBatch> mChangesList = new ArrayList<>();
+
+    // Animation records and batches are reused, so that animating does not create garbage.
+    private final Pools.Pool<MoveInfo> mMoveInfoPool = new Pools.SimplePool<>(RECORD_POOL_SIZE);
+    private final Pools.Pool<ChangeInfo> mChangeInfoPool =
+            new Pools.SimplePool<>(RECORD_POOL_SIZE);
+    private final Pools.Pool<AddBatch> mAddBatchPool = new Pools.SimplePool<>(BATCH_POOL_SIZE);
+    private final Pools.Pool<MoveBatch> mMoveBatchPool = new Pools.SimplePool<>(BATCH_POOL_SIZE);
+    private final Pools.Pool<ChangeBatch> mChangeBatchPool =
+            new Pools.SimplePool<>(BATCH_POOL_SIZE);
+
+    // Number of animation records and batches that were created, for tests
+    int mAllocationCount;
 
     private ArrayList<ViewHolder> mAddAnimations = new ArrayList<>();
     private ArrayList<ViewHolder> mMoveAnimations = new ArrayList<>();
@@ -52,32 +71,11 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
     private static class MoveInfo {
         public ViewHolder holder;
         public int fromX, fromY, toX, toY;
-
-        private MoveInfo(ViewHolder holder, int fromX, int fromY, int toX, int toY) {
-            this.holder = holder;
-            this.fromX = fromX;
-            this.fromY = fromY;
-            this.toX = toX;
-            this.toY = toY;
-        }
     }
 
     private static class ChangeInfo {
         public ViewHolder oldHolder, newHolder;
         public int fromX, fromY, toX, toY;
-        private ChangeInfo(ViewHolder oldHolder, ViewHolder newHolder) {
-            this.oldHolder = oldHolder;
-            this.newHolder = newHolder;
-        }
-
-        private ChangeInfo(ViewHolder oldHolder, ViewHolder newHolder,
-                int fromX, int fromY, int toX, int toY) {
-            this(oldHolder, newHolder);
-            this.fromX = fromX;
-            this.fromY = fromY;
-            this.toX = toX;
-            this.toY = toY;
-        }
 
         @Override
         public String toString() {
@@ -109,21 +107,11 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         mPendingRemovals.clear();
         // Next, move stuff
         if (movesPending) {
-            final ArrayList<MoveInfo> moves = new ArrayList<>();
+            final MoveBatch moves = obtainMoveBatch();
             moves.addAll(mPendingMoves);
             mMovesList.add(moves);
             mPendingMoves.clear();
-            Runnable mover = new Runnable() {
-                @Override
-                public void run() {
-                    for (MoveInfo moveInfo : moves) {
-                        animateMoveImpl(moveInfo.holder, moveInfo.fromX, moveInfo.fromY,
-                                moveInfo.toX, moveInfo.toY);
-                    }
-                    moves.clear();
-                    mMovesList.remove(moves);
-                }
-            };
+            Runnable mover = moves;
             if (removalsPending) {
                 View view = moves.get(0).holder.itemView;
                 ViewCompat.postOnAnimationDelayed(view, mover, getRemoveDuration());
@@ -133,20 +121,11 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         }
         // Next, change stuff, to run in parallel with move animations
         if (changesPending) {
-            final ArrayList<ChangeInfo> changes = new ArrayList<>();
+            final ChangeBatch changes = obtainChangeBatch();
             changes.addAll(mPendingChanges);
             mChangesList.add(changes);
             mPendingChanges.clear();
-            Runnable changer = new Runnable() {
-                @Override
-                public void run() {
-                    for (ChangeInfo change : changes) {
-                        animateChangeImpl(change);
-                    }
-                    changes.clear();
-                    mChangesList.remove(changes);
-                }
-            };
+            Runnable changer = changes;
             if (removalsPending) {
                 ViewHolder holder = changes.get(0).oldHolder;
                 ViewCompat.postOnAnimationDelayed(holder.itemView, changer, getRemoveDuration());
@@ -156,19 +135,11 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         }
         // Next, add stuff
         if (additionsPending) {
-            final ArrayList<ViewHolder> additions = new ArrayList<>();
+            final AddBatch additions = obtainAddBatch();
             additions.addAll(mPendingAdditions);
             mAdditionsList.add(additions);
             mPendingAdditions.clear();
-            Runnable adder = new Runnable() {
-                public void run() {
-                    for (ViewHolder holder : additions) {
-                        animateAddImpl(holder);
-                    }
-                    additions.clear();
-                    mAdditionsList.remove(additions);
-                }
-            };
+            Runnable adder = additions;
             if (removalsPending || movesPending || changesPending) {
                 long removeDuration = removalsPending ? getRemoveDuration() : 0;
                 long moveDuration = movesPending ? getMoveDuration() : 0;
@@ -263,7 +234,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         if (deltaY != 0) {
             ViewCompat.setTranslationY(view, -deltaY);
         }
-        mPendingMoves.add(new MoveInfo(holder, fromX, fromY, toX, toY));
+        mPendingMoves.add(obtainMoveInfo(holder, fromX, fromY, toX, toY));
         return true;
     }
 
@@ -310,8 +281,8 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
     public boolean animateChange(ViewHolder oldHolder, ViewHolder newHolder,
             int fromX, int fromY, int toX, int toY) {
         if (oldHolder == newHolder) {
-            // Don't know how to run change animations when the same view holder is re-used.
-            // run a move animation to handle position changes.
+            // The same view holder is re-used when the item was changed with a payload and
+            // rebound in place. run a move animation to handle position changes.
             return animateMove(oldHolder, fromX, fromY, toX, toY);
         }
         final float prevTranslationX = ViewCompat.getTranslationX(oldHolder.itemView);
@@ -331,11 +302,27 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
             ViewCompat.setTranslationY(newHolder.itemView, -deltaY);
             ViewCompat.setAlpha(newHolder.itemView, 0);
         }
-        mPendingChanges.add(new ChangeInfo(oldHolder, newHolder, fromX, fromY, toX, toY));
+        mPendingChanges.add(obtainChangeInfo(oldHolder, newHolder, fromX, fromY, toX, toY));
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * DefaultItemAnimator also re-uses the ViewHolder of an item that was changed with a
+     * payload, so that only the parts of the item described by the payload are rebound, and
+     * only animates its position change.
+     *
+     * @see RecyclerView.Adapter#notifyItemChanged(int, Object)
+     */
+    @Override
+    public boolean canReuseUpdatedViewHolder(ViewHolder viewHolder) {
+        return !viewHolder.getUnmodifiedPayloads().isEmpty()
+                || super.canReuseUpdatedViewHolder(viewHolder);
+    }
+
     private void animateChangeImpl(final ChangeInfo changeInfo) {
+        // The change info is reused once the animations start.
         final ViewHolder holder = changeInfo.oldHolder;
         final View view = holder == null ? null : holder.itemView;
         final ViewHolder newHolder = changeInfo.newHolder;
@@ -343,13 +330,13 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         if (view != null) {
             final ViewPropertyAnimatorCompat oldViewAnim = ViewCompat.animate(view).setDuration(
                     getChangeDuration());
-            mChangeAnimations.add(changeInfo.oldHolder);
+            mChangeAnimations.add(holder);
             oldViewAnim.translationX(changeInfo.toX - changeInfo.fromX);
             oldViewAnim.translationY(changeInfo.toY - changeInfo.fromY);
             oldViewAnim.alpha(0).setListener(new VpaListenerAdapter() {
                 @Override
                 public void onAnimationStart(View view) {
-                    dispatchChangeStarting(changeInfo.oldHolder, true);
+                    dispatchChangeStarting(holder, true);
                 }
 
                 @Override
@@ -358,20 +345,20 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                     ViewCompat.setAlpha(view, 1);
                     ViewCompat.setTranslationX(view, 0);
                     ViewCompat.setTranslationY(view, 0);
-                    dispatchChangeFinished(changeInfo.oldHolder, true);
-                    mChangeAnimations.remove(changeInfo.oldHolder);
+                    dispatchChangeFinished(holder, true);
+                    mChangeAnimations.remove(holder);
                     dispatchFinishedWhenDone();
                 }
             }).start();
         }
         if (newView != null) {
             final ViewPropertyAnimatorCompat newViewAnimation = ViewCompat.animate(newView);
-            mChangeAnimations.add(changeInfo.newHolder);
+            mChangeAnimations.add(newHolder);
             newViewAnimation.translationX(0).translationY(0).setDuration(getChangeDuration()).
                     alpha(1).setListener(new VpaListenerAdapter() {
                 @Override
                 public void onAnimationStart(View view) {
-                    dispatchChangeStarting(changeInfo.newHolder, false);
+                    dispatchChangeStarting(newHolder, false);
                 }
                 @Override
                 public void onAnimationEnd(View view) {
@@ -379,8 +366,8 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                     ViewCompat.setAlpha(newView, 1);
                     ViewCompat.setTranslationX(newView, 0);
                     ViewCompat.setTranslationY(newView, 0);
-                    dispatchChangeFinished(changeInfo.newHolder, false);
-                    mChangeAnimations.remove(changeInfo.newHolder);
+                    dispatchChangeFinished(newHolder, false);
+                    mChangeAnimations.remove(newHolder);
                     dispatchFinishedWhenDone();
                 }
             }).start();
@@ -392,7 +379,8 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
             ChangeInfo changeInfo = infoList.get(i);
             if (endChangeAnimationIfNecessary(changeInfo, item)) {
                 if (changeInfo.oldHolder == null && changeInfo.newHolder == null) {
-                    infoList.remove(changeInfo);
+                    infoList.remove(i);
+                    releaseChangeInfo(changeInfo);
                 }
             }
         }
@@ -436,6 +424,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                 ViewCompat.setTranslationX(view, 0);
                 dispatchMoveFinished(item);
                 mPendingMoves.remove(i);
+                releaseMoveInfo(moveInfo);
             }
         }
         endChangeAnimation(mPendingChanges, item);
@@ -449,14 +438,14 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         }
 
         for (int i = mChangesList.size() - 1; i >= 0; i--) {
-            ArrayList<ChangeInfo> changes = mChangesList.get(i);
+            ChangeBatch changes = mChangesList.get(i);
             endChangeAnimation(changes, item);
             if (changes.isEmpty()) {
                 mChangesList.remove(i);
             }
         }
         for (int i = mMovesList.size() - 1; i >= 0; i--) {
-            ArrayList<MoveInfo> moves = mMovesList.get(i);
+            MoveBatch moves = mMovesList.get(i);
             for (int j = moves.size() - 1; j >= 0; j--) {
                 MoveInfo moveInfo = moves.get(j);
                 if (moveInfo.holder == item) {
@@ -464,6 +453,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                     ViewCompat.setTranslationX(view, 0);
                     dispatchMoveFinished(item);
                     moves.remove(j);
+                    releaseMoveInfo(moveInfo);
                     if (moves.isEmpty()) {
                         mMovesList.remove(i);
                     }
@@ -472,7 +462,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
             }
         }
         for (int i = mAdditionsList.size() - 1; i >= 0; i--) {
-            ArrayList<ViewHolder> additions = mAdditionsList.get(i);
+            AddBatch additions = mAdditionsList.get(i);
             if (additions.remove(item)) {
                 ViewCompat.setAlpha(view, 1);
                 dispatchAddFinished(item);
@@ -550,6 +540,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
             ViewCompat.setTranslationX(view, 0);
             dispatchMoveFinished(item.holder);
             mPendingMoves.remove(i);
+            releaseMoveInfo(item);
         }
         count = mPendingRemovals.size();
         for (int i = count - 1; i >= 0; i--) {
@@ -567,7 +558,9 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         }
         count = mPendingChanges.size();
         for (int i = count - 1; i >= 0; i--) {
-            endChangeAnimationIfNecessary(mPendingChanges.get(i));
+            final ChangeInfo changeInfo = mPendingChanges.get(i);
+            endChangeAnimationIfNecessary(changeInfo);
+            releaseChangeInfo(changeInfo);
         }
         mPendingChanges.clear();
         if (!isRunning()) {
@@ -576,7 +569,7 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
 
         int listCount = mMovesList.size();
         for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<MoveInfo> moves = mMovesList.get(i);
+            MoveBatch moves = mMovesList.get(i);
             count = moves.size();
             for (int j = count - 1; j >= 0; j--) {
                 MoveInfo moveInfo = moves.get(j);
@@ -586,14 +579,15 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                 ViewCompat.setTranslationX(view, 0);
                 dispatchMoveFinished(moveInfo.holder);
                 moves.remove(j);
+                releaseMoveInfo(moveInfo);
                 if (moves.isEmpty()) {
-                    mMovesList.remove(moves);
+                    removeBatch(mMovesList, moves);
                 }
             }
         }
         listCount = mAdditionsList.size();
         for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<ViewHolder> additions = mAdditionsList.get(i);
+            AddBatch additions = mAdditionsList.get(i);
             count = additions.size();
             for (int j = count - 1; j >= 0; j--) {
                 ViewHolder item = additions.get(j);
@@ -602,18 +596,21 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
                 dispatchAddFinished(item);
                 additions.remove(j);
                 if (additions.isEmpty()) {
-                    mAdditionsList.remove(additions);
+                    removeBatch(mAdditionsList, additions);
                 }
             }
         }
         listCount = mChangesList.size();
         for (int i = listCount - 1; i >= 0; i--) {
-            ArrayList<ChangeInfo> changes = mChangesList.get(i);
+            ChangeBatch changes = mChangesList.get(i);
             count = changes.size();
             for (int j = count - 1; j >= 0; j--) {
-                endChangeAnimationIfNecessary(changes.get(j));
+                final ChangeInfo changeInfo = changes.get(j);
+                endChangeAnimationIfNecessary(changeInfo);
+                changes.remove(j);
+                releaseChangeInfo(changeInfo);
                 if (changes.isEmpty()) {
-                    mChangesList.remove(changes);
+                    removeBatch(mChangesList, changes);
                 }
             }
         }
@@ -632,6 +629,133 @@ public class DefaultItemAnimator extends SimpleItemAnimator {
         }
     }
 
+    private MoveInfo obtainMoveInfo(ViewHolder holder, int fromX, int fromY, int toX, int toY) {
+        MoveInfo moveInfo = mMoveInfoPool.acquire();
+        if (moveInfo == null) {
+            moveInfo = new MoveInfo();
+            mAllocationCount++;
+        }
+        moveInfo.holder = holder;
+        moveInfo.fromX = fromX;
+        moveInfo.fromY = fromY;
+        moveInfo.toX = toX;
+        moveInfo.toY = toY;
+        return moveInfo;
+    }
+
+    private void releaseMoveInfo(MoveInfo moveInfo) {
+        moveInfo.holder = null;
+        mMoveInfoPool.release(moveInfo);
+    }
+
+    private ChangeInfo obtainChangeInfo(ViewHolder oldHolder, ViewHolder newHolder,
+            int fromX, int fromY, int toX, int toY) {
+        ChangeInfo changeInfo = mChangeInfoPool.acquire();
+        if (changeInfo == null) {
+            changeInfo = new ChangeInfo();
+            mAllocationCount++;
+        }
+        changeInfo.oldHolder = oldHolder;
+        changeInfo.newHolder = newHolder;
+        changeInfo.fromX = fromX;
+        changeInfo.fromY = fromY;
+        changeInfo.toX = toX;
+        changeInfo.toY = toY;
+        return changeInfo;
+    }
+
+    private void releaseChangeInfo(ChangeInfo changeInfo) {
+        changeInfo.oldHolder = null;
+        changeInfo.newHolder = null;
+        mChangeInfoPool.release(changeInfo);
+    }
+
+    private MoveBatch obtainMoveBatch() {
+        MoveBatch batch = mMoveBatchPool.acquire();
+        if (batch == null) {
+            batch = new MoveBatch();
+            mAllocationCount++;
+        }
+        return batch;
+    }
+
+    private ChangeBatch obtainChangeBatch() {
+        ChangeBatch batch = mChangeBatchPool.acquire();
+        if (batch == null) {
+            batch = new ChangeBatch();
+            mAllocationCount++;
+        }
+        return batch;
+    }
+
+    private AddBatch obtainAddBatch() {
+        AddBatch batch = mAddBatchPool.acquire();
+        if (batch == null) {
+            batch = new AddBatch();
+            mAllocationCount++;
+        }
+        return batch;
+    }
+
+    /**
+     * Removes the batch itself rather than the first equal one, since empty batches are equal.
+     */
+    private static void removeBatch(List<? extends List<?>> batches, List<?> batch) {
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            if (batches.get(i) == batch) {
+                batches.remove(i);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Batches of pending animations that start together, possibly after a delay. A batch is
+     * only released to its pool once it ran, even if its animations were ended before, since
+     * it might still be posted.
+     */
+
+    private class MoveBatch extends ArrayList<MoveInfo> implements Runnable {
+        @Override
+        public void run() {
+            for (int i = 0; i < size(); i++) {
+                final MoveInfo moveInfo = get(i);
+                animateMoveImpl(moveInfo.holder, moveInfo.fromX, moveInfo.fromY,
+                        moveInfo.toX, moveInfo.toY);
+                releaseMoveInfo(moveInfo);
+            }
+            clear();
+            removeBatch(mMovesList, this);
+            mMoveBatchPool.release(this);
+        }
+    }
+
+    private class ChangeBatch extends ArrayList<ChangeInfo> implements Runnable {
+        @Override
+        public void run() {
+            for (int i = 0; i < size(); i++) {
+                final ChangeInfo changeInfo = get(i);
+                animateChangeImpl(changeInfo);
+                releaseChangeInfo(changeInfo);
+            }
+            clear();
+            removeBatch(mChangesList, this);
+            mChangeBatchPool.release(this);
+        }
+    }
+
+    private class AddBatch extends ArrayList<ViewHolder> implements Runnable {
+        @Override
+        public void run() {
+            for (int i = 0; i < size(); i++) {
+                animateAddImpl(get(i));
+            }
+            clear();
+            removeBatch(mAdditionsList, this);
+            mAddBatchPool.release(this);
+        }
+    }
+
     private static class VpaListenerAdapter implements ViewPropertyAnimatorListener {
         @Override
         public void onAnimationStart(View view) {}
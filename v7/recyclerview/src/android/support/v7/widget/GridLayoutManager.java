@@ -166,6 +166,13 @@ public class GridLayoutManager extends LinearLayoutManager {
     @Override
     public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
         if (state.isPreLayout()) {
+            // Postponed adapter updates are not dispatched yet, so cached span indices after
+            // the first position they change might be stale.
+            final int firstUndispatched = mRecyclerView == null ? 0
+                    : mRecyclerView.mAdapterHelper.findFirstUndispatchedPosition();
+            if (firstUndispatched >= 0) {
+                mSpanSizeLookup.invalidateSpanIndexCacheFrom(firstUndispatched);
+            }
             cachePreLayoutSpanMapping();
         }
         super.onLayoutChildren(recycler, state);
@@ -195,7 +202,7 @@ public class GridLayoutManager extends LinearLayoutManager {
 
     @Override
     public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
+        mSpanSizeLookup.invalidateSpanIndexCacheFrom(positionStart);
     }
 
     @Override
@@ -205,18 +212,18 @@ public class GridLayoutManager extends LinearLayoutManager {
 
     @Override
     public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
+        mSpanSizeLookup.invalidateSpanIndexCacheFrom(positionStart);
     }
 
     @Override
     public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount,
             Object payload) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
+        mSpanSizeLookup.invalidateSpanIndexCacheFrom(positionStart);
     }
 
     @Override
     public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
-        mSpanSizeLookup.invalidateSpanIndexCache();
+        mSpanSizeLookup.invalidateSpanIndexCacheFrom(Math.min(from, to));
     }
 
     @Override
@@ -661,10 +668,30 @@ public class GridLayoutManager extends LinearLayoutManager {
      */
     public static abstract class SpanSizeLookup {
 
+        // Number of positions between two span index checkpoints
+        static final int CHECKPOINT_INTERVAL = 64;
+
         final SparseIntArray mSpanIndexCache = new SparseIntArray();
 
         private boolean mCacheSpanIndices = false;
 
+        private boolean mSpanIndexCheckpointsEnabled = false;
+
+        // Whether a subclass overrides invalidateSpanIndexCache(), or null if not known yet
+        private Boolean mOverridesInvalidateSpanIndexCache;
+
+        // The span index and span group index where the item at every multiple of
+        // CHECKPOINT_INTERVAL would start if it fit in the span group, starting with the
+        // checkpoint of position CHECKPOINT_INTERVAL.
+        private int[] mCheckpointSpans = new int[0];
+        private int[] mCheckpointGroups = new int[0];
+        int mCheckpointCount;
+        private int mCheckpointSpanCount;
+
+        // The state computed by the last call to moveToPosition()
+        private int mStateSpan;
+        private int mStateGroup;
+
         /**
          * Returns the number of span occupied by the item at <code>position</code>.
          *
@@ -690,6 +717,117 @@ public class GridLayoutManager extends LinearLayoutManager {
          */
         public void invalidateSpanIndexCache() {
             mSpanIndexCache.clear();
+            mCheckpointCount = 0;
+        }
+
+        /**
+         * Clears the cached span indices of the given position and the positions after it.
+         * A subclass that overrides {@link #invalidateSpanIndexCache()} to clear its own caches
+         * has it called instead.
+         */
+        void invalidateSpanIndexCacheFrom(int position) {
+            if (overridesInvalidateSpanIndexCache()) {
+                invalidateSpanIndexCache();
+                return;
+            }
+            for (int i = mSpanIndexCache.size() - 1;
+                    i >= 0 && mSpanIndexCache.keyAt(i) >= position; i--) {
+                mSpanIndexCache.removeAt(i);
+            }
+            // A checkpoint only depends on the items before its position.
+            mCheckpointCount = Math.min(mCheckpointCount, position / CHECKPOINT_INTERVAL);
+        }
+
+        private boolean overridesInvalidateSpanIndexCache() {
+            if (mOverridesInvalidateSpanIndexCache == null) {
+                boolean overrides;
+                try {
+                    overrides = getClass().getMethod("invalidateSpanIndexCache")
+                            .getDeclaringClass() != SpanSizeLookup.class;
+                } catch (NoSuchMethodException e) {
+                    overrides = true;
+                }
+                mOverridesInvalidateSpanIndexCache = overrides;
+            }
+            return mOverridesInvalidateSpanIndexCache;
+        }
+
+        /**
+         * Sets whether {@link #getSpanIndex(int, int)} and {@link #getSpanGroupIndex(int, int)}
+         * keep the span index and span group index of every few positions, so that they only
+         * need to traverse the items from the closest one. This has no effect on the methods
+         * you override.
+         * <p>
+         * Like the span index cache, this is disabled by default since the kept values are only
+         * correct if {@link #getSpanSize(int)} only changes along with adapter change
+         * notifications.
+         *
+         * @param enabled Whether span index checkpoints should be kept or not.
+         */
+        public void setSpanIndexCheckpointsEnabled(boolean enabled) {
+            mSpanIndexCheckpointsEnabled = enabled;
+            if (!enabled) {
+                mCheckpointCount = 0;
+            }
+        }
+
+        /**
+         * Returns whether span index checkpoints are kept or not.
+         *
+         * @return True if span index checkpoints are kept.
+         * @see #setSpanIndexCheckpointsEnabled(boolean)
+         */
+        public boolean isSpanIndexCheckpointsEnabled() {
+            return mSpanIndexCheckpointsEnabled;
+        }
+
+        /**
+         * Computes the span index and span group index where the item at the given position
+         * would start if it fit in the span group, into mStateSpan and mStateGroup. Starts from
+         * the closest checkpoint and adds the checkpoints that are passed on the way.
+         */
+        private void moveToPosition(int position, int spanCount) {
+            if (mCheckpointSpanCount != spanCount) {
+                mCheckpointSpanCount = spanCount;
+                mCheckpointCount = 0;
+            }
+            final int checkpoint = Math.min(position / CHECKPOINT_INTERVAL, mCheckpointCount);
+            int span = checkpoint == 0 ? 0 : mCheckpointSpans[checkpoint - 1];
+            int group = checkpoint == 0 ? 0 : mCheckpointGroups[checkpoint - 1];
+            for (int i = checkpoint * CHECKPOINT_INTERVAL; i < position; i++) {
+                int size = getSpanSize(i);
+                span += size;
+                if (span == spanCount) {
+                    span = 0;
+                    group++;
+                } else if (span > spanCount) {
+                    // did not fit, moving to next row / column
+                    span = size;
+                    group++;
+                }
+                final int next = i + 1;
+                if (next % CHECKPOINT_INTERVAL == 0
+                        && next / CHECKPOINT_INTERVAL == mCheckpointCount + 1) {
+                    addCheckpoint(span, group);
+                }
+            }
+            mStateSpan = span;
+            mStateGroup = group;
+        }
+
+        private void addCheckpoint(int span, int group) {
+            if (mCheckpointCount == mCheckpointSpans.length) {
+                final int capacity = Math.max(16, mCheckpointCount * 2);
+                final int[] spans = new int[capacity];
+                final int[] groups = new int[capacity];
+                System.arraycopy(mCheckpointSpans, 0, spans, 0, mCheckpointCount);
+                System.arraycopy(mCheckpointGroups, 0, groups, 0, mCheckpointCount);
+                mCheckpointSpans = spans;
+                mCheckpointGroups = groups;
+            }
+            mCheckpointSpans[mCheckpointCount] = span;
+            mCheckpointGroups[mCheckpointCount] = group;
+            mCheckpointCount++;
         }
 
         /**
@@ -719,10 +857,13 @@ public class GridLayoutManager extends LinearLayoutManager {
          * <p>
          * If you have a faster way to calculate span index for your items, you should override
          * this method. Otherwise, you should enable span index cache
-         * ({@link #setSpanIndexCacheEnabled(boolean)}) for better performance. When caching is
-         * disabled, default implementation traverses all items from 0 to
-         * <code>position</code>. When caching is enabled, it calculates from the closest cached
-         * value before the <code>position</code>.
+         * ({@link #setSpanIndexCacheEnabled(boolean)}) for better performance. When span index
+         * checkpoints are enabled ({@link #setSpanIndexCheckpointsEnabled(boolean)}), the
+         * default implementation traverses the items from the closest checkpoint before
+         * <code>position</code>. Otherwise, it
+         * traverses all items from 0 to <code>position</code> when caching is disabled and
+         * calculates from the closest cached value before the <code>position</code> when
+         * caching is enabled.
          * <p>
          * If you override this method, you need to make sure it is consistent with
          * {@link #getSpanSize(int)}. GridLayoutManager does not call this method for
@@ -742,6 +883,10 @@ public class GridLayoutManager extends LinearLayoutManager {
             if (positionSpanSize == spanCount) {
                 return 0; // quick return for full-span items
             }
+            if (mSpanIndexCheckpointsEnabled) {
+                moveToPosition(position, spanCount);
+                return mStateSpan + positionSpanSize <= spanCount ? mStateSpan : 0;
+            }
             int span = 0;
             int startPos = 0;
             // If caching is enabled, try to jump
@@ -793,12 +938,24 @@ public class GridLayoutManager extends LinearLayoutManager {
          * <p>
          * For example, if grid has 3 columns and each item occupies 1 span, span group index
          * for item 1 will be 0, item 5 will be 1.
+         * <p>
+         * When span index checkpoints are enabled
+         * ({@link #setSpanIndexCheckpointsEnabled(boolean)}), this traverses the items from the
+         * closest checkpoint before <code>adapterPosition</code>. Otherwise, it
+         * traverses all items from 0 to <code>adapterPosition</code>.
          *
          * @param adapterPosition The position in adapter
          * @param spanCount The total number of spans in the grid
          * @return The index of the span group including the item at the given adapter position
          */
         public int getSpanGroupIndex(int adapterPosition, int spanCount) {
+            if (mSpanIndexCheckpointsEnabled) {
+                moveToPosition(adapterPosition, spanCount);
+                if (mStateSpan + getSpanSize(adapterPosition) > spanCount) {
+                    return mStateGroup + 1;
+                }
+                return mStateGroup;
+            }
             int span = 0;
             int group = 0;
             int positionSpanSize = getSpanSize(adapterPosition);
@@ -195,6 +195,47 @@ public class DefaultItemAnimatorTest extends ActivityInstrumentationTestCase2<Te
         runAndWait(2, 1);
     }
 
+    public void testAnimateChangeWithPayload() throws Throwable {
+        final ViewHolder vh = createViewHolder(1);
+        assertFalse(mAnimator.canReuseUpdatedViewHolder(vh));
+        vh.addChangePayload("payload");
+        assertTrue("view holder should be re-used for a payload",
+                mAnimator.canReuseUpdatedViewHolder(vh));
+        vh.addChangePayload(null);
+        assertFalse("view holder should not be re-used for a full update",
+                mAnimator.canReuseUpdatedViewHolder(vh));
+        vh.clearPayload();
+
+        // the same view holder is only moved
+        expectItems(vh);
+        assertTrue(animateChange(vh, vh, 0, 0, 100, 100));
+        runAndWait(1, 1);
+        assertTrue(mMoveFinished.contains(vh));
+        assertTrue(mChangeFinished.isEmpty());
+    }
+
+    public void testAnimationRecordsAreReused() throws Throwable {
+        animateAllAndWait();
+        final int allocationCount = mAnimator.mAllocationCount;
+        assertTrue(allocationCount > 0);
+        animateAllAndWait();
+        animateAllAndWait();
+        assertEquals("animation records should be reused", allocationCount,
+                mAnimator.mAllocationCount);
+    }
+
+    private void animateAllAndWait() throws Throwable {
+        ViewHolder moved = createViewHolder(1);
+        ViewHolder oldChanged = createViewHolder(2);
+        ViewHolder newChanged = createViewHolder(2);
+        ViewHolder added = createViewHolder(3);
+        expectItems(moved, oldChanged, newChanged, added);
+        assertTrue(animateMove(moved, 0, 0, 100, 100));
+        assertTrue(animateChange(oldChanged, newChanged, 0, 0, 100, 100));
+        assertTrue(animateAdd(added));
+        runAndWait(4, 1);
+    }
+
     public void cancelBefore(int count, final RecyclerView.ViewHolder... toCancel)
             throws Throwable {
         cancelTest(true, count, toCancel);
@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -720,6 +721,124 @@ public class GridLayoutManagerTest extends BaseRecyclerViewInstrumentationTest {
         assertEquals(2, ssl.getSpanGroupIndex(8, 5));
     }
 
+    public void testSpanIndexCheckpoints() {
+        final int[] spanSizes = new int[1000];
+        final Random random = new Random(1);
+        for (int i = 0; i < spanSizes.length; i++) {
+            spanSizes[i] = 1 + random.nextInt(4);
+        }
+        final GridLayoutManager.SpanSizeLookup ssl = new ArraySpanSizeLookup(spanSizes);
+        final GridLayoutManager.SpanSizeLookup reference = new ArraySpanSizeLookup(spanSizes);
+        assertFalse("checkpoints should be disabled by default",
+                reference.isSpanIndexCheckpointsEnabled());
+        ssl.setSpanIndexCheckpointsEnabled(true);
+        for (int spanCount = 4; spanCount <= 6; spanCount++) {
+            for (int i = 0; i < 2 * spanSizes.length; i++) {
+                final int position = random.nextInt(spanSizes.length);
+                assertEquals("span index of " + position,
+                        reference.getSpanIndex(position, spanCount),
+                        ssl.getSpanIndex(position, spanCount));
+                assertEquals("span group index of " + position,
+                        reference.getSpanGroupIndex(position, spanCount),
+                        ssl.getSpanGroupIndex(position, spanCount));
+            }
+        }
+    }
+
+    public void testSpanIndexCheckpointsInvalidation() {
+        final int[] spanSizes = new int[1000];
+        Arrays.fill(spanSizes, 1);
+        final GridLayoutManager.SpanSizeLookup ssl = new ArraySpanSizeLookup(spanSizes);
+        ssl.setSpanIndexCheckpointsEnabled(true);
+        assertEquals(333, ssl.getSpanGroupIndex(999, 3));
+        assertEquals(999 / GridLayoutManager.SpanSizeLookup.CHECKPOINT_INTERVAL,
+                ssl.mCheckpointCount);
+
+        spanSizes[300] = 3;
+        ssl.invalidateSpanIndexCacheFrom(300);
+        assertEquals("checkpoints before the change should be kept",
+                300 / GridLayoutManager.SpanSizeLookup.CHECKPOINT_INTERVAL,
+                ssl.mCheckpointCount);
+        assertEquals(99, ssl.getSpanGroupIndex(299, 3));
+        assertEquals(100, ssl.getSpanGroupIndex(300, 3));
+        assertEquals(101, ssl.getSpanGroupIndex(301, 3));
+        assertEquals(0, ssl.getSpanIndex(301, 3));
+        assertEquals(333, ssl.getSpanGroupIndex(999, 3));
+        assertEquals(2, ssl.getSpanIndex(999, 3));
+
+        ssl.invalidateSpanIndexCache();
+        assertEquals(0, ssl.mCheckpointCount);
+        assertEquals(333, ssl.getSpanGroupIndex(999, 3));
+    }
+
+    public void testSpanGroupIndexQueryCost() {
+        final int itemCount = 50000;
+        final int[] spanSizes = new int[itemCount];
+        final Random random = new Random(2);
+        for (int i = 0; i < itemCount; i++) {
+            spanSizes[i] = 1 + random.nextInt(3);
+        }
+        final ArraySpanSizeLookup ssl = new ArraySpanSizeLookup(spanSizes);
+        ssl.setSpanIndexCheckpointsEnabled(true);
+        final int groupIndex = ssl.getSpanGroupIndex(itemCount - 1, 3);
+        final int firstQueryCost = ssl.mSpanSizeCalls;
+        final long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            ssl.mSpanSizeCalls = 0;
+            assertEquals(groupIndex, ssl.getSpanGroupIndex(itemCount - 1, 3));
+            assertTrue("a repeated query should start from the last checkpoint",
+                    ssl.mSpanSizeCalls
+                            <= GridLayoutManager.SpanSizeLookup.CHECKPOINT_INTERVAL + 1);
+        }
+        final long elapsed = System.nanoTime() - start;
+        if (DEBUG) {
+            Log.d(TAG, "first query: " + firstQueryCost + " span sizes, 1000 queries: "
+                    + elapsed / 1000 + " us");
+        }
+
+        ssl.mSpanSizeCalls = 0;
+        ssl.invalidateSpanIndexCacheFrom(itemCount - 10);
+        ssl.getSpanGroupIndex(itemCount - 1, 3);
+        assertTrue("an update at the end should not invalidate the checkpoints before it",
+                ssl.mSpanSizeCalls <= GridLayoutManager.SpanSizeLookup.CHECKPOINT_INTERVAL + 1);
+    }
+
+    public void testOverriddenInvalidateCalledForPartialChanges() {
+        final int[] invalidations = new int[1];
+        final GridLayoutManager.SpanSizeLookup ssl = new GridLayoutManager.SpanSizeLookup() {
+            @Override
+            public int getSpanSize(int position) {
+                return 1;
+            }
+
+            @Override
+            public void invalidateSpanIndexCache() {
+                super.invalidateSpanIndexCache();
+                invalidations[0]++;
+            }
+        };
+        ssl.setSpanIndexCacheEnabled(true);
+        ssl.getCachedSpanIndex(2, 3);
+        ssl.invalidateSpanIndexCacheFrom(5);
+        assertEquals(1, invalidations[0]);
+        assertEquals(0, ssl.mSpanIndexCache.size());
+    }
+
+    static class ArraySpanSizeLookup extends GridLayoutManager.SpanSizeLookup {
+        final int[] mSpanSizes;
+        int mSpanSizeCalls;
+
+        ArraySpanSizeLookup(int[] spanSizes) {
+            mSpanSizes = spanSizes;
+        }
+
+        @Override
+        public int getSpanSize(int position) {
+            mSpanSizeCalls++;
+            return mSpanSizes[position];
+        }
+    }
+
     public void testNotifyDataSetChange() throws Throwable {
         final RecyclerView recyclerView = setupBasic(new Config(3, 100));
         final GridLayoutManager.SpanSizeLookup ssl = mGlm.getSpanSizeLookup();
@@ -730,7 +849,11 @@ public class GridLayoutManagerTest extends BaseRecyclerViewInstrumentationTest {
             @Override
             public void onBeforeLayout(RecyclerView.Recycler recycler, RecyclerView.State state) {
                 if (!state.isPreLayout()) {
-                    assertEquals("cache should be empty", 0, ssl.mSpanIndexCache.size());
+                    // Only the positions from the first removed one are invalidated.
+                    for (int i = 0; i < ssl.mSpanIndexCache.size(); i++) {
+                        assertTrue("cache should be empty from the removed items",
+                                ssl.mSpanIndexCache.keyAt(i) < 2);
+                    }
                 }
             }
 
@@ -804,8 +804,9 @@ public class RecyclerViewAnimationsTest extends BaseRecyclerViewAnimationsTest {
         }
     }
 
-    public void testCrossFadingChangeAnimationWithPayload() throws Throwable {
-        // for crossfading change animation,  will receive EMPTY payload in onBindViewHolder
+    public void testChangeAnimationWithPayload() throws Throwable {
+        // the ViewHolder is re-used for payload only changes, which receive their payloads in
+        // onBindViewHolder. full updates are crossfaded and receive EMPTY payload.
         testChangeWithPayload(true,
                 new Object[][]{
                         new Object[]{"abc"},
@@ -815,11 +816,11 @@ public class RecyclerViewAnimationsTest extends BaseRecyclerViewAnimationsTest {
                         new Object[]{"abc", "cdf"}
                 },
                 new Object[][]{
+                        new Object[]{"abc"},
                         new Object[0],
                         new Object[0],
                         new Object[0],
-                        new Object[0],
-                        new Object[0]
+                        new Object[]{"abc", "cdf"}
                 });
     }
 